@@ -67,6 +67,8 @@ public class SelendroidCapabilities extends DesiredCapabilities {
 
   public static final String USE_RANDOM_LOCAL_PORT = "useRandomLocalPort";
 
+  public static final String SERVER_KEEP_ALIVE = "serverKeepAlive";
+
   public static SelendroidCapabilities empty() {
     return new SelendroidCapabilities(new HashMap<String, Object>());
   }
@@ -128,6 +130,11 @@ public class SelendroidCapabilities extends DesiredCapabilities {
     return useRandomLocalPort != null ? useRandomLocalPort : false;
   }
 
+  public boolean getServerKeepAlive() {
+    Boolean serverKeepAlive = getBooleanCapability(SERVER_KEEP_ALIVE);
+    return serverKeepAlive != null ? serverKeepAlive : false;
+  }
+
   public String getPlatformName() {
     return (String) getRawCapabilities().get(PLATFORM_NAME);
   }
@@ -267,6 +274,10 @@ public class SelendroidCapabilities extends DesiredCapabilities {
     setCapability(USE_RANDOM_LOCAL_PORT, useRandomLocalPort);
   }
 
+  public void setServerKeepAlive(Boolean serverKeepAlive) {
+    setCapability(SERVER_KEEP_ALIVE, serverKeepAlive);
+  }
+
   public void setLocale(String locale) {
     setCapability(LOCALE, locale);
   }
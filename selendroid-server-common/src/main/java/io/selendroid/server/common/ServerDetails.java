@@ -27,4 +27,9 @@ public interface ServerDetails {
   public JSONArray getSupportedApps();
 
   public JSONArray getSupportedDevices();
+
+  /**
+   * @return true if sessions can be created
+   */
+  public boolean isReady();
 }
@@ -60,6 +60,7 @@ public class StatusServlet implements HttpServlet {
     JSONObject json = new JSONObject();
     json.put("build", build);
     json.put("os", os);
+    json.put("ready", seledendroidServer.isReady());
 
     JSONArray devices = null;
     try {
@@ -19,22 +19,53 @@ import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.TimeUnit;
 
 public class HttpServer {
+  public static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 60;
   private int port;
   private Thread serverThread;
   private final List<HttpServlet> handlers = new ArrayList<HttpServlet>();
+  private boolean keepAlive = false;
+  private int idleTimeoutSeconds = DEFAULT_IDLE_TIMEOUT_SECONDS;
+  private boolean blockingServlets = false;
 
   public HttpServer(int port) {
     this.port = port;
   }
 
+  /**
+   * Enables HTTP/1.1 persistent connections. Has to be called before {@link #start()}.
+   */
+  public void setKeepAlive(boolean keepAlive) {
+    this.keepAlive = keepAlive;
+  }
+
+  /**
+   * Time after which idle persistent connections are closed, 0 disables the timeout. Has to be
+   * called before {@link #start()}.
+   */
+  public void setIdleTimeoutSeconds(int idleTimeoutSeconds) {
+    this.idleTimeoutSeconds = idleTimeoutSeconds;
+  }
+
+  /**
+   * Runs the servlets on a thread pool instead of the event loops, which serve many connections
+   * each. Needed if servlets block, e.g. to wait for a resource that is released by another
+   * request. Has to be called before {@link #start()}.
+   */
+  public void setBlockingServlets(boolean blockingServlets) {
+    this.blockingServlets = blockingServlets;
+  }
+
   public void addHandler(HttpServlet handler) {
     handlers.add(handler);
   }
@@ -49,12 +80,16 @@ public class HttpServer {
       public void run() {
         EventLoopGroup bossGroup = new NioEventLoopGroup(1);
         EventLoopGroup workerGroup = new NioEventLoopGroup();
+        ExecutorService servletExecutor = blockingServlets
+            ? Executors.newCachedThreadPool(new DefaultThreadFactory("selendroid-http", true))
+            : null;
         try {
           ServerBootstrap bootstrap = new ServerBootstrap();
           bootstrap.option(ChannelOption.SO_BACKLOG, 1024);
           bootstrap.group(bossGroup, workerGroup)
               .channel(NioServerSocketChannel.class)
-              .childHandler(new ServerInitializer(handlers));
+              .childHandler(new ServerInitializer(handlers, keepAlive, idleTimeoutSeconds,
+                  servletExecutor));
 
           Channel ch = bootstrap.bind(port).sync().channel();
 
@@ -70,6 +105,9 @@ public class HttpServer {
         } finally {
           bossGroup.shutdownGracefully();
           workerGroup.shutdownGracefully();
+          if (servletExecutor != null) {
+            servletExecutor.shutdown();
+          }
           TrafficCounter.shutdown();
         }
       }
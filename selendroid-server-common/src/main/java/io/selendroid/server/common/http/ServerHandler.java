@@ -21,30 +21,106 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
 import io.selendroid.server.common.http.impl.NettyHttpRequest;
 import io.selendroid.server.common.http.impl.NettyHttpResponse;
 
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class ServerHandler extends ChannelInboundHandlerAdapter {
   private final static Logger LOGGER = Logger.getLogger(ServerHandler.class.getName());
   private List<HttpServlet> httpHandlers;
+  private final boolean keepAliveEnabled;
+  private final Executor servletExecutor;
+  // requests of this connection waiting for the servlet executor, guarded by itself
+  private final Queue<FullHttpRequest> pendingRequests = new ArrayDeque<FullHttpRequest>();
+  private boolean draining = false;
 
   public ServerHandler(List<HttpServlet> handlers) {
+    this(handlers, false);
+  }
+
+  /**
+   * @param keepAliveEnabled if true, connections are kept open after a response when the client
+   *        asked for it, otherwise every connection is closed after the first response.
+   */
+  public ServerHandler(List<HttpServlet> handlers, boolean keepAliveEnabled) {
+    this(handlers, keepAliveEnabled, null);
+  }
+
+  /**
+   * @param servletExecutor runs the servlets instead of the event loop of the connection, for
+   *        servlets that block. The requests of a connection are still handled one after the
+   *        other. Null to run the servlets on the event loop.
+   */
+  public ServerHandler(List<HttpServlet> handlers, boolean keepAliveEnabled,
+      Executor servletExecutor) {
     this.httpHandlers = handlers;
+    this.keepAliveEnabled = keepAliveEnabled;
+    this.servletExecutor = servletExecutor;
   }
 
   @Override
-  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+  public void channelRead(final ChannelHandlerContext ctx, Object msg) throws Exception {
     if (!(msg instanceof FullHttpRequest)) {
       return;
     }
+    if (servletExecutor == null) {
+      handle(ctx, (FullHttpRequest) msg);
+      super.channelRead(ctx, msg);
+      return;
+    }
 
-    FullHttpRequest request = (FullHttpRequest) msg;
+    // an event loop serves many connections, a blocking servlet must not hold up the others
+    synchronized (pendingRequests) {
+      pendingRequests.add((FullHttpRequest) msg);
+      if (draining) {
+        return;
+      }
+      draining = true;
+    }
+    servletExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        drainPendingRequests(ctx);
+      }
+    });
+  }
+
+  private void drainPendingRequests(ChannelHandlerContext ctx) {
+    while (true) {
+      FullHttpRequest request;
+      synchronized (pendingRequests) {
+        request = pendingRequests.poll();
+        if (request == null) {
+          draining = false;
+          return;
+        }
+      }
+      try {
+        handle(ctx, request);
+        ctx.flush();
+      } catch (Exception e) {
+        LOGGER.log(Level.SEVERE, "Error handling request", e);
+        ctx.close();
+      } finally {
+        ReferenceCountUtil.release(request);
+      }
+    }
+  }
+
+  private void handle(ChannelHandlerContext ctx, FullHttpRequest request) throws Exception {
     FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, OK);
-    response.headers().add("Connection", "close");
+    boolean keepAlive = keepAliveEnabled && HttpHeaders.isKeepAlive(request);
+    response.headers().set(HttpHeaders.Names.CONNECTION,
+        keepAlive ? HttpHeaders.Values.KEEP_ALIVE : HttpHeaders.Values.CLOSE);
 
     HttpRequest httpRequest = new NettyHttpRequest(request);
     HttpResponse httpResponse = new NettyHttpResponse(response);
@@ -61,8 +137,45 @@ public class ServerHandler extends ChannelInboundHandlerAdapter {
       httpResponse.end();
     }
 
-    ctx.write(response).addListener(ChannelFutureListener.CLOSE);
-    super.channelRead(ctx, msg);
+    // Requests of a connection are handled one after the other, so responses to pipelined
+    // requests are written in the order the requests came in.
+    if (keepAlive) {
+      if (!HttpHeaders.isContentLengthSet(response)) {
+        HttpHeaders.setContentLength(response, response.content().readableBytes());
+      }
+      ctx.write(response);
+    } else {
+      ctx.write(response).addListener(ChannelFutureListener.CLOSE);
+    }
+  }
+
+  @Override
+  public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+    if (evt instanceof IdleStateEvent) {
+      synchronized (pendingRequests) {
+        if (draining) {
+          // a servlet is still working on a request of this connection, e.g. waiting for a
+          // device, the connection only is idle once its response has been written
+          return;
+        }
+      }
+      LOGGER.fine("Closing idle connection " + ctx.channel());
+      ctx.close();
+      return;
+    }
+    super.userEventTriggered(ctx, evt);
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    // requests still waiting for the servlet executor will never be answered
+    synchronized (pendingRequests) {
+      FullHttpRequest request;
+      while ((request = pendingRequests.poll()) != null) {
+        ReferenceCountUtil.release(request);
+      }
+    }
+    super.channelInactive(ctx);
   }
 
   @Override
@@ -18,23 +18,52 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.timeout.IdleStateHandler;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 public class ServerInitializer extends ChannelInitializer<SocketChannel> {
 
   private final List<HttpServlet> handlers;
+  private final boolean keepAlive;
+  private final int idleTimeoutSeconds;
+  private final Executor servletExecutor;
 
   public ServerInitializer(List<HttpServlet> handlers) {
+    this(handlers, false, 0);
+  }
+
+  /**
+   * @param keepAlive whether persistent connections are supported
+   * @param idleTimeoutSeconds time after which an idle kept alive connection gets closed, 0 to
+   *        keep idle connections open until the client closes them
+   */
+  public ServerInitializer(List<HttpServlet> handlers, boolean keepAlive, int idleTimeoutSeconds) {
+    this(handlers, keepAlive, idleTimeoutSeconds, null);
+  }
+
+  /**
+   * @param servletExecutor runs the servlets instead of the event loops, null to run them on the
+   *        event loops
+   */
+  public ServerInitializer(List<HttpServlet> handlers, boolean keepAlive, int idleTimeoutSeconds,
+      Executor servletExecutor) {
     this.handlers = handlers;
+    this.keepAlive = keepAlive;
+    this.idleTimeoutSeconds = idleTimeoutSeconds;
+    this.servletExecutor = servletExecutor;
   }
 
   @Override
   public void initChannel(SocketChannel ch) throws Exception {
     ChannelPipeline pipeline = ch.pipeline();
+    if (keepAlive && idleTimeoutSeconds > 0) {
+      pipeline.addLast("idle", new IdleStateHandler(0, 0, idleTimeoutSeconds));
+    }
     pipeline.addLast("codec", new HttpServerCodec());
     pipeline.addLast("aggregator", new HttpObjectAggregator(65536));
     pipeline.addLast("shaper", TrafficCounter.getShaper());
-    pipeline.addLast("handler", new ServerHandler(handlers));
+    pipeline.addLast("handler", new ServerHandler(handlers, keepAlive, servletExecutor));
   }
 }
@@ -25,6 +25,7 @@ public class SelendroidArguments {
   public static final String LOAD_EXTENSIONS = "load_extensions";
   public static final String BOOTSTRAP = "bootstrap";
   public static final String SERVER_PORT = "server_port";
+  public static final String KEEP_ALIVE = "keep_alive";
 
   public static final Set<String> KNOWN_ARGUMENTS = new HashSet<String>();
 
@@ -36,5 +37,6 @@ public class SelendroidArguments {
     KNOWN_ARGUMENTS.add(LOAD_EXTENSIONS);
     KNOWN_ARGUMENTS.add(BOOTSTRAP);
     KNOWN_ARGUMENTS.add(SERVER_PORT);
+    KNOWN_ARGUMENTS.add(KEEP_ALIVE);
   }
 }
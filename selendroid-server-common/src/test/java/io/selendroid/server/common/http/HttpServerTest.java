@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.common.http;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class HttpServerTest {
+  private HttpServer server;
+
+  @After
+  public void stopServer() {
+    if (server != null) {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void blockingServletShouldNotHoldUpOtherRequests() throws Exception {
+    final CountDownLatch released = new CountDownLatch(1);
+    server = new HttpServer(0);
+    server.setKeepAlive(true);
+    server.setBlockingServlets(true);
+    server.addHandler(new HttpServlet() {
+      @Override
+      public void handleHttpRequest(HttpRequest request, HttpResponse response) throws Exception {
+        if (request.uri().equals("/wait")) {
+          response.setContent(String.valueOf(released.await(10, TimeUnit.SECONDS))).end();
+        } else if (request.uri().equals("/release")) {
+          released.countDown();
+          response.setContent("ok").end();
+        }
+      }
+    });
+    server.start();
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<String> waiting = executor.submit(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return get("/wait");
+        }
+      });
+      assertEquals("ok", get("/release"));
+      assertEquals("true", waiting.get(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldAnswerRequestsOfAConnectionInOrder() throws Exception {
+    server = new HttpServer(0);
+    server.setKeepAlive(true);
+    server.setBlockingServlets(true);
+    server.addHandler(new HttpServlet() {
+      @Override
+      public void handleHttpRequest(HttpRequest request, HttpResponse response) throws Exception {
+        response.setContent(request.uri()).end();
+      }
+    });
+    server.start();
+
+    for (int i = 0; i < 20; i++) {
+      assertEquals("/" + i, get("/" + i));
+    }
+  }
+
+  @Test
+  public void shouldNotCloseConnectionWhileServletIsRunning() throws Exception {
+    server = new HttpServer(0);
+    server.setKeepAlive(true);
+    server.setIdleTimeoutSeconds(1);
+    server.setBlockingServlets(true);
+    server.addHandler(new HttpServlet() {
+      @Override
+      public void handleHttpRequest(HttpRequest request, HttpResponse response) throws Exception {
+        Thread.sleep(2500);
+        response.setContent("done").end();
+      }
+    });
+    server.start();
+
+    assertEquals("done", get("/slow"));
+  }
+
+  private String get(String path) throws Exception {
+    HttpURLConnection connection =
+        (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path)
+            .openConnection();
+    try {
+      return IOUtils.toString(connection.getInputStream(), "UTF-8");
+    } finally {
+      connection.getInputStream().close();
+    }
+  }
+}
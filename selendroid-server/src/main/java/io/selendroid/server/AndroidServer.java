@@ -25,8 +25,13 @@ public class AndroidServer {
   private HttpServer webServer;
 
   public AndroidServer(ServerInstrumentation androidInstrumentation, int port) {
+    this(androidInstrumentation, port, false);
+  }
+
+  public AndroidServer(ServerInstrumentation androidInstrumentation, int port, boolean keepAlive) {
     driverPort = port;
     webServer = new HttpServer(driverPort);
+    webServer.setKeepAlive(keepAlive);
     init(androidInstrumentation);
   }
 
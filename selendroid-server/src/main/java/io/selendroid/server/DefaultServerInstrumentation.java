@@ -131,6 +131,15 @@ public class DefaultServerInstrumentation implements ServerInstrumentation {
         }
     }
 
+    @Override
+    public void startAppUnderTest() {
+        if (args.getServiceClassName() != null) {
+            startService();
+        } else {
+            startMainActivity();
+        }
+    }
+
     @Override
     public void startActivity(String activityClassName) {
         SelendroidLogger.info(
@@ -155,11 +164,7 @@ public class DefaultServerInstrumentation implements ServerInstrumentation {
           @Override
           public void run() {
               callAfterApplicationCreateBootstraps();
-              if (args.getServiceClassName() != null) {
-                  startService();
-              } else {
-                  startMainActivity();
-              }
+              startAppUnderTest();
               try {
                   startServerImpl();
               } catch (Exception e) {
@@ -385,6 +390,12 @@ public class DefaultServerInstrumentation implements ServerInstrumentation {
         return new JSONArray();
     }
 
+    @Override
+    public boolean isReady() {
+        // the main activity is started asynchronously before the server
+        return args.getServiceClassName() != null || getCurrentActivity() != null;
+    }
+
     private void doFinishAllActivities() {
         Set<Activity> activities = activitiesReporter.getActivities();
         if (activities != null && !activities.isEmpty()) {
@@ -417,7 +428,7 @@ public class DefaultServerInstrumentation implements ServerInstrumentation {
         public HttpdThread(ServerInstrumentation instrumentation, int serverPort) {
             this.instrumentation = instrumentation;
             // Create the server but absolutely do not start it here
-            server = new AndroidServer(this.instrumentation, serverPort);
+            server = new AndroidServer(this.instrumentation, serverPort, args.isKeepAlive());
         }
 
         @Override
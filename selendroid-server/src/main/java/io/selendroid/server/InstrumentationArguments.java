@@ -43,6 +43,7 @@ public class InstrumentationArguments {
   private final boolean loadExtensions;
   private final String bootstrapClassNames;
   private final String serverPort;
+  private final boolean keepAlive;
   private final JSONObject extraArgs;
 
   public InstrumentationArguments(Bundle arguments) {
@@ -53,6 +54,7 @@ public class InstrumentationArguments {
     loadExtensions = Boolean.parseBoolean(arguments.getString(SelendroidArguments.LOAD_EXTENSIONS));
     bootstrapClassNames = arguments.getString(SelendroidArguments.BOOTSTRAP);
     serverPort = arguments.getString(SelendroidArguments.SERVER_PORT);
+    keepAlive = Boolean.parseBoolean(arguments.getString(SelendroidArguments.KEEP_ALIVE));
     extraArgs = readExtraArgsFile();
   }
 
@@ -138,6 +140,11 @@ public class InstrumentationArguments {
     return serverPort;
   }
 
+  /** Should the server keep HTTP connections alive between requests */
+  public boolean isKeepAlive() {
+    return keepAlive;
+  }
+
   public JSONObject getExtraArgs() {
     return extraArgs;
   }
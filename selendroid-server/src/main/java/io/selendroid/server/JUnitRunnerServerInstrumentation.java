@@ -45,7 +45,7 @@ public class JUnitRunnerServerInstrumentation extends DefaultServerInstrumentati
 
         try {
             if (server == null) {
-                server = new AndroidServer(this, serverPort);
+                server = new AndroidServer(this, serverPort, args.isKeepAlive());
             }
 
             DefaultServerInstrumentation.startAndroidServer(
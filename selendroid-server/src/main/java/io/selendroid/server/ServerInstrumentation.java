@@ -33,6 +33,7 @@ public interface ServerInstrumentation extends ServerDetails {
   void startService();
   void startService(String serviceClassName, String intentAction);
   void startMainActivity();
+  void startAppUnderTest();
   void startActivity(String activityClassName);
   void startServer();
   void stopServer();
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.android;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import io.selendroid.server.common.exceptions.SelendroidException;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets implicit waits sleep until the view hierarchy changes instead of polling it.
+ *
+ * While started, layout, draw and scroll callbacks of all windows are observed. The set of windows
+ * itself is checked every {@link AndroidWait#DEFAULT_SLEEP_INTERVAL}, which is cheap compared to
+ * searching the view trees, so dialogs and popups are noticed as well.
+ *
+ * <pre>
+ * watcher.start();
+ * try {
+ *   found = find();
+ *   while (found == null &amp;&amp; watcher.awaitChange(end)) {
+ *     found = find();
+ *   }
+ * } finally {
+ *   watcher.stop();
+ * }
+ * </pre>
+ */
+public class ViewHierarchyWatcher {
+  // limits how often callers re-evaluate while animations are running to the old polling rate,
+  // the first change after a quiet period is still returned right away
+  private static final long MIN_INTERVAL = AndroidWait.DEFAULT_SLEEP_INTERVAL;
+  private static final long START_TIMEOUT = 1000;
+
+  private final ViewHierarchyAnalyzer analyzer;
+  private final long recheckInterval;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final Object lock = new Object();
+  // only accessed on the main thread
+  private final Set<View> observedViews = new HashSet<View>();
+  private Set<View> topLevelViews = new HashSet<View>();
+  private long changeCount = 0;
+  private long seenChangeCount = 0;
+  private long lastChangeReturned = 0;
+  private volatile boolean watching = false;
+
+  private final ViewTreeObserver.OnGlobalLayoutListener layoutListener =
+      new ViewTreeObserver.OnGlobalLayoutListener() {
+        @Override
+        public void onGlobalLayout() {
+          changed();
+        }
+      };
+  private final ViewTreeObserver.OnPreDrawListener drawListener =
+      new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+          changed();
+          return true;
+        }
+      };
+  private final ViewTreeObserver.OnScrollChangedListener scrollListener =
+      new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+          changed();
+        }
+      };
+
+  /**
+   * @param recheckInterval time in milliseconds after which {@link #awaitChange(long)} returns
+   *        even though no change was observed. Covers changes that don't lead to a layout or draw
+   *        pass, like DOM changes of hidden web content.
+   */
+  public ViewHierarchyWatcher(long recheckInterval) {
+    this(ViewHierarchyAnalyzer.getDefaultInstance(), recheckInterval);
+  }
+
+  public ViewHierarchyWatcher(ViewHierarchyAnalyzer analyzer, long recheckInterval) {
+    this.analyzer = analyzer;
+    this.recheckInterval = recheckInterval;
+  }
+
+  /**
+   * Registers the listeners. Changes that happened before this call returned might not have been
+   * observed, so the condition has to be evaluated once after starting.
+   */
+  public void start() {
+    watching = true;
+    topLevelViews = analyzer.getTopLevelViews();
+    final Set<View> views = new HashSet<View>(topLevelViews);
+    final CountDownLatch registered = new CountDownLatch(1);
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        observe(views);
+        registered.countDown();
+      }
+    });
+    try {
+      // a busy main thread delays the listeners, waiting still falls back to rechecking
+      registered.await(START_TIMEOUT, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SelendroidException(e);
+    }
+  }
+
+  /**
+   * Blocks until the view hierarchy changed, the recheck interval elapsed or the deadline is
+   * reached.
+   *
+   * @param deadline as returned by {@link System#currentTimeMillis()}
+   * @return false if the deadline has been reached
+   */
+  public boolean awaitChange(long deadline) {
+    long earliest = lastChangeReturned + MIN_INTERVAL;
+    long now = System.currentTimeMillis();
+    if (now >= deadline) {
+      return false;
+    }
+    if (now < earliest) {
+      sleep(Math.min(earliest, deadline) - now);
+      now = System.currentTimeMillis();
+    }
+    long recheckAt = now + recheckInterval;
+    long nextWindowCheck = now + AndroidWait.DEFAULT_SLEEP_INTERVAL;
+    while (true) {
+      synchronized (lock) {
+        while (true) {
+          now = System.currentTimeMillis();
+          if (changeCount != seenChangeCount) {
+            seenChangeCount = changeCount;
+            lastChangeReturned = now;
+            return true;
+          }
+          if (now >= deadline) {
+            return false;
+          }
+          if (now >= recheckAt) {
+            lastChangeReturned = now;
+            return true;
+          }
+          if (now >= nextWindowCheck) {
+            break;
+          }
+          try {
+            lock.wait(Math.min(Math.min(deadline, recheckAt), nextWindowCheck) - now);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SelendroidException(e);
+          }
+        }
+      }
+      if (windowsChanged()) {
+        lastChangeReturned = System.currentTimeMillis();
+        return true;
+      }
+      nextWindowCheck = System.currentTimeMillis() + AndroidWait.DEFAULT_SLEEP_INTERVAL;
+    }
+  }
+
+  /**
+   * Removes the listeners again.
+   */
+  public void stop() {
+    watching = false;
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        for (View view : observedViews) {
+          ViewTreeObserver observer = view.getViewTreeObserver();
+          if (observer.isAlive()) {
+            observer.removeGlobalOnLayoutListener(layoutListener);
+            observer.removeOnPreDrawListener(drawListener);
+            observer.removeOnScrollChangedListener(scrollListener);
+          }
+        }
+        observedViews.clear();
+      }
+    });
+  }
+
+  private boolean windowsChanged() {
+    Set<View> current = analyzer.getTopLevelViews();
+    if (current.equals(topLevelViews)) {
+      return false;
+    }
+    topLevelViews = current;
+    final Set<View> views = new HashSet<View>(current);
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        observe(views);
+      }
+    });
+    return true;
+  }
+
+  private void observe(Set<View> views) {
+    if (!watching) {
+      return;
+    }
+    for (View view : views) {
+      if (observedViews.add(view)) {
+        ViewTreeObserver observer = view.getViewTreeObserver();
+        observer.addOnGlobalLayoutListener(layoutListener);
+        observer.addOnPreDrawListener(drawListener);
+        observer.addOnScrollChangedListener(scrollListener);
+      }
+    }
+  }
+
+  private void changed() {
+    if (!watching) {
+      return;
+    }
+    synchronized (lock) {
+      changeCount++;
+      lock.notifyAll();
+    }
+  }
+
+  private void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SelendroidException(e);
+    }
+  }
+}
@@ -13,14 +13,20 @@
  */
 package io.selendroid.server.handler;
 
+import android.net.Uri;
+import android.util.Base64;
 import org.json.JSONException;
 
-import io.selendroid.server.android.internal.Base64Encoder;
 import io.selendroid.server.common.Response;
 import io.selendroid.server.common.SelendroidResponse;
 import io.selendroid.server.common.http.HttpRequest;
+import io.selendroid.server.model.ScreenshotOptions;
+import io.selendroid.server.model.SelendroidDriver;
 import io.selendroid.server.util.SelendroidLogger;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class CaptureScreenshot extends SafeRequestHandler {
 
   public CaptureScreenshot(String mappedUri) {
@@ -30,9 +36,24 @@ public class CaptureScreenshot extends SafeRequestHandler {
   @Override
   public Response safeHandle(HttpRequest request) throws JSONException {
     SelendroidLogger.info("take screenshot command");
-    byte[] rawPng = getSelendroidDriver(request).takeScreenshot();
-    String base64Png = new Base64Encoder().encode(rawPng);
+    SelendroidDriver driver = getSelendroidDriver(request);
+    ScreenshotOptions options = driver.getSession().getScreenshotOptions()
+        .withParameters(getQueryParameters(request));
+    byte[] screenshot = driver.takeScreenshot(options);
+    String base64Screenshot = Base64.encodeToString(screenshot, Base64.NO_WRAP);
+
+    return new SelendroidResponse(getSessionId(request), base64Screenshot);
+  }
 
-    return new SelendroidResponse(getSessionId(request), base64Png);
+  private static Map<String, String> getQueryParameters(HttpRequest request) {
+    Uri uri = Uri.parse(request.uri());
+    Map<String, String> parameters = new HashMap<String, String>();
+    for (String name : new String[] {"format", "quality", "scale"}) {
+      String value = uri.getQueryParameter(name);
+      if (value != null) {
+        parameters.put(name, value);
+      }
+    }
+    return parameters;
   }
 }
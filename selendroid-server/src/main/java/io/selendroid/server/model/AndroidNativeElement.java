@@ -506,6 +506,13 @@ public class AndroidNativeElement implements AndroidElement {
     return viewRef.get();
   }
 
+  /**
+   * @return the view, or null if it has already been garbage collected
+   */
+  View peekView() {
+    return viewRef.get();
+  }
+
   @Override
   public void clear() {
     final View viewview = getView();
@@ -21,6 +21,8 @@ import io.selendroid.server.util.SelendroidLogger;
 public class ClassPredicate implements Predicate<View> {
 
   protected final String using;
+  // resolved on first use, predicates are cached by the PredicatesFactory
+  private volatile Class<?> clazz;
 
   public ClassPredicate(String using) {
     this.using = using;
@@ -28,11 +30,14 @@ public class ClassPredicate implements Predicate<View> {
 
   @Override
   public boolean apply(View to) {
-    try {
-      return Class.forName(using).isInstance(to);
-    } catch (ClassNotFoundException e) {
-      SelendroidLogger.warning("Finding by unknown class " + using);
-      return false;
+    if (clazz == null) {
+      try {
+        clazz = Class.forName(using);
+      } catch (ClassNotFoundException e) {
+        SelendroidLogger.warning("Finding by unknown class " + using);
+        return false;
+      }
     }
+    return clazz.isInstance(to);
   }
 }
@@ -18,6 +18,7 @@ import android.content.res.Resources.Theme;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Point;
 import android.graphics.drawable.Drawable;
 import android.provider.Settings;
@@ -36,6 +37,7 @@ import io.selendroid.server.model.internal.AbstractWebElementContext;
 import io.selendroid.server.model.internal.WebViewHandleMapper;
 import io.selendroid.server.model.internal.execute_native.*;
 import io.selendroid.server.model.js.AndroidAtoms;
+import io.selendroid.server.util.Function;
 import io.selendroid.server.util.Preconditions;
 import io.selendroid.server.util.SelendroidLogger;
 import org.json.JSONArray;
@@ -43,8 +45,6 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.ByteArrayOutputStream;
-import java.io.Closeable;
-import java.io.IOException;
 import java.util.*;
 
 
@@ -58,12 +58,20 @@ public class DefaultSelendroidDriver implements SelendroidDriver {
   public static final String ROTATABLE = "rotatable";
   public static final String ACCEPT_SSL_CERTS = "acceptSslCerts";
   public static final String SUPPORTS_NETWORK_CONNECTION = "networkConnectionEnabled";
+  // safety net for changes of native views that are not followed by a layout or draw pass
+  private static final long NATIVE_RECHECK_INTERVAL = 1000L;
+  private static final long APP_UNDER_TEST_RESTART_TIMEOUT = 20000L;
   private boolean done = false;
+  // the activities of the app under test have been finished when the last session stopped
+  private boolean appUnderTestFinished = false;
   private SearchContext nativeSearchScope = null;
   private SearchContext webviewSearchScope = null;
   private ServerInstrumentation serverInstrumentation = null;
   private Session session = null;
   private final Object syncObject = new Object();
+  // serializes screenshots, they share one buffer
+  private final Object screenshotLock = new Object();
+  private volatile Bitmap screenshotBuffer = null;
   private KeySender keySender = null;
   private SelendroidNativeDriver selendroidNativeDriver = null;
   private SelendroidWebDriver selendroidWebDriver = null;
@@ -93,15 +101,13 @@ public class DefaultSelendroidDriver implements SelendroidDriver {
       throw new IllegalArgumentException("By cannot be null.");
     }
 
-    SearchContext context = getSearchContext();
-    AndroidElement found = by.findElement(context);
-    long timeout = getTimeout();
-
-    while (found == null && (System.currentTimeMillis() < timeout)) {
-      sleepQuietly(AndroidWait.DEFAULT_SLEEP_INTERVAL);
-      found = by.findElement(context);
-    }
-    return found;
+    final SearchContext context = getSearchContext();
+    return findWithImplicitWait(new Function<Void, AndroidElement>() {
+      @Override
+      public AndroidElement apply(Void input) {
+        return by.findElement(context);
+      }
+    });
   }
 
   private long getTimeout() {
@@ -116,17 +122,54 @@ public class DefaultSelendroidDriver implements SelendroidDriver {
    * .model.By)
    */
   @Override
-  public List<AndroidElement> findElements(By by) {
+  public List<AndroidElement> findElements(final By by) {
     if (by == null) {
       throw new IllegalArgumentException("By cannot be null.");
     }
+    final SearchContext context = getSearchContext();
+
+    List<AndroidElement> found =
+        findWithImplicitWait(new Function<Void, List<AndroidElement>>() {
+          @Override
+          public List<AndroidElement> apply(Void input) {
+            List<AndroidElement> elements = by.findElements(context);
+            return elements.isEmpty() ? null : elements;
+          }
+        });
+    return found == null ? new ArrayList<AndroidElement>() : found;
+  }
+
+  /**
+   * Evaluates the finder until it returns a value or the implicit wait timeout expires. With event
+   * driven waits the finder is only evaluated again after the view hierarchy changed.
+   */
+  private <T> T findWithImplicitWait(Function<Void, T> finder) {
     long timeout = getTimeout();
-    SearchContext context = getSearchContext();
+    T found = finder.apply(null);
+    if (found != null || System.currentTimeMillis() >= timeout) {
+      return found;
+    }
 
-    List<AndroidElement> found = by.findElements(context);
-    while (found.isEmpty() && (System.currentTimeMillis() < timeout)) {
-      sleepQuietly(AndroidWait.DEFAULT_SLEEP_INTERVAL);
-      found = by.findElements(context);
+    if (session != null && !session.isEventDrivenWaits()) {
+      while (found == null && (System.currentTimeMillis() < timeout)) {
+        sleepQuietly(AndroidWait.DEFAULT_SLEEP_INTERVAL);
+        found = finder.apply(null);
+      }
+      return found;
+    }
+
+    // DOM changes don't necessarily make the web view draw, so keep checking web views as often
+    // as before
+    ViewHierarchyWatcher watcher = new ViewHierarchyWatcher(
+        isNativeWindowMode() ? NATIVE_RECHECK_INTERVAL : AndroidWait.DEFAULT_SLEEP_INTERVAL);
+    watcher.start();
+    try {
+      found = finder.apply(null);
+      while (found == null && watcher.awaitChange(timeout)) {
+        found = finder.apply(null);
+      }
+    } finally {
+      watcher.stop();
     }
     return found;
   }
@@ -204,7 +247,13 @@ public class DefaultSelendroidDriver implements SelendroidDriver {
    */
   @Override
   public void stopSession() {
+    PredicatesFactory predicatesFactory = Factories.getPredicatesFactory();
+    SelendroidLogger.info("Locator cache: " + predicatesFactory.getPredicateCache()
+        + ", XPath cache: " + predicatesFactory.getXPathCache()
+        + ", unsupported XPath cache: " + predicatesFactory.getUnsupportedXPathCache());
+    predicatesFactory.clearCaches();
     serverInstrumentation.finishAllActivities();
+    appUnderTestFinished = true;
     this.activeWindowType = WindowType.NATIVE_APP.name();
     this.session = null;
     nativeSearchScope = null;
@@ -219,8 +268,17 @@ public class DefaultSelendroidDriver implements SelendroidDriver {
    * @see org.openqa.selenium.android.server.AndroidDriver#takeScreenshot()
    */
   @Override
-  @SuppressWarnings("deprecation")
   public byte[] takeScreenshot() {
+    return takeScreenshot(session != null ? session.getScreenshotOptions()
+        : ScreenshotOptions.DEFAULT);
+  }
+
+  /**
+   * Only drawing the screen happens on the main thread of the app under test. The image is
+   * compressed on the calling thread, so the app stays responsive meanwhile.
+   */
+  @Override
+  public byte[] takeScreenshot(final ScreenshotOptions options) {
     ViewHierarchyAnalyzer viewAnalyzer = ViewHierarchyAnalyzer.getDefaultInstance();
 
     // TODO ddary review later, but with getRecentDecorView() it seems to work better
@@ -238,74 +296,87 @@ public class DefaultSelendroidDriver implements SelendroidDriver {
     if (mainView == null) {
       throw new SelendroidException("No open windows.");
     }
-    done = false;
-    long end =
-        System.currentTimeMillis() + serverInstrumentation.getAndroidWait().getTimeoutInMillis();
-    final byte[][] rawPng = new byte[1][1];
-    serverInstrumentation.getCurrentActivity().runOnUiThread(new Runnable() {
-      public void run() {
-        synchronized (syncObject) {
-          Display display =
-              serverInstrumentation.getCurrentActivity().getWindowManager().getDefaultDisplay();
-          Point size = new Point();
-          try {
-            display.getSize(size);
-          } catch (NoSuchMethodError ignore) { // Older than api level 13
-            size.x = display.getWidth();
-            size.y = display.getHeight();
-          }
-
-          // Get root view
-          View view = mainView.getRootView();
-
-          // Create the bitmap to use to draw the screenshot
-          final Bitmap bitmap = Bitmap.createBitmap(size.x, size.y, Bitmap.Config.ARGB_8888);
-          final Canvas canvas = new Canvas(bitmap);
-
-          // Get current theme to know which background to use
-          final Activity activity = serverInstrumentation.getCurrentActivity();
-          final Theme theme = activity.getTheme();
-          final TypedArray ta =
-              theme.obtainStyledAttributes(new int[] {android.R.attr.windowBackground});
-          final int res = ta.getResourceId(0, 0);
-          final Drawable background = activity.getResources().getDrawable(res);
-
-          // Draw background
-          background.draw(canvas);
-
-          // Draw views
-          view.draw(canvas);
-
-          ByteArrayOutputStream stream = new ByteArrayOutputStream();
-          if (!bitmap.compress(Bitmap.CompressFormat.PNG, 70, stream)) {
-            throw new RuntimeException("Error while compressing screenshot image.");
-          }
-          try {
-            stream.flush();
-            stream.close();
-          } catch (IOException e) {
-            throw new RuntimeException("I/O Error while capturing screenshot: " + e.getMessage());
-          } finally {
-            Closeable closeable = (Closeable) stream;
+    synchronized (screenshotLock) {
+      done = false;
+      long end =
+          System.currentTimeMillis() + serverInstrumentation.getAndroidWait().getTimeoutInMillis();
+      final Bitmap[] screen = new Bitmap[1];
+      serverInstrumentation.getCurrentActivity().runOnUiThread(new Runnable() {
+        public void run() {
+          synchronized (syncObject) {
             try {
-              if (closeable != null) {
-                closeable.close();
-              }
-            } catch (IOException ioe) {
-              // ignore
+              screen[0] = drawScreen(mainView, options.getScale());
+            } finally {
+              mainView.destroyDrawingCache();
+              done = true;
+              syncObject.notify();
             }
           }
-          rawPng[0] = stream.toByteArray();
-          mainView.destroyDrawingCache();
-          done = true;
-          syncObject.notify();
         }
+      });
+
+      waitForDone(end, serverInstrumentation.getAndroidWait().getTimeoutInMillis(),
+          "Failed to take screenshot.");
+      Bitmap bitmap;
+      synchronized (syncObject) {
+        bitmap = screen[0];
       }
-    });
+      if (bitmap == null) {
+        // the main thread may still draw into the buffer
+        screenshotBuffer = null;
+        throw new SelendroidException("Failed to take screenshot.");
+      }
+      ByteArrayOutputStream stream =
+          new ByteArrayOutputStream(bitmap.getWidth() * bitmap.getHeight());
+      if (!bitmap.compress(options.getCompressFormat(), options.getQuality(), stream)) {
+        throw new SelendroidException("Error while compressing screenshot image.");
+      }
+      return stream.toByteArray();
+    }
+  }
 
-    waitForDone(end, serverInstrumentation.getAndroidWait().getTimeoutInMillis(),
-        "Failed to take screenshot.");
-    return rawPng[0];
+  /**
+   * Draws the screen into the screenshot buffer, which is reused as long as the size of the
+   * screen does not change. Has to run on the main thread.
+   */
+  @SuppressWarnings("deprecation")
+  private Bitmap drawScreen(View mainView, float scale) {
+    final Activity activity = serverInstrumentation.getCurrentActivity();
+    Display display = activity.getWindowManager().getDefaultDisplay();
+    Point size = new Point();
+    try {
+      display.getSize(size);
+    } catch (NoSuchMethodError ignore) { // Older than api level 13
+      size.x = display.getWidth();
+      size.y = display.getHeight();
+    }
+    int width = Math.max(1, Math.round(size.x * scale));
+    int height = Math.max(1, Math.round(size.y * scale));
+
+    Bitmap bitmap = screenshotBuffer;
+    if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+      bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+      screenshotBuffer = bitmap;
+    } else {
+      bitmap.eraseColor(Color.TRANSPARENT);
+    }
+    Canvas canvas = new Canvas(bitmap);
+    canvas.scale(scale, scale);
+
+    // Get current theme to know which background to use
+    final Theme theme = activity.getTheme();
+    final TypedArray ta =
+        theme.obtainStyledAttributes(new int[] {android.R.attr.windowBackground});
+    final int res = ta.getResourceId(0, 0);
+    ta.recycle();
+    final Drawable background = activity.getResources().getDrawable(res);
+
+    // Draw background
+    background.draw(canvas);
+
+    // Draw views
+    mainView.getRootView().draw(canvas);
+    return bitmap;
   }
 
   private void waitForDone(long end, long timeout, String error) {
@@ -357,6 +428,10 @@ public class DefaultSelendroidDriver implements SelendroidDriver {
       session.getKnownElements().clear();
       return session.getSessionId();
     }
+    if (appUnderTestFinished) {
+      // the server kept running after the last session, so the app has to be started again
+      restartAppUnderTest();
+    }
     activeWindowType = WindowType.NATIVE_APP.name();
     Random random = new Random();
     this.session =
@@ -381,6 +456,16 @@ public class DefaultSelendroidDriver implements SelendroidDriver {
     return session.getSessionId();
   }
 
+  private void restartAppUnderTest() {
+    SelendroidLogger.info("Starting the app under test again for the new session");
+    serverInstrumentation.startAppUnderTest();
+    appUnderTestFinished = false;
+    long end = System.currentTimeMillis() + APP_UNDER_TEST_RESTART_TIMEOUT;
+    while (!serverInstrumentation.isReady() && System.currentTimeMillis() < end) {
+      sleepQuietly(AndroidWait.DEFAULT_SLEEP_INTERVAL);
+    }
+  }
+
   @Override
   public Keyboard getKeyboard() {
     return keySender.getKeyboard();
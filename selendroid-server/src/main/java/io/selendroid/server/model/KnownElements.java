@@ -17,33 +17,79 @@ import android.view.View;
 import io.selendroid.server.android.ViewHierarchyAnalyzer;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.WeakHashMap;
 
+/**
+ * Keeps track of the elements that have been handed out to the client. Lookups by id and by element
+ * are both constant time. The number of elements is bounded; once the limit is reached the least
+ * recently used element is forgotten.
+ *
+ * Elements are looked up from the request threads of the server and from the main thread of the
+ * app, and lookups reorder the entries, so all accessors are synchronized.
+ */
 public class KnownElements {
-  private final Map<String, AndroidElement> cache = new HashMap<String, AndroidElement>();
+  public static final int DEFAULT_MAX_SIZE = 10000;
+
+  private final int maxSize;
+  private final Map<String, AndroidElement> cache;
+  private final Map<AndroidElement, String> idsByElement = new HashMap<AndroidElement, String>();
   private final Map<View, AndroidNativeElement> nativeElementsByView =
       new WeakHashMap<View, AndroidNativeElement>();
 
-  public String add(AndroidElement element) {
-    if (cache.containsValue(element)) {
-      return getCacheKey(element);
+  public KnownElements() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  public KnownElements(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+    }
+    this.maxSize = maxSize;
+    this.cache = new LinkedHashMap<String, AndroidElement>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, AndroidElement> eldest) {
+        if (size() > KnownElements.this.maxSize) {
+          forget(eldest.getKey(), eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  public synchronized String add(AndroidElement element) {
+    String knownId = idsByElement.get(element);
+    if (knownId != null) {
+      // mark as recently used
+      cache.get(knownId);
+      return knownId;
     }
 
-    cache.put(element.id(), element);
+    String id = element.id();
+    idsByElement.put(element, id);
+    AndroidElement replaced = cache.put(id, element);
+    if (replaced != null) {
+      forget(id, replaced);
+    }
     if (element instanceof AndroidNativeElement) {
       AndroidNativeElement nativeElement = (AndroidNativeElement) element;
       nativeElementsByView.put(nativeElement.getView(), nativeElement);
     }
-    return element.id();
+    return id;
   }
 
   /**
    * Uses the generated Id to look up elements
    */
   public AndroidElement get(String elementId) {
-    AndroidElement element = cache.get(elementId);
+    AndroidElement element;
+    synchronized (this) {
+      element = cache.get(elementId);
+    }
 
+    // checking the view hierarchy can take a while, it doesn't need the lock
     if (element instanceof AndroidNativeElement) {
       if (!ViewHierarchyAnalyzer.getDefaultInstance().isViewChieldOfCurrentRootView(
           ((AndroidNativeElement) element).getView())) {
@@ -60,7 +106,7 @@ public class KnownElements {
   /**
    * Uses the generated Id to look up elements
    */
-  public boolean hasElement(String elementId) {
+  public synchronized boolean hasElement(String elementId) {
     return cache.containsKey(elementId);
   }
 
@@ -68,34 +114,38 @@ public class KnownElements {
     return hasElement(elementId.toString());
   }
 
-  public AndroidNativeElement getNativeElement(View view) {
+  public synchronized AndroidNativeElement getNativeElement(View view) {
     return nativeElementsByView.get(view);
   }
 
-  public boolean hasNativeElement(View view) {
+  public synchronized boolean hasNativeElement(View view) {
     return nativeElementsByView.containsKey(view);
   }
 
-  public String getIdOfElement(AndroidElement element) {
-    if (cache.containsValue(element)) {
-      return getCacheKey(element);
-    }
-    return null;
+  public synchronized String getIdOfElement(AndroidElement element) {
+    return idsByElement.get(element);
+  }
+
+  public synchronized int size() {
+    return cache.size();
   }
 
-  public void clear() {
+  public synchronized void clear() {
     cache.clear();
+    idsByElement.clear();
     nativeElementsByView.clear();
-    System.gc();
   }
 
-
-  private String getCacheKey(AndroidElement element) {
-    for (Map.Entry<String, AndroidElement> entry : cache.entrySet()) {
-      if (entry.getValue().equals(element)) {
-        return entry.getKey();
+  private void forget(String id, AndroidElement element) {
+    if (id.equals(idsByElement.get(element))) {
+      idsByElement.remove(element);
+    }
+    if (element instanceof AndroidNativeElement) {
+      // a view that has been garbage collected is already gone from the weak map
+      View view = ((AndroidNativeElement) element).peekView();
+      if (view != null && nativeElementsByView.get(view) == element) {
+        nativeElementsByView.remove(view);
       }
     }
-    return null;
   }
 }
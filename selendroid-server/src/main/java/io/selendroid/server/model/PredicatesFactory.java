@@ -16,34 +16,144 @@ package io.selendroid.server.model;
 
 import android.view.View;
 import com.android.internal.util.Predicate;
+import io.selendroid.server.model.internal.xpath.ViewXPath;
+import io.selendroid.server.util.LruCache;
 
+/**
+ * Creates the predicates and compiled XPath expressions used to find native elements. Test suites
+ * use the same locators over and over, so both are cached.
+ */
 public class PredicatesFactory {
+  public static final int DEFAULT_CACHE_SIZE = 500;
+
+  private final LruCache<String, Predicate<View>> predicateCache;
+  private final LruCache<String, ViewXPath> xPathCache;
+  // expression -> reason why ViewXPath does not support it
+  private final LruCache<String, String> unsupportedXPathCache;
+
+  public PredicatesFactory() {
+    this(DEFAULT_CACHE_SIZE);
+  }
+
+  public PredicatesFactory(int cacheSize) {
+    predicateCache = new LruCache<String, Predicate<View>>(cacheSize);
+    xPathCache = new LruCache<String, ViewXPath>(cacheSize);
+    unsupportedXPathCache = new LruCache<String, String>(cacheSize);
+  }
 
   public Predicate<View> createIdPredicate(String using) {
-    return new IdPredicate(using);
+    return cached("id:", using, new PredicateCreator() {
+      @Override
+      public Predicate<View> create(String using) {
+        return new IdPredicate(using);
+      }
+    });
   }
 
   public Predicate<View> createContentDescriptionPredicate(String using) {
-    return new ContentDescriptionPredicate(using);
+    return cached("name:", using, new PredicateCreator() {
+      @Override
+      public Predicate<View> create(String using) {
+        return new ContentDescriptionPredicate(using);
+      }
+    });
   }
 
   public Predicate<View> createTextPredicate(String using) {
-    return new TextPredicate(using);
+    return cached("text:", using, new PredicateCreator() {
+      @Override
+      public Predicate<View> create(String using) {
+        return new TextPredicate(using);
+      }
+    });
   }
 
   public Predicate<View> createPartialTextPredicate(String using) {
-    return new PartialTextPredicate(using);
+    return cached("partialText:", using, new PredicateCreator() {
+      @Override
+      public Predicate<View> create(String using) {
+        return new PartialTextPredicate(using);
+      }
+    });
   }
 
   public Predicate<View> createTagNamePredicate(String using) {
-    return new TagNamePredicate(using);
+    return cached("tagName:", using, new PredicateCreator() {
+      @Override
+      public Predicate<View> create(String using) {
+        return new TagNamePredicate(using);
+      }
+    });
   }
 
   public Predicate<View> createClassPredicate(String using) {
-    return new ClassPredicate(using);
+    return cached("class:", using, new PredicateCreator() {
+      @Override
+      public Predicate<View> create(String using) {
+        return new ClassPredicate(using);
+      }
+    });
+  }
+
+  /**
+   * @param prefix distinguishes the kinds of predicates created for the same locator value
+   */
+  private Predicate<View> cached(String prefix, String using, PredicateCreator creator) {
+    String key = prefix + using;
+    Predicate<View> predicate = predicateCache.get(key);
+    if (predicate == null) {
+      predicate = creator.create(using);
+      predicateCache.put(key, predicate);
+    }
+    return predicate;
   }
 
   public Predicate<Object> createDecorViewPredicate() {
     return new DecorViewPredicate();
   }
+
+  /**
+   * @throws IllegalArgumentException if the expression is not supported by {@link ViewXPath}
+   */
+  public ViewXPath createXPath(String expression) {
+    ViewXPath xPath = xPathCache.get(expression);
+    if (xPath != null) {
+      return xPath;
+    }
+    // expressions ViewXPath does not support are evaluated on the DOM, don't parse them each time
+    String unsupported = unsupportedXPathCache.get(expression);
+    if (unsupported != null) {
+      throw new IllegalArgumentException(unsupported);
+    }
+    try {
+      xPath = ViewXPath.compile(expression);
+    } catch (IllegalArgumentException e) {
+      unsupportedXPathCache.put(expression, String.valueOf(e.getMessage()));
+      throw e;
+    }
+    xPathCache.put(expression, xPath);
+    return xPath;
+  }
+
+  public LruCache<String, Predicate<View>> getPredicateCache() {
+    return predicateCache;
+  }
+
+  public LruCache<String, ViewXPath> getXPathCache() {
+    return xPathCache;
+  }
+
+  public LruCache<String, String> getUnsupportedXPathCache() {
+    return unsupportedXPathCache;
+  }
+
+  public void clearCaches() {
+    predicateCache.clear();
+    xPathCache.clear();
+    unsupportedXPathCache.clear();
+  }
+
+  private interface PredicateCreator {
+    Predicate<View> create(String using);
+  }
 }
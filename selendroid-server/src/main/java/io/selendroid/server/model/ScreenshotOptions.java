@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.model;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import io.selendroid.server.common.exceptions.SelendroidException;
+
+import org.json.JSONObject;
+
+import java.util.Map;
+
+/**
+ * How screenshots are encoded: the image format, the quality of lossy formats and the factor the
+ * screen is scaled by. The defaults can be set with the capabilities of the session and be
+ * overridden per screenshot with the parameters of the request.
+ */
+public class ScreenshotOptions {
+  public static final String FORMAT = "screenshotFormat";
+  public static final String QUALITY = "screenshotQuality";
+  public static final String SCALE = "screenshotScale";
+  public static final ScreenshotOptions DEFAULT = new ScreenshotOptions("png", 70, 1f);
+
+  private final String format;
+  private final int quality;
+  private final float scale;
+
+  public ScreenshotOptions(String format, int quality, float scale) {
+    if (!"png".equals(format) && !"jpeg".equals(format) && !"webp".equals(format)) {
+      throw new SelendroidException("Unsupported screenshot format: " + format);
+    }
+    if (quality < 0 || quality > 100) {
+      throw new SelendroidException("The screenshot quality must be between 0 and 100.");
+    }
+    if (scale <= 0 || scale > 1) {
+      throw new SelendroidException("The screenshot scale must be greater than 0 and at most 1.");
+    }
+    this.format = format;
+    this.quality = quality;
+    this.scale = scale;
+  }
+
+  /**
+   * @return the options given in the capabilities, the defaults for the others
+   */
+  public static ScreenshotOptions fromCapabilities(JSONObject capabilities) {
+    return DEFAULT.with(capabilities.optString(FORMAT, null),
+        capabilities.has(QUALITY) ? String.valueOf(capabilities.opt(QUALITY)) : null,
+        capabilities.has(SCALE) ? String.valueOf(capabilities.opt(SCALE)) : null);
+  }
+
+  /**
+   * @param parameters the query parameters of a screenshot request, e.g. format=jpeg&amp;scale=0.5
+   * @return these options overridden by the given parameters
+   */
+  public ScreenshotOptions withParameters(Map<String, String> parameters) {
+    return with(parameters.get("format"), parameters.get("quality"), parameters.get("scale"));
+  }
+
+  private ScreenshotOptions with(String format, String quality, String scale) {
+    if (format == null && quality == null && scale == null) {
+      return this;
+    }
+    try {
+      return new ScreenshotOptions(
+          format == null ? this.format : format.toLowerCase().replace("jpg", "jpeg"),
+          quality == null ? this.quality : Integer.parseInt(quality),
+          scale == null ? this.scale : Float.parseFloat(scale));
+    } catch (NumberFormatException e) {
+      throw new SelendroidException("Invalid screenshot quality or scale.", e);
+    }
+  }
+
+  public Bitmap.CompressFormat getCompressFormat() {
+    if ("jpeg".equals(format)) {
+      return Bitmap.CompressFormat.JPEG;
+    }
+    // WebP encoding is only available from API level 14 on
+    if ("webp".equals(format) && Build.VERSION.SDK_INT >= 14) {
+      return Bitmap.CompressFormat.WEBP;
+    }
+    return Bitmap.CompressFormat.PNG;
+  }
+
+  public String getFormat() {
+    return format;
+  }
+
+  public int getQuality() {
+    return quality;
+  }
+
+  public float getScale() {
+    return scale;
+  }
+}
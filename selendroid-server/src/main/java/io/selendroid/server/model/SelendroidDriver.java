@@ -46,6 +46,8 @@ public interface SelendroidDriver {
 
   public byte[] takeScreenshot();
 
+  public byte[] takeScreenshot(ScreenshotOptions options);
+
   public Keyboard getKeyboard();
 
   public String getTitle();
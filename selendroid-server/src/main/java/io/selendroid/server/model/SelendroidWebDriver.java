@@ -28,6 +28,8 @@ import io.selendroid.server.common.exceptions.StaleElementReferenceException;
 import io.selendroid.server.common.exceptions.TimeoutException;
 import io.selendroid.server.model.internal.WebViewHandleMapper;
 import io.selendroid.server.model.js.AndroidAtoms;
+import io.selendroid.server.model.js.AtomRegistry;
+import io.selendroid.server.model.js.ScriptResultChannel;
 import io.selendroid.server.util.SelendroidLogger;
 import org.apache.cordova.CordovaChromeClient;
 import org.apache.cordova.CordovaInterface;
@@ -42,6 +44,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.*;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -55,9 +58,13 @@ public class SelendroidWebDriver {
   static final long UI_TIMEOUT = 3000L;
   private volatile boolean pageDoneLoading;
   private volatile boolean pageStartedLoading;
-  private volatile String result;
   private volatile WebView webview = null;
   private static final String WINDOW_KEY = "WINDOW";
+  private static final String ATOM_CALL = "$ATOM_CALL$";
+  // name of the function async scripts report their result with
+  private static final String REPORT_FUNCTION = "__selendroid_report";
+  // WebView.evaluateJavascript is available since API level 19
+  private static final Method EVALUATE_JAVASCRIPT = findEvaluateJavascript();
   private volatile boolean editAreaHasFocus;
   private final Object syncObject = new Object();
   private boolean done = false;
@@ -73,6 +80,8 @@ public class SelendroidWebDriver {
   private long asyncScriptTimeout = 0L;
   private long pageLoadTimeout = 30000L;
   private final String contextHandle;
+  private final AtomRegistry atomRegistry = new AtomRegistry();
+  private final ScriptResultChannel scriptResults = new ScriptResultChannel();
 
   public SelendroidWebDriver(ServerInstrumentation serverInstrumentation, String handle) {
     this.contextHandle = WebViewHandleMapper.normalizeHandle(handle);
@@ -187,13 +196,8 @@ public class SelendroidWebDriver {
 
   public Object executeAtom(AndroidAtoms atom, JSONArray args, KnownElements ke)
       throws JSONException {
-    final String myScript = atom.getValue();
-    String scriptInWindow =
-        "(function(){ " + " var win; try{win=" + getWindowString() + "}catch(e){win=window;}"
-            + "with(win){return (" + myScript + ")(" + convertToJsArgs(args, ke) + ")}})()";
-    String jsResult =
-        executeJavascriptInWebView("alert('selendroid<' + document.charset + '>:'+"
-            + scriptInWindow + ")");
+    String jsResult = executeAtomInWebView(atom, getWindowString(), convertToJsArgs(args, ke),
+        false);
 
 
     SelendroidLogger.info("jsResult: " + jsResult);
@@ -223,8 +227,71 @@ public class SelendroidWebDriver {
     }
   }
 
-  private String executeJavascriptInWebView(final String script) {
-    result = null;
+  private static Method findEvaluateJavascript() {
+    try {
+      return WebView.class.getMethod("evaluateJavascript", String.class, ValueCallback.class);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Evaluates the expression in the web view and returns its value as a string. The value is
+   * passed back through an evaluateJavascript callback if the platform supports it, otherwise
+   * through an alert.
+   */
+  private String executeJavascriptInWebView(final String expression) {
+    final long callId = scriptResults.newCall();
+    try {
+      if (EVALUATE_JAVASCRIPT != null) {
+        final ValueCallback<String> callback = new ValueCallback<String>() {
+          @Override
+          public void onReceiveValue(String value) {
+            scriptResults.complete(callId, ScriptResultChannel.decodeEvaluatedValue(value));
+          }
+        };
+        runInWebView(new Runnable() {
+          public void run() {
+            try {
+              EVALUATE_JAVASCRIPT.invoke(webview, expression, callback);
+            } catch (Exception e) {
+              SelendroidLogger.error("Failed to evaluate javascript", e);
+            }
+          }
+        });
+      } else {
+        loadJavascriptInWebView(
+            "(" + ScriptResultChannel.createAlertReporter(callId) + ")(" + expression + ")");
+      }
+      return scriptResults.await(callId, scriptTimeout);
+    } finally {
+      scriptResults.cancel(callId);
+    }
+  }
+
+  /**
+   * Runs a script that reports its result asynchronously by calling {@link #REPORT_FUNCTION}.
+   */
+  private String executeAsyncJavascriptInWebView(String script) {
+    long callId = scriptResults.newCall();
+    try {
+      loadJavascriptInWebView("(function(" + REPORT_FUNCTION + "){" + script + "})("
+          + ScriptResultChannel.createAlertReporter(callId) + ")");
+      return scriptResults.await(callId, scriptTimeout);
+    } finally {
+      scriptResults.cancel(callId);
+    }
+  }
+
+  private void loadJavascriptInWebView(final String script) {
+    runInWebView(new Runnable() {
+      public void run() {
+        webview.loadUrl("javascript:" + script);
+      }
+    });
+  }
+
+  private void runInWebView(final Runnable runnable) {
     serverInstrumentation.getCurrentActivity().runOnUiThread(new Runnable() {
       public void run() {
         if (webview.getUrl() == null) {
@@ -236,21 +303,9 @@ public class SelendroidWebDriver {
         // switch back to NATIVE_APP and then to the webview again, this will allow
         // selendroid to wrap the 'new' chromeClient set by the AUT.
         webview.setWebChromeClient(chromeClient);
-        webview.loadUrl("javascript:" + script);
+        runnable.run();
       }
     });
-    long timeout = System.currentTimeMillis() + scriptTimeout;
-    synchronized (syncObject) {
-      while (result == null && (System.currentTimeMillis() < timeout)) {
-        try {
-          syncObject.wait(2000);
-        } catch (InterruptedException e) {
-          throw new SelendroidException(e);
-        }
-      }
-
-      return result;
-    }
   }
 
   public Object executeScript(String script) {
@@ -481,47 +536,70 @@ public class SelendroidWebDriver {
 
   Object injectJavascript(String toExecute, Object args, KnownElements ke) {
     try {
-      String executeScript = AndroidAtoms.EXECUTE_SCRIPT.getValue();
       toExecute =
           "var win_context; try{win_context= " + getWindowString() + "}catch(e){"
               + "win_context=window;}with(win_context){" + toExecute + "}";
-      String wrappedScript =
-          "(function(){ var win; try{win=" + getWindowString() + "}catch(e){win=window}"
-              + "with(win){return (" + executeScript + ")(" + escapeAndQuote(toExecute) + ", ["
-              + convertToJsArgs(args, ke) + "], true)}})()";
-      return executeJavascriptInWebView("alert('selendroid<' + document.charset + '>:'+"
-          + wrappedScript + ")");
+      return executeAtomInWebView(AndroidAtoms.EXECUTE_SCRIPT, getWindowString(),
+          escapeAndQuote(toExecute) + ", [" + convertToJsArgs(args, ke) + "], true", false);
     } catch (JSONException e) {
       SelendroidLogger.error("Failed to convert args to jsArgs", e);
       throw new RuntimeException(e);
     }
   }
 
-  Object injectAtomJavascript(String toExecute, Object args, KnownElements ke) throws JSONException {
-    return executeJavascriptInWebView("alert('selendroid<' + document.charset +'>:'+ (" + toExecute
-        + ")(" + convertToJsArgs(args, ke) + "))");
+  Object injectAtomJavascript(AndroidAtoms atom, Object args, KnownElements ke)
+      throws JSONException {
+    return executeAtomInWebView(atom, "window", convertToJsArgs(args, ke), false);
+  }
+
+  /**
+   * Runs an atom in the web view. The atom source is only sent along if it hasn't been installed
+   * into the window of the current document yet, see {@link AtomRegistry}.
+   *
+   * @param async if the atom reports its result by calling {@link #REPORT_FUNCTION} instead of
+   *        returning it
+   */
+  private String executeAtomInWebView(AndroidAtoms atom, String window, String arguments,
+      boolean async) {
+    String result = executeAtomCall(atom, window, arguments, async);
+    if (AtomRegistry.ATOM_MISSING.equals(result)) {
+      // a new document got loaded without us noticing
+      atomRegistry.reset();
+      result = executeAtomCall(atom, window, arguments, async);
+    }
+    if (result != null) {
+      atomRegistry.markInstalled(atom, window);
+    }
+    return result;
+  }
+
+  private String executeAtomCall(AndroidAtoms atom, String window, String arguments,
+      boolean async) {
+    String call = atomRegistry.createCall(atom, window, arguments);
+    if (!async) {
+      return executeJavascriptInWebView(call);
+    }
+    // the result is reported by the callback, only a missing atom is reported right away
+    return executeAsyncJavascriptInWebView(
+        "try {var r=" + call + ";if(r==='" + AtomRegistry.ATOM_MISSING + "'){"
+            + REPORT_FUNCTION + "(r)}"
+            + "}catch(e){" + REPORT_FUNCTION + "('{\"status\":13,\"value\":\"' + e + '\"}')}");
   }
 
   public Object executeAsyncJavascript(String toExecute, JSONArray args, KnownElements ke) {
     try {
-      String callbackFunction =
-          "function(result){alert('selendroid<' + document.charset + '>:'+result);}";
-      String script =
-          "try {("
-              + AndroidAtoms.EXECUTE_ASYNC_SCRIPT.getValue()
-              + ")("
-              + escapeAndQuote(toExecute)
+      String arguments =
+          escapeAndQuote(toExecute)
               + ", ["
               + convertToJsArgs(args, ke)
               + "], "
               + asyncScriptTimeout
               + ", "
-              + callbackFunction
+              + REPORT_FUNCTION
               + ","
               + "true, "
-              + getWindowString()
-              + ")}catch(e){alert('selendroid<' + document.charset + '>:{\"status\":13,\"value\":\"' + e + '\"}')}";
-      return executeJavascriptInWebView(script);
+              + getWindowString();
+      return executeAtomInWebView(AndroidAtoms.EXECUTE_ASYNC_SCRIPT, "window", arguments, true);
     } catch (JSONException je) {
       SelendroidLogger.error("Failed convert JSONArray to jsArgs", je);
       throw new RuntimeException(je);
@@ -533,6 +611,7 @@ public class SelendroidWebDriver {
   }
 
   void resetPageIsLoading() {
+    atomRegistry.reset();
     pageStartedLoading = false;
     pageDoneLoading = false;
   }
@@ -587,35 +666,13 @@ public class SelendroidWebDriver {
 
     /**
      * Unconventional way of adding a Javascript interface but the main reason why I took this way
-     * is that it is working stable compared to the webview.addJavascriptInterface way.
+     * is that it is working stable compared to the webview.addJavascriptInterface way. Used for
+     * async scripts and on platforms without evaluateJavascript, see {@link ScriptResultChannel}.
      */
     @Override
     public boolean onJsAlert(WebView view, String url, String message, JsResult jsResult) {
-      if (message != null && message.startsWith("selendroid<")) {
+      if (scriptResults.handleAlert(message)) {
         jsResult.confirm();
-
-        synchronized (syncObject) {
-          String res = message.replaceFirst("selendroid<", "");
-          int i = res.indexOf(">:");
-          String enc = res.substring(0, i);
-          res = res.substring(i + 2);
-          /*
-           * Workaround for Japanese character encodings: Replace U+00A5 with backslash so that we
-           * can properly parse JSON strings contains backslash escapes, since WebKit maps 0x5C
-           * (used for character escaping in all of the Japanses character encodings) to U+00A5 (YEN
-           * SIGN) and breaks escape characters.
-           */
-          if (("EUC-JP".equals(enc) || "Shift_JIS".equals(enc) || "ISO-2022-JP".equals(enc))
-              && res.contains("\u00a5")) {
-            SelendroidLogger.info("Perform workaround for japanese character encodings");
-            SelendroidLogger.debug("Original String: " + res);
-            res = res.replace("\u00a5", "\\");
-            SelendroidLogger.debug("Replaced result: " + res);
-          }
-          result = res;
-          syncObject.notify();
-        }
-
         return true;
       } else if (callSuper) {
         currentAlertMessage.add(message == null ? "null" : message);
@@ -799,35 +856,13 @@ public class SelendroidWebDriver {
 
     /**
      * Unconventional way of adding a Javascript interface but the main reason why I took this way
-     * is that it is working stable compared to the webview.addJavascriptInterface way.
+     * is that it is working stable compared to the webview.addJavascriptInterface way. Used for
+     * async scripts and on platforms without evaluateJavascript, see {@link ScriptResultChannel}.
      **/
    @Override
     public boolean onJsAlert(WebView view, String url, String message, JsResult jsResult) {
-      if (message != null && message.startsWith("selendroid<")) {
+      if (scriptResults.handleAlert(message)) {
         jsResult.confirm();
-
-        synchronized (syncObject) {
-          String res = message.replaceFirst("selendroid<", "");
-          int i = res.indexOf(">:");
-          String enc = res.substring(0, i);
-          res = res.substring(i + 2);
-
-          /* Workaround for Japanese character encodings: Replace U+00A5 with backslash so that we
-           * can properly parse JSON strings contains backslash escapes, since WebKit maps 0x5C
-           * (used for character escaping in all of the Japanses character encodings) to U+00A5 (YEN
-           * SIGN) and breaks escape characters.
-           */
-          if (("EUC-JP".equals(enc) || "Shift_JIS".equals(enc) || "ISO-2022-JP".equals(enc))
-              && res.contains("\u00a5")) {
-            SelendroidLogger.info("Perform workaround for japanese character encodings");
-            SelendroidLogger.debug("Original String: " + res);
-            res = res.replace("\u00a5", "\\");
-            SelendroidLogger.debug("Replaced result: " + res);
-          }
-          result = res;
-          syncObject.notify();
-        }
-
         return true;
       } else {
         currentAlertMessage.add(message == null ? "null" : message);
@@ -1032,35 +1067,13 @@ public class SelendroidWebDriver {
 
     /**
      * Unconventional way of adding a Javascript interface but the main reason why I took this way
-     * is that it is working stable compared to the webview.addJavascriptInterface way.
+     * is that it is working stable compared to the webview.addJavascriptInterface way. Used for
+     * async scripts and on platforms without evaluateJavascript, see {@link ScriptResultChannel}.
      */
     @Override
     public boolean onJsAlert(WebView view, String url, String message, JsResult jsResult) {
-      if (message != null && message.startsWith("selendroid<")) {
+      if (scriptResults.handleAlert(message)) {
         jsResult.confirm();
-
-        synchronized (syncObject) {
-          String res = message.replaceFirst("selendroid<", "");
-          int i = res.indexOf(">:");
-          String enc = res.substring(0, i);
-          res = res.substring(i + 2);
-          /*
-           * Workaround for Japanese character encodings: Replace U+00A5 with backslash so that we
-           * can properly parse JSON strings contains backslash escapes, since WebKit maps 0x5C
-           * (used for character escaping in all of the Japanses character encodings) to U+00A5 (YEN
-           * SIGN) and breaks escape characters.
-           */
-          if (("EUC-JP".equals(enc) || "Shift_JIS".equals(enc) || "ISO-2022-JP".equals(enc))
-              && res.contains("\u00a5")) {
-            SelendroidLogger.info("Perform workaround for japanese character encodings");
-            SelendroidLogger.debug("Original String: " + res);
-            res = res.replace("\u00a5", "\\");
-            SelendroidLogger.debug("Replaced result: " + res);
-          }
-          result = res;
-          syncObject.notify();
-        }
-
         return true;
       } else if (callSuper){
         currentAlertMessage.add(message == null ? "null" : message);
@@ -1490,14 +1503,14 @@ public class SelendroidWebDriver {
 
   public void frame(int index) throws JSONException {
     currentWindowOrFrame =
-        processFrameExecutionResult(injectAtomJavascript(AndroidAtoms.FRAME_BY_INDEX.getValue(),
+        processFrameExecutionResult(injectAtomJavascript(AndroidAtoms.FRAME_BY_INDEX,
             index, null));
   }
 
   public void frame(String frameNameOrId) throws JSONException {
     currentWindowOrFrame =
         processFrameExecutionResult(injectAtomJavascript(
-            AndroidAtoms.FRAME_BY_ID_OR_NAME.getValue(), frameNameOrId, null));
+            AndroidAtoms.FRAME_BY_ID_OR_NAME, frameNameOrId, null));
   }
 
   public void frame(AndroidWebElement frameElement) {
@@ -22,11 +22,14 @@ import org.json.JSONObject;
 public class Session {
   public static final String SEND_KEYS_TO_ELEMENT = "sendKeysToElement";
   public static final String NATIVE_EVENTS_PROPERTY = "nativeEvents";
+  public static final String EVENT_DRIVEN_WAITS_PROPERTY = "eventDrivenWaits";
 
   private JSONObject capabilities = null;
   private KnownElements knownElements = null;
   private String sessionId = null;
   private Map<String, JSONObject> commandConfiguration;
+  private boolean eventDrivenWaits = true;
+  private final ScreenshotOptions screenshotOptions;
 
   public Session(JSONObject capabilities, String sessionId) {
     this.capabilities = capabilities;
@@ -40,9 +43,13 @@ public class Session {
         nativeEvents = capabilities.getBoolean(NATIVE_EVENTS_PROPERTY);
       }
       configJsonObject.put(NATIVE_EVENTS_PROPERTY, nativeEvents);
+      if (capabilities.has(EVENT_DRIVEN_WAITS_PROPERTY)) {
+        eventDrivenWaits = capabilities.getBoolean(EVENT_DRIVEN_WAITS_PROPERTY);
+      }
     } catch (JSONException e) {
     }
     this.commandConfiguration.put(SEND_KEYS_TO_ELEMENT, configJsonObject);
+    this.screenshotOptions = ScreenshotOptions.fromCapabilities(capabilities);
   }
 
   public JSONObject getCapabilities() {
@@ -57,6 +64,20 @@ public class Session {
     return sessionId;
   }
 
+  /**
+   * @return true if implicit waits sleep until the view hierarchy changes instead of polling it
+   */
+  public boolean isEventDrivenWaits() {
+    return eventDrivenWaits;
+  }
+
+  /**
+   * @return how screenshots of this session are encoded unless a request asks otherwise
+   */
+  public ScreenshotOptions getScreenshotOptions() {
+    return screenshotOptions;
+  }
+
   public void setCommandConfiguration(String command, JSONObject config) {
     if (commandConfiguration.containsKey(command)) {
       commandConfiguration.remove(command);
@@ -15,6 +15,7 @@ package io.selendroid.server.model.internal;
 
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.TextView;
 import com.android.internal.util.Predicate;
 import io.selendroid.server.ServerInstrumentation;
 import io.selendroid.server.android.KeySender;
@@ -23,6 +24,8 @@ import io.selendroid.server.common.exceptions.SelendroidException;
 import io.selendroid.server.common.exceptions.UnsupportedOperationException;
 import io.selendroid.server.model.*;
 import io.selendroid.server.model.By.*;
+import io.selendroid.server.model.internal.xpath.ViewXPath;
+import io.selendroid.server.model.internal.xpath.XPathViewResolver;
 import io.selendroid.server.util.ListUtil;
 import io.selendroid.server.util.Preconditions;
 import io.selendroid.server.util.SelendroidLogger;
@@ -198,7 +201,7 @@ public abstract class AbstractNativeElementContext
 
 
   public AndroidElement findElementByXPath(String using) {
-    List<AndroidElement> elements = findElementsByXPath(using);
+    List<AndroidElement> elements = findByXPath(using, true);
     if (!elements.isEmpty()) {
       return elements.get(0);
     }
@@ -206,6 +209,81 @@ public abstract class AbstractNativeElementContext
   }
 
   public List<AndroidElement> findElementsByXPath(String expression) {
+    return findByXPath(expression, false);
+  }
+
+  private List<AndroidElement> findByXPath(String expression, boolean findJustOne) {
+    ViewXPath xPath;
+    try {
+      xPath = Factories.getPredicatesFactory().createXPath(expression);
+    } catch (IllegalArgumentException e) {
+      SelendroidLogger.info("Evaluating XPath on the DOM: " + e.getMessage());
+      return findElementsByXPathInDocument(expression);
+    }
+
+    View decorView = viewAnalyzer.getRecentDecorView();
+    if (decorView == null) {
+      throw new SelendroidException("No open windows.");
+    }
+    List<AndroidElement> elements = new ArrayList<AndroidElement>();
+    List<View> views;
+    try {
+      views = xPath.evaluate(decorView, xPathViewResolver, findJustOne);
+    } catch (IllegalArgumentException e) {
+      SelendroidLogger.error("Failed to evaluate XPath", e);
+      return elements;
+    }
+    for (View view : views) {
+      elements.add(newAndroidElement(view));
+    }
+    return elements;
+  }
+
+  /**
+   * Provides the same attribute values as {@link AndroidNativeElement#toJson()}.
+   */
+  private final XPathViewResolver xPathViewResolver = new XPathViewResolver() {
+    @Override
+    public String getTagName(View view) {
+      return view.getClass().getSimpleName();
+    }
+
+    @Override
+    public String getAttribute(View view, String attribute) {
+      if ("name".equals(attribute)) {
+        CharSequence cd = view.getContentDescription();
+        return cd != null && cd.length() > 0 ? String.valueOf(cd) : "";
+      } else if ("value".equals(attribute)) {
+        return view instanceof TextView ? String.valueOf(((TextView) view).getText()) : "";
+      } else if ("ref".equals(attribute)) {
+        return knownElements.getIdOfElement(newAndroidElement(view));
+      } else if ("id".equals(attribute)) {
+        String id = ViewHierarchyAnalyzer.getNativeId(view);
+        return id.startsWith("id/") ? id.replace("id/", "") : id;
+      } else if ("shown".equals(attribute)) {
+        return String.valueOf(view.isShown());
+      } else if ("error".equals(attribute)) {
+        CharSequence error = view instanceof TextView ? ((TextView) view).getError() : null;
+        return error != null && error.length() > 0 ? error.toString() : "";
+      } else if ("x".equals(attribute) || "y".equals(attribute)) {
+        int[] xy = new int[2];
+        view.getLocationOnScreen(xy);
+        return String.valueOf("x".equals(attribute) ? xy[0] : xy[1]);
+      } else if ("height".equals(attribute)) {
+        return String.valueOf(view.getHeight());
+      } else if ("width".equals(attribute)) {
+        return String.valueOf(view.getWidth());
+      }
+      // label
+      return "";
+    }
+  };
+
+  /**
+   * Evaluates the expression against a DOM built from {@link #getElementTree()}. Only used for
+   * expressions the {@link ViewXPath} engine doesn't support.
+   */
+  private List<AndroidElement> findElementsByXPathInDocument(String expression) {
     JSONObject root = null;
     try {
       root = getElementTree();
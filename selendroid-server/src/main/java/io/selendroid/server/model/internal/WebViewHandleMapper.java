@@ -18,9 +18,9 @@ import android.webkit.WebView;
 import io.selendroid.server.ServerInstrumentation;
 import io.selendroid.server.ServerInstrumentationProvider;
 import io.selendroid.server.android.ViewHierarchyAnalyzer;
+import io.selendroid.server.android.ViewHierarchyWatcher;
 import io.selendroid.server.android.WindowType;
 import io.selendroid.server.common.exceptions.NoSuchContextException;
-import io.selendroid.server.model.DefaultSelendroidDriver;
 
 import java.util.HashSet;
 import java.util.List;
@@ -29,6 +29,7 @@ import java.util.Set;
 public class WebViewHandleMapper {
 
   public static final String HANDLE_SEPARATOR = "_";
+  private static final long WEBVIEW_RECHECK_INTERVAL = 500L;
 
   public static Set<String> webViewHandles() {
     Set<String> webviewHandles = new HashSet<String>();
@@ -63,15 +64,23 @@ public class WebViewHandleMapper {
   }
 
   private static List<WebView> getWebViews() {
-    long start = System.currentTimeMillis();
+    long end = System.currentTimeMillis() + ServerInstrumentationProvider
+        .getServerInstrumentationInstance().getAndroidWait().getTimeoutInMillis();
     List<WebView> webviews = ViewHierarchyAnalyzer.getDefaultInstance().findWebViews();
+    if (webviews != null || System.currentTimeMillis() > end) {
+      return webviews;
+    }
 
-    // Retry logic (using Implicit Wait)
-    while (webviews == null
-            && (System.currentTimeMillis() - start <= ServerInstrumentationProvider.getServerInstrumentationInstance()
-            .getAndroidWait().getTimeoutInMillis())) {
-      DefaultSelendroidDriver.sleepQuietly(500);
+    // Retry logic (using Implicit Wait), a web view being added results in a layout pass
+    ViewHierarchyWatcher watcher = new ViewHierarchyWatcher(WEBVIEW_RECHECK_INTERVAL);
+    watcher.start();
+    try {
       webviews = ViewHierarchyAnalyzer.getDefaultInstance().findWebViews();
+      while (webviews == null && watcher.awaitChange(end)) {
+        webviews = ViewHierarchyAnalyzer.getDefaultInstance().findWebViews();
+      }
+    } finally {
+      watcher.stop();
     }
 
     return webviews;
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.model.internal.xpath;
+
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * XPath 1.0 evaluator that works directly on the view hierarchy. The document has the same shape
+ * as the one built by {@link io.selendroid.server.model.internal.JsonXmlUtil} from the element
+ * tree, but no JSON or DOM is materialized and attribute values are only read from the views that
+ * an expression actually looks at.
+ *
+ * <pre>
+ * ViewXPath xpath = ViewXPath.compile("//Button[@id='login']");
+ * List&lt;View&gt; views = xpath.evaluate(decorView, resolver, false);
+ * </pre>
+ */
+public class ViewXPath {
+  private final String expression;
+  private final XPathExpr compiled;
+
+  private ViewXPath(String expression, XPathExpr compiled) {
+    this.expression = expression;
+    this.compiled = compiled;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the expression is invalid or uses XPath features that are
+   *         not supported (variables and namespaces)
+   */
+  public static ViewXPath compile(String expression) {
+    return new ViewXPath(expression, XPathParser.parse(expression));
+  }
+
+  public String getExpression() {
+    return expression;
+  }
+
+  /**
+   * Evaluates the expression against the document of the given root view.
+   *
+   * @param root the top level view, usually the decor view
+   * @param resolver provides the element names and attribute values of the views
+   * @param findJustOne if set, only the first matching view in document order is returned
+   * @return the matching views in document order
+   * @throws IllegalArgumentException if the expression does not evaluate to a node-set
+   */
+  public List<View> evaluate(View root, XPathViewResolver resolver, boolean findJustOne) {
+    XPathNode document = XPathNode.createDocument(root, resolver);
+    List<XPathNode> nodes =
+        compiled.selectNodes(new XPathExpr.Context(document, 1, 1), findJustOne);
+    List<View> views = new ArrayList<View>();
+    for (XPathNode node : nodes) {
+      View view = node.getView();
+      if (view != null) {
+        views.add(view);
+        if (findJustOne) {
+          break;
+        }
+      }
+    }
+    return views;
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+}
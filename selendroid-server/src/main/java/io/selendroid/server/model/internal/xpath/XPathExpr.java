@@ -0,0 +1,906 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.model.internal.xpath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled XPath 1.0 expression. Values are represented as {@link List} of {@link XPathNode}
+ * (node-set, always in document order), {@link String}, {@link Double} or {@link Boolean}.
+ */
+abstract class XPathExpr {
+
+  static class Context {
+    final XPathNode node;
+    final int position;
+    final int size;
+
+    Context(XPathNode node, int position, int size) {
+      this.node = node;
+      this.position = position;
+      this.size = size;
+    }
+  }
+
+  abstract Object evaluate(Context context);
+
+  /**
+   * @return true if the expression calls last() or position()
+   */
+  boolean usesContextPosition() {
+    return false;
+  }
+
+  /**
+   * @return true if the value of the expression can be a number, which turns it into a positional
+   *         predicate
+   */
+  boolean mayBeNumber() {
+    return true;
+  }
+
+  /**
+   * Evaluates the expression and returns the resulting nodes. If {@code findJustOne} is set the
+   * evaluation may stop as soon as the first node in document order is known.
+   */
+  List<XPathNode> selectNodes(Context context, boolean findJustOne) {
+    Object result = evaluate(context);
+    if (!(result instanceof List)) {
+      throw new IllegalArgumentException("Expression does not evaluate to a node-set");
+    }
+    return asNodeSet(result);
+  }
+
+  @SuppressWarnings("unchecked")
+  static List<XPathNode> asNodeSet(Object value) {
+    return (List<XPathNode>) value;
+  }
+
+  static List<XPathNode> sortAndDeduplicate(List<XPathNode> nodes) {
+    if (nodes.size() < 2) {
+      return nodes;
+    }
+    Map<XPathNode, Boolean> seen = new IdentityHashMap<XPathNode, Boolean>();
+    List<XPathNode> unique = new ArrayList<XPathNode>(nodes.size());
+    for (XPathNode node : nodes) {
+      if (seen.put(node, Boolean.TRUE) == null) {
+        unique.add(node);
+      }
+    }
+    Collections.sort(unique, XPathNode.DOCUMENT_ORDER);
+    return unique;
+  }
+
+  static String toStringValue(Object value) {
+    if (value instanceof String) {
+      return (String) value;
+    }
+    if (value instanceof Boolean) {
+      return value.toString();
+    }
+    if (value instanceof Double) {
+      double d = (Double) value;
+      if (Double.isNaN(d)) {
+        return "NaN";
+      }
+      if (Double.isInfinite(d)) {
+        return d > 0 ? "Infinity" : "-Infinity";
+      }
+      if (d == Math.rint(d) && Math.abs(d) < 1e15) {
+        return Long.toString((long) d);
+      }
+      return Double.toString(d);
+    }
+    List<XPathNode> nodes = asNodeSet(value);
+    return nodes.isEmpty() ? "" : nodes.get(0).getStringValue();
+  }
+
+  static double toNumber(Object value) {
+    if (value instanceof Double) {
+      return (Double) value;
+    }
+    if (value instanceof Boolean) {
+      return ((Boolean) value) ? 1 : 0;
+    }
+    String s = toStringValue(value).trim();
+    if (s.length() == 0) {
+      return Double.NaN;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (!(Character.isDigit(c) || c == '.' || (i == 0 && c == '-'))) {
+        return Double.NaN;
+      }
+    }
+    try {
+      return Double.parseDouble(s);
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  static boolean toBoolean(Object value) {
+    if (value instanceof Boolean) {
+      return (Boolean) value;
+    }
+    if (value instanceof Double) {
+      double d = (Double) value;
+      return d != 0 && !Double.isNaN(d);
+    }
+    if (value instanceof String) {
+      return ((String) value).length() > 0;
+    }
+    return !asNodeSet(value).isEmpty();
+  }
+
+  static class Literal extends XPathExpr {
+    private final Object value;
+
+    Literal(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    Object evaluate(Context context) {
+      return value;
+    }
+
+    @Override
+    boolean mayBeNumber() {
+      return value instanceof Double;
+    }
+  }
+
+  static class Or extends XPathExpr {
+    private final XPathExpr left;
+    private final XPathExpr right;
+
+    Or(XPathExpr left, XPathExpr right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Object evaluate(Context context) {
+      return toBoolean(left.evaluate(context)) || toBoolean(right.evaluate(context));
+    }
+
+    @Override
+    boolean usesContextPosition() {
+      return left.usesContextPosition() || right.usesContextPosition();
+    }
+
+    @Override
+    boolean mayBeNumber() {
+      return false;
+    }
+  }
+
+  static class And extends XPathExpr {
+    private final XPathExpr left;
+    private final XPathExpr right;
+
+    And(XPathExpr left, XPathExpr right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Object evaluate(Context context) {
+      return toBoolean(left.evaluate(context)) && toBoolean(right.evaluate(context));
+    }
+
+    @Override
+    boolean usesContextPosition() {
+      return left.usesContextPosition() || right.usesContextPosition();
+    }
+
+    @Override
+    boolean mayBeNumber() {
+      return false;
+    }
+  }
+
+  static class Comparison extends XPathExpr {
+    private final String operator;
+    private final XPathExpr left;
+    private final XPathExpr right;
+
+    Comparison(String operator, XPathExpr left, XPathExpr right) {
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Object evaluate(Context context) {
+      return compare(left.evaluate(context), right.evaluate(context));
+    }
+
+    private boolean compare(Object a, Object b) {
+      boolean aIsNodes = a instanceof List;
+      boolean bIsNodes = b instanceof List;
+      if (aIsNodes && bIsNodes) {
+        for (XPathNode x : asNodeSet(a)) {
+          for (XPathNode y : asNodeSet(b)) {
+            if (compareAtomic(x.getStringValue(), y.getStringValue())) {
+              return true;
+            }
+          }
+        }
+        return false;
+      }
+      if (aIsNodes || bIsNodes) {
+        List<XPathNode> nodes = asNodeSet(aIsNodes ? a : b);
+        Object other = aIsNodes ? b : a;
+        if (other instanceof Boolean) {
+          Boolean nodesAsBoolean = !nodes.isEmpty();
+          return aIsNodes ? compareAtomic(nodesAsBoolean, other) : compareAtomic(other,
+              nodesAsBoolean);
+        }
+        for (XPathNode node : nodes) {
+          Object nodeValue = other instanceof Double
+              ? (Object) toNumber(node.getStringValue()) : node.getStringValue();
+          if (aIsNodes ? compareAtomic(nodeValue, other) : compareAtomic(other, nodeValue)) {
+            return true;
+          }
+        }
+        return false;
+      }
+      return compareAtomic(a, b);
+    }
+
+    private boolean compareAtomic(Object a, Object b) {
+      if ("=".equals(operator) || "!=".equals(operator)) {
+        boolean equal;
+        if (a instanceof Boolean || b instanceof Boolean) {
+          equal = toBoolean(a) == toBoolean(b);
+        } else if (a instanceof Double || b instanceof Double) {
+          equal = toNumber(a) == toNumber(b);
+        } else {
+          equal = toStringValue(a).equals(toStringValue(b));
+        }
+        return "=".equals(operator) == equal;
+      }
+      double x = toNumber(a);
+      double y = toNumber(b);
+      if ("<".equals(operator)) {
+        return x < y;
+      } else if ("<=".equals(operator)) {
+        return x <= y;
+      } else if (">".equals(operator)) {
+        return x > y;
+      }
+      return x >= y;
+    }
+
+    @Override
+    boolean usesContextPosition() {
+      return left.usesContextPosition() || right.usesContextPosition();
+    }
+
+    @Override
+    boolean mayBeNumber() {
+      return false;
+    }
+  }
+
+  static class Arithmetic extends XPathExpr {
+    private final String operator;
+    private final XPathExpr left;
+    private final XPathExpr right;
+
+    Arithmetic(String operator, XPathExpr left, XPathExpr right) {
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Object evaluate(Context context) {
+      double x = toNumber(left.evaluate(context));
+      double y = toNumber(right.evaluate(context));
+      if ("+".equals(operator)) {
+        return x + y;
+      } else if ("-".equals(operator)) {
+        return x - y;
+      } else if ("*".equals(operator)) {
+        return x * y;
+      } else if ("div".equals(operator)) {
+        return x / y;
+      }
+      return x % y;
+    }
+
+    @Override
+    boolean usesContextPosition() {
+      return left.usesContextPosition() || right.usesContextPosition();
+    }
+  }
+
+  static class Negation extends XPathExpr {
+    private final XPathExpr operand;
+
+    Negation(XPathExpr operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    Object evaluate(Context context) {
+      return -toNumber(operand.evaluate(context));
+    }
+
+    @Override
+    boolean usesContextPosition() {
+      return operand.usesContextPosition();
+    }
+  }
+
+  static class Union extends XPathExpr {
+    private final XPathExpr left;
+    private final XPathExpr right;
+
+    Union(XPathExpr left, XPathExpr right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Object evaluate(Context context) {
+      Object a = left.evaluate(context);
+      Object b = right.evaluate(context);
+      if (!(a instanceof List) || !(b instanceof List)) {
+        throw new IllegalArgumentException("Operands of '|' must be node-sets");
+      }
+      List<XPathNode> nodes = new ArrayList<XPathNode>(asNodeSet(a));
+      nodes.addAll(asNodeSet(b));
+      return sortAndDeduplicate(nodes);
+    }
+
+    @Override
+    boolean usesContextPosition() {
+      return left.usesContextPosition() || right.usesContextPosition();
+    }
+
+    @Override
+    boolean mayBeNumber() {
+      return false;
+    }
+  }
+
+  /**
+   * A primary expression followed by predicates, e.g. {@code (//Button)[1]}, optionally followed
+   * by a relative location path.
+   */
+  static class Filter extends XPathExpr {
+    private final XPathExpr primary;
+    private final List<XPathExpr> predicates;
+    private final List<Step> steps;
+
+    Filter(XPathExpr primary, List<XPathExpr> predicates, List<Step> steps) {
+      this.primary = primary;
+      this.predicates = predicates;
+      this.steps = steps;
+    }
+
+    @Override
+    Object evaluate(Context context) {
+      Object value = primary.evaluate(context);
+      if (predicates.isEmpty() && steps.isEmpty()) {
+        return value;
+      }
+      if (!(value instanceof List)) {
+        throw new IllegalArgumentException("Predicates can only be applied to node-sets");
+      }
+      List<XPathNode> nodes = asNodeSet(value);
+      for (XPathExpr predicate : predicates) {
+        nodes = Step.applyPredicate(nodes, predicate);
+      }
+      return LocationPath.applySteps(nodes, steps, false);
+    }
+
+    @Override
+    boolean usesContextPosition() {
+      return primary.usesContextPosition();
+    }
+
+    @Override
+    boolean mayBeNumber() {
+      return predicates.isEmpty() && steps.isEmpty() && primary.mayBeNumber();
+    }
+  }
+
+  static class LocationPath extends XPathExpr {
+    private final boolean absolute;
+    private final List<Step> steps;
+
+    LocationPath(boolean absolute, List<Step> steps) {
+      this.absolute = absolute;
+      this.steps = steps;
+    }
+
+    @Override
+    Object evaluate(Context context) {
+      return selectNodes(context, false);
+    }
+
+    @Override
+    List<XPathNode> selectNodes(Context context, boolean findJustOne) {
+      XPathNode start = context.node;
+      if (absolute) {
+        while (start.getParent() != null) {
+          start = start.getParent();
+        }
+      }
+      return applySteps(Collections.singletonList(start), steps, findJustOne);
+    }
+
+    static List<XPathNode> applySteps(List<XPathNode> nodes, List<Step> steps,
+        boolean findJustOne) {
+      for (int i = 0; i < steps.size(); i++) {
+        Step step = steps.get(i);
+        boolean lastStep = i == steps.size() - 1;
+        List<XPathNode> result = new ArrayList<XPathNode>();
+        if (findJustOne && lastStep && step.canStopAtFirstMatch()) {
+          // the first match of every context node is a candidate, the earliest one wins
+          XPathNode first = null;
+          for (XPathNode node : nodes) {
+            XPathNode match = step.firstMatch(node);
+            if (match != null
+                && (first == null || XPathNode.DOCUMENT_ORDER.compare(match, first) < 0)) {
+              first = match;
+            }
+          }
+          if (first != null) {
+            result.add(first);
+          }
+          return result;
+        }
+        for (XPathNode node : nodes) {
+          result.addAll(step.apply(node));
+        }
+        nodes = sortAndDeduplicate(result);
+      }
+      return nodes;
+    }
+
+    @Override
+    boolean mayBeNumber() {
+      return false;
+    }
+  }
+
+  enum Axis {
+    CHILD, DESCENDANT, DESCENDANT_OR_SELF, PARENT, ANCESTOR, ANCESTOR_OR_SELF, FOLLOWING_SIBLING,
+    PRECEDING_SIBLING, FOLLOWING, PRECEDING, ATTRIBUTE, SELF;
+
+    boolean isReverse() {
+      return this == ANCESTOR || this == ANCESTOR_OR_SELF || this == PRECEDING_SIBLING
+          || this == PRECEDING;
+    }
+  }
+
+  enum NodeTest {
+    NAME, ANY_NAME, NODE, TEXT
+  }
+
+  static class Step {
+    private final Axis axis;
+    private final NodeTest nodeTest;
+    private final String name;
+    private final List<XPathExpr> predicates;
+
+    Step(Axis axis, NodeTest nodeTest, String name, List<XPathExpr> predicates) {
+      this.axis = axis;
+      this.nodeTest = nodeTest;
+      this.name = name;
+      this.predicates = predicates;
+    }
+
+    /**
+     * @return the nodes selected from the given context node, in document order
+     */
+    List<XPathNode> apply(XPathNode node) {
+      // collected in axis order so that positional predicates count from the context node
+      List<XPathNode> nodes = new ArrayList<XPathNode>();
+      collect(node, nodes, false);
+      for (XPathExpr predicate : predicates) {
+        nodes = applyPredicate(nodes, predicate);
+      }
+      if (axis.isReverse()) {
+        Collections.reverse(nodes);
+      }
+      return nodes;
+    }
+
+    boolean canStopAtFirstMatch() {
+      return !axis.isReverse() && !hasPositionalPredicates();
+    }
+
+    /**
+     * '//name' is short for '/descendant-or-self::node()/child::name'. Without positional
+     * predicates that selects the same nodes as '/descendant::name', which is evaluated in a single
+     * pass over the tree.
+     *
+     * @return the descendant step or null if this step can't be rewritten
+     */
+    Step toDescendantStep() {
+      if (axis != Axis.CHILD || hasPositionalPredicates()) {
+        return null;
+      }
+      return new Step(Axis.DESCENDANT, nodeTest, name, predicates);
+    }
+
+    private boolean hasPositionalPredicates() {
+      for (XPathExpr predicate : predicates) {
+        if (predicate.usesContextPosition() || predicate.mayBeNumber()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    XPathNode firstMatch(XPathNode node) {
+      List<XPathNode> nodes = new ArrayList<XPathNode>(1);
+      collect(node, nodes, true);
+      return nodes.isEmpty() ? null : nodes.get(0);
+    }
+
+    static List<XPathNode> applyPredicate(List<XPathNode> nodes, XPathExpr predicate) {
+      List<XPathNode> filtered = new ArrayList<XPathNode>();
+      int size = nodes.size();
+      for (int i = 0; i < size; i++) {
+        XPathNode node = nodes.get(i);
+        if (matches(predicate, new Context(node, i + 1, size))) {
+          filtered.add(node);
+        }
+      }
+      return filtered;
+    }
+
+    private static boolean matches(XPathExpr predicate, Context context) {
+      Object value = predicate.evaluate(context);
+      if (value instanceof Double) {
+        return ((Double) value) == context.position;
+      }
+      return toBoolean(value);
+    }
+
+    /**
+     * Adds the nodes on the axis that pass the node test, in axis order (reverse document order for
+     * reverse axes). If {@code justOne} is set
+     * the first node that also passes all predicates is the only one added.
+     */
+    private void collect(XPathNode node, List<XPathNode> nodes, boolean justOne) {
+      switch (axis) {
+        case SELF:
+          test(node, nodes, justOne);
+          break;
+        case CHILD:
+          for (XPathNode child : node.getChildren()) {
+            if (test(child, nodes, justOne)) {
+              return;
+            }
+          }
+          break;
+        case DESCENDANT:
+          collectDescendants(node, nodes, justOne);
+          break;
+        case DESCENDANT_OR_SELF:
+          if (!test(node, nodes, justOne)) {
+            collectDescendants(node, nodes, justOne);
+          }
+          break;
+        case PARENT:
+          if (node.getParent() != null) {
+            test(node.getParent(), nodes, justOne);
+          }
+          break;
+        case ANCESTOR_OR_SELF:
+          test(node, nodes, justOne);
+          collectAncestors(node, nodes, justOne);
+          break;
+        case ANCESTOR:
+          collectAncestors(node, nodes, justOne);
+          break;
+        case FOLLOWING_SIBLING:
+          for (XPathNode s = node.getNextSibling(); s != null; s = s.getNextSibling()) {
+            if (test(s, nodes, justOne)) {
+              return;
+            }
+          }
+          break;
+        case PRECEDING_SIBLING:
+          for (XPathNode s = node.getPreviousSibling(); s != null; s = s.getPreviousSibling()) {
+            test(s, nodes, justOne);
+          }
+          break;
+        case FOLLOWING:
+          XPathNode start = node;
+          if (node.getType() == XPathNode.Type.ATTRIBUTE) {
+            // the nodes following an attribute include the descendants of its element
+            start = node.getParent();
+            if (collectDescendants(start, nodes, justOne)) {
+              return;
+            }
+          }
+          for (XPathNode n = start; n != null; n = n.getParent()) {
+            for (XPathNode s = n.getNextSibling(); s != null; s = s.getNextSibling()) {
+              if (test(s, nodes, justOne) || collectDescendants(s, nodes, justOne)) {
+                return;
+              }
+            }
+          }
+          break;
+        case PRECEDING:
+          List<XPathNode> all = new ArrayList<XPathNode>();
+          XPathNode root = node;
+          while (root.getParent() != null) {
+            root = root.getParent();
+          }
+          collectAll(root, all);
+          XPathNode element = node.getType() == XPathNode.Type.ATTRIBUTE ? node.getParent() : node;
+          for (XPathNode candidate : all) {
+            if (XPathNode.DOCUMENT_ORDER.compare(candidate, element) >= 0) {
+              break;
+            }
+            if (!isAncestor(candidate, element)) {
+              test(candidate, nodes, justOne);
+            }
+          }
+          // reverse axis, nearest node first
+          Collections.reverse(nodes);
+          break;
+        case ATTRIBUTE:
+          for (XPathNode attribute : node.getAttributes()) {
+            if (test(attribute, nodes, justOne)) {
+              return;
+            }
+          }
+          break;
+        default:
+          throw new IllegalStateException("Unknown axis " + axis);
+      }
+    }
+
+    private boolean collectDescendants(XPathNode node, List<XPathNode> nodes, boolean justOne) {
+      for (XPathNode child : node.getChildren()) {
+        if (test(child, nodes, justOne) || collectDescendants(child, nodes, justOne)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void collectAncestors(XPathNode node, List<XPathNode> nodes, boolean justOne) {
+      for (XPathNode p = node.getParent(); p != null; p = p.getParent()) {
+        test(p, nodes, justOne);
+      }
+    }
+
+    private static void collectAll(XPathNode node, List<XPathNode> nodes) {
+      nodes.add(node);
+      for (XPathNode child : node.getChildren()) {
+        collectAll(child, nodes);
+      }
+    }
+
+    private static boolean isAncestor(XPathNode candidate, XPathNode node) {
+      for (XPathNode p = node.getParent(); p != null; p = p.getParent()) {
+        if (p == candidate) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Adds the node if it passes the node test (and, if {@code justOne} is set, represents a view
+     * and passes the predicates).
+     *
+     * @return true if the search can stop
+     */
+    private boolean test(XPathNode node, List<XPathNode> nodes, boolean justOne) {
+      if (!passesNodeTest(node)) {
+        return false;
+      }
+      if (justOne) {
+        // only view nodes are returned to the caller, the first of them is the one we are after
+        if (node.getView() == null) {
+          return false;
+        }
+        for (XPathExpr predicate : predicates) {
+          if (!matches(predicate, new Context(node, 1, 1))) {
+            return false;
+          }
+        }
+        nodes.add(node);
+        return true;
+      }
+      nodes.add(node);
+      return false;
+    }
+
+    private boolean passesNodeTest(XPathNode node) {
+      switch (nodeTest) {
+        case NODE:
+          return true;
+        case TEXT:
+          // the document does not contain text nodes
+          return false;
+        case ANY_NAME:
+          return axis == Axis.ATTRIBUTE ? node.getType() == XPathNode.Type.ATTRIBUTE
+              : node.getType() == XPathNode.Type.ELEMENT;
+        default:
+          boolean principalType = axis == Axis.ATTRIBUTE
+              ? node.getType() == XPathNode.Type.ATTRIBUTE
+              : node.getType() == XPathNode.Type.ELEMENT;
+          return principalType && name.equals(node.getName());
+      }
+    }
+  }
+
+  static class FunctionCall extends XPathExpr {
+    private final String name;
+    private final List<XPathExpr> arguments;
+
+    FunctionCall(String name, List<XPathExpr> arguments) {
+      this.name = name;
+      this.arguments = arguments;
+    }
+
+    private Object arg(int index, Context context) {
+      return arguments.get(index).evaluate(context);
+    }
+
+    private String stringArg(int index, Context context) {
+      if (index >= arguments.size()) {
+        return toStringValue(Collections.singletonList(context.node));
+      }
+      return toStringValue(arg(index, context));
+    }
+
+    @Override
+    Object evaluate(Context context) {
+      if ("last".equals(name)) {
+        return (double) context.size;
+      } else if ("position".equals(name)) {
+        return (double) context.position;
+      } else if ("count".equals(name)) {
+        return (double) nodeSetArg(0, context).size();
+      } else if ("not".equals(name)) {
+        return !toBoolean(arg(0, context));
+      } else if ("true".equals(name)) {
+        return Boolean.TRUE;
+      } else if ("false".equals(name)) {
+        return Boolean.FALSE;
+      } else if ("boolean".equals(name)) {
+        return toBoolean(arg(0, context));
+      } else if ("number".equals(name)) {
+        return arguments.isEmpty() ? toNumber(stringArg(0, context)) : toNumber(arg(0, context));
+      } else if ("string".equals(name)) {
+        return stringArg(0, context);
+      } else if ("concat".equals(name)) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < arguments.size(); i++) {
+          builder.append(stringArg(i, context));
+        }
+        return builder.toString();
+      } else if ("contains".equals(name)) {
+        return stringArg(0, context).contains(stringArg(1, context));
+      } else if ("starts-with".equals(name)) {
+        return stringArg(0, context).startsWith(stringArg(1, context));
+      } else if ("substring-before".equals(name)) {
+        String s = stringArg(0, context);
+        int index = s.indexOf(stringArg(1, context));
+        return index < 0 ? "" : s.substring(0, index);
+      } else if ("substring-after".equals(name)) {
+        String s = stringArg(0, context);
+        String separator = stringArg(1, context);
+        int index = s.indexOf(separator);
+        return index < 0 ? "" : s.substring(index + separator.length());
+      } else if ("substring".equals(name)) {
+        return substring(context);
+      } else if ("string-length".equals(name)) {
+        return (double) stringArg(0, context).length();
+      } else if ("normalize-space".equals(name)) {
+        return stringArg(0, context).trim().replaceAll("\\s+", " ");
+      } else if ("translate".equals(name)) {
+        return translate(stringArg(0, context), stringArg(1, context), stringArg(2, context));
+      } else if ("name".equals(name) || "local-name".equals(name)) {
+        List<XPathNode> nodes = arguments.isEmpty()
+            ? Collections.singletonList(context.node) : nodeSetArg(0, context);
+        return nodes.isEmpty() ? "" : nodes.get(0).getName();
+      } else if ("sum".equals(name)) {
+        double sum = 0;
+        for (XPathNode node : nodeSetArg(0, context)) {
+          sum += toNumber(node.getStringValue());
+        }
+        return sum;
+      } else if ("floor".equals(name)) {
+        return Math.floor(toNumber(arg(0, context)));
+      } else if ("ceiling".equals(name)) {
+        return Math.ceil(toNumber(arg(0, context)));
+      } else if ("round".equals(name)) {
+        double d = toNumber(arg(0, context));
+        return Double.isNaN(d) || Double.isInfinite(d) ? d : (double) Math.round(d);
+      }
+      throw new IllegalArgumentException("Unknown function " + name + "()");
+    }
+
+    private List<XPathNode> nodeSetArg(int index, Context context) {
+      Object value = arg(index, context);
+      if (!(value instanceof List)) {
+        throw new IllegalArgumentException(name + "() expects a node-set");
+      }
+      return asNodeSet(value);
+    }
+
+    private String substring(Context context) {
+      String s = stringArg(0, context);
+      double start = Math.round(toNumber(arg(1, context)));
+      double end = arguments.size() > 2
+          ? start + Math.round(toNumber(arg(2, context))) : Double.POSITIVE_INFINITY;
+      StringBuilder builder = new StringBuilder();
+      for (int i = 0; i < s.length(); i++) {
+        int position = i + 1;
+        if (position >= start && position < end) {
+          builder.append(s.charAt(i));
+        }
+      }
+      return builder.toString();
+    }
+
+    private static String translate(String s, String from, String to) {
+      StringBuilder builder = new StringBuilder();
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        int index = from.indexOf(c);
+        if (index < 0) {
+          builder.append(c);
+        } else if (index < to.length()) {
+          builder.append(to.charAt(index));
+        }
+      }
+      return builder.toString();
+    }
+
+    @Override
+    boolean usesContextPosition() {
+      if ("last".equals(name) || "position".equals(name)) {
+        return true;
+      }
+      for (XPathExpr argument : arguments) {
+        if (argument.usesContextPosition()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    boolean mayBeNumber() {
+      return !("not".equals(name) || "true".equals(name) || "false".equals(name)
+          || "boolean".equals(name) || "contains".equals(name) || "starts-with".equals(name)
+          || "string".equals(name) || "concat".equals(name) || "substring".equals(name)
+          || "substring-before".equals(name) || "substring-after".equals(name)
+          || "normalize-space".equals(name) || "translate".equals(name) || "name".equals(name)
+          || "local-name".equals(name));
+    }
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.model.internal.xpath;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A node of the document the XPath expressions are evaluated against. The shape matches the XML
+ * document that used to be built from the element tree JSON:
+ *
+ * <pre>
+ * &lt;views&gt;
+ *   &lt;DecorView name="" label="" value="" ref="..." id="" shown="true" error=""&gt;
+ *     &lt;rect x="0" y="0" height="1920" width="1080"/&gt;
+ *     ...child views...
+ *   &lt;/DecorView&gt;
+ * &lt;/views&gt;
+ * </pre>
+ *
+ * Nodes are created while the axes of an expression visit them, so only the part of the view
+ * hierarchy an expression looks at is walked. Attribute values are only resolved when an
+ * expression asks for them.
+ */
+class XPathNode {
+  static final String[] VIEW_ATTRIBUTES = {"name", "label", "value", "ref", "id", "shown", "error"};
+  static final String[] RECT_ATTRIBUTES = {"x", "y", "height", "width"};
+
+  enum Type {
+    DOCUMENT, ELEMENT, ATTRIBUTE
+  }
+
+  static final Comparator<XPathNode> DOCUMENT_ORDER = new Comparator<XPathNode>() {
+    @Override
+    public int compare(XPathNode a, XPathNode b) {
+      int[] positionA = a.getPosition();
+      int[] positionB = b.getPosition();
+      int length = Math.min(positionA.length, positionB.length);
+      for (int i = 0; i < length; i++) {
+        if (positionA[i] != positionB[i]) {
+          return positionA[i] < positionB[i] ? -1 : 1;
+        }
+      }
+      // ancestors, and their attributes, come before their descendants
+      if (positionA.length != positionB.length) {
+        return positionA.length < positionB.length ? -1 : 1;
+      }
+      return a.attributeIndex - b.attributeIndex;
+    }
+  };
+
+  private final Type type;
+  private final String name;
+  private final XPathNode parent;
+  private final View view;
+  private final String[] attributeNames;
+  private final XPathViewResolver resolver;
+  // 0 for elements, 1 + index of the attribute for attribute nodes
+  private final int attributeIndex;
+  private int indexInParent;
+  // created when the children are visited for the first time
+  private List<XPathNode> children;
+  // child indexes on the path from the document, see #DOCUMENT_ORDER
+  private int[] position;
+  private List<XPathNode> attributes;
+  private String value;
+
+  private XPathNode(Type type, String name, XPathNode parent, View view, String[] attributeNames,
+      XPathViewResolver resolver, int attributeIndex) {
+    this.type = type;
+    this.name = name;
+    this.parent = parent;
+    this.view = view;
+    this.attributeNames = attributeNames;
+    this.resolver = resolver;
+    this.attributeIndex = attributeIndex;
+  }
+
+  /**
+   * Creates the document for the given root view. The nodes of the views are created on demand.
+   */
+  static XPathNode createDocument(View root, XPathViewResolver resolver) {
+    XPathNode document = new XPathNode(Type.DOCUMENT, "", null, null, null, resolver, 0);
+    XPathNode views =
+        new XPathNode(Type.ELEMENT, "views", document, null, new String[0], resolver, 0);
+    document.addChild(views);
+    if (root != null) {
+      views.addChild(viewNode(views, root));
+    }
+    return document;
+  }
+
+  private static XPathNode viewNode(XPathNode parent, View view) {
+    return new XPathNode(Type.ELEMENT, parent.resolver.getTagName(view), parent, view,
+        VIEW_ATTRIBUTES, parent.resolver, 0);
+  }
+
+  private boolean isView() {
+    return type == Type.ELEMENT && attributeNames == VIEW_ATTRIBUTES;
+  }
+
+  private void addChild(XPathNode child) {
+    if (children == null) {
+      children = new ArrayList<XPathNode>();
+    }
+    child.indexInParent = children.size();
+    children.add(child);
+  }
+
+  private int[] getPosition() {
+    if (position == null) {
+      if (type == Type.ATTRIBUTE) {
+        position = parent.getPosition();
+      } else if (parent == null) {
+        position = new int[0];
+      } else {
+        int[] parentPosition = parent.getPosition();
+        position = new int[parentPosition.length + 1];
+        System.arraycopy(parentPosition, 0, position, 0, parentPosition.length);
+        position[parentPosition.length] = indexInParent;
+      }
+    }
+    return position;
+  }
+
+  Type getType() {
+    return type;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  XPathNode getParent() {
+    return parent;
+  }
+
+  /**
+   * @return the view if this node represents a view, otherwise null
+   */
+  View getView() {
+    return isView() ? view : null;
+  }
+
+  List<XPathNode> getChildren() {
+    if (children == null) {
+      children = new ArrayList<XPathNode>();
+      if (isView()) {
+        addChild(new XPathNode(Type.ELEMENT, "rect", this, view, RECT_ATTRIBUTES, resolver, 0));
+        if (view instanceof ViewGroup) {
+          ViewGroup group = (ViewGroup) view;
+          int childCount = group.getChildCount();
+          for (int i = 0; i < childCount; i++) {
+            View child = group.getChildAt(i);
+            if (child != null) {
+              addChild(viewNode(this, child));
+            }
+          }
+        }
+      }
+    }
+    return children;
+  }
+
+  XPathNode getPreviousSibling() {
+    if (parent == null || type == Type.ATTRIBUTE || indexInParent == 0) {
+      return null;
+    }
+    return parent.getChildren().get(indexInParent - 1);
+  }
+
+  XPathNode getNextSibling() {
+    if (parent == null || type == Type.ATTRIBUTE
+        || indexInParent + 1 >= parent.getChildren().size()) {
+      return null;
+    }
+    return parent.getChildren().get(indexInParent + 1);
+  }
+
+  List<XPathNode> getAttributes() {
+    if (type != Type.ELEMENT) {
+      return Collections.emptyList();
+    }
+    if (attributes == null) {
+      attributes = new ArrayList<XPathNode>(attributeNames.length);
+      for (int i = 0; i < attributeNames.length; i++) {
+        attributes.add(new XPathNode(Type.ATTRIBUTE, attributeNames[i], this, view, null, resolver,
+            i + 1));
+      }
+    }
+    return attributes;
+  }
+
+  /**
+   * The XPath string-value. Elements never have text content in this document.
+   */
+  String getStringValue() {
+    if (type != Type.ATTRIBUTE) {
+      return "";
+    }
+    if (value == null) {
+      String resolved = resolver.getAttribute(view, name);
+      value = resolved == null ? "" : resolved;
+    }
+    return value;
+  }
+}
@@ -0,0 +1,429 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.model.internal.xpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recursive descent parser for XPath 1.0 expressions. Variables and namespace prefixes are not
+ * supported, there is no use for them in the view hierarchy document.
+ */
+class XPathParser {
+  private static final Set<String> FUNCTIONS = new HashSet<String>(Arrays.asList("last",
+      "position", "count", "not", "true", "false", "boolean", "number", "string", "concat",
+      "contains", "starts-with", "substring-before", "substring-after", "substring",
+      "string-length", "normalize-space", "translate", "name", "local-name", "sum", "floor",
+      "ceiling", "round"));
+  private static final Set<String> NODE_TYPES = new HashSet<String>(Arrays.asList("node", "text",
+      "comment", "processing-instruction"));
+
+  private final String expression;
+  private final List<String> tokens;
+  private int index = 0;
+
+  private XPathParser(String expression) {
+    this.expression = expression;
+    this.tokens = tokenize(expression);
+  }
+
+  static XPathExpr parse(String expression) {
+    XPathParser parser = new XPathParser(expression);
+    XPathExpr expr = parser.parseOr();
+    if (parser.peek() != null) {
+      throw parser.error("Unexpected token '" + parser.peek() + "'");
+    }
+    return expr;
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(message + " in XPath expression: " + expression);
+  }
+
+  private String peek() {
+    return index < tokens.size() ? tokens.get(index) : null;
+  }
+
+  private String peek(int offset) {
+    return index + offset < tokens.size() ? tokens.get(index + offset) : null;
+  }
+
+  private boolean accept(String token) {
+    if (token.equals(peek())) {
+      index++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expect(String token) {
+    if (!accept(token)) {
+      throw error("Expected '" + token + "' but found '" + peek() + "'");
+    }
+  }
+
+  private XPathExpr parseOr() {
+    XPathExpr expr = parseAnd();
+    while (accept("or")) {
+      expr = new XPathExpr.Or(expr, parseAnd());
+    }
+    return expr;
+  }
+
+  private XPathExpr parseAnd() {
+    XPathExpr expr = parseEquality();
+    while (accept("and")) {
+      expr = new XPathExpr.And(expr, parseEquality());
+    }
+    return expr;
+  }
+
+  private XPathExpr parseEquality() {
+    XPathExpr expr = parseRelational();
+    while ("=".equals(peek()) || "!=".equals(peek())) {
+      String operator = tokens.get(index++);
+      expr = new XPathExpr.Comparison(operator, expr, parseRelational());
+    }
+    return expr;
+  }
+
+  private XPathExpr parseRelational() {
+    XPathExpr expr = parseAdditive();
+    while ("<".equals(peek()) || "<=".equals(peek()) || ">".equals(peek()) || ">=".equals(peek())) {
+      String operator = tokens.get(index++);
+      expr = new XPathExpr.Comparison(operator, expr, parseAdditive());
+    }
+    return expr;
+  }
+
+  private XPathExpr parseAdditive() {
+    XPathExpr expr = parseMultiplicative();
+    while ("+".equals(peek()) || "-".equals(peek())) {
+      String operator = tokens.get(index++);
+      expr = new XPathExpr.Arithmetic(operator, expr, parseMultiplicative());
+    }
+    return expr;
+  }
+
+  private XPathExpr parseMultiplicative() {
+    XPathExpr expr = parseUnary();
+    while (isOperatorPosition() && ("*".equals(peek()) || "div".equals(peek())
+        || "mod".equals(peek()))) {
+      String operator = tokens.get(index++);
+      expr = new XPathExpr.Arithmetic(operator, expr, parseUnary());
+    }
+    return expr;
+  }
+
+  private XPathExpr parseUnary() {
+    if (accept("-")) {
+      return new XPathExpr.Negation(parseUnary());
+    }
+    return parseUnion();
+  }
+
+  private XPathExpr parseUnion() {
+    XPathExpr expr = parsePath();
+    while (accept("|")) {
+      expr = new XPathExpr.Union(expr, parsePath());
+    }
+    return expr;
+  }
+
+  private XPathExpr parsePath() {
+    String token = peek();
+    if (token == null) {
+      throw error("Unexpected end");
+    }
+    if (isPrimaryStart(token)) {
+      XPathExpr primary = parsePrimary();
+      List<XPathExpr> predicates = parsePredicates();
+      List<XPathExpr.Step> steps = new ArrayList<XPathExpr.Step>();
+      if ("/".equals(peek()) || "//".equals(peek())) {
+        parseRelativePath(steps, true);
+      }
+      if (predicates.isEmpty() && steps.isEmpty()) {
+        return primary;
+      }
+      return new XPathExpr.Filter(primary, predicates, steps);
+    }
+
+    List<XPathExpr.Step> steps = new ArrayList<XPathExpr.Step>();
+    boolean absolute = false;
+    if ("/".equals(token)) {
+      absolute = true;
+      index++;
+      if (isStepStart(peek())) {
+        parseRelativePath(steps, false);
+      }
+    } else if ("//".equals(token)) {
+      absolute = true;
+      parseRelativePath(steps, true);
+    } else {
+      parseRelativePath(steps, false);
+    }
+    return new XPathExpr.LocationPath(absolute, steps);
+  }
+
+  private boolean isPrimaryStart(String token) {
+    if ("(".equals(token) || isLiteral(token) || isNumber(token)) {
+      return true;
+    }
+    if (token.startsWith("$")) {
+      throw error("Variables are not supported");
+    }
+    return isName(token) && "(".equals(peek(1)) && !NODE_TYPES.contains(token);
+  }
+
+  private boolean isStepStart(String token) {
+    return token != null && (".".equals(token) || "..".equals(token) || "@".equals(token)
+        || "*".equals(token) || isName(token));
+  }
+
+  /**
+   * Parses steps separated by '/' or '//'. If {@code leadingSeparator} is set the path starts with
+   * a separator.
+   */
+  private void parseRelativePath(List<XPathExpr.Step> steps, boolean leadingSeparator) {
+    if (!leadingSeparator) {
+      steps.add(parseStep());
+    }
+    while ("/".equals(peek()) || "//".equals(peek())) {
+      if ("//".equals(tokens.get(index++))) {
+        XPathExpr.Step step = parseStep();
+        XPathExpr.Step descendantStep = step.toDescendantStep();
+        if (descendantStep != null) {
+          steps.add(descendantStep);
+        } else {
+          steps.add(new XPathExpr.Step(XPathExpr.Axis.DESCENDANT_OR_SELF, XPathExpr.NodeTest.NODE,
+              null, new ArrayList<XPathExpr>()));
+          steps.add(step);
+        }
+      } else {
+        steps.add(parseStep());
+      }
+    }
+  }
+
+  private XPathExpr.Step parseStep() {
+    List<XPathExpr> noPredicates = new ArrayList<XPathExpr>();
+    if (accept(".")) {
+      return new XPathExpr.Step(XPathExpr.Axis.SELF, XPathExpr.NodeTest.NODE, null, noPredicates);
+    }
+    if (accept("..")) {
+      return new XPathExpr.Step(XPathExpr.Axis.PARENT, XPathExpr.NodeTest.NODE, null, noPredicates);
+    }
+
+    XPathExpr.Axis axis = XPathExpr.Axis.CHILD;
+    if (accept("@")) {
+      axis = XPathExpr.Axis.ATTRIBUTE;
+    } else if ("::".equals(peek(1))) {
+      axis = parseAxis(tokens.get(index));
+      index += 2;
+    }
+
+    String token = peek();
+    if (token == null) {
+      throw error("Unexpected end");
+    }
+    XPathExpr.NodeTest nodeTest;
+    String name = null;
+    if ("*".equals(token)) {
+      index++;
+      nodeTest = XPathExpr.NodeTest.ANY_NAME;
+    } else if (NODE_TYPES.contains(token) && "(".equals(peek(1))) {
+      index += 2;
+      expect(")");
+      if ("node".equals(token)) {
+        nodeTest = XPathExpr.NodeTest.NODE;
+      } else {
+        // there are no text, comment or processing instruction nodes
+        nodeTest = XPathExpr.NodeTest.TEXT;
+      }
+    } else if (isName(token)) {
+      index++;
+      if (token.indexOf(':') >= 0) {
+        throw error("Namespace prefixes are not supported");
+      }
+      nodeTest = XPathExpr.NodeTest.NAME;
+      name = token;
+    } else {
+      throw error("Unexpected token '" + token + "'");
+    }
+    return new XPathExpr.Step(axis, nodeTest, name, parsePredicates());
+  }
+
+  private XPathExpr.Axis parseAxis(String name) {
+    if ("child".equals(name)) {
+      return XPathExpr.Axis.CHILD;
+    } else if ("descendant".equals(name)) {
+      return XPathExpr.Axis.DESCENDANT;
+    } else if ("descendant-or-self".equals(name)) {
+      return XPathExpr.Axis.DESCENDANT_OR_SELF;
+    } else if ("parent".equals(name)) {
+      return XPathExpr.Axis.PARENT;
+    } else if ("ancestor".equals(name)) {
+      return XPathExpr.Axis.ANCESTOR;
+    } else if ("ancestor-or-self".equals(name)) {
+      return XPathExpr.Axis.ANCESTOR_OR_SELF;
+    } else if ("following-sibling".equals(name)) {
+      return XPathExpr.Axis.FOLLOWING_SIBLING;
+    } else if ("preceding-sibling".equals(name)) {
+      return XPathExpr.Axis.PRECEDING_SIBLING;
+    } else if ("following".equals(name)) {
+      return XPathExpr.Axis.FOLLOWING;
+    } else if ("preceding".equals(name)) {
+      return XPathExpr.Axis.PRECEDING;
+    } else if ("attribute".equals(name)) {
+      return XPathExpr.Axis.ATTRIBUTE;
+    } else if ("self".equals(name)) {
+      return XPathExpr.Axis.SELF;
+    }
+    throw error("Unsupported axis '" + name + "'");
+  }
+
+  private List<XPathExpr> parsePredicates() {
+    List<XPathExpr> predicates = new ArrayList<XPathExpr>();
+    while (accept("[")) {
+      predicates.add(parseOr());
+      expect("]");
+    }
+    return predicates;
+  }
+
+  private XPathExpr parsePrimary() {
+    String token = tokens.get(index++);
+    if ("(".equals(token)) {
+      XPathExpr expr = parseOr();
+      expect(")");
+      return expr;
+    }
+    if (isLiteral(token)) {
+      return new XPathExpr.Literal(token.substring(1, token.length() - 1));
+    }
+    if (isNumber(token)) {
+      return new XPathExpr.Literal(Double.valueOf(token));
+    }
+    if (!FUNCTIONS.contains(token)) {
+      throw error("Unsupported function '" + token + "'");
+    }
+    expect("(");
+    List<XPathExpr> arguments = new ArrayList<XPathExpr>();
+    if (!accept(")")) {
+      do {
+        arguments.add(parseOr());
+      } while (accept(","));
+      expect(")");
+    }
+    return new XPathExpr.FunctionCall(token, arguments);
+  }
+
+  /**
+   * '*' and the operator names are only operators if there is a preceding token that is not '@',
+   * '::', '(', '[', ',' or an operator (XPath 1.0, section 3.7).
+   */
+  private boolean isOperatorPosition() {
+    if (index == 0) {
+      return false;
+    }
+    String previous = tokens.get(index - 1);
+    return !isOperator(previous);
+  }
+
+  private static boolean isOperator(String token) {
+    return "@".equals(token) || "::".equals(token) || "(".equals(token) || "[".equals(token)
+        || ",".equals(token) || "and".equals(token) || "or".equals(token) || "mod".equals(token)
+        || "div".equals(token) || "*".equals(token) || "/".equals(token) || "//".equals(token)
+        || "|".equals(token) || "+".equals(token) || "-".equals(token) || "=".equals(token)
+        || "!=".equals(token) || "<".equals(token) || "<=".equals(token) || ">".equals(token)
+        || ">=".equals(token);
+  }
+
+  private static boolean isLiteral(String token) {
+    return token.length() >= 2 && (token.charAt(0) == '"' || token.charAt(0) == '\'');
+  }
+
+  private static boolean isNumber(String token) {
+    char c = token.charAt(0);
+    return Character.isDigit(c) || (c == '.' && token.length() > 1);
+  }
+
+  private static boolean isName(String token) {
+    char c = token.charAt(0);
+    return Character.isLetter(c) || c == '_';
+  }
+
+  private static boolean isNameChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':';
+  }
+
+  private List<String> tokenize(String expression) {
+    List<String> result = new ArrayList<String>();
+    int i = 0;
+    int length = expression.length();
+    while (i < length) {
+      char c = expression.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '"' || c == '\'') {
+        int end = expression.indexOf(c, i + 1);
+        if (end < 0) {
+          throw error("Unterminated string literal");
+        }
+        result.add(expression.substring(i, end + 1));
+        i = end + 1;
+      } else if (Character.isDigit(c)
+          || (c == '.' && i + 1 < length && Character.isDigit(expression.charAt(i + 1)))) {
+        int start = i;
+        while (i < length && (Character.isDigit(expression.charAt(i))
+            || expression.charAt(i) == '.')) {
+          i++;
+        }
+        result.add(expression.substring(start, i));
+      } else if (c == '.' && i + 1 < length && expression.charAt(i + 1) == '.') {
+        result.add("..");
+        i += 2;
+      } else if (c == '/' && i + 1 < length && expression.charAt(i + 1) == '/') {
+        result.add("//");
+        i += 2;
+      } else if (c == ':' && i + 1 < length && expression.charAt(i + 1) == ':') {
+        result.add("::");
+        i += 2;
+      } else if ((c == '!' || c == '<' || c == '>') && i + 1 < length
+          && expression.charAt(i + 1) == '=') {
+        result.add(expression.substring(i, i + 2));
+        i += 2;
+      } else if ("()[].@,/|+-=<>*".indexOf(c) >= 0) {
+        result.add(String.valueOf(c));
+        i++;
+      } else if (c == '$' || Character.isLetter(c) || c == '_') {
+        int start = i++;
+        while (i < length && isNameChar(expression.charAt(i))) {
+          // stop in front of an axis separator
+          if (expression.charAt(i) == ':' && i + 1 < length && expression.charAt(i + 1) == ':') {
+            break;
+          }
+          i++;
+        }
+        result.add(expression.substring(start, i));
+      } else {
+        throw error("Unexpected character '" + c + "'");
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.model.internal.xpath;
+
+import android.view.View;
+
+/**
+ * Resolves the element names and attribute values of view nodes. View nodes have the attributes
+ * name, label, value, ref, id, shown and error; the rect child of a view has x, y, height and
+ * width.
+ */
+public interface XPathViewResolver {
+  String getTagName(View view);
+
+  String getAttribute(View view, String attribute);
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.model.js;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps track of the atoms that have been installed into the windows of the current document.
+ *
+ * The atoms are tens of kilobytes of JavaScript. Instead of sending the source with every command,
+ * an atom is stored as {@code window.__selendroid_atoms[name]} the first time it is used and
+ * called by name afterwards. If the document was replaced in the meantime the call evaluates to
+ * {@link #ATOM_MISSING} and has to be repeated with the source included.
+ */
+public class AtomRegistry {
+  public static final String ATOM_MISSING = "selendroid-atom-missing";
+  private static final String ATOMS_PROPERTY = "__selendroid_atoms";
+
+  private final Set<String> installed = new HashSet<String>();
+
+  /**
+   * Creates a JavaScript expression that calls the atom in the given window. The atom source is
+   * included if the atom hasn't been installed in that window yet.
+   *
+   * @param atom the atom to call
+   * @param window JavaScript expression for the window, falls back to the top level window if
+   *        evaluating it fails
+   * @param arguments the JavaScript arguments of the call
+   */
+  public synchronized String createCall(AndroidAtoms atom, String window, String arguments) {
+    return createCall(atom, window, arguments, !installed.contains(key(atom, window)));
+  }
+
+  static String createCall(AndroidAtoms atom, String window, String arguments,
+      boolean includeSource) {
+    String name = atom.name();
+    StringBuilder script = new StringBuilder();
+    script.append("(function(){var win;try{win=").append(window).append("}catch(e){win=window}");
+    // the local is used inside with(win), so it must not collide with a window property
+    script.append("var __sa=win.").append(ATOMS_PROPERTY).append("||(win.").append(ATOMS_PROPERTY)
+        .append("={});");
+    script.append("if(!__sa.").append(name).append("){");
+    if (includeSource) {
+      // the atom is created in the scope of the window, like it used to be when sent every time
+      script.append("with(win){__sa.").append(name).append("=(").append(atom.getValue())
+          .append(")}");
+    } else {
+      script.append("return '").append(ATOM_MISSING).append("'");
+    }
+    script.append("}return __sa.").append(name).append(".call(null,").append(arguments)
+        .append(")})()");
+    return script.toString();
+  }
+
+  public synchronized void markInstalled(AndroidAtoms atom, String window) {
+    installed.add(key(atom, window));
+  }
+
+  /**
+   * Forgets all installed atoms, has to be called when a new document gets loaded.
+   */
+  public synchronized void reset() {
+    installed.clear();
+  }
+
+  private static String key(AndroidAtoms atom, String window) {
+    return window + "#" + atom.name();
+  }
+}
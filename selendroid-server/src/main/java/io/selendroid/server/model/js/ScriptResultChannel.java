@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.model.js;
+
+import io.selendroid.server.common.exceptions.SelendroidException;
+import io.selendroid.server.util.SelendroidLogger;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands the results of scripts executed in a web view back to the threads waiting for them.
+ *
+ * Every script execution is registered as a call with its own id. Results either arrive through
+ * {@code WebView.evaluateJavascript} callbacks or as alerts of the form
+ * {@code selendroid<charset|id>:result}, so several calls can be in flight at the same time and a
+ * late result never gets mistaken for the result of the next call.
+ */
+public class ScriptResultChannel {
+  private static final String ALERT_PREFIX = "selendroid<";
+  private static final String ALERT_SEPARATOR = ">:";
+  private static final String ID_SEPARATOR = "|";
+
+  private final Map<Long, PendingCall> pendingCalls = new LinkedHashMap<Long, PendingCall>();
+  private long nextCallId = 1;
+
+  /**
+   * @return the id of the new call, has to be released with {@link #cancel(long)}
+   */
+  public synchronized long newCall() {
+    long callId = nextCallId++;
+    pendingCalls.put(callId, new PendingCall());
+    return callId;
+  }
+
+  /**
+   * Creates a JavaScript function that reports its argument as the result of the given call
+   * through an alert.
+   */
+  public static String createAlertReporter(long callId) {
+    return "function(r){alert('" + ALERT_PREFIX + "'+document.charset+'" + ID_SEPARATOR + callId
+        + ALERT_SEPARATOR + "'+r)}";
+  }
+
+  /**
+   * Waits for the result of the call.
+   *
+   * @return the result or null if it didn't arrive in time
+   */
+  public String await(long callId, long timeoutMillis) {
+    PendingCall call;
+    synchronized (this) {
+      call = pendingCalls.get(callId);
+    }
+    if (call == null) {
+      return null;
+    }
+    try {
+      call.latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      throw new SelendroidException(e);
+    }
+    return call.result;
+  }
+
+  public void complete(long callId, String result) {
+    PendingCall call;
+    synchronized (this) {
+      call = pendingCalls.get(callId);
+    }
+    if (call == null) {
+      SelendroidLogger.debug("Ignoring result of finished script call " + callId);
+      return;
+    }
+    call.result = result;
+    call.latch.countDown();
+  }
+
+  public synchronized void cancel(long callId) {
+    pendingCalls.remove(callId);
+  }
+
+  /**
+   * Completes the call a selendroid alert message belongs to. Messages without a call id are
+   * delivered to the oldest pending call.
+   *
+   * @return false if the message is an ordinary alert of the page
+   */
+  public boolean handleAlert(String message) {
+    if (message == null || !message.startsWith(ALERT_PREFIX)) {
+      return false;
+    }
+    String res = message.substring(ALERT_PREFIX.length());
+    int i = res.indexOf(ALERT_SEPARATOR);
+    if (i < 0) {
+      return false;
+    }
+    String header = res.substring(0, i);
+    res = res.substring(i + ALERT_SEPARATOR.length());
+
+    String enc = header;
+    Long callId = null;
+    int idIndex = header.lastIndexOf(ID_SEPARATOR);
+    if (idIndex >= 0) {
+      enc = header.substring(0, idIndex);
+      try {
+        callId = Long.valueOf(header.substring(idIndex + 1));
+      } catch (NumberFormatException e) {
+        SelendroidLogger.warning("Invalid script call id in alert: " + header);
+        return true;
+      }
+    }
+    /*
+     * Workaround for Japanese character encodings: Replace U+00A5 with backslash so that we can
+     * properly parse JSON strings contains backslash escapes, since WebKit maps 0x5C (used for
+     * character escaping in all of the Japanses character encodings) to U+00A5 (YEN SIGN) and
+     * breaks escape characters.
+     */
+    if (("EUC-JP".equals(enc) || "Shift_JIS".equals(enc) || "ISO-2022-JP".equals(enc))
+        && res.contains("\u00a5")) {
+      SelendroidLogger.info("Perform workaround for japanese character encodings");
+      SelendroidLogger.debug("Original String: " + res);
+      res = res.replace("\u00a5", "\\");
+      SelendroidLogger.debug("Replaced result: " + res);
+    }
+    if (callId == null) {
+      callId = oldestPendingCall();
+      if (callId == null) {
+        return true;
+      }
+    }
+    complete(callId, res);
+    return true;
+  }
+
+  /**
+   * Converts the JSON encoded value passed to an {@code evaluateJavascript} callback into the
+   * string an alert would have reported.
+   */
+  public static String decodeEvaluatedValue(String value) {
+    if (value == null) {
+      return "undefined";
+    }
+    try {
+      Object decoded = new JSONTokener(value).nextValue();
+      if (decoded == null || JSONObject.NULL.equals(decoded)) {
+        return "undefined";
+      }
+      return decoded.toString();
+    } catch (JSONException e) {
+      return value;
+    }
+  }
+
+  private synchronized Long oldestPendingCall() {
+    Iterator<Long> ids = pendingCalls.keySet().iterator();
+    return ids.hasNext() ? ids.next() : null;
+  }
+
+  private static class PendingCall {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile String result;
+  }
+}
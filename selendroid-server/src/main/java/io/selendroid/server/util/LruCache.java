@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread safe least recently used cache that counts hits and misses. android.util.LruCache is not
+ * available on API level 10.
+ */
+public class LruCache<K, V> {
+  private final Map<K, V> map;
+  private long hitCount = 0;
+  private long missCount = 0;
+
+  public LruCache(final int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+    }
+    this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * @return the cached value or null, counts as a hit or a miss
+   */
+  public synchronized V get(K key) {
+    V value = map.get(key);
+    if (value != null) {
+      hitCount++;
+    } else {
+      missCount++;
+    }
+    return value;
+  }
+
+  public synchronized void put(K key, V value) {
+    map.put(key, value);
+  }
+
+  public synchronized int size() {
+    return map.size();
+  }
+
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  /**
+   * Removes all entries and resets the counters.
+   */
+  public synchronized void clear() {
+    map.clear();
+    hitCount = 0;
+    missCount = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "size=" + map.size() + ", hits=" + hitCount + ", misses=" + missCount;
+  }
+}
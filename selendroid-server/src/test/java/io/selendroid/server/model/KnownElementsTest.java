@@ -23,6 +23,9 @@ import io.selendroid.server.android.KeySender;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 import static org.mockito.Mockito.mock;
@@ -128,6 +131,82 @@ public class KnownElementsTest {
     Assert.assertEquals(id, ke.getIdOfElement(element));
   }
 
+  @Test
+  public void testEvictsLeastRecentlyUsedElement() {
+    KnownElements ke = new KnownElements(2);
+    AndroidElement first = createWebElement(":wdc:1", ke);
+    AndroidElement second = createWebElement(":wdc:2", ke);
+    ke.add(first);
+    ke.add(second);
+    // touch the first element so the second one becomes the eldest
+    ke.add(first);
+    ke.add(createWebElement(":wdc:3", ke));
+
+    Assert.assertEquals(2, ke.size());
+    Assert.assertTrue(ke.hasElement(":wdc:1"));
+    Assert.assertFalse(ke.hasElement(":wdc:2"));
+    Assert.assertNull(ke.getIdOfElement(second));
+  }
+
+  @Test
+  public void testEvictedNativeElementIsForgotten() {
+    KnownElements ke = new KnownElements(1);
+    AndroidNativeElement element = (AndroidNativeElement) createNativeElement(ke);
+    ke.add(element);
+    ke.add(createNativeElement(ke, 816));
+
+    Assert.assertNull(ke.getIdOfElement(element));
+    Assert.assertFalse(ke.hasNativeElement(element.getView()));
+  }
+
+  @Test
+  public void testClear() {
+    KnownElements ke = new KnownElements();
+    AndroidElement element = createWebElement(":wdc:1234", ke);
+    ke.add(element);
+    ke.clear();
+
+    Assert.assertEquals(0, ke.size());
+    Assert.assertNull(ke.getIdOfElement(element));
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    final KnownElements ke = new KnownElements(50);
+    final List<AndroidElement> elements = new ArrayList<AndroidElement>();
+    for (int i = 0; i < 200; i++) {
+      elements.add(createWebElement(":wdc:" + i, ke));
+    }
+    final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 4; t++) {
+      final int offset = t;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 20000; i++) {
+              AndroidElement element = elements.get((i * 7 + offset) % elements.size());
+              String id = ke.add(element);
+              ke.get(id);
+              ke.hasElement(id);
+            }
+          } catch (Throwable e) {
+            failures.add(e);
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertEquals(Collections.emptyList(), failures);
+    Assert.assertEquals(50, ke.size());
+  }
+
   private AndroidElement createNativeElement(KnownElements ke) {
     return createNativeElement(ke, 815);
   }
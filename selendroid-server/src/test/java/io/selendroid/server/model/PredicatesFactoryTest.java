@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PredicatesFactoryTest {
+  @Test
+  public void shouldReuseCachedPredicates() {
+    PredicatesFactory factory = new PredicatesFactory();
+    Assert.assertSame(factory.createIdPredicate("login"), factory.createIdPredicate("login"));
+    Assert.assertNotSame(factory.createIdPredicate("login"), factory.createTextPredicate("login"));
+
+    Assert.assertEquals(2, factory.getPredicateCache().hitCount());
+    Assert.assertEquals(2, factory.getPredicateCache().missCount());
+  }
+
+  @Test
+  public void shouldReuseCompiledXPath() {
+    PredicatesFactory factory = new PredicatesFactory();
+    Assert.assertSame(factory.createXPath("//Button"), factory.createXPath("//Button"));
+    Assert.assertEquals(1, factory.getXPathCache().hitCount());
+    Assert.assertEquals(1, factory.getXPathCache().missCount());
+  }
+
+  @Test
+  public void shouldRememberUnsupportedXPath() {
+    PredicatesFactory factory = new PredicatesFactory();
+    for (int i = 0; i < 2; i++) {
+      try {
+        factory.createXPath("//Button[@id=$id]");
+        Assert.fail("variables are not supported");
+      } catch (IllegalArgumentException e) {
+        Assert.assertNotNull(e.getMessage());
+      }
+    }
+    Assert.assertEquals(1, factory.getUnsupportedXPathCache().hitCount());
+    Assert.assertEquals(1, factory.getUnsupportedXPathCache().missCount());
+    Assert.assertEquals(0, factory.getXPathCache().size());
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEntries() {
+    PredicatesFactory factory = new PredicatesFactory(2);
+    factory.createXPath("//Button");
+    factory.createXPath("//TextView");
+    factory.createXPath("//Button");
+    factory.createXPath("//EditText");
+
+    Assert.assertEquals(2, factory.getXPathCache().size());
+    factory.createXPath("//Button");
+    Assert.assertEquals(2, factory.getXPathCache().hitCount());
+    factory.createXPath("//TextView");
+    Assert.assertEquals(4, factory.getXPathCache().missCount());
+  }
+
+  @Test
+  public void shouldResetCountersOnClear() {
+    PredicatesFactory factory = new PredicatesFactory();
+    factory.createTagNamePredicate("Button");
+    factory.createTagNamePredicate("Button");
+    factory.clearCaches();
+
+    Assert.assertEquals(0, factory.getPredicateCache().size());
+    Assert.assertEquals(0, factory.getPredicateCache().hitCount());
+    Assert.assertEquals(0, factory.getPredicateCache().missCount());
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.model;
+
+import io.selendroid.server.common.exceptions.SelendroidException;
+
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ScreenshotOptionsTest {
+  @Test
+  public void shouldUseDefaultsWithoutCapabilities() throws Exception {
+    ScreenshotOptions options = ScreenshotOptions.fromCapabilities(new JSONObject());
+    Assert.assertEquals("png", options.getFormat());
+    Assert.assertEquals(70, options.getQuality());
+    Assert.assertEquals(1f, options.getScale(), 0f);
+  }
+
+  @Test
+  public void shouldLetRequestParametersOverrideCapabilities() throws Exception {
+    JSONObject capabilities = new JSONObject();
+    capabilities.put(ScreenshotOptions.FORMAT, "jpeg");
+    capabilities.put(ScreenshotOptions.QUALITY, 60);
+    ScreenshotOptions options = ScreenshotOptions.fromCapabilities(capabilities);
+
+    Map<String, String> parameters = new HashMap<String, String>();
+    parameters.put("scale", "0.5");
+    parameters.put("quality", "40");
+    ScreenshotOptions overridden = options.withParameters(parameters);
+    Assert.assertEquals("jpeg", overridden.getFormat());
+    Assert.assertEquals(40, overridden.getQuality());
+    Assert.assertEquals(0.5f, overridden.getScale(), 0f);
+  }
+
+  @Test(expected = SelendroidException.class)
+  public void shouldRejectInvalidScale() {
+    Map<String, String> parameters = new HashMap<String, String>();
+    parameters.put("scale", "2");
+    ScreenshotOptions.DEFAULT.withParameters(parameters);
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.model.internal.xpath;
+
+import android.view.View;
+import android.view.ViewGroup;
+import io.selendroid.server.model.internal.JsonXmlUtil;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Evaluates expressions with {@link ViewXPath} and with the DOM built by {@link JsonXmlUtil} and
+ * expects both to find the same views.
+ */
+public class ViewXPathTest {
+  private final Map<View, JSONObject> jsonByView = new HashMap<View, JSONObject>();
+  private final Map<String, View> viewsByRef = new HashMap<String, View>();
+  private View root;
+  private Document document;
+
+  private final XPathViewResolver resolver = new XPathViewResolver() {
+    @Override
+    public String getTagName(View view) {
+      return jsonByView.get(view).optString("type");
+    }
+
+    @Override
+    public String getAttribute(View view, String attribute) {
+      JSONObject json = jsonByView.get(view);
+      JSONObject rect = json.optJSONObject("rect");
+      if ("x".equals(attribute) || "y".equals(attribute)) {
+        return rect.optJSONObject("origin").optString(attribute);
+      } else if ("height".equals(attribute) || "width".equals(attribute)) {
+        return rect.optJSONObject("size").optString(attribute);
+      }
+      return json.optString(attribute);
+    }
+  };
+
+  /**
+   * <pre>
+   * DecorView
+   *   LinearLayout
+   *     TextView (title)
+   *     FrameLayout (content)
+   *       Button (login, "Log in")
+   *       Button (cancel, "Cancel", not shown)
+   *       EditText (user)
+   *   LinearLayout (footer)
+   *     TextView ("Version 1.0")
+   * </pre>
+   */
+  @Before
+  public void setup() throws Exception {
+    View title = view("TextView", "title", "", "Selendroid", true);
+    View login = view("Button", "login", "login button", "Log in", true);
+    View cancel = view("Button", "cancel", "", "Cancel", false);
+    View user = view("EditText", "user", "user name", "", true);
+    View content = group("FrameLayout", "content", login, cancel, user);
+    View header = group("LinearLayout", "", title, content);
+    View version = view("TextView", "", "", "Version 1.0", true);
+    View footer = group("LinearLayout", "footer", version);
+    root = group("DecorView", "", header, footer);
+
+    document = JsonXmlUtil.buildXmlDocument(jsonByView.get(root));
+  }
+
+  @Test
+  public void shouldMatchDomEvaluation() throws Exception {
+    String[] expressions = {
+        "//Button",
+        "//*",
+        "/views/DecorView",
+        "/views/DecorView/LinearLayout",
+        "//LinearLayout/*",
+        "//Button[@id='login']",
+        "//*[@id='content']/Button",
+        "//Button[1]",
+        "(//Button)[2]",
+        "(//TextView)[last()]",
+        "//*[@shown='false']",
+        "//*[contains(@value, 'Version')]",
+        "//*[starts-with(@name, 'user')]",
+        "//TextView[@value='Selendroid']/following-sibling::*",
+        "//EditText/preceding-sibling::Button",
+        "//EditText/ancestor::LinearLayout",
+        "//Button[@id='login']/..",
+        "//Button[@id='login']/parent::*/parent::*",
+        "//FrameLayout/*[position() > 1]",
+        "//*[@id='login' or @id='user']",
+        "//Button[@shown='true' and @value='Log in']",
+        "//*[not(@id='')][@shown='true']",
+        "//Button | //EditText",
+        "//*[count(*) > 3]",
+        "//*[rect/@width > 100]",
+        "//rect[@height = 48]/..",
+        "//*[@id='content']//*",
+        "//*[@id='content']/descendant-or-self::*",
+        "//Button/following::*",
+        "//EditText/preceding::TextView",
+        "//*[string-length(@value) = 6]",
+        "//*[normalize-space(@value)='Log in']",
+        "//*[@value=\"Cancel\"]",
+        "//DoesNotExist",
+        "//*[@id='content']/*[2]",
+        "//FrameLayout/Button[last()]",
+        "//*[name()='EditText']",
+        "//*[@*='login button']",
+        "//*[text()='Log in']",
+        "//Button[@id='login']/following::TextView[1]",
+        "//EditText/preceding::*[1]",
+        "//LinearLayout[2]//TextView"};
+    for (String expression : expressions) {
+      Assert.assertEquals(expression, evaluateDom(expression), evaluate(expression, false));
+    }
+  }
+
+  @Test
+  public void shouldFindFirstMatchInDocumentOrder() throws Exception {
+    String[] expressions = {"//Button", "//*", "//*[@shown='true']", "//TextView",
+        "//*[@id='content']/*", "//LinearLayout/*", "(//Button)[2]", "//Button[2]",
+        "//*[contains(@value, 'l')]"};
+    for (String expression : expressions) {
+      List<View> all = evaluate(expression, false);
+      List<View> first = evaluate(expression, true);
+      Assert.assertEquals(expression, all.isEmpty() ? all : all.subList(0, 1), first);
+    }
+  }
+
+  @Test
+  public void shouldOnlyVisitViewsTheExpressionLooksAt() {
+    final List<View> visited = new ArrayList<View>();
+    XPathViewResolver recordingResolver = new XPathViewResolver() {
+      @Override
+      public String getTagName(View view) {
+        visited.add(view);
+        return resolver.getTagName(view);
+      }
+
+      @Override
+      public String getAttribute(View view, String attribute) {
+        return resolver.getAttribute(view, attribute);
+      }
+    };
+
+    List<View> found = ViewXPath.compile("/views/DecorView/LinearLayout")
+        .evaluate(root, recordingResolver, false);
+    Assert.assertEquals(2, found.size());
+    // the decor view and its two children, not the views below them
+    Assert.assertEquals(3, visited.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectVariables() {
+    ViewXPath.compile("//Button[@id=$id]");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectInvalidExpressions() {
+    ViewXPath.compile("//Button[");
+  }
+
+  private List<View> evaluate(String expression, boolean findJustOne) {
+    return ViewXPath.compile(expression).evaluate(root, resolver, findJustOne);
+  }
+
+  private List<View> evaluateDom(String expression) throws Exception {
+    NodeList nodes = (NodeList) XPathFactory.newInstance().newXPath().compile(expression)
+        .evaluate(document, XPathConstants.NODESET);
+    List<View> views = new ArrayList<View>();
+    for (int i = 0; i < nodes.getLength(); i++) {
+      if (nodes.item(i).getAttributes() == null) {
+        continue;
+      }
+      org.w3c.dom.Node ref = nodes.item(i).getAttributes().getNamedItem("ref");
+      if (ref != null) {
+        views.add(viewsByRef.get(ref.getTextContent()));
+      }
+    }
+    return views;
+  }
+
+  private View view(String type, String id, String name, String value, boolean shown)
+      throws Exception {
+    return register(mock(View.class), type, id, name, value, shown);
+  }
+
+  private View group(String type, String id, View... children) throws Exception {
+    ViewGroup group = mock(ViewGroup.class);
+    when(group.getChildCount()).thenReturn(children.length);
+    JSONArray jsonChildren = new JSONArray();
+    for (int i = 0; i < children.length; i++) {
+      when(group.getChildAt(i)).thenReturn(children[i]);
+      jsonChildren.put(jsonByView.get(children[i]));
+    }
+    register(group, type, id, "", "", true);
+    jsonByView.get(group).put("children", jsonChildren);
+    return group;
+  }
+
+  private View register(View view, String type, String id, String name, String value,
+      boolean shown) throws Exception {
+    String ref = "ref" + jsonByView.size();
+    JSONObject json = new JSONObject();
+    json.put("type", type);
+    json.put("id", id);
+    json.put("name", name);
+    json.put("value", value);
+    json.put("shown", shown);
+    json.put("ref", ref);
+    JSONObject origin = new JSONObject();
+    origin.put("x", jsonByView.size() * 10);
+    origin.put("y", jsonByView.size() * 20);
+    JSONObject size = new JSONObject();
+    size.put("width", "Button".equals(type) ? 200 : 50);
+    size.put("height", "Button".equals(type) ? 48 : 30);
+    JSONObject rect = new JSONObject();
+    rect.put("origin", origin);
+    rect.put("size", size);
+    json.put("rect", rect);
+    jsonByView.put(view, json);
+    viewsByRef.put(ref, view);
+    return view;
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.model.js;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AtomRegistryTest {
+  private static final String ARGUMENTS = "'return 1;', [], true";
+
+  @Test
+  public void shouldIncludeSourceUntilInstalled() {
+    AtomRegistry registry = new AtomRegistry();
+    String firstCall = registry.createCall(AndroidAtoms.EXECUTE_SCRIPT, "window", ARGUMENTS);
+    Assert.assertTrue(firstCall.contains(AndroidAtoms.EXECUTE_SCRIPT.getValue()));
+
+    registry.markInstalled(AndroidAtoms.EXECUTE_SCRIPT, "window");
+    String secondCall = registry.createCall(AndroidAtoms.EXECUTE_SCRIPT, "window", ARGUMENTS);
+    Assert.assertFalse(secondCall.contains(AndroidAtoms.EXECUTE_SCRIPT.getValue()));
+    Assert.assertTrue(secondCall.contains(AtomRegistry.ATOM_MISSING));
+    Assert.assertTrue(secondCall.endsWith(".call(null," + ARGUMENTS + ")})()"));
+  }
+
+  @Test
+  public void shouldTrackAtomsPerWindow() {
+    AtomRegistry registry = new AtomRegistry();
+    registry.markInstalled(AndroidAtoms.CLICK, "window");
+
+    Assert.assertTrue(registry.createCall(AndroidAtoms.CLICK, "window.frames[0]", "")
+        .contains(AndroidAtoms.CLICK.getValue()));
+    Assert.assertTrue(registry.createCall(AndroidAtoms.GET_TEXT, "window", "")
+        .contains(AndroidAtoms.GET_TEXT.getValue()));
+  }
+
+  @Test
+  public void shouldIncludeSourceAgainAfterReset() {
+    AtomRegistry registry = new AtomRegistry();
+    registry.markInstalled(AndroidAtoms.CLICK, "window");
+    registry.reset();
+
+    Assert.assertTrue(registry.createCall(AndroidAtoms.CLICK, "window", "")
+        .contains(AndroidAtoms.CLICK.getValue()));
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.model.js;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScriptResultChannelTest {
+  @Test
+  public void shouldDeliverAlertsToTheirCall() {
+    ScriptResultChannel channel = new ScriptResultChannel();
+    long first = channel.newCall();
+    long second = channel.newCall();
+
+    Assert.assertTrue(channel.handleAlert("selendroid<UTF-8|" + second + ">:{\"status\":0}"));
+    Assert.assertTrue(channel.handleAlert("selendroid<UTF-8|" + first + ">:first"));
+
+    Assert.assertEquals("first", channel.await(first, 0));
+    Assert.assertEquals("{\"status\":0}", channel.await(second, 0));
+  }
+
+  @Test
+  public void shouldIgnorePageAlerts() {
+    ScriptResultChannel channel = new ScriptResultChannel();
+    long call = channel.newCall();
+
+    Assert.assertFalse(channel.handleAlert("Hello World"));
+    Assert.assertFalse(channel.handleAlert(null));
+    Assert.assertNull(channel.await(call, 0));
+  }
+
+  @Test
+  public void shouldIgnoreResultsOfCancelledCalls() {
+    ScriptResultChannel channel = new ScriptResultChannel();
+    long late = channel.newCall();
+    channel.cancel(late);
+    long current = channel.newCall();
+
+    Assert.assertTrue(channel.handleAlert("selendroid<UTF-8|" + late + ">:late"));
+    Assert.assertNull(channel.await(current, 0));
+  }
+
+  @Test
+  public void shouldDeliverAlertsWithoutIdToOldestCall() {
+    ScriptResultChannel channel = new ScriptResultChannel();
+    long first = channel.newCall();
+    long second = channel.newCall();
+
+    Assert.assertTrue(channel.handleAlert("selendroid<UTF-8>:result"));
+    Assert.assertEquals("result", channel.await(first, 0));
+    Assert.assertNull(channel.await(second, 0));
+  }
+
+  @Test
+  public void shouldReplaceYenSignForJapaneseEncodings() {
+    ScriptResultChannel channel = new ScriptResultChannel();
+    long call = channel.newCall();
+
+    channel.handleAlert("selendroid<Shift_JIS|" + call + ">:{\"value\":\"a\u00a5\"b\"}");
+    Assert.assertEquals("{\"value\":\"a\\\"b\"}", channel.await(call, 0));
+  }
+
+  @Test
+  public void shouldDecodeEvaluatedValues() {
+    Assert.assertEquals("{\"status\":0}",
+        ScriptResultChannel.decodeEvaluatedValue("\"{\\\"status\\\":0}\""));
+    Assert.assertEquals("42", ScriptResultChannel.decodeEvaluatedValue("42"));
+    Assert.assertEquals("undefined", ScriptResultChannel.decodeEvaluatedValue("null"));
+    Assert.assertEquals("undefined", ScriptResultChannel.decodeEvaluatedValue(null));
+  }
+}
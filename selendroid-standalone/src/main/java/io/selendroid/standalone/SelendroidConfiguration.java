@@ -15,6 +15,8 @@ package io.selendroid.standalone;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
+import io.selendroid.standalone.android.LogcatStore;
+import io.selendroid.standalone.android.ScreenshotEncoder;
 import io.selendroid.standalone.log.LogLevelConverter;
 import io.selendroid.standalone.log.LogLevelEnum;
 import org.apache.commons.lang3.StringUtils;
@@ -74,6 +76,14 @@ public class SelendroidConfiguration {
              names = {"-emulatorOptions"})
   private String emulatorOptions = null;
 
+  @Parameter(names = "-emulatorSnapshot",
+             description = "Name of the emulator snapshot to boot emulators from. The snapshot is saved after the first cold boot of an emulator, and emulators are reset to it after each session instead of being stopped. Sessions requesting a locale use a snapshot of their own named <name>_<locale>.")
+  private String emulatorSnapshot = null;
+
+  @Parameter(names = "-startEmulators",
+             description = "Boot all emulators that are not running yet in parallel when the selendroid-standalone starts, instead of booting them when a session needs them.")
+  private boolean startEmulators = false;
+
   @Parameter(names = "-keepEmulator",
           description = "if true, emulator will be kept running after test ends.")
   private boolean keepEmulator = false;
@@ -146,6 +156,11 @@ public class SelendroidConfiguration {
       names = "-sessionTimeout")
   private int sessionTimeoutSeconds = 30 * 60; // 30 minutes
 
+  @Parameter(
+      description = "time in seconds without a command after which a session is terminated. 0 disables the idle timeout.",
+      names = "-sessionIdleTimeout")
+  private int sessionIdleTimeoutSeconds = 0;
+
   @Parameter(names = "-forceReinstall",
              description = "Forces Selendroid Server and the app under test to be reinstalled (for Selendroid developers)")
   private boolean forceReinstall = false;
@@ -159,6 +174,22 @@ public class SelendroidConfiguration {
              arity = 1)
   private boolean deviceLog = true;
 
+  @Parameter(names = "-deviceLogBufferSize",
+             description = "Number of device log lines that are kept in memory for each device")
+  private int deviceLogBufferSize = LogcatStore.DEFAULT_MAX_ENTRIES;
+
+  @Parameter(names = "-deviceLogDirectory",
+             description = "Directory older device log lines are written to as gzip files instead of being discarded")
+  private String deviceLogDirectory = null;
+
+  @Parameter(names = "-screenshotFormat",
+             description = "Format of the screenshots taken by the selendroid-standalone: png or jpeg. jpeg is smaller and faster but lossy.")
+  private String screenshotFormat = ScreenshotEncoder.PNG;
+
+  @Parameter(names = "-screenshotQuality",
+             description = "Compression level of png screenshots from 0 (fastest) to 9 (smallest), or quality of jpeg screenshots from 0 to 100. Defaults to 1 for png and 85 for jpeg.")
+  private Integer screenshotQuality = null;
+
   @Parameter(description = "Maximum time in milliseconds to wait for the selendroid-server to come up on the device",
       names = "-serverStartTimeout")
   private long serverStartTimeout = 20000;
@@ -167,6 +198,26 @@ public class SelendroidConfiguration {
       names = "-serverStartPollingInterval")
   private long serverStartPollingInterval = FluentWait.FIVE_HUNDRED_MILLIS.in(TimeUnit.MILLISECONDS);
 
+  @Parameter(names = "-keepAlive",
+             description = "if true, HTTP connections to selendroid-standalone and to the selendroid-server on the device are kept alive and reused for subsequent requests")
+  private boolean keepAlive = false;
+
+  @Parameter(description = "Time in seconds after which idle kept alive connections are closed. 0 disables the timeout.",
+      names = "-keepAliveTimeout")
+  private int keepAliveTimeoutSeconds = 60;
+
+  @Parameter(description = "Maximum number of connections kept open to the selendroid-server of a single test session",
+      names = "-deviceHttpMaxConnections")
+  private int deviceHttpMaxConnections = 5;
+
+  @Parameter(description = "Timeout in milliseconds for connecting to the selendroid-server on the device",
+      names = "-deviceHttpConnectTimeout")
+  private int deviceHttpConnectTimeout = 10000;
+
+  @Parameter(description = "Timeout in milliseconds waiting for a response of the selendroid-server on the device. 0 means no timeout.",
+      names = "-deviceHttpSocketTimeout")
+  private int deviceHttpSocketTimeout = 0;
+
   @Parameter(names = {"-h", "--help"}, description = "Prints usage instructions to the terminal")
   private boolean printHelp = false;
 
@@ -199,6 +250,34 @@ public class SelendroidConfiguration {
   @Parameter(names ="-avdManager", description = "Absolute path to avdmanager command line utility")
   private String avdManagerHome = null;
 
+  @Parameter(names = "-noApkCache",
+             description = "Resign the apps under test and build the selendroid-server APKs on every start instead of reusing them from the APK cache")
+  private boolean noApkCache = false;
+
+  @Parameter(names = "-apkCacheDir",
+             description = "Directory of the APK cache. It is used by one selendroid-standalone process at a time, further processes use numbered subdirectories. Default: ~/.selendroid/apk-cache")
+  private String apkCacheDir = null;
+
+  @Parameter(names = "-apkCacheMaxSize",
+             description = "Maximum size of the APK cache in megabytes. The least recently used APKs that are not in use by the running process are removed when it grows bigger.")
+  private long apkCacheMaxSizeMb = 2048;
+
+  @Parameter(names = "-inProcessApkBuilder",
+             description = "Sign APKs and patch the selendroid-server manifest inside the selendroid-standalone process instead of forking aapt and jarsigner. Falls back to the Android SDK tools if an APK is not supported.")
+  private boolean inProcessApkBuilder = false;
+
+  @Parameter(names = "-deviceWaitTimeout",
+             description = "Maximum time in seconds a new session request waits for a matching device to be released if all of them are in use. Waiting requests get devices in the order they arrived. Default 0: fail right away.")
+  private int deviceWaitTimeoutSeconds = 0;
+
+  @Parameter(names = "-maxWaitingSessions",
+             description = "Maximum number of new session requests that wait for devices matching the same capabilities. Further requests fail right away.")
+  private int maxWaitingSessions = 50;
+
+  @Parameter(names = "-warmPoolSize",
+             description = "Number of devices per app under test and target platform that keep their selendroid-server running after a session ended, so the next session for the same app is created on the running server. Requires -noClearData, because the app data is not cleared between these sessions. Servers are only kept after sessions ended, the first session of each app starts its server. Default 0: disabled.")
+  private int warmPoolSize = 0;
+
   public String getAvdManager() {
     return avdManagerHome;
   }
@@ -207,6 +286,62 @@ public class SelendroidConfiguration {
     this.avdManagerHome = avdManagerHome;
   }
 
+  public boolean isNoApkCache() {
+    return noApkCache;
+  }
+
+  public void setNoApkCache(boolean noApkCache) {
+    this.noApkCache = noApkCache;
+  }
+
+  public String getApkCacheDir() {
+    return apkCacheDir;
+  }
+
+  public void setApkCacheDir(String apkCacheDir) {
+    this.apkCacheDir = apkCacheDir;
+  }
+
+  public long getApkCacheMaxSizeMb() {
+    return apkCacheMaxSizeMb;
+  }
+
+  public void setApkCacheMaxSizeMb(long apkCacheMaxSizeMb) {
+    this.apkCacheMaxSizeMb = apkCacheMaxSizeMb;
+  }
+
+  public boolean isInProcessApkBuilder() {
+    return inProcessApkBuilder;
+  }
+
+  public void setInProcessApkBuilder(boolean inProcessApkBuilder) {
+    this.inProcessApkBuilder = inProcessApkBuilder;
+  }
+
+  public long getDeviceWaitTimeoutMillis() {
+    return deviceWaitTimeoutSeconds * 1000L;
+  }
+
+  public void setDeviceWaitTimeoutSeconds(int deviceWaitTimeoutSeconds) {
+    this.deviceWaitTimeoutSeconds = deviceWaitTimeoutSeconds;
+  }
+
+  public int getMaxWaitingSessions() {
+    return maxWaitingSessions;
+  }
+
+  public void setMaxWaitingSessions(int maxWaitingSessions) {
+    this.maxWaitingSessions = maxWaitingSessions;
+  }
+
+  public int getWarmPoolSize() {
+    return warmPoolSize;
+  }
+
+  public void setWarmPoolSize(int warmPoolSize) {
+    this.warmPoolSize = warmPoolSize;
+  }
+
   public void setKeystore(String keystore) {
     this.keystore = keystore;
   }
@@ -318,6 +453,22 @@ public class SelendroidConfiguration {
     this.emulatorOptions = qemu;
   }
 
+  public String getEmulatorSnapshot() {
+    return emulatorSnapshot;
+  }
+
+  public void setEmulatorSnapshot(String emulatorSnapshot) {
+    this.emulatorSnapshot = emulatorSnapshot;
+  }
+
+  public boolean isStartEmulators() {
+    return startEmulators;
+  }
+
+  public void setStartEmulators(boolean startEmulators) {
+    this.startEmulators = startEmulators;
+  }
+
   public boolean shouldKeepAdbAlive() {
     return keepAdbAlive;
   }
@@ -350,6 +501,14 @@ public class SelendroidConfiguration {
     this.sessionTimeoutSeconds = sessionTimeoutSeconds;
   }
 
+  public long getSessionIdleTimeoutMillis() {
+    return sessionIdleTimeoutSeconds * 1000L;
+  }
+
+  public void setSessionIdleTimeoutSeconds(int sessionIdleTimeoutSeconds) {
+    this.sessionIdleTimeoutSeconds = sessionIdleTimeoutSeconds;
+  }
+
   public boolean isForceReinstall() {
     return forceReinstall;
   }
@@ -374,6 +533,41 @@ public class SelendroidConfiguration {
     this.deviceLog = deviceLog;
   }
 
+  public int getDeviceLogBufferSize() {
+    return deviceLogBufferSize;
+  }
+
+  public void setDeviceLogBufferSize(int deviceLogBufferSize) {
+    this.deviceLogBufferSize = deviceLogBufferSize;
+  }
+
+  public String getDeviceLogDirectory() {
+    return deviceLogDirectory;
+  }
+
+  public String getScreenshotFormat() {
+    return screenshotFormat;
+  }
+
+  public void setScreenshotFormat(String screenshotFormat) {
+    this.screenshotFormat = screenshotFormat;
+  }
+
+  public int getScreenshotQuality() {
+    if (screenshotQuality != null) {
+      return screenshotQuality;
+    }
+    return ScreenshotEncoder.JPEG.equals(screenshotFormat) ? 85 : 1;
+  }
+
+  public void setScreenshotQuality(int screenshotQuality) {
+    this.screenshotQuality = screenshotQuality;
+  }
+
+  public void setDeviceLogDirectory(String deviceLogDirectory) {
+    this.deviceLogDirectory = deviceLogDirectory;
+  }
+
   public long getServerStartTimeout() {
     return serverStartTimeout;
   }
@@ -390,6 +584,46 @@ public class SelendroidConfiguration {
     this.serverStartPollingInterval = serverStartPollingInterval;
   }
 
+  public boolean isKeepAlive() {
+    return keepAlive;
+  }
+
+  public void setKeepAlive(boolean keepAlive) {
+    this.keepAlive = keepAlive;
+  }
+
+  public int getKeepAliveTimeoutSeconds() {
+    return keepAliveTimeoutSeconds;
+  }
+
+  public void setKeepAliveTimeoutSeconds(int keepAliveTimeoutSeconds) {
+    this.keepAliveTimeoutSeconds = keepAliveTimeoutSeconds;
+  }
+
+  public int getDeviceHttpMaxConnections() {
+    return deviceHttpMaxConnections;
+  }
+
+  public void setDeviceHttpMaxConnections(int deviceHttpMaxConnections) {
+    this.deviceHttpMaxConnections = deviceHttpMaxConnections;
+  }
+
+  public int getDeviceHttpConnectTimeout() {
+    return deviceHttpConnectTimeout;
+  }
+
+  public void setDeviceHttpConnectTimeout(int deviceHttpConnectTimeout) {
+    this.deviceHttpConnectTimeout = deviceHttpConnectTimeout;
+  }
+
+  public int getDeviceHttpSocketTimeout() {
+    return deviceHttpSocketTimeout;
+  }
+
+  public void setDeviceHttpSocketTimeout(int deviceHttpSocketTimeout) {
+    this.deviceHttpSocketTimeout = deviceHttpSocketTimeout;
+  }
+
   public int getServerStartRetries() {
     return serverStartRetries;
   }
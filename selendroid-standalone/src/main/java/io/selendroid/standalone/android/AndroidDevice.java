@@ -24,6 +24,7 @@ import org.openqa.selenium.logging.LogEntry;
 
 import com.google.common.base.Predicates;
 
+import java.io.File;
 import java.util.List;
 import java.util.Locale;
 
@@ -36,6 +37,12 @@ public interface AndroidDevice {
 
   public boolean isInstalled(AndroidApp app) throws AndroidSdkException;
 
+  /**
+   * @return true if the app has been installed by selendroid from an APK with the same content as
+   *         the APK of the given app.
+   */
+  public boolean isInstalledAndUpToDate(AndroidApp app) throws AndroidSdkException;
+
   public void uninstall(AndroidApp app) throws AndroidSdkException;
 
   public boolean start(AndroidApp app) throws AndroidSdkException;
@@ -46,6 +53,9 @@ public interface AndroidDevice {
 
   public void startSelendroid(AndroidApp aut, int port, SelendroidCapabilities capabilities) throws AndroidSdkException;
 
+  /**
+   * @return true if the selendroid-server is running and ready to create sessions
+   */
   public boolean isSelendroidRunning();
 
   public int getSelendroidsPort();
@@ -56,10 +66,22 @@ public interface AndroidDevice {
 
   public List<LogEntry> getLogs();
 
+  /**
+   * @param cursor the cursor of the previous read, or 0 to read all entries
+   * @return the device log entries that were logged since the previous read
+   */
+  public LogcatStore.Page getLogs(long cursor);
+
   public boolean isLoggingEnabled();
 
   public void setLoggingEnabled(boolean loggingEnabled);
 
+  /**
+   * @param maxEntries number of device log entries that are kept in memory
+   * @param spillDirectory directory older device log entries are written to, null to discard them
+   */
+  public void setLogLimits(int maxEntries, File spillDirectory);
+
   public boolean screenSizeMatches(String requestedScreenSize);
 
   public Locale getLocale();
@@ -70,6 +92,8 @@ public interface AndroidDevice {
 
   public byte[] takeScreenshot() throws AndroidDeviceException;
 
+  public void setScreenshotEncoder(ScreenshotEncoder screenshotEncoder);
+
   public void setVerbose();
 
   public String getSerial();
@@ -102,4 +126,7 @@ public interface AndroidDevice {
 
   public void addInstrumentationProcessListener(
     InstrumentationProcessListener listener);
+
+  public void removeInstrumentationProcessListener(
+    InstrumentationProcessListener listener);
 }
@@ -28,6 +28,7 @@ public interface AndroidEmulator {
   public static final String TIMEOUT_OPTION = "TIMEOUT";
   public static final String DISPLAY_OPTION = "DISPLAY";
   public static final String EMULATOR_OPTIONS = "OPTIONS";
+  public static final String SNAPSHOT_OPTION = "SNAPSHOT";
 
   public boolean isEmulatorAlreadyExistent() throws AndroidDeviceException;
 
@@ -46,6 +47,13 @@ public interface AndroidEmulator {
 
   public void stop() throws AndroidDeviceException;
 
+  /**
+   * Resets a running emulator to the snapshot it was started from.
+   *
+   * @return false if the emulator was not started from a snapshot by selendroid.
+   */
+  public boolean restoreSnapshot() throws AndroidDeviceException;
+
   public Integer getPort();
 
   public void setIDevice(IDevice iDevice);
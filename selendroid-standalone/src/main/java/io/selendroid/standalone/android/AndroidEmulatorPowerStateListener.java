@@ -17,4 +17,9 @@ public interface AndroidEmulatorPowerStateListener {
   public void onDeviceStarted(String avdName, String serial);
   
   public void onDeviceStopped(String avdName); 
+
+  /**
+   * Called when adb reports that the emulator with the given serial came online.
+   */
+  public void onDeviceOnline(String serial);
 }
@@ -154,6 +154,17 @@ public class InstrumentationProcessOutput {
   public static final SelendroidException getInstrumentationProcessError(
     InstrumentationProcessOutput instrumentationOutput,
     final AndroidDevice device) {
+    return getInstrumentationProcessError(instrumentationOutput, device, null);
+  }
+
+  /**
+   * @param crashLog the crash log already read from the device, null or empty if it still has to
+   *        be read
+   */
+  public static final SelendroidException getInstrumentationProcessError(
+    InstrumentationProcessOutput instrumentationOutput,
+    final AndroidDevice device,
+    String crashLog) {
     if (!instrumentationOutput.isAppCrash()) {
       if (instrumentationOutput
           .getMessage()
@@ -180,6 +191,10 @@ public class InstrumentationProcessOutput {
         "\nSee logcat for more details");
     }
 
+    if (crashLog != null && !crashLog.isEmpty()) {
+      return new AppCrashedException(crashLog);
+    }
+
     // In case of an app crash, the instrumentation process can be terminated
     // before we actually have the crash logs, so we have to wait until we do
     try {
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android;
+
+import com.google.common.base.Charsets;
+
+import org.apache.commons.exec.LogOutputStream;
+import org.openqa.selenium.logging.LogEntry;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds the most recent lines of a device log as written by {@code adb logcat -v time}. Lines are
+ * parsed while they are streamed in. When the store is full the oldest entries are dropped, or
+ * appended to a compressed spill file if one has been configured.
+ */
+public class LogcatStore {
+  public static final int DEFAULT_MAX_ENTRIES = 10000;
+  private static final Logger log = Logger.getLogger(LogcatStore.class.getName());
+  // e.g. "01-23 12:34:56.789 I/ActivityManager(  123): Start proc ..."
+  private static final Pattern TIME_FORMAT_LINE =
+      Pattern.compile("^(\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d{3})\\s+([VDIWEFA])/");
+  // sequence numbers are unique across all stores, so the cursor of a replaced store never skips
+  // entries of the new one
+  private static final AtomicLong sequences = new AtomicLong(1);
+
+  private final int maxEntries;
+  private final File spillFile;
+  // oldest entry first
+  private final ArrayDeque<LogcatEntry> entries = new ArrayDeque<LogcatEntry>();
+  // the year is not part of the log lines, it's prepended before parsing
+  private final SimpleDateFormat timestampFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+  private long lastTimestamp = System.currentTimeMillis();
+  private Writer spill = null;
+  // sequence of the newest entry written to the spill file
+  private long lastSpilled = 0;
+  // the logcat pump can still deliver lines after close, they must not reopen the spill file
+  private boolean closed = false;
+
+  /**
+   * @param maxEntries the number of entries kept in memory
+   * @param spillFile the gzip file dropped entries are written to, or null to discard them
+   */
+  public LogcatStore(int maxEntries, File spillFile) {
+    this.maxEntries = Math.max(1, maxEntries);
+    this.spillFile = spillFile;
+  }
+
+  /**
+   * @return a stream that adds each line written to it to the store, e.g. to pump the output of
+   *         the logcat process into.
+   */
+  public OutputStream newOutputStream() {
+    return new LogOutputStream() {
+      @Override
+      protected void processLine(String line, int level) {
+        add(line);
+      }
+    };
+  }
+
+  public synchronized void add(String line) {
+    if (line.isEmpty()) {
+      return;
+    }
+    Level level = Level.FINE;
+    Matcher matcher = TIME_FORMAT_LINE.matcher(line);
+    if (matcher.find()) {
+      level = toLevel(matcher.group(2).charAt(0));
+      lastTimestamp = parseTimestamp(matcher.group(1));
+    }
+    entries.addLast(new LogcatEntry(sequences.getAndIncrement(), level, lastTimestamp, line));
+    while (entries.size() > maxEntries) {
+      spill(entries.removeFirst());
+    }
+  }
+
+  /**
+   * @return all entries in the store, oldest first
+   */
+  public synchronized List<LogEntry> getEntries() {
+    return new ArrayList<LogEntry>(entries);
+  }
+
+  /**
+   * Reads the entries that were added since the given cursor. Only the new entries are visited.
+   *
+   * @param cursor the cursor returned by the previous read, or 0 to read all entries
+   */
+  public synchronized Page read(long cursor) {
+    List<LogEntry> newEntries = new ArrayList<LogEntry>();
+    Iterator<LogcatEntry> newestFirst = entries.descendingIterator();
+    while (newestFirst.hasNext()) {
+      LogcatEntry entry = newestFirst.next();
+      if (entry.getSequence() < cursor) {
+        break;
+      }
+      newEntries.add(entry);
+    }
+    Collections.reverse(newEntries);
+    long next = entries.isEmpty() ? cursor : Math.max(cursor, entries.getLast().getSequence() + 1);
+    return new Page(newEntries, next);
+  }
+
+  /**
+   * Writes the entries still in memory to the spill file, if there is one, and closes it. The
+   * entries can still be read afterwards, lines added afterwards are only kept in memory.
+   */
+  public synchronized void close() {
+    if (spillFile == null || closed) {
+      return;
+    }
+    for (LogcatEntry entry : entries) {
+      spill(entry);
+    }
+    if (spill != null) {
+      try {
+        spill.close();
+      } catch (IOException e) {
+        log.log(Level.WARNING, "Could not close the device log file " + spillFile, e);
+      }
+      spill = null;
+    }
+    closed = true;
+  }
+
+  private void spill(LogcatEntry entry) {
+    if (spillFile == null || closed || entry.getSequence() <= lastSpilled) {
+      return;
+    }
+    lastSpilled = entry.getSequence();
+    try {
+      if (spill == null) {
+        spill = new BufferedWriter(new OutputStreamWriter(
+            new GZIPOutputStream(new FileOutputStream(spillFile, true)), Charsets.UTF_8));
+      }
+      spill.write(entry.getMessage());
+      spill.write('\n');
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not write to the device log file " + spillFile, e);
+    }
+  }
+
+  private long parseTimestamp(String timestamp) {
+    Calendar now = Calendar.getInstance();
+    try {
+      long parsed = timestampFormat.parse(now.get(Calendar.YEAR) + "-" + timestamp).getTime();
+      // lines logged at the end of last year
+      if (parsed > now.getTimeInMillis() + TimeUnit.DAYS.toMillis(1)) {
+        parsed = timestampFormat.parse((now.get(Calendar.YEAR) - 1) + "-" + timestamp).getTime();
+      }
+      return parsed;
+    } catch (ParseException e) {
+      return lastTimestamp;
+    }
+  }
+
+  static Level toLevel(char priority) {
+    switch (priority) {
+      case 'V':
+        return Level.FINEST;
+      case 'D':
+        return Level.FINE;
+      case 'I':
+        return Level.INFO;
+      case 'W':
+        return Level.WARNING;
+      default:
+        // E, F and A
+        return Level.SEVERE;
+    }
+  }
+
+  /**
+   * An entry of the device log.
+   */
+  public static class LogcatEntry extends LogEntry {
+    private final long sequence;
+
+    LogcatEntry(long sequence, Level level, long timestamp, String message) {
+      super(level, timestamp, message);
+      this.sequence = sequence;
+    }
+
+    public long getSequence() {
+      return sequence;
+    }
+  }
+
+  /**
+   * The result of an incremental read.
+   */
+  public static class Page {
+    private final List<LogEntry> entries;
+    private final long cursor;
+
+    public Page(List<LogEntry> entries, long cursor) {
+      this.entries = entries;
+      this.cursor = cursor;
+    }
+
+    public List<LogEntry> getEntries() {
+      return entries;
+    }
+
+    /**
+     * @return the cursor to pass to the next read
+     */
+    public long getCursor() {
+      return cursor;
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android;
+
+import com.android.ddmlib.RawImage;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Encodes the frame buffer of a device as PNG or JPEG. The pixels are copied from the frame
+ * buffer in bulk and PNGs are written with a configurable, by default fast, compression level.
+ */
+public class ScreenshotEncoder {
+  public static final String PNG = "png";
+  public static final String JPEG = "jpeg";
+  private static final byte[] PNG_SIGNATURE = {(byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+
+  private final String format;
+  private final int quality;
+
+  /**
+   * @param format {@link #PNG} or {@link #JPEG}
+   * @param quality the compression level from 0 to 9 for PNG, the quality from 0 to 100 for JPEG
+   */
+  public ScreenshotEncoder(String format, int quality) {
+    if (!PNG.equals(format) && !JPEG.equals(format)) {
+      throw new IllegalArgumentException("Unsupported screenshot format: " + format);
+    }
+    this.format = format;
+    this.quality = quality;
+  }
+
+  /**
+   * @return a PNG encoder that favors speed over size
+   */
+  public static ScreenshotEncoder fastPng() {
+    return new ScreenshotEncoder(PNG, Deflater.BEST_SPEED);
+  }
+
+  public byte[] encode(RawImage rawImage) throws IOException {
+    BufferedImage image = toImage(rawImage);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(image.getWidth() * image.getHeight());
+    if (PNG.equals(format)) {
+      writePng(image, out);
+    } else {
+      writeJpeg(image, out);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Converts the frame buffer into an RGB image without going through
+   * {@link BufferedImage#setRGB(int, int, int)} for every pixel.
+   */
+  public static BufferedImage toImage(RawImage rawImage) {
+    BufferedImage image =
+        new BufferedImage(rawImage.width, rawImage.height, BufferedImage.TYPE_INT_RGB);
+    int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    byte[] data = rawImage.data;
+    int bytesPerPixel = rawImage.bpp >> 3;
+    if (rawImage.bpp == 32 && isByteAligned(rawImage.red_offset, rawImage.red_length)
+        && isByteAligned(rawImage.green_offset, rawImage.green_length)
+        && isByteAligned(rawImage.blue_offset, rawImage.blue_length)) {
+      // the frame buffer is little endian, so the channel offsets are byte positions
+      int red = rawImage.red_offset >> 3;
+      int green = rawImage.green_offset >> 3;
+      int blue = rawImage.blue_offset >> 3;
+      for (int pixel = 0, index = 0; pixel < pixels.length; pixel++, index += 4) {
+        pixels[pixel] = (data[index + red] & 0xff) << 16 | (data[index + green] & 0xff) << 8
+            | (data[index + blue] & 0xff);
+      }
+    } else {
+      for (int pixel = 0, index = 0; pixel < pixels.length; pixel++, index += bytesPerPixel) {
+        pixels[pixel] = rawImage.getARGB(index);
+      }
+    }
+    return image;
+  }
+
+  private static boolean isByteAligned(int offset, int length) {
+    return length == 8 && offset % 8 == 0;
+  }
+
+  /**
+   * Writes the RGB image as PNG. Unlike ImageIO this allows to choose the compression level.
+   */
+  private void writePng(BufferedImage image, OutputStream out) throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    DataOutputStream png = new DataOutputStream(out);
+    png.write(PNG_SIGNATURE);
+
+    ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+    DataOutputStream headerData = new DataOutputStream(header);
+    headerData.writeInt(width);
+    headerData.writeInt(height);
+    headerData.writeByte(8); // bit depth
+    headerData.writeByte(2); // color type RGB
+    headerData.writeByte(0); // compression method
+    headerData.writeByte(0); // filter method
+    headerData.writeByte(0); // no interlace
+    writeChunk(png, "IHDR", header.toByteArray());
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(width * height);
+    Deflater deflater = new Deflater(Math.max(0, Math.min(9, quality)));
+    DeflaterOutputStream deflated = new DeflaterOutputStream(compressed, deflater, 64 * 1024);
+    byte[] row = new byte[1 + width * 3];
+    for (int y = 0; y < height; y++) {
+      // row[0] is the filter type: none
+      int offset = y * width;
+      for (int x = 0, i = 1; x < width; x++) {
+        int pixel = pixels[offset + x];
+        row[i++] = (byte) (pixel >> 16);
+        row[i++] = (byte) (pixel >> 8);
+        row[i++] = (byte) pixel;
+      }
+      deflated.write(row);
+    }
+    deflated.finish();
+    deflater.end();
+    writeChunk(png, "IDAT", compressed.toByteArray());
+    writeChunk(png, "IEND", new byte[0]);
+    png.flush();
+  }
+
+  private static void writeChunk(DataOutputStream png, String type, byte[] data)
+      throws IOException {
+    byte[] typeBytes = type.getBytes("US-ASCII");
+    CRC32 crc = new CRC32();
+    crc.update(typeBytes);
+    crc.update(data);
+    png.writeInt(data.length);
+    png.write(typeBytes);
+    png.write(data);
+    png.writeInt((int) crc.getValue());
+  }
+
+  private void writeJpeg(BufferedImage image, OutputStream out) throws IOException {
+    Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(JPEG);
+    if (!writers.hasNext()) {
+      throw new IOException("Failed to find jpeg writer");
+    }
+    ImageWriter writer = writers.next();
+    ImageOutputStream imageOut = ImageIO.createImageOutputStream(out);
+    try {
+      writer.setOutput(imageOut);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(Math.max(0, Math.min(100, quality)) / 100f);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+      imageOut.close();
+    }
+  }
+}
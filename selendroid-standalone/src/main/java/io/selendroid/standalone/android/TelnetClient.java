@@ -15,10 +15,16 @@ package io.selendroid.standalone.android;
 
 import io.selendroid.standalone.exceptions.AndroidDeviceException;
 
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,20 +40,69 @@ public class TelnetClient {
       out = new PrintWriter(socket.getOutputStream(), true);
       in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
 
+      boolean authenticationRequired = false;
       while (true) {
         String line = in.readLine();
         if (line == null) {
           throw new AndroidDeviceException("Cannot establish a connection to device. Error reading from socket.");
         }
+        authenticationRequired |= line.contains("Authentication required");
         if (line.equals("OK")) {
           break;
         }
       }
+      if (authenticationRequired) {
+        authenticate();
+      }
     } catch (Exception e) {
       throw new AndroidDeviceException("Cannot establish a connection to device.", e);
     }
   }
 
+  /**
+   * Newer emulators only accept console commands after authenticating with the token the
+   * emulator stores in the home directory of the user.
+   */
+  private void authenticate() throws Exception {
+    File tokenFile = new File(System.getProperty("user.home"), ".emulator_console_auth_token");
+    if (!tokenFile.isFile()) {
+      log.warning("The emulator console requires authentication but " + tokenFile
+          + " does not exist.");
+      return;
+    }
+    execute("auth " + Files.toString(tokenFile, Charsets.UTF_8).trim());
+  }
+
+  /**
+   * Sends the command and reads its reply up to the final status line.
+   *
+   * @return the lines of the reply before the status line.
+   * @throws AndroidDeviceException if the emulator reports that the command failed.
+   */
+  public List<String> execute(String command) throws AndroidDeviceException {
+    sendQuietly(command);
+    List<String> reply = new ArrayList<String>();
+    try {
+      while (true) {
+        String line = in.readLine();
+        if (line == null) {
+          throw new AndroidDeviceException("Connection closed while executing '" + command + "'");
+        }
+        if (line.startsWith("OK")) {
+          return reply;
+        }
+        if (line.startsWith("KO")) {
+          throw new AndroidDeviceException("Command '" + command + "' failed: " + line);
+        }
+        reply.add(line);
+      }
+    } catch (AndroidDeviceException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new AndroidDeviceException("Error reading response for command '" + command + "'", e);
+    }
+  }
+
   public String sendCommand(String command) {
     try {
       sendQuietly(command);
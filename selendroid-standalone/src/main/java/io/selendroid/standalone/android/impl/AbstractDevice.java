@@ -14,12 +14,16 @@
 package io.selendroid.standalone.android.impl;
 
 import com.android.ddmlib.AdbCommandRejectedException;
+import com.android.ddmlib.CollectingOutputReceiver;
 import com.android.ddmlib.IDevice;
 import com.android.ddmlib.RawImage;
 import com.android.ddmlib.TimeoutException;
+import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.ObjectArrays;
+import com.google.common.collect.Sets;
 import io.selendroid.common.SelendroidCapabilities;
 import io.selendroid.server.common.exceptions.SelendroidException;
 import io.selendroid.server.common.model.ExternalStorageFile;
@@ -28,6 +32,8 @@ import io.selendroid.standalone.android.AndroidApp;
 import io.selendroid.standalone.android.AndroidDevice;
 import io.selendroid.standalone.android.AndroidSdk;
 import io.selendroid.standalone.android.InstrumentationProcessListener;
+import io.selendroid.standalone.android.LogcatStore;
+import io.selendroid.standalone.android.ScreenshotEncoder;
 import io.selendroid.standalone.exceptions.AndroidDeviceException;
 import io.selendroid.standalone.exceptions.AndroidSdkException;
 import io.selendroid.standalone.exceptions.ShellCommandException;
@@ -44,13 +50,15 @@ import org.openqa.selenium.logging.LogEntry;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -64,11 +72,30 @@ public abstract class AbstractDevice implements AndroidDevice {
   protected String model = null;
   protected String apiTargetType = "android";
   protected IDevice device;
-  private ByteArrayOutputStream logoutput;
+  private volatile LogcatStore logcat;
+  private int maxLogEntries = LogcatStore.DEFAULT_MAX_ENTRIES;
+  private File logSpillDirectory = null;
+  private volatile ScreenshotEncoder screenshotEncoder = ScreenshotEncoder.fastPng();
   private ExecuteWatchdog logcatWatchdog;
   private static final Integer COMMAND_TIMEOUT = 20000;
+  // fingerprints of the installed APKs are recorded next to the apps on the device
+  private static final String FINGERPRINT_DIR = "/data/local/tmp/";
+  private static final String FINGERPRINT_SUFFIX = ".selendroid-sha256";
+  private static final Pattern GETPROP_LINE = Pattern.compile("^\\[(.+?)\\]: \\[(.*)\\]$");
+  // adb commands that may install or uninstall packages
+  private static final Pattern PACKAGE_COMMAND =
+      Pattern.compile("^(install\\S*|uninstall|shell\\s+pm)(\\s.*)?$");
   private boolean loggingEnabled = true;
-  private final List<InstrumentationProcessListener> instrumentationProcessListeners = new ArrayList();
+  private final List<InstrumentationProcessListener> instrumentationProcessListeners =
+      new CopyOnWriteArrayList<InstrumentationProcessListener>();
+
+  // Properties that don't change while the device is up. Cleared by #invalidateDeviceProperties
+  // when the device reboots or goes away.
+  private volatile Map<String, String> deviceProperties = null;
+  private volatile String externalStoragePath = null;
+  private volatile Set<String> installedPackages = null;
+  // package -> fingerprint of the installed APK as recorded on the device
+  private final Map<String, String> installedFingerprints = new ConcurrentHashMap<String, String>();
 
   // Port that we forward locally to the device
   protected int localPort;
@@ -112,12 +139,16 @@ public abstract class AbstractDevice implements AndroidDevice {
     instrumentationProcessListeners.add(listener);
   }
 
+  public void removeInstrumentationProcessListener(
+    InstrumentationProcessListener listener) {
+    instrumentationProcessListeners.remove(listener);
+  }
+
   @Override
   public boolean isDeviceReady() {
-    CommandLine command = adbCommand("shell", "getprop init.svc.bootanim");
     String bootAnimDisplayed = null;
     try {
-      bootAnimDisplayed = ShellCommand.exec(command);
+      bootAnimDisplayed = executeShellCommand("getprop init.svc.bootanim");
     } catch (ShellCommandException e) {
       log.log(Level.INFO, "Could not get property init.svc.bootanim", e);
     }
@@ -126,15 +157,33 @@ public abstract class AbstractDevice implements AndroidDevice {
 
   @Override
   public boolean isInstalled(String appBasePackage) throws AndroidSdkException {
-    CommandLine command = adbCommand("shell", "pm", "list", "packages");
+    Set<String> packages = installedPackages;
+    if (packages == null) {
+      packages = loadInstalledPackages();
+      if (packages == null) {
+        return false;
+      }
+      installedPackages = packages;
+    }
+    return packages.contains(appBasePackage);
+  }
 
-    command.addArgument(appBasePackage, false);
-    String result = null;
+  private Set<String> loadInstalledPackages() {
+    String result;
     try {
-      result = ShellCommand.exec(command);
-    } catch (ShellCommandException e) {}
+      result = executeShellCommand("pm", "list", "packages");
+    } catch (ShellCommandException e) {
+      return null;
+    }
 
-    return result != null && result.contains("package:" + appBasePackage);
+    Set<String> packages = Sets.newConcurrentHashSet();
+    for (String line : result.split("\\r?\\n")) {
+      line = line.trim();
+      if (line.startsWith("package:")) {
+        packages.add(line.substring("package:".length()));
+      }
+    }
+    return packages;
   }
 
   @Override
@@ -143,25 +192,63 @@ public abstract class AbstractDevice implements AndroidDevice {
   }
 
   @Override
-  public void install(AndroidApp app) throws AndroidSdkException {
-    // Uninstall if already installed
-    if (isInstalled(app)) {
-      uninstall(app);
+  public boolean isInstalledAndUpToDate(AndroidApp app) throws AndroidSdkException {
+    if (!isInstalled(app)) {
+      return false;
+    }
+    String fingerprint = ApkFingerprints.of(app.getAbsolutePath());
+    return fingerprint != null && fingerprint.equals(getInstalledFingerprint(app.getBasePackage()));
+  }
+
+  /**
+   * @return the fingerprint recorded on the device when selendroid installed the package, or an
+   *         empty string if the package was not installed by selendroid.
+   */
+  private String getInstalledFingerprint(String appBasePackage) {
+    String fingerprint = installedFingerprints.get(appBasePackage);
+    if (fingerprint == null) {
+      fingerprint = executeShellCommandQuietly(
+          "cat " + FINGERPRINT_DIR + appBasePackage + FINGERPRINT_SUFFIX + " 2>/dev/null").trim();
+      installedFingerprints.put(appBasePackage, fingerprint);
     }
+    return fingerprint;
+  }
+
+  @Override
+  public void install(AndroidApp app) throws AndroidSdkException {
     // -r: replace existing application
     // -d: allow version code downgrade
     CommandLine command = adbCommand("install", "-r", "-d", app.getAbsolutePath());
 
     String out = executeCommandQuietly(command, COMMAND_TIMEOUT * 6);
-    try {
-      // give it a second to recover from the install
-      Thread.sleep(1000);
-    } catch (InterruptedException ie) {
-      throw new RuntimeException(ie);
+    if (out.contains("INSTALL_FAILED_UPDATE_INCOMPATIBLE")
+        || out.contains("INSTALL_FAILED_ALREADY_EXISTS")
+        || out.contains("INCONSISTENT_CERTIFICATES")) {
+      // the installed app is signed with another key and has to go first
+      uninstall(app);
+      out = executeCommandQuietly(command, COMMAND_TIMEOUT * 6);
     }
     if (!out.contains("Success")) {
+      installedPackages = null;
+      installedFingerprints.remove(app.getBasePackage());
       throw new AndroidSdkException("APK installation failed. Output:\n" + out);
     }
+    Set<String> packages = installedPackages;
+    if (packages != null) {
+      packages.add(app.getBasePackage());
+    }
+    recordInstalledFingerprint(app);
+  }
+
+  private void recordInstalledFingerprint(AndroidApp app) throws AndroidSdkException {
+    String fingerprint = ApkFingerprints.of(app.getAbsolutePath());
+    if (fingerprint == null) {
+      installedFingerprints.remove(app.getBasePackage());
+      return;
+    }
+    executeShellCommandQuietly("echo " + fingerprint + " > " + FINGERPRINT_DIR
+        + app.getBasePackage() + FINGERPRINT_SUFFIX);
+    installedFingerprints.put(app.getBasePackage(), fingerprint);
   }
 
   public boolean start(AndroidApp app) throws AndroidSdkException {
@@ -170,11 +257,8 @@ public abstract class AbstractDevice implements AndroidDevice {
     }
 
     String mainActivity = app.getMainActivity().replace(app.getBasePackage(), "");
-    CommandLine command =
-        adbCommand("shell", "am", "start", "-a", "android.intent.action.MAIN", "-n",
-            app.getBasePackage() + "/" + mainActivity);
-
-    String out = executeCommandQuietly(command);
+    String out = executeShellCommandQuietly("am", "start", "-a", "android.intent.action.MAIN",
+        "-n", app.getBasePackage() + "/" + mainActivity);
     try {
       // give it a second to recover from the activity start
       Thread.sleep(1000);
@@ -184,13 +268,46 @@ public abstract class AbstractDevice implements AndroidDevice {
     return out.contains("Starting: Intent");
   }
 
+  /**
+   * Runs a command in the shell of the device. Once ddmlib is connected to the device the command
+   * is sent over the connection to the adb server instead of forking an adb process for it.
+   */
+  protected String executeShellCommand(String... args) throws ShellCommandException {
+    IDevice iDevice = device;
+    if (iDevice == null || !iDevice.isOnline()) {
+      return executeCommand(adbCommand(ObjectArrays.concat("shell", args)), COMMAND_TIMEOUT);
+    }
+    String command = Joiner.on(' ').join(args);
+    CollectingOutputReceiver output = new CollectingOutputReceiver();
+    try {
+      iDevice.executeShellCommand(command, output, COMMAND_TIMEOUT, TimeUnit.MILLISECONDS);
+    } catch (Exception e) {
+      throw new ShellCommandException("Could not execute shell command: " + command, e);
+    }
+    return output.getOutput();
+  }
+
+  protected String executeShellCommandQuietly(String... args) {
+    try {
+      return executeShellCommand(args);
+    } catch (ShellCommandException e) {
+      log.log(Level.WARNING, "Could not execute shell command: " + Joiner.on(' ').join(args), e);
+      return "";
+    }
+  }
+
   protected String executeCommandQuietly(CommandLine command) {
     return executeCommandQuietly(command, COMMAND_TIMEOUT);
   }
 
+  protected String executeCommand(CommandLine command, long timeout)
+      throws ShellCommandException {
+    return ShellCommand.exec(command, timeout);
+  }
+
   protected String executeCommandQuietly(CommandLine command, long timeout) {
     try {
-      return ShellCommand.exec(command, timeout);
+      return executeCommand(command, timeout);
     } catch (ShellCommandException e) {
       String logMessage = String.format("Could not execute command: %s", command);
       log.log(Level.WARNING, logMessage, e);
@@ -203,6 +320,13 @@ public abstract class AbstractDevice implements AndroidDevice {
     CommandLine command = adbCommand("uninstall", app.getBasePackage());
 
     executeCommandQuietly(command);
+    executeShellCommandQuietly("rm -f " + FINGERPRINT_DIR + app.getBasePackage()
+        + FINGERPRINT_SUFFIX);
+    installedFingerprints.remove(app.getBasePackage());
+    Set<String> packages = installedPackages;
+    if (packages != null) {
+      packages.remove(app.getBasePackage());
+    }
     try {
       // give it a second to recover from the uninstall
       Thread.sleep(1000);
@@ -213,15 +337,13 @@ public abstract class AbstractDevice implements AndroidDevice {
 
   @Override
   public void clearUserData(AndroidApp app) throws AndroidSdkException {
-    CommandLine command = adbCommand("shell", "pm", "clear", app.getBasePackage());
-    executeCommandQuietly(command);
+    executeShellCommandQuietly("pm", "clear", app.getBasePackage());
   }
 
   @Override
   public void kill(AndroidApp aut) throws AndroidDeviceException, AndroidSdkException {
     try {
-      CommandLine command = adbCommand("shell", "am", "force-stop", aut.getBasePackage());
-      executeCommandQuietly(command);
+      executeShellCommandQuietly("am", "force-stop", aut.getBasePackage());
     } finally {
       killProcesses(aut.getBasePackage());
       freeSelendroidPort();
@@ -231,29 +353,34 @@ public abstract class AbstractDevice implements AndroidDevice {
       logcatWatchdog.destroyProcess();
       logcatWatchdog = null;
     }
+    LogcatStore store = logcat;
+    if (store != null) {
+      store.close();
+    }
   }
 
   private void killProcesses(String packageName) {
-    CommandLine command = adbCommand("shell", "ps");
-    String processes = "";
-    try {
-      processes = ShellCommand.exec(command);
-    } catch (ShellCommandException e) {
-      String logMessage = String.format("Could not execute command: %s", command);
-      log.log(Level.WARNING, logMessage, e);
-    }
+    String processes = executeShellCommandQuietly("ps");
 
     for (String process: processes.split("\\r\\n|\\r|\\n")) {
       if (process.endsWith(packageName)) {
         String pid = process.split("\\s+")[1];
-        command = adbCommand("shell", "run-as", packageName, "kill", pid);
-        executeCommandQuietly(command);
+        executeShellCommandQuietly("run-as", packageName, "kill", pid);
       }
     }
   }
 
   private void freeSelendroidPort() {
-  CommandLine command = adbCommand("forward", "--remove", "tcp:" + localPort);
+    IDevice iDevice = device;
+    if (iDevice != null && iDevice.isOnline()) {
+      try {
+        iDevice.removeForward(localPort, remotePort);
+        return;
+      } catch (Exception e) {
+        log.log(Level.FINE, "Could not free Selendroid port via ddmlib", e);
+      }
+    }
+    CommandLine command = adbCommand("forward", "--remove", "tcp:" + localPort);
     try {
       ShellCommand.exec(command, 20000);
     } catch (ShellCommandException e) {
@@ -277,6 +404,9 @@ public abstract class AbstractDevice implements AndroidDevice {
         "-e", "timeout_msec", "0", // No timeout for the looper thread
         "-e", "disableAnalytics", "true")); // AndroidJUnitRunner sends things to Google Analytics by default
     }
+    if (capabilities.getServerKeepAlive()) {
+      argList.addAll(Lists.newArrayList("-e", SelendroidArguments.KEEP_ALIVE, "true"));
+    }
     if (capabilities.getSelendroidExtensions() != null) {
       argList.addAll(Lists.newArrayList("-e", SelendroidArguments.LOAD_EXTENSIONS, "true"));
       if (capabilities.getBootstrapClassNames() != null) {
@@ -324,6 +454,16 @@ public abstract class AbstractDevice implements AndroidDevice {
   }
 
   public int forwardPort(int local, int remote) {
+    IDevice iDevice = device;
+    // only adb itself can pick a free local port
+    if (local != 0 && iDevice != null && iDevice.isOnline()) {
+      try {
+        iDevice.createForward(local, remote);
+        return local;
+      } catch (Exception e) {
+        log.log(Level.FINE, "Could not forward port via ddmlib", e);
+      }
+    }
     CommandLine command = adbCommand("forward", "tcp:" + local, "tcp:" + remote);
     try {
       String portStr = ShellCommand.exec(command);
@@ -371,7 +511,21 @@ public abstract class AbstractDevice implements AndroidDevice {
       return false;
     }
 
-    return statusCode == 200 && responseValue.contains("selendroid");
+    if (statusCode != 200 || !responseValue.contains("selendroid")) {
+      return false;
+    }
+    // the server starts responding before the app under test is launched, servers that don't
+    // report readiness are considered to be ready
+    try {
+      JSONObject value = new JSONObject(responseValue).optJSONObject("value");
+      if (value != null && !value.optBoolean("ready", true)) {
+        log.info("Selendroid server is running but not ready yet");
+        return false;
+      }
+    } catch (JSONException e) {
+      log.log(Level.INFO, "Cannot parse the status of selendroid-server", e);
+    }
+    return true;
   }
 
   @Override
@@ -381,25 +535,26 @@ public abstract class AbstractDevice implements AndroidDevice {
 
   @Override
   public List<LogEntry> getLogs() {
-    List<LogEntry> logs = Lists.newArrayList();
-    String result = logoutput != null ? logoutput.toString() : "";
-    String[] lines = result.split("\\r?\\n");
-    log.fine("getting logcat");
-    for (String line : lines) {
-      Level l;
-      if (line.startsWith("I")) {
-        l = Level.INFO;
-      } else if (line.startsWith("W")) {
-        l = Level.WARNING;
-      } else if (line.startsWith("S")) {
-        l = Level.SEVERE;
-      } else {
-        l = Level.FINE;
-      }
-      logs.add(new LogEntry(l, System.currentTimeMillis(), line));
-      log.fine(line);
+    LogcatStore store = logcat;
+    if (store == null) {
+      return Lists.newArrayList();
+    }
+    return store.getEntries();
+  }
+
+  @Override
+  public LogcatStore.Page getLogs(long cursor) {
+    LogcatStore store = logcat;
+    if (store == null) {
+      return new LogcatStore.Page(Lists.<LogEntry>newArrayList(), cursor);
     }
-    return logs;
+    return store.read(cursor);
+  }
+
+  @Override
+  public void setLogLimits(int maxEntries, File spillDirectory) {
+    this.maxLogEntries = maxEntries;
+    this.logSpillDirectory = spillDirectory;
   }
 
   @Override
@@ -413,9 +568,16 @@ public abstract class AbstractDevice implements AndroidDevice {
   }
 
   private void startLogging() {
-    logoutput = new ByteArrayOutputStream();
+    File spillFile = null;
+    if (logSpillDirectory != null) {
+      logSpillDirectory.mkdirs();
+      spillFile = new File(logSpillDirectory, "logcat-" + String.valueOf(serial).replaceAll("[^\\w.-]", "_") + "-"
+          + System.currentTimeMillis() + ".txt.gz");
+    }
+    LogcatStore store = new LogcatStore(maxLogEntries, spillFile);
+    logcat = store;
     DefaultExecutor exec = new DefaultExecutor();
-    exec.setStreamHandler(new PumpStreamHandler(logoutput));
+    exec.setStreamHandler(new PumpStreamHandler(store.newOutputStream()));
     CommandLine command = adbCommand("logcat", "ResourceType:S", "dalvikvm:S", "Trace:S", "SurfaceFlinger:S",
         "StrictMode:S", "ExchangeService:S", "SVGAndroid:S", "skia:S", "LoaderManager:S", "ActivityThread:S", "-v", "time");
     log.info("starting logcat:");
@@ -430,12 +592,69 @@ public abstract class AbstractDevice implements AndroidDevice {
   }
 
   protected String getProp(String key) {
-    CommandLine command = adbCommand("shell", "getprop", key);
-    String prop = executeCommandQuietly(command);
+    Map<String, String> properties = getDeviceProperties();
+    if (!properties.isEmpty()) {
+      String prop = properties.get(key);
+      return prop == null ? "" : prop;
+    }
+
+    String prop = executeShellCommandQuietly("getprop", key);
 
     return prop == null ? "" : prop.replace("\r", "").replace("\n", "");
   }
 
+  /**
+   * Returns all system properties of the device. They are read with a single 'adb shell getprop'
+   * the first time they are needed and cached until {@link #invalidateDeviceProperties()} is called.
+   *
+   * @return the cached properties, or an empty map if they could not be read
+   */
+  protected Map<String, String> getDeviceProperties() {
+    Map<String, String> properties = deviceProperties;
+    if (properties == null) {
+      properties = loadDeviceProperties();
+      // don't cache a failed read, the device may not be ready yet
+      if (!properties.isEmpty()) {
+        deviceProperties = properties;
+      }
+    }
+    return properties;
+  }
+
+  private Map<String, String> loadDeviceProperties() {
+    String output = executeShellCommandQuietly("getprop");
+    Map<String, String> properties = Maps.newHashMap();
+    if (output == null) {
+      return properties;
+    }
+    for (String line : output.split("\\r?\\n")) {
+      Matcher matcher = GETPROP_LINE.matcher(line.trim());
+      if (matcher.matches()) {
+        properties.put(matcher.group(1), matcher.group(2));
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * Reads and caches the device properties, e.g. as soon as the device got connected.
+   */
+  public void refreshDeviceProperties() {
+    invalidateDeviceProperties();
+    getDeviceProperties();
+  }
+
+  /**
+   * Drops all cached device properties. Has to be called when the device was rebooted or
+   * disconnected.
+   */
+  public void invalidateDeviceProperties() {
+    deviceProperties = null;
+    externalStoragePath = null;
+    installedPackages = null;
+    installedFingerprints.clear();
+  }
+
   protected static String extractValue(String regex, String output) {
     Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
     Matcher matcher = pattern.matcher(output);
@@ -468,6 +687,13 @@ public abstract class AbstractDevice implements AndroidDevice {
       return null;
     }
     log.fine("running command: adb " + parameter);
+    if (PACKAGE_COMMAND.matcher(parameter).matches()) {
+      installedPackages = null;
+      installedFingerprints.clear();
+    }
+    if (parameter.startsWith("shell ")) {
+      return executeShellCommandQuietly(parameter.substring("shell ".length()).trim()).trim();
+    }
     CommandLine command = adbCommand();
 
     String[] params = parameter.split(" ");
@@ -499,46 +725,17 @@ public abstract class AbstractDevice implements AndroidDevice {
     // device/adb not available?
     if (rawImage == null) return null;
 
-    BufferedImage image =
-        new BufferedImage(rawImage.width, rawImage.height, BufferedImage.TYPE_3BYTE_BGR);
-
-    int index = 0;
-    int IndexInc = rawImage.bpp >> 3;
-    for (int y = 0; y < rawImage.height; y++) {
-      for (int x = 0; x < rawImage.width; x++) {
-        image.setRGB(x, y, rawImage.getARGB(index));
-        index += IndexInc;
-      }
-    }
-    return toByteArray(image);
-  }
-
-  protected byte[] toByteArray(BufferedImage image) throws AndroidDeviceException {
-    ByteArrayOutputStream stream = new ByteArrayOutputStream();
-
     try {
-      if (!ImageIO.write(image, "png", stream)) {
-        throw new IOException("Failed to find png writer");
-      }
+      return screenshotEncoder.encode(rawImage);
     } catch (IOException e) {
       log.log(Level.SEVERE, "Cannot take screenshot", e);
       throw new AndroidDeviceException(e.getMessage());
     }
-    byte[] raw = null;
-    try {
-      stream.flush();
-      raw = stream.toByteArray();
-      stream.close();
-    } catch (IOException e) {
-      throw new RuntimeException("I/O Error while capturing screenshot: " + e.getMessage());
-    } finally {
-      try {
-        stream.close();
-      } catch (IOException ioe) {
-        // ignore
-      }
-    }
-    return raw;
+  }
+
+  @Override
+  public void setScreenshotEncoder(ScreenshotEncoder screenshotEncoder) {
+    this.screenshotEncoder = screenshotEncoder;
   }
 
   /**
@@ -550,13 +747,13 @@ public abstract class AbstractDevice implements AndroidDevice {
    * @param value - Key to be sent to 'adb shell input keyevent'
    */
   public void inputKeyevent(int value) {
-    executeCommandQuietly(adbCommand("shell", "input", "keyevent", "" + value));
+    executeShellCommandQuietly("input", "keyevent", "" + value);
     // need to wait a beat for the UI to respond
     sleep(500);
   }
 
   public void invokeActivity(String activity) {
-    executeCommandQuietly(adbCommand("shell", "am", "start", "-a", activity));
+    executeShellCommandQuietly("am", "start", "-a", activity);
     // need to wait a beat for the UI to respond
     sleep(500);
   }
@@ -590,7 +787,12 @@ public abstract class AbstractDevice implements AndroidDevice {
   }
 
   public String getExternalStoragePath() {
-    return runAdbCommand("shell echo $EXTERNAL_STORAGE");
+    String path = externalStoragePath;
+    if (path == null || path.isEmpty()) {
+      path = executeShellCommandQuietly("echo", "$EXTERNAL_STORAGE").trim();
+      externalStoragePath = path;
+    }
+    return path;
   }
 
   /** {@inheritdoc} */
@@ -602,9 +804,9 @@ public abstract class AbstractDevice implements AndroidDevice {
     if (!crashLogDirPath.endsWith("/")) {
       crashLogDirPath += "/";  // Make sure it ends with '/' so we're listing directory contents.
     }
-    String directoryList = executeCommandQuietly(adbCommand("shell", "ls", crashLogDirPath));
+    String directoryList = executeShellCommandQuietly("ls", crashLogDirPath);
     if (directoryList.contains(crashLogFileName)) {
-      return executeCommandQuietly(adbCommand("shell", "cat", crashLogDirPath + crashLogFileName));
+      return executeShellCommandQuietly("cat", crashLogDirPath + crashLogFileName);
     }
 
     return "";
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import io.selendroid.standalone.android.AndroidSdk;
+import io.selendroid.standalone.exceptions.AndroidSdkException;
+import io.selendroid.standalone.exceptions.ShellCommandException;
+import io.selendroid.standalone.io.ShellCommand;
+
+import java.io.File;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.exec.CommandLine;
+
+/**
+ * The details of an APK selendroid needs, extracted from a single {@code aapt dump badging} call.
+ * Values that are not part of the badging output are null.
+ */
+public final class ApkDetails {
+  private static final Pattern BASE_PACKAGE = Pattern.compile("package: name='(.*?)'");
+  private static final Pattern MAIN_ACTIVITY = Pattern.compile("launchable-activity: name='(.*?)'");
+  private static final Pattern VERSION_NAME = Pattern.compile("versionName='(.*?)'");
+
+  private final String basePackage;
+  private final String mainActivity;
+  private final String versionName;
+
+  public ApkDetails(String basePackage, String mainActivity, String versionName) {
+    this.basePackage = basePackage;
+    this.mainActivity = mainActivity;
+    this.versionName = versionName;
+  }
+
+  public static ApkDetails read(File apkFile) throws ShellCommandException, AndroidSdkException {
+    CommandLine line = new CommandLine(AndroidSdk.aapt());
+
+    line.addArgument("dump", false);
+    line.addArgument("badging", false);
+    line.addArgument(apkFile.getAbsolutePath(), false);
+    return parse(ShellCommand.exec(line, 20000));
+  }
+
+  /**
+   * @param badging the output of {@code aapt dump badging}
+   */
+  public static ApkDetails parse(String badging) {
+    return new ApkDetails(find(BASE_PACKAGE, badging), find(MAIN_ACTIVITY, badging),
+        find(VERSION_NAME, badging));
+  }
+
+  private static String find(Pattern pattern, String badging) {
+    Matcher matcher = pattern.matcher(badging);
+    return matcher.find() ? matcher.group(1) : null;
+  }
+
+  public String getBasePackage() {
+    return basePackage;
+  }
+
+  public String getMainActivity() {
+    return mainActivity;
+  }
+
+  public String getVersionName() {
+    return versionName;
+  }
+}
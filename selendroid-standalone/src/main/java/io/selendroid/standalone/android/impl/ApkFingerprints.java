@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import io.selendroid.standalone.builder.ApkCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * SHA-256 fingerprints of APK files. A fingerprint is only computed again when the file has been
+ * modified, so checking whether a device runs the current build of an app is cheap.
+ */
+class ApkFingerprints {
+  private static final Logger log = Logger.getLogger(ApkFingerprints.class.getName());
+  // absolute path -> fingerprint of the file as it was when the fingerprint was computed
+  private static final Map<String, Fingerprint> fingerprints =
+      new ConcurrentHashMap<String, Fingerprint>();
+
+  private ApkFingerprints() {}
+
+  /**
+   * @return the SHA-256 of the file or null if the file can't be read.
+   */
+  static String of(String path) {
+    if (path == null) {
+      return null;
+    }
+    File apk = new File(path);
+    if (!apk.isFile()) {
+      return null;
+    }
+    Fingerprint fingerprint = fingerprints.get(path);
+    if (fingerprint != null && fingerprint.length == apk.length()
+        && fingerprint.lastModified == apk.lastModified()) {
+      return fingerprint.sha256;
+    }
+    try {
+      fingerprint = new Fingerprint(apk.length(), apk.lastModified(), ApkCache.sha256(apk));
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not compute the fingerprint of " + path, e);
+      return null;
+    }
+    fingerprints.put(path, fingerprint);
+    return fingerprint.sha256;
+  }
+
+  private static class Fingerprint {
+    private final long length;
+    private final long lastModified;
+    private final String sha256;
+
+    Fingerprint(long length, long lastModified, String sha256) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.sha256 = sha256;
+    }
+  }
+}
@@ -21,37 +21,32 @@ import io.selendroid.standalone.exceptions.ShellCommandException;
 import io.selendroid.standalone.io.ShellCommand;
 
 import java.io.File;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.commons.exec.CommandLine;
 
 
 public class DefaultAndroidApp implements AndroidApp {
   private File apkFile;
-  private String mainPackage = null;
+  private ApkDetails details = null;
   protected String mainActivity = null;
-  private String versionName = null;
 
   public DefaultAndroidApp(File apkFile) {
     this.apkFile = apkFile;
   }
 
-  private String extractApkDetails(String regex) throws ShellCommandException, AndroidSdkException {
-    CommandLine line = new CommandLine(AndroidSdk.aapt());
-
-    line.addArgument("dump", false);
-    line.addArgument("badging", false);
-    line.addArgument(apkFile.getAbsolutePath(), false);
-    String output = ShellCommand.exec(line, 20000);
-
-    Pattern pattern = Pattern.compile(regex);
-    Matcher matcher = pattern.matcher(output);
-    if (matcher.find()) {
-      return matcher.group(1);
+  /**
+   * Reads all details of the apk with a single aapt call the first time one of them is needed.
+   */
+  private synchronized ApkDetails getDetails(String detail) throws AndroidSdkException {
+    if (details == null) {
+      try {
+        details = ApkDetails.read(apkFile);
+      } catch (ShellCommandException e) {
+        throw new SelendroidException("The " + detail + " of the apk " + apkFile.getName()
+            + " cannot be extracted.");
+      }
     }
-
-    return null;
+    return details;
   }
 
   /*
@@ -61,16 +56,7 @@ public class DefaultAndroidApp implements AndroidApp {
    */
   @Override
   public String getBasePackage() throws AndroidSdkException {
-    if (mainPackage == null) {
-      try {
-        mainPackage = extractApkDetails("package: name='(.*?)'");
-      } catch (ShellCommandException e) {
-        throw new SelendroidException("The base package name of the apk " + apkFile.getName()
-            + " cannot be extracted.");
-      }
-
-    }
-    return mainPackage;
+    return getDetails("base package name").getBasePackage();
   }
 
   /*
@@ -81,12 +67,7 @@ public class DefaultAndroidApp implements AndroidApp {
   @Override
   public String getMainActivity() throws AndroidSdkException {
     if (mainActivity == null) {
-      try {
-        mainActivity = extractApkDetails("launchable-activity: name='(.*?)'");
-      } catch (ShellCommandException e) {
-        throw new SelendroidException("The main activity of the apk " + apkFile.getName()
-            + " cannot be extracted.");
-      }
+      mainActivity = getDetails("main activity").getMainActivity();
     }
     return mainActivity;
   }
@@ -124,15 +105,7 @@ public class DefaultAndroidApp implements AndroidApp {
 
   @Override
   public String getVersionName() throws AndroidSdkException {
-    if (versionName == null) {
-      try {
-        versionName = extractApkDetails("versionName='(.*?)'");
-      } catch (ShellCommandException e) {
-        throw new SelendroidException("The versionName of the apk " + apkFile.getName()
-            + " cannot be extracted.");
-      }
-    }
-    return versionName;
+    return getDetails("versionName").getVersionName();
   }
 
   public String getAppId() throws AndroidSdkException {
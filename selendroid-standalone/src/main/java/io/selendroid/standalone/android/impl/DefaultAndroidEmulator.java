@@ -24,6 +24,7 @@ import org.openqa.selenium.Dimension;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -45,6 +46,8 @@ import io.selendroid.standalone.io.ShellCommand;
 
 public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmulator {
   private static final String EMULATOR_SERIAL_PREFIX = "emulator-";
+  // time after which adb is restarted if it still doesn't list a booting emulator
+  static final long ADB_RESET_DELAY = 10000;
   private static final Logger log = Logger.getLogger(DefaultAndroidEmulator.class.getName());
   public static final String ANDROID_EMULATOR_HARDWARE_CONFIG = "hardware-qemu.ini";
   public static final String FILE_LOCKING_SUFIX = ".lock";
@@ -68,6 +71,8 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
   private File avdRootFolder;
   private Locale locale = null;
   private boolean wasStartedBySelendroid;
+  // the snapshot the emulator has been started from, if any
+  private String snapshot = null;
   private static final int SDK_VERSION_FOR_AVD_MANAGER = 25;
 
   protected DefaultAndroidEmulator() {
@@ -258,12 +263,84 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
   @Override
   public void start(Locale locale, int emulatorPort, Map<String, Object> options)
       throws AndroidDeviceException {
+    long start = System.currentTimeMillis();
+    long timeoutEnd = start + launch(locale, emulatorPort, options);
+    Boolean adbKillServerAttempted = false;
+
+    // Without this one seconds, the call to "isDeviceReady" is
+    // too quickly sent while the emulator is still starting and
+    // not ready to receive any commands. Because of this the
+    // while loops failed and sometimes hung in isDeviceReady function.
+    try {
+      Thread.sleep(1000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    while (!isDeviceReady()) {
+      if (!adbKillServerAttempted && System.currentTimeMillis() - start > ADB_RESET_DELAY) {
+        resetAdbIfEmulatorIsMissing();
+        adbKillServerAttempted = true;
+      }
+      if (timeoutEnd >= System.currentTimeMillis()) {
+        try {
+          // booting from a snapshot only takes a few seconds
+          Thread.sleep(snapshot != null ? 500 : 2000);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      } else {
+        throw new AndroidDeviceException("The emulator with avd '" + getAvdName()
+            + "' was not started after " + (System.currentTimeMillis() - start) / 1000
+            + " seconds.");
+      }
+    }
+
+    log.info("Emulator start took: " + (System.currentTimeMillis() - start) / 1000 + " seconds");
+    log.info("Please have in mind, starting an emulator takes usually about 45 seconds.");
+    completeStart();
+  }
+
+  /**
+   * Restarts the adb server if it does not list the booting emulator. Sometimes adb does not pick
+   * up emulators that are started, which would let the boot run into its timeout.
+   */
+  void resetAdbIfEmulatorIsMissing() {
+    CommandLine adbDevicesCmd = new CommandLine(AndroidSdk.adb());
+    adbDevicesCmd.addArgument("devices", false);
+
+    String devices = "";
+    try {
+      devices = ShellCommand.exec(adbDevicesCmd, 20000);
+    } catch (ShellCommandException e) {
+      // pass
+    }
+    if (!devices.contains(String.valueOf(getPort()))) {
+      CommandLine resetAdb = new CommandLine(AndroidSdk.adb());
+      resetAdb.addArgument("kill-server", false);
+
+      try {
+        ShellCommand.exec(resetAdb, 20000);
+      } catch (ShellCommandException e) {
+        throw new SelendroidException("unable to kill the adb server");
+      }
+    }
+  }
+
+  /**
+   * Starts the emulator process without waiting for the emulator to boot.
+   *
+   * @return the time in milliseconds the emulator may take to boot.
+   */
+  long launch(Locale locale, int emulatorPort, Map<String, Object> options)
+      throws AndroidDeviceException {
     if (isEmulatorStarted()) {
       throw new SelendroidException("Error - Android emulator is already started " + this);
     }
     Long timeout = null;
     String emulatorOptions = null;
     String display = null;
+    String snapshot = null;
     if (options != null) {
       if (options.containsKey(TIMEOUT_OPTION)) {
         timeout = (Long) options.get(TIMEOUT_OPTION);
@@ -274,6 +351,9 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
       if (options.containsKey(EMULATOR_OPTIONS)) {
         emulatorOptions = (String) options.get(EMULATOR_OPTIONS);
       }
+      if (options.containsKey(SNAPSHOT_OPTION)) {
+        snapshot = (String) options.get(SNAPSHOT_OPTION);
+      }
     }
 
     if (display != null) {
@@ -289,6 +369,11 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
 
 
     cmd.addArgument("-no-snapshot-save", false);
+    if (snapshot != null) {
+      // boots from the snapshot if it exists, otherwise the emulator cold boots
+      cmd.addArgument("-snapshot", false);
+      cmd.addArgument(snapshot, false);
+    }
     cmd.addArgument("-avd", false);
     cmd.addArgument(avdName, false);
     cmd.addArgument("-port", false);
@@ -303,64 +388,20 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
       cmd.addArguments(emulatorOptions.split(" "), false);
     }
 
-    long start = System.currentTimeMillis();
-    long timeoutEnd = start + timeout;
     try {
       ShellCommand.execAsync(display, cmd);
     } catch (ShellCommandException e) {
       throw new SelendroidException("unable to start the emulator: " + this);
     }
     setSerial(emulatorPort);
-    Boolean adbKillServerAttempted = false;
-
-    // Without this one seconds, the call to "isDeviceReady" is
-    // too quickly sent while the emulator is still starting and
-    // not ready to receive any commands. Because of this the
-    // while loops failed and sometimes hung in isDeviceReady function.
-    try {
-      Thread.sleep(1000);
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-    }
-
-    while (!isDeviceReady()) {
-      if (!adbKillServerAttempted && System.currentTimeMillis() - start > 10000) {
-        CommandLine adbDevicesCmd = new CommandLine(AndroidSdk.adb());
-        adbDevicesCmd.addArgument("devices", false);
-
-        String devices = "";
-        try {
-          devices = ShellCommand.exec(adbDevicesCmd, 20000);
-        } catch (ShellCommandException e) {
-          // pass
-        }
-        if (!devices.contains(String.valueOf(emulatorPort))) {
-          CommandLine resetAdb = new CommandLine(AndroidSdk.adb());
-          resetAdb.addArgument("kill-server", false);
-
-          try {
-            ShellCommand.exec(resetAdb, 20000);
-          } catch (ShellCommandException e) {
-            throw new SelendroidException("unable to kill the adb server");
-          }
-        }
-        adbKillServerAttempted = true;
-      }
-      if (timeoutEnd >= System.currentTimeMillis()) {
-        try {
-          Thread.sleep(2000);
-        } catch (InterruptedException e) {
-          Thread.currentThread().interrupt();
-        }
-      } else {
-        throw new AndroidDeviceException("The emulator with avd '" + getAvdName()
-            + "' was not started after " + (System.currentTimeMillis() - start) / 1000
-            + " seconds.");
-      }
-    }
+    this.snapshot = snapshot;
+    return timeout;
+  }
 
-    log.info("Emulator start took: " + (System.currentTimeMillis() - start) / 1000 + " seconds");
-    log.info("Please have in mind, starting an emulator takes usually about 45 seconds.");
+  /**
+   * Prepares the booted emulator for test sessions.
+   */
+  void completeStart() throws AndroidDeviceException {
     unlockScreen();
 
     waitForLauncherToComplete();
@@ -372,43 +413,79 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
 
     waitForLauncherToComplete();
     setWasStartedBySelendroid(true);
+
+    if (snapshot != null) {
+      saveSnapshotIfMissing(snapshot);
+    }
   }
 
-  public void unlockScreen() throws AndroidDeviceException {
-    // Send menu key event
-    CommandLine menuKeyCommand = getAdbCommand();
-    menuKeyCommand.addArgument("shell", false);
-    menuKeyCommand.addArgument("input", false);
-    menuKeyCommand.addArgument("keyevent", false);
-    menuKeyCommand.addArgument("82", false);
+  /**
+   * Saves the freshly booted emulator as the snapshot later sessions boot from and are reset to.
+   */
+  private void saveSnapshotIfMissing(String snapshot) {
+    TelnetClient client = null;
+    try {
+      client = new TelnetClient(getPort());
+      for (String line : client.execute("avd snapshot list")) {
+        if (Arrays.asList(line.trim().split("\\s+")).contains(snapshot)) {
+          return;
+        }
+      }
+      log.info("Saving snapshot '" + snapshot + "' of emulator " + avdName);
+      client.execute("avd snapshot save " + snapshot);
+    } catch (AndroidDeviceException e) {
+      log.log(Level.WARNING, "Failed to save snapshot '" + snapshot + "' of emulator " + avdName,
+          e);
+    } finally {
+      if (client != null) {
+        client.close();
+      }
+    }
+  }
 
+  /**
+   * @return true if selendroid started the emulator from a snapshot. It is kept running with the
+   *         locale it was started with between sessions.
+   */
+  public boolean isStartedFromSnapshot() {
+    return snapshot != null && wasStartedBySelendroid;
+  }
+
+  @Override
+  public boolean restoreSnapshot() throws AndroidDeviceException {
+    if (snapshot == null || !wasStartedBySelendroid || !isSerialConfigured()) {
+      return false;
+    }
+    long start = System.currentTimeMillis();
+    TelnetClient client = new TelnetClient(getPort());
     try {
-      ShellCommand.exec(menuKeyCommand, 20000);
-    } catch (ShellCommandException e) {
-      throw new AndroidDeviceException(e);
+      client.execute("avd snapshot load " + snapshot);
+    } finally {
+      client.close();
     }
+    // the apps installed during the session are gone
+    invalidateDeviceProperties();
+    log.info("Restoring snapshot '" + snapshot + "' of emulator " + avdName + " took "
+        + (System.currentTimeMillis() - start) + " ms");
+    return true;
+  }
 
-    // Send back key event
-    CommandLine backKeyCommand = getAdbCommand();
-    backKeyCommand.addArgument("shell", false);
-    backKeyCommand.addArgument("input", false);
-    backKeyCommand.addArgument("keyevent", false);
-    backKeyCommand.addArgument("4", false);
+  public void unlockScreen() throws AndroidDeviceException {
     try {
-      ShellCommand.exec(backKeyCommand, 20000);
+      // Send menu key event
+      executeShellCommand("input", "keyevent", "82");
+      // Send back key event
+      executeShellCommand("input", "keyevent", "4");
     } catch (ShellCommandException e) {
       throw new AndroidDeviceException(e);
     }
   }
 
   private void waitForLauncherToComplete() throws AndroidDeviceException {
-    CommandLine processListCommand = getAdbCommand();
-    processListCommand.addArgument("shell", false);
-    processListCommand.addArgument("ps", false);
     String processList = null;
     do {
       try {
-        processList = ShellCommand.exec(processListCommand, 20000);
+        processList = executeShellCommand("ps");
       } catch (ShellCommandException e) {
         throw new AndroidDeviceException(e);
       }
@@ -422,15 +499,6 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
     } while (processList == null || !processList.contains("S com.android.launcher"));
   }
 
-  private CommandLine getAdbCommand() {
-    CommandLine processListCommand = new CommandLine(AndroidSdk.adb());
-    if (isSerialConfigured()) {
-      processListCommand.addArgument("-s", false);
-      processListCommand.addArgument(serial, false);
-    }
-    return processListCommand;
-  }
-
   private void allAppsGridView() throws AndroidDeviceException {
     int x = screenSize.width;
     int y = screenSize.height;
@@ -451,13 +519,8 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
     coordinates.add("0 0 0");
 
     for (String coordinate : coordinates) {
-      CommandLine event1 = getAdbCommand();
-      event1.addArgument("shell", false);
-      event1.addArgument("sendevent", false);
-      event1.addArgument("dev/input/event0", false);
-      event1.addArgument(coordinate, false);
       try {
-        ShellCommand.exec(event1);
+        executeShellCommand("sendevent", "dev/input/event0", coordinate);
       } catch (ShellCommandException e) {
         throw new AndroidDeviceException(e);
       }
@@ -486,6 +549,8 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
 
   @Override
   public void stop() throws AndroidDeviceException {
+    invalidateDeviceProperties();
+    snapshot = null;
     if (wasStartedBySelendroid) {
       stopEmulator();
       Boolean killed = false;
@@ -516,6 +581,7 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
   @Override
   public void setIDevice(IDevice iDevice) {
     super.device = iDevice;
+    invalidateDeviceProperties();
   }
 
   public String getSerial() {
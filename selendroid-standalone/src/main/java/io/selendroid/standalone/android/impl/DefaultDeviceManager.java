@@ -21,9 +21,11 @@ import io.selendroid.standalone.exceptions.AndroidDeviceException;
 import io.selendroid.standalone.exceptions.DeviceOfflineException;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,11 +33,13 @@ public class DefaultDeviceManager extends Thread implements IDeviceChangeListene
   private static final Logger log = Logger.getLogger(DefaultDeviceManager.class.getName());
   private String adbPath;
   private List<HardwareDeviceListener> deviceListeners = new ArrayList<HardwareDeviceListener>();
+  // emulator listeners are also registered while adb reports devices
   private List<AndroidEmulatorPowerStateListener> emulatorPowerStateListener =
-      new ArrayList<AndroidEmulatorPowerStateListener>();
+      new CopyOnWriteArrayList<AndroidEmulatorPowerStateListener>();
   private Map<IDevice, DefaultHardwareDevice> connectedDevices =
       new HashMap<IDevice, DefaultHardwareDevice>();
-  private Map<String, IDevice> virtualDevices = new HashMap<String, IDevice>();
+  private Map<String, IDevice> virtualDevices =
+      Collections.synchronizedMap(new HashMap<String, IDevice>());
   private AndroidDebugBridge bridge;
   private boolean shouldKeepAdbAlive;
 
@@ -117,8 +121,17 @@ public class DefaultDeviceManager extends Thread implements IDeviceChangeListene
 
   @Override
   public void deviceChanged(IDevice device, int changeMask) {
+    if (device.isEmulator() && (changeMask & IDevice.CHANGE_STATE) != 0 && device.isOnline()) {
+      for (AndroidEmulatorPowerStateListener listener : emulatorPowerStateListener) {
+        listener.onDeviceOnline(device.getSerialNumber());
+      }
+    }
     // Only fire events if the phone properties are available
     if (IDevice.CHANGE_BUILD_INFO == changeMask && !device.isEmulator()) {
+      DefaultHardwareDevice hardwareDevice = connectedDevices.get(device);
+      if (hardwareDevice != null) {
+        hardwareDevice.refreshDeviceProperties();
+      }
       for (HardwareDeviceListener listener : deviceListeners) {
         listener.onDeviceChanged(connectedDevices.get(device));
       }
@@ -149,10 +162,17 @@ public class DefaultDeviceManager extends Thread implements IDeviceChangeListene
       virtualDevices.put(avdName, device);
       for (AndroidEmulatorPowerStateListener listener : emulatorPowerStateListener) {
         listener.onDeviceStarted(avdName, device.getSerialNumber());
+        if (device.isOnline()) {
+          listener.onDeviceOnline(device.getSerialNumber());
+        }
       }
     } else {
       try {
-        connectedDevices.put(device, new DefaultHardwareDevice(device));
+        DefaultHardwareDevice hardwareDevice = new DefaultHardwareDevice(device);
+        if (device.isOnline()) {
+          hardwareDevice.refreshDeviceProperties();
+        }
+        connectedDevices.put(device, hardwareDevice);
         for (HardwareDeviceListener listener : deviceListeners) {
           listener.onDeviceConnected(connectedDevices.get(device));
         }
@@ -177,7 +197,7 @@ public class DefaultDeviceManager extends Thread implements IDeviceChangeListene
       for (HardwareDeviceListener listener : deviceListeners) {
         listener.onDeviceDisconnected(connectedDevices.get(device));
       }
-      connectedDevices.remove(device);
+      connectedDevices.remove(device).invalidateDeviceProperties();
     }
   }
 
@@ -80,6 +80,14 @@ public class DefaultHardwareDevice extends AbstractDevice {
     return locale;
   }
 
+  @Override
+  public void invalidateDeviceProperties() {
+    super.invalidateDeviceProperties();
+    model = null;
+    locale = null;
+    targetPlatform = null;
+  }
+
   @Override
   public boolean isDeviceReady() {
     // TODO ddary maybe use property dev.bootcomplete
@@ -103,7 +111,7 @@ public class DefaultHardwareDevice extends AbstractDevice {
     String output = runAdbCommand("shell dumpsys power");
 
     // Lollipop and up -- API >= 20
-    if (Integer.parseInt(this.targetPlatform.getApi()) >= 20) {
+    if (Integer.parseInt(getTargetPlatform().getApi()) >= 20) {
       String value = extractValue("Display Power: state=(.*?)$", output);
       if (value.equals("OFF")) {
         // Wake screen
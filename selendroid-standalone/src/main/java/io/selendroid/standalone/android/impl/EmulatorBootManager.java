@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.selendroid.standalone.android.AndroidEmulator;
+import io.selendroid.standalone.android.AndroidEmulatorPowerStateListener;
+import io.selendroid.standalone.exceptions.AndroidDeviceException;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Boots emulators concurrently. No thread waits for an emulator to boot: a single watcher checks
+ * the boot state of all booting emulators, periodically and whenever adb reports that one of them
+ * connected or came online, and completes the future of each emulator once it is ready.
+ */
+public class EmulatorBootManager implements AndroidEmulatorPowerStateListener {
+  private static final Logger log = Logger.getLogger(EmulatorBootManager.class.getName());
+  private static final long CHECK_INTERVAL_MILLIS = 2000;
+  private final ScheduledExecutorService watcher = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("selendroid-emulator-boot-watcher")
+          .setDaemon(true).build());
+  // runs the preparation of booted emulators, which needs a few adb commands
+  private final ExecutorService preparation = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setNameFormat("selendroid-emulator-preparation-%d")
+          .setDaemon(true).build());
+  // serial -> emulator that is still booting
+  private final Map<String, PendingBoot> pendingBoots = new ConcurrentHashMap<String, PendingBoot>();
+
+  public EmulatorBootManager() {
+    watcher.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        checkPendingBoots();
+      }
+    }, CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Starts the emulator process and returns right away.
+   *
+   * @return the future that completes when the emulator is ready for test sessions.
+   * @see AndroidEmulator#start(Locale, int, Map)
+   */
+  public ListenableFuture<AndroidEmulator> boot(DefaultAndroidEmulator emulator, Locale locale,
+      int port, Map<String, Object> options) throws AndroidDeviceException {
+    long start = System.currentTimeMillis();
+    long timeout = emulator.launch(locale, port, options);
+    PendingBoot boot = new PendingBoot(emulator, start, start + timeout);
+    pendingBoots.put(emulator.getSerial(), boot);
+    return boot.future;
+  }
+
+  @Override
+  public void onDeviceStarted(String avdName, String serial) {
+    checkSoon(serial);
+  }
+
+  @Override
+  public void onDeviceStopped(String avdName) {
+    // booting emulators that stop time out
+  }
+
+  @Override
+  public void onDeviceOnline(String serial) {
+    checkSoon(serial);
+  }
+
+  public void shutdown() {
+    watcher.shutdownNow();
+    preparation.shutdownNow();
+  }
+
+  private void checkSoon(String serial) {
+    if (serial != null && pendingBoots.containsKey(serial)) {
+      watcher.execute(new Runnable() {
+        @Override
+        public void run() {
+          checkPendingBoots();
+        }
+      });
+    }
+  }
+
+  private void checkPendingBoots() {
+    Iterator<PendingBoot> boots = pendingBoots.values().iterator();
+    while (boots.hasNext()) {
+      final PendingBoot boot = boots.next();
+      // checked first, so a failing readiness check can't keep the boot pending forever
+      if (System.currentTimeMillis() > boot.timeoutEnd) {
+        boots.remove();
+        boot.future.setException(new AndroidDeviceException("The emulator with avd '"
+            + boot.emulator.getAvdName() + "' was not started after "
+            + (System.currentTimeMillis() - boot.start) / 1000 + " seconds."));
+        continue;
+      }
+      try {
+        if (boot.emulator.isDeviceReady()) {
+          boots.remove();
+          log.info("Emulator " + boot.emulator.getAvdName() + " booted in "
+              + (System.currentTimeMillis() - boot.start) / 1000 + " seconds");
+          preparation.execute(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                boot.emulator.completeStart();
+                boot.future.set(boot.emulator);
+              } catch (Exception e) {
+                boot.future.setException(e);
+              }
+            }
+          });
+        } else if (!boot.adbResetAttempted
+            && System.currentTimeMillis() - boot.start > DefaultAndroidEmulator.ADB_RESET_DELAY) {
+          boot.adbResetAttempted = true;
+          preparation.execute(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                boot.emulator.resetAdbIfEmulatorIsMissing();
+              } catch (Exception e) {
+                log.log(Level.WARNING, "Failed to restart adb for " + boot.emulator, e);
+              }
+            }
+          });
+        }
+      } catch (Exception e) {
+        log.log(Level.WARNING, "Failed to check the boot state of " + boot.emulator, e);
+      }
+    }
+  }
+
+  private static class PendingBoot {
+    private final DefaultAndroidEmulator emulator;
+    private final long start;
+    private final long timeoutEnd;
+    private final SettableFuture<AndroidEmulator> future = SettableFuture.create();
+    // only accessed by the watcher thread
+    private boolean adbResetAttempted = false;
+
+    PendingBoot(DefaultAndroidEmulator emulator, long start, long timeoutEnd) {
+      this.emulator = emulator;
+      this.start = start;
+      this.timeoutEnd = timeoutEnd;
+    }
+  }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.builder;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import io.selendroid.server.common.exceptions.SelendroidException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Content addressed cache for the APKs selendroid builds: resigned apps under test and customized
+ * selendroid-server APKs. The cache survives restarts of selendroid-standalone, so apps only have
+ * to be resigned again if the app, the selendroid version or the keystore changed.
+ *
+ * Entries are stored as {@code <key>.apk} in the cache directory. The index file keeps track of
+ * when each entry was last used, the least recently used entries are removed once the cache grows
+ * beyond its maximum size. Entries handed out by this instance are never removed, the apps and
+ * servers built from them are still in use.
+ *
+ * The index is only kept in memory, so a directory is used by one process at a time. A lock file
+ * marks the directory as in use; further processes use numbered subdirectories instead.
+ */
+public class ApkCache {
+  private static final Logger log = Logger.getLogger(ApkCache.class.getName());
+  static final String INDEX_FILE = "index.properties";
+  static final String LOCK_FILE = "cache.lock";
+  private static final String APK_SUFFIX = ".apk";
+  private static final int MAX_DIRECTORIES = 16;
+
+  private final File directory;
+  private final long maxSizeInBytes;
+  // key -> last access time in milliseconds
+  private final Map<String, Long> lastAccess = new HashMap<String, Long>();
+  // keys of the entries handed out by this instance
+  private final Set<String> inUse = new HashSet<String>();
+  private RandomAccessFile lockFile;
+  private FileLock lock;
+
+  /**
+   * @param directory the cache directory. If another process is using it, a numbered subdirectory
+   *        is used instead.
+   */
+  public ApkCache(File directory, long maxSizeInBytes) {
+    this.directory = lockDirectory(directory);
+    this.maxSizeInBytes = maxSizeInBytes;
+    loadIndex();
+  }
+
+  /**
+   * Creates a cache key from the given parts.
+   */
+  public static String key(String... parts) {
+    return Hashing.sha256().hashString(Joiner.on('\n').useForNull("").join(parts), Charsets.UTF_8)
+        .toString();
+  }
+
+  public static String sha256(File file) throws IOException {
+    return Files.hash(file, Hashing.sha256()).toString();
+  }
+
+  public static String sha256(InputStream in) throws IOException {
+    try {
+      Hasher hasher = Hashing.sha256().newHasher();
+      ByteStreams.copy(in, Funnels.asOutputStream(hasher));
+      return hasher.hash().toString();
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /**
+   * @return the cached file or null if there is no entry for the key
+   */
+  public synchronized File get(String key) {
+    File file = fileFor(key);
+    if (!lastAccess.containsKey(key) || !file.isFile()) {
+      lastAccess.remove(key);
+      return null;
+    }
+    lastAccess.put(key, System.currentTimeMillis());
+    inUse.add(key);
+    saveIndex();
+    return file;
+  }
+
+  /**
+   * Copies the file into the cache.
+   *
+   * @return the cached copy
+   */
+  public synchronized File put(String key, File source) throws IOException {
+    File file = fileFor(key);
+    // copy and rename, so that an interrupted copy never leaves a partial APK behind
+    File tmp = File.createTempFile(key, ".tmp", directory);
+    try {
+      FileUtils.copyFile(source, tmp);
+      if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+        throw new IOException("Cannot move " + tmp + " to " + file);
+      }
+    } finally {
+      tmp.delete();
+    }
+    lastAccess.put(key, System.currentTimeMillis());
+    inUse.add(key);
+    evict();
+    saveIndex();
+    return file;
+  }
+
+  /**
+   * @return the size of all cached APKs in bytes
+   */
+  public synchronized long size() {
+    long size = 0;
+    for (String key : lastAccess.keySet()) {
+      size += fileFor(key).length();
+    }
+    return size;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Releases the directory for other processes.
+   */
+  public synchronized void close() {
+    try {
+      if (lock != null) {
+        lock.release();
+      }
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Cannot release the lock of the APK cache " + directory, e);
+    } finally {
+      IOUtils.closeQuietly(lockFile);
+      lock = null;
+      lockFile = null;
+    }
+  }
+
+  private File lockDirectory(File root) {
+    for (int i = 0; i < MAX_DIRECTORIES; i++) {
+      File candidate = i == 0 ? root : new File(root, String.valueOf(i));
+      candidate.mkdirs();
+      RandomAccessFile file = null;
+      try {
+        file = new RandomAccessFile(new File(candidate, LOCK_FILE), "rw");
+        FileLock candidateLock = file.getChannel().tryLock();
+        if (candidateLock != null) {
+          lockFile = file;
+          lock = candidateLock;
+          return candidate;
+        }
+      } catch (OverlappingFileLockException e) {
+        // locked by another cache of this process
+      } catch (IOException e) {
+        log.log(Level.WARNING, "Cannot lock the APK cache " + candidate, e);
+      }
+      IOUtils.closeQuietly(file);
+    }
+    throw new SelendroidException("All APK cache directories in " + root + " are in use.");
+  }
+
+  private void evict() {
+    List<String> keys = new ArrayList<String>(lastAccess.keySet());
+    Collections.sort(keys, new Comparator<String>() {
+      @Override
+      public int compare(String a, String b) {
+        return lastAccess.get(a).compareTo(lastAccess.get(b));
+      }
+    });
+    long size = size();
+    for (int i = 0; i < keys.size() && size > maxSizeInBytes; i++) {
+      if (inUse.contains(keys.get(i))) {
+        continue;
+      }
+      File file = fileFor(keys.get(i));
+      size -= file.length();
+      lastAccess.remove(keys.get(i));
+      if (!file.delete()) {
+        log.warning("Cannot delete evicted APK " + file.getAbsolutePath());
+      } else {
+        log.info("Evicted APK from cache: " + file.getAbsolutePath());
+      }
+    }
+  }
+
+  private File fileFor(String key) {
+    return new File(directory, key + APK_SUFFIX);
+  }
+
+  private void loadIndex() {
+    Properties index = new Properties();
+    File indexFile = new File(directory, INDEX_FILE);
+    if (indexFile.isFile()) {
+      InputStream in = null;
+      try {
+        in = new FileInputStream(indexFile);
+        index.load(in);
+      } catch (IOException e) {
+        log.log(Level.WARNING, "Cannot read APK cache index, starting with an empty index", e);
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      String name = file.getName();
+      if (!name.endsWith(APK_SUFFIX)) {
+        continue;
+      }
+      String key = name.substring(0, name.length() - APK_SUFFIX.length());
+      long accessed = file.lastModified();
+      try {
+        String value = index.getProperty(key);
+        if (value != null) {
+          accessed = Long.parseLong(value);
+        }
+      } catch (NumberFormatException e) {
+        // keep the modification time
+      }
+      lastAccess.put(key, accessed);
+    }
+  }
+
+  private void saveIndex() {
+    Properties index = new Properties();
+    for (Map.Entry<String, Long> entry : lastAccess.entrySet()) {
+      index.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+    }
+    OutputStream out = null;
+    try {
+      File tmp = File.createTempFile("index", ".tmp", directory);
+      out = new FileOutputStream(tmp);
+      index.store(out, "selendroid APK cache: key = last access time");
+      out.close();
+      File indexFile = new File(directory, INDEX_FILE);
+      if (indexFile.exists() && !indexFile.delete() || !tmp.renameTo(indexFile)) {
+        tmp.delete();
+        log.warning("Cannot update APK cache index " + indexFile.getAbsolutePath());
+      }
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Cannot write APK cache index", e);
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+}
@@ -0,0 +1,465 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.builder;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Rewrites and signs an APK in a single pass.
+ *
+ * Entries that are not replaced are copied without recompressing them, only replaced entries and
+ * the signature files are compressed. Existing signature files are dropped. Archives using ZIP64
+ * or encryption are not supported and lead to an {@link IOException}, callers are expected to
+ * fall back to the Android SDK tools in that case.
+ */
+class ApkRewriter {
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+  private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+  private static final int FLAG_UTF8 = 0x800;
+
+  private final File source;
+  private final Map<String, byte[]> replacements = new LinkedHashMap<String, byte[]>();
+
+  ApkRewriter(File source) {
+    this.source = source;
+  }
+
+  /**
+   * Replaces the content of the entry with the given name, or adds the entry if it does not exist.
+   */
+  ApkRewriter replace(String name, byte[] content) {
+    replacements.put(name, content);
+    return this;
+  }
+
+  static boolean isSignatureFile(String name) {
+    String upperCase = name.toUpperCase(Locale.US);
+    if (!upperCase.startsWith("META-INF/") || upperCase.indexOf('/', "META-INF/".length()) != -1) {
+      return false;
+    }
+    return upperCase.equals("META-INF/MANIFEST.MF") || upperCase.endsWith(".SF")
+        || upperCase.endsWith(".RSA") || upperCase.endsWith(".DSA") || upperCase.endsWith(".EC")
+        || upperCase.startsWith("META-INF/SIG-");
+  }
+
+  /**
+   * @return the uncompressed content of the entry or null if there is no such entry
+   */
+  byte[] read(String name) throws IOException {
+    RandomAccessFile in = new RandomAccessFile(source, "r");
+    try {
+      for (Entry entry : readCentralDirectory(in)) {
+        if (entry.name.equals(name)) {
+          return uncompress(entry, readRawData(in, entry));
+        }
+      }
+      return null;
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /**
+   * Writes the rewritten APK and signs it with the given signer.
+   */
+  void writeSigned(File output, V1ApkSigner signer) throws IOException,
+      GeneralSecurityException {
+    RandomAccessFile in = new RandomAccessFile(source, "r");
+    CountingOutputStream out =
+        new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(output), 65536));
+    try {
+      ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+      int entryCount = 0;
+      Map<String, byte[]> added = new LinkedHashMap<String, byte[]>(replacements);
+      for (Entry entry : readCentralDirectory(in)) {
+        if (isSignatureFile(entry.name)) {
+          continue;
+        }
+        byte[] replacement = added.remove(entry.name);
+        if (replacement != null) {
+          Entry compressed = compress(entry.name, replacement);
+          writeEntry(out, centralDirectory, compressed);
+          signer.addEntry(entry.name, V1ApkSigner.newEntryDigest().digest(replacement));
+        } else {
+          // copied entries are streamed, so large APKs are never held in memory
+          long offset = writeLocalHeader(out, entry);
+          byte[] digest = copyRawData(in, entry, out);
+          writeCentralHeader(centralDirectory, entry, offset);
+          if (!entry.name.endsWith("/")) {
+            signer.addEntry(entry.name, digest);
+          }
+        }
+        entryCount++;
+      }
+      for (Map.Entry<String, byte[]> entry : added.entrySet()) {
+        writeEntry(out, centralDirectory, compress(entry.getKey(), entry.getValue()));
+        signer.addEntry(entry.getKey(), V1ApkSigner.newEntryDigest().digest(entry.getValue()));
+        entryCount++;
+      }
+      // like jarsigner the signature files are written last, so the APK is written in one pass
+      for (Map.Entry<String, byte[]> entry : signer.createSignatureEntries().entrySet()) {
+        writeEntry(out, centralDirectory, compress(entry.getKey(), entry.getValue()));
+        entryCount++;
+      }
+
+      long centralDirectoryOffset = out.count;
+      centralDirectory.writeTo(out);
+      writeInt(out, END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+      writeShort(out, 0);
+      writeShort(out, 0);
+      writeShort(out, entryCount);
+      writeShort(out, entryCount);
+      writeInt(out, centralDirectory.size());
+      writeInt(out, (int) centralDirectoryOffset);
+      writeShort(out, 0);
+      if (entryCount > 0xFFFF || out.count > 0xFFFFFFFFL) {
+        throw new IOException("APK too large for the in process builder: " + output);
+      }
+    } finally {
+      IOUtils.closeQuietly(in);
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  private void writeEntry(CountingOutputStream out, ByteArrayOutputStream centralDirectory,
+      Entry entry) throws IOException {
+    long offset = writeLocalHeader(out, entry);
+    out.write(entry.data);
+    writeCentralHeader(centralDirectory, entry, offset);
+  }
+
+  /**
+   * @return the offset of the local header
+   */
+  private static long writeLocalHeader(CountingOutputStream out, Entry entry) throws IOException {
+    long offset = out.count;
+    writeInt(out, LOCAL_HEADER_SIGNATURE);
+    writeShort(out, entry.versionNeeded);
+    writeShort(out, flags(entry));
+    writeShort(out, entry.method);
+    writeInt(out, entry.dosTime);
+    writeInt(out, (int) entry.crc);
+    writeInt(out, (int) entry.compressedSize);
+    writeInt(out, (int) entry.size);
+    writeShort(out, entry.nameBytes.length);
+    writeShort(out, 0);
+    out.write(entry.nameBytes);
+    return offset;
+  }
+
+  private static void writeCentralHeader(ByteArrayOutputStream centralDirectory, Entry entry,
+      long offset) throws IOException {
+    writeInt(centralDirectory, CENTRAL_HEADER_SIGNATURE);
+    writeShort(centralDirectory, entry.versionMadeBy);
+    writeShort(centralDirectory, entry.versionNeeded);
+    writeShort(centralDirectory, flags(entry));
+    writeShort(centralDirectory, entry.method);
+    writeInt(centralDirectory, entry.dosTime);
+    writeInt(centralDirectory, (int) entry.crc);
+    writeInt(centralDirectory, (int) entry.compressedSize);
+    writeInt(centralDirectory, (int) entry.size);
+    writeShort(centralDirectory, entry.nameBytes.length);
+    writeShort(centralDirectory, 0);
+    writeShort(centralDirectory, 0);
+    writeShort(centralDirectory, 0);
+    writeShort(centralDirectory, entry.internalAttributes);
+    writeInt(centralDirectory, entry.externalAttributes);
+    writeInt(centralDirectory, (int) offset);
+    centralDirectory.write(entry.nameBytes);
+  }
+
+  private static int flags(Entry entry) {
+    // the data descriptor is not needed because sizes and crc are known up front
+    return (entry.flags & ~FLAG_DATA_DESCRIPTOR) | FLAG_UTF8;
+  }
+
+  private static List<Entry> readCentralDirectory(RandomAccessFile in) throws IOException {
+    long length = in.length();
+    int maxCommentLength = (int) Math.min(0xFFFF, length - END_OF_CENTRAL_DIRECTORY_SIZE);
+    if (maxCommentLength < 0) {
+      throw new IOException("Not a zip file");
+    }
+    byte[] tail = new byte[END_OF_CENTRAL_DIRECTORY_SIZE + maxCommentLength];
+    in.seek(length - tail.length);
+    in.readFully(tail);
+    int eocd = -1;
+    for (int i = tail.length - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+      if (getInt(tail, i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        eocd = i;
+        break;
+      }
+    }
+    if (eocd == -1) {
+      throw new IOException("End of central directory not found");
+    }
+    int count = getShort(tail, eocd + 10);
+    long size = getInt(tail, eocd + 12) & 0xFFFFFFFFL;
+    long offset = getInt(tail, eocd + 16) & 0xFFFFFFFFL;
+    if (count == 0xFFFF || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+      throw new IOException("ZIP64 archives are not supported");
+    }
+    byte[] directory = new byte[(int) size];
+    in.seek(offset);
+    in.readFully(directory);
+
+    List<Entry> entries = new ArrayList<Entry>(count);
+    int position = 0;
+    for (int i = 0; i < count; i++) {
+      if (getInt(directory, position) != CENTRAL_HEADER_SIGNATURE) {
+        throw new IOException("Invalid central directory");
+      }
+      Entry entry = new Entry();
+      entry.versionMadeBy = getShort(directory, position + 4);
+      entry.versionNeeded = getShort(directory, position + 6);
+      entry.flags = getShort(directory, position + 8);
+      entry.method = getShort(directory, position + 10);
+      entry.dosTime = getInt(directory, position + 12);
+      entry.crc = getInt(directory, position + 16) & 0xFFFFFFFFL;
+      entry.compressedSize = getInt(directory, position + 20) & 0xFFFFFFFFL;
+      entry.size = getInt(directory, position + 24) & 0xFFFFFFFFL;
+      int nameLength = getShort(directory, position + 28);
+      int extraLength = getShort(directory, position + 30);
+      int commentLength = getShort(directory, position + 32);
+      entry.internalAttributes = getShort(directory, position + 36);
+      entry.externalAttributes = getInt(directory, position + 38);
+      entry.localHeaderOffset = getInt(directory, position + 42) & 0xFFFFFFFFL;
+      entry.nameBytes = new byte[nameLength];
+      System.arraycopy(directory, position + CENTRAL_HEADER_SIZE, entry.nameBytes, 0, nameLength);
+      entry.name = new String(entry.nameBytes, Charsets.UTF_8);
+      if ((entry.flags & 0x01) != 0) {
+        throw new IOException("Encrypted entries are not supported: " + entry.name);
+      }
+      if (entry.method != STORED && entry.method != DEFLATED) {
+        throw new IOException("Unsupported compression method " + entry.method + ": "
+            + entry.name);
+      }
+      if (entry.compressedSize == 0xFFFFFFFFL || entry.size == 0xFFFFFFFFL
+          || entry.localHeaderOffset == 0xFFFFFFFFL) {
+        throw new IOException("ZIP64 archives are not supported");
+      }
+      entries.add(entry);
+      position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+    }
+    return entries;
+  }
+
+  private static byte[] readRawData(RandomAccessFile in, Entry entry) throws IOException {
+    byte[] data = new byte[(int) entry.compressedSize];
+    in.seek(dataOffset(in, entry));
+    in.readFully(data);
+    return data;
+  }
+
+  /**
+   * Copies the data of the entry as it is stored in the source APK.
+   *
+   * @return the digest of the uncompressed data
+   */
+  private static byte[] copyRawData(RandomAccessFile in, Entry entry, OutputStream out)
+      throws IOException {
+    MessageDigest digest = V1ApkSigner.newEntryDigest();
+    Inflater inflater = entry.method == STORED ? null : new Inflater(true);
+    try {
+      in.seek(dataOffset(in, entry));
+      byte[] buffer = new byte[8192];
+      byte[] inflated = new byte[8192];
+      long remaining = entry.compressedSize;
+      while (remaining > 0) {
+        int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (read == -1) {
+          throw new EOFException("Truncated entry: " + entry.name);
+        }
+        out.write(buffer, 0, read);
+        remaining -= read;
+        if (inflater == null) {
+          digest.update(buffer, 0, read);
+        } else {
+          inflater.setInput(buffer, 0, read);
+          int length;
+          while ((length = inflater.inflate(inflated)) > 0) {
+            digest.update(inflated, 0, length);
+          }
+        }
+      }
+      return digest.digest();
+    } catch (DataFormatException e) {
+      throw new IOException("Invalid compressed data: " + entry.name, e);
+    } finally {
+      if (inflater != null) {
+        inflater.end();
+      }
+    }
+  }
+
+  private static long dataOffset(RandomAccessFile in, Entry entry) throws IOException {
+    byte[] header = new byte[LOCAL_HEADER_SIZE];
+    in.seek(entry.localHeaderOffset);
+    in.readFully(header);
+    if (getInt(header, 0) != LOCAL_HEADER_SIGNATURE) {
+      throw new IOException("Invalid local header: " + entry.name);
+    }
+    // name and extra field lengths of the local header may differ from the central directory
+    int skip = getShort(header, 26) + getShort(header, 28);
+    return entry.localHeaderOffset + LOCAL_HEADER_SIZE + skip;
+  }
+
+  private static byte[] uncompress(Entry entry, byte[] data) throws IOException {
+    if (entry.method == STORED) {
+      return data;
+    }
+    Inflater inflater = new Inflater(true);
+    try {
+      return IOUtils.toByteArray(new InflaterInputStream(new ByteArrayInputStream(data), inflater));
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static Entry compress(String name, byte[] content) throws IOException {
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try {
+      DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater);
+      out.write(content);
+      out.finish();
+    } finally {
+      deflater.end();
+    }
+    CRC32 crc = new CRC32();
+    crc.update(content);
+
+    Entry entry = new Entry();
+    entry.name = name;
+    entry.nameBytes = name.getBytes(Charsets.UTF_8);
+    entry.versionMadeBy = 20;
+    entry.versionNeeded = 20;
+    entry.method = DEFLATED;
+    entry.dosTime = dosTime(System.currentTimeMillis());
+    entry.crc = crc.getValue();
+    entry.size = content.length;
+    entry.data = compressed.toByteArray();
+    entry.compressedSize = entry.data.length;
+    return entry;
+  }
+
+  private static int dosTime(long time) {
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(time);
+    return (calendar.get(Calendar.YEAR) - 1980) << 25
+        | (calendar.get(Calendar.MONTH) + 1) << 21
+        | calendar.get(Calendar.DAY_OF_MONTH) << 16
+        | calendar.get(Calendar.HOUR_OF_DAY) << 11
+        | calendar.get(Calendar.MINUTE) << 5
+        | calendar.get(Calendar.SECOND) >> 1;
+  }
+
+  private static int getShort(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+  }
+
+  private static int getInt(byte[] bytes, int offset) {
+    return getShort(bytes, offset) | getShort(bytes, offset + 2) << 16;
+  }
+
+  private static void writeShort(OutputStream out, int value) throws IOException {
+    out.write(value & 0xFF);
+    out.write((value >> 8) & 0xFF);
+  }
+
+  private static void writeInt(OutputStream out, int value) throws IOException {
+    writeShort(out, value & 0xFFFF);
+    writeShort(out, (value >> 16) & 0xFFFF);
+  }
+
+  private static class Entry {
+    String name;
+    byte[] nameBytes;
+    int versionMadeBy;
+    int versionNeeded;
+    int flags;
+    int method;
+    int dosTime;
+    long crc;
+    long compressedSize;
+    long size;
+    int internalAttributes;
+    int externalAttributes;
+    long localHeaderOffset;
+    // only set for entries that are written from memory
+    byte[] data;
+  }
+
+  private static class CountingOutputStream extends OutputStream {
+    private final OutputStream out;
+    long count = 0;
+
+    CountingOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+}
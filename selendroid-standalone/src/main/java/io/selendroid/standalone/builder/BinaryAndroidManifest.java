@@ -0,0 +1,245 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.builder;
+
+import com.google.common.base.Charsets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled (binary XML) AndroidManifest.xml as found in APKs.
+ *
+ * Only the string pool can be modified, which is enough to change the package name and the target
+ * package of instrumentations without compiling the manifest with aapt again.
+ */
+class BinaryAndroidManifest {
+  private static final int XML_TYPE = 0x0003;
+  private static final int STRING_POOL_TYPE = 0x0001;
+  private static final int START_ELEMENT_TYPE = 0x0102;
+  private static final int STRING_POOL_HEADER_SIZE = 28;
+  private static final int SORTED_FLAG = 1;
+  private static final int UTF8_FLAG = 1 << 8;
+  private static final int NO_INDEX = -1;
+
+  private final byte[] xml;
+  private final int stringPoolEnd;
+  private final int flags;
+  private final int[] styleOffsets;
+  private final byte[] styles;
+  private final List<String> strings;
+
+  BinaryAndroidManifest(byte[] xml) throws IOException {
+    this.xml = xml;
+    if (xml.length < 8 + STRING_POOL_HEADER_SIZE || getShort(xml, 0) != XML_TYPE
+        || getShort(xml, 8) != STRING_POOL_TYPE) {
+      throw new IOException("Not a binary XML file");
+    }
+    int pool = getShort(xml, 2);
+    stringPoolEnd = pool + getInt(xml, pool + 4);
+    int stringCount = getInt(xml, pool + 8);
+    int styleCount = getInt(xml, pool + 12);
+    flags = getInt(xml, pool + 16);
+    int stringsStart = pool + getInt(xml, pool + 20);
+    int stylesStart = getInt(xml, pool + 24);
+    int offsets = pool + getShort(xml, pool + 2);
+
+    strings = new ArrayList<String>(stringCount);
+    for (int i = 0; i < stringCount; i++) {
+      strings.add(readString(stringsStart + getInt(xml, offsets + i * 4)));
+    }
+    styleOffsets = new int[styleCount];
+    for (int i = 0; i < styleCount; i++) {
+      styleOffsets[i] = getInt(xml, offsets + (stringCount + i) * 4);
+    }
+    if (styleCount > 0) {
+      styles = new byte[stringPoolEnd - (pool + stylesStart)];
+      System.arraycopy(xml, pool + stylesStart, styles, 0, styles.length);
+    } else {
+      styles = new byte[0];
+    }
+  }
+
+  /**
+   * @return the value of the package attribute of the manifest element
+   */
+  String getPackage() throws IOException {
+    return strings.get(packageStringIndex());
+  }
+
+  /**
+   * Changes the package name like {@link SelendroidServerBuilder} does for the text manifest: the
+   * target package is appended to the package of the manifest, and references to
+   * {@link SelendroidServerBuilder#SELENDROID_TEST_APP_PACKAGE} are replaced by the target package.
+   */
+  void retarget(String targetPackage) throws IOException {
+    int packageIndex = packageStringIndex();
+    strings.set(packageIndex, strings.get(packageIndex) + "." + targetPackage);
+    for (int i = 0; i < strings.size(); i++) {
+      strings.set(i, strings.get(i).replace(SelendroidServerBuilder.SELENDROID_TEST_APP_PACKAGE,
+          targetPackage));
+    }
+  }
+
+  byte[] toByteArray() {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    int[] offsets = new int[strings.size()];
+    for (int i = 0; i < strings.size(); i++) {
+      offsets[i] = data.size();
+      writeString(data, strings.get(i));
+    }
+    while (data.size() % 4 != 0) {
+      data.write(0);
+    }
+    int stringsStart = STRING_POOL_HEADER_SIZE + 4 * (offsets.length + styleOffsets.length);
+    int poolSize = stringsStart + data.size() + styles.length;
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int pool = getShort(xml, 2);
+    out.write(xml, 0, pool);
+    writeShort(out, STRING_POOL_TYPE);
+    writeShort(out, STRING_POOL_HEADER_SIZE);
+    writeInt(out, poolSize);
+    writeInt(out, offsets.length);
+    writeInt(out, styleOffsets.length);
+    // changed strings are no longer sorted
+    writeInt(out, flags & ~SORTED_FLAG);
+    writeInt(out, stringsStart);
+    writeInt(out, styles.length == 0 ? 0 : stringsStart + data.size());
+    for (int offset : offsets) {
+      writeInt(out, offset);
+    }
+    for (int offset : styleOffsets) {
+      writeInt(out, offset);
+    }
+    out.write(data.toByteArray(), 0, data.size());
+    out.write(styles, 0, styles.length);
+    out.write(xml, stringPoolEnd, xml.length - stringPoolEnd);
+
+    byte[] result = out.toByteArray();
+    putInt(result, 4, result.length);
+    return result;
+  }
+
+  private int packageStringIndex() throws IOException {
+    int chunk = stringPoolEnd;
+    while (chunk + 8 <= xml.length) {
+      int type = getShort(xml, chunk);
+      int headerSize = getShort(xml, chunk + 2);
+      int size = getInt(xml, chunk + 4);
+      if (type == START_ELEMENT_TYPE) {
+        int element = chunk + headerSize;
+        if ("manifest".equals(stringAt(getInt(xml, element + 4)))) {
+          int attributeStart = element + getShort(xml, element + 8);
+          int attributeSize = getShort(xml, element + 10);
+          int attributeCount = getShort(xml, element + 12);
+          for (int i = 0; i < attributeCount; i++) {
+            int attribute = attributeStart + i * attributeSize;
+            if (getInt(xml, attribute) == NO_INDEX
+                && "package".equals(stringAt(getInt(xml, attribute + 4)))) {
+              int value = getInt(xml, attribute + 8);
+              if (value != NO_INDEX) {
+                return value;
+              }
+            }
+          }
+          break;
+        }
+      }
+      if (size <= 0) {
+        break;
+      }
+      chunk += size;
+    }
+    throw new IOException("The manifest element has no package attribute");
+  }
+
+  private String stringAt(int index) {
+    return index >= 0 && index < strings.size() ? strings.get(index) : null;
+  }
+
+  private boolean isUtf8() {
+    return (flags & UTF8_FLAG) != 0;
+  }
+
+  private String readString(int offset) {
+    if (isUtf8()) {
+      // length in UTF-16 code units, followed by the length in bytes
+      offset += (xml[offset] & 0x80) != 0 ? 2 : 1;
+      int length = xml[offset] & 0xFF;
+      if ((length & 0x80) != 0) {
+        length = (length & 0x7F) << 8 | (xml[offset + 1] & 0xFF);
+        offset++;
+      }
+      return new String(xml, offset + 1, length, Charsets.UTF_8);
+    }
+    int length = getShort(xml, offset);
+    if ((length & 0x8000) != 0) {
+      length = (length & 0x7FFF) << 16 | getShort(xml, offset + 2);
+      offset += 2;
+    }
+    return new String(xml, offset + 2, length * 2, Charsets.UTF_16LE);
+  }
+
+  private void writeString(ByteArrayOutputStream out, String value) {
+    if (isUtf8()) {
+      byte[] bytes = value.getBytes(Charsets.UTF_8);
+      writeUtf8Length(out, value.length());
+      writeUtf8Length(out, bytes.length);
+      out.write(bytes, 0, bytes.length);
+      out.write(0);
+    } else {
+      byte[] bytes = value.getBytes(Charsets.UTF_16LE);
+      if (value.length() > 0x7FFF) {
+        writeShort(out, 0x8000 | (value.length() >> 16));
+      }
+      writeShort(out, value.length() & 0xFFFF);
+      out.write(bytes, 0, bytes.length);
+      writeShort(out, 0);
+    }
+  }
+
+  private static void writeUtf8Length(ByteArrayOutputStream out, int length) {
+    if (length > 0x7F) {
+      out.write(0x80 | (length >> 8));
+    }
+    out.write(length & 0xFF);
+  }
+
+  private static int getShort(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+  }
+
+  private static int getInt(byte[] bytes, int offset) {
+    return getShort(bytes, offset) | getShort(bytes, offset + 2) << 16;
+  }
+
+  private static void putInt(byte[] bytes, int offset, int value) {
+    for (int i = 0; i < 4; i++) {
+      bytes[offset + i] = (byte) (value >> (8 * i));
+    }
+  }
+
+  private static void writeShort(ByteArrayOutputStream out, int value) {
+    out.write(value & 0xFF);
+    out.write((value >> 8) & 0xFF);
+  }
+
+  private static void writeInt(ByteArrayOutputStream out, int value) {
+    writeShort(out, value & 0xFFFF);
+    writeShort(out, (value >> 16) & 0xFFFF);
+  }
+}
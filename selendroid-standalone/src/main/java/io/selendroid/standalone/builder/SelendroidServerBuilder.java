@@ -67,6 +67,8 @@ public class SelendroidServerBuilder {
   private String storepass = "android";
   private String alias = "androiddebugkey";
   private X509Certificate cert509;
+  private ApkCache apkCache = null;
+  private boolean inProcessApkBuilder = false;
 
   /**
    * FOR TESTING ONLY
@@ -85,6 +87,20 @@ public class SelendroidServerBuilder {
     this.selendroidPrebuildServerPath = selendroidPrebuildServerPath;
     this.selendroidApplicationXmlTemplate = selendroidApplicationXmlTemplate;
     this.serverConfiguration = selendroidConfiguration;
+    this.inProcessApkBuilder =
+        selendroidConfiguration != null && selendroidConfiguration.isInProcessApkBuilder();
+    if (selendroidConfiguration != null && !selendroidConfiguration.isNoApkCache()) {
+      File cacheDir = selendroidConfiguration.getApkCacheDir() != null
+          ? new File(selendroidConfiguration.getApkCacheDir())
+          : new File(FileUtils.getUserDirectory(), ".selendroid" + File.separator + "apk-cache");
+      try {
+        apkCache =
+            new ApkCache(cacheDir, selendroidConfiguration.getApkCacheMaxSizeMb() * 1024 * 1024);
+        log.info("Using APK cache: " + apkCache.getDirectory().getAbsolutePath());
+      } catch (SelendroidException e) {
+        log.log(Level.WARNING, "Not using an APK cache", e);
+      }
+    }
   }
 
   public SelendroidServerBuilder(SelendroidConfiguration selendroidConfiguration) {
@@ -110,9 +126,20 @@ public class SelendroidServerBuilder {
                                                                   ShellCommandException,
                                                                   AndroidSdkException {
     log.info("create SelendroidServer for apk: " + aut.getAbsolutePath());
+    String cacheKey = null;
+    if (apkCache != null) {
+      // the server only depends on the package of the app under test
+      cacheKey = ApkCache.key("selendroid-server", aut.getBasePackage(), getJarVersionNumber(),
+          ApkCache.sha256(getResourceAsStream(selendroidPrebuildServerPath)),
+          ApkCache.sha256(getResourceAsStream(selendroidApplicationXmlTemplate)),
+          keystoreFingerprint(), String.valueOf(inProcessApkBuilder));
+      File cached = apkCache.get(cacheKey);
+      if (cached != null) {
+        log.info("Using cached selendroid-server for " + aut.getBasePackage() + ": " + cached);
+        return new DefaultAndroidApp(cached);
+      }
+    }
     init(aut);
-    cleanUpPrebuildServer();
-    File selendroidServer = createAndAddCustomizedAndroidManifestToSelendroidServer();
     File outputFile = File.createTempFile(
             String.format("selendroid-server-%s-%s", applicationUnderTest.getBasePackage(), getJarVersionNumber()),
             ".apk"
@@ -120,7 +147,59 @@ public class SelendroidServerBuilder {
     if (deleteTmpFiles()) {
       outputFile.deleteOnExit(); //Deletes file when done
     }
-    return signTestServer(selendroidServer, outputFile);
+    if (inProcessApkBuilder) {
+      AndroidApp server = customizeSelendroidServerInProcess(outputFile);
+      if (server != null) {
+        return addToCache(cacheKey, server);
+      }
+    }
+    cleanUpPrebuildServer();
+    File selendroidServer = createAndAddCustomizedAndroidManifestToSelendroidServer();
+    return addToCache(cacheKey, signTestServer(selendroidServer, outputFile));
+  }
+
+  /**
+   * Patches the compiled manifest of the prebuilt selendroid-server instead of compiling the
+   * manifest template with aapt.
+   *
+   * @return null if the prebuilt server cannot be processed, the SDK tools have to be used then
+   */
+  private AndroidApp customizeSelendroidServerInProcess(File outputFile)
+      throws ShellCommandException, AndroidSdkException {
+    ApkRewriter apk = new ApkRewriter(new File(selendroidServer.getAbsolutePath()));
+    try {
+      byte[] manifestBytes = apk.read("AndroidManifest.xml");
+      if (manifestBytes == null) {
+        throw new IOException("AndroidManifest.xml not found in " + selendroidServer.getAbsolutePath());
+      }
+      BinaryAndroidManifest manifest = new BinaryAndroidManifest(manifestBytes);
+      manifest.retarget(applicationUnderTest.getBasePackage());
+      log.info("Changed package of the selendroid-server to " + manifest.getPackage());
+      apk.replace("AndroidManifest.xml", manifest.toByteArray());
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Cannot patch the selendroid-server manifest in process, using aapt", e);
+      return null;
+    }
+    return signInProcess(apk, outputFile);
+  }
+
+  /**
+   * Signs the APK without forking jarsigner.
+   *
+   * @return null if the APK or the key is not supported, jarsigner has to be used then
+   */
+  private AndroidApp signInProcess(ApkRewriter apk, File outputFile) throws ShellCommandException {
+    File androidKeyStore = androidDebugKeystore();
+    createKeystoreIfMissing(androidKeyStore);
+    try {
+      apk.writeSigned(outputFile,
+          V1ApkSigner.fromKeystore(androidKeyStore, storepass, alias, getSigAlg()));
+    } catch (Exception e) {
+      log.log(Level.WARNING, "Cannot sign " + outputFile.getName() + " in process, using jarsigner", e);
+      return null;
+    }
+    log.info("The app has been signed: " + outputFile.getAbsolutePath());
+    return new DefaultAndroidApp(outputFile);
   }
 
   private void deleteFileFromAppSilently(AndroidApp app, String file) throws AndroidSdkException {
@@ -137,7 +216,37 @@ public class SelendroidServerBuilder {
     }
   }
 
+  /**
+   * Releases the APK cache for other selendroid-standalone processes.
+   */
+  public void close() {
+    if (apkCache != null) {
+      apkCache.close();
+    }
+  }
+
   public AndroidApp resignApp(File appFile) throws ShellCommandException, AndroidSdkException, IOException {
+    String cacheKey = null;
+    if (apkCache != null) {
+      cacheKey = ApkCache.key("resigned-app", ApkCache.sha256(appFile), getJarVersionNumber(),
+          keystoreFingerprint());
+      File cached = apkCache.get(cacheKey);
+      if (cached != null) {
+        log.info("Using cached resigned app for " + appFile.getAbsolutePath() + ": " + cached);
+        return new DefaultAndroidApp(cached);
+      }
+    }
+    File outputFile = File.createTempFile("resigned-", appFile.getName());
+    if (deleteTmpFiles()) {
+      outputFile.deleteOnExit();
+    }
+    if (inProcessApkBuilder) {
+      // existing signature files are dropped while copying, the app file itself stays untouched
+      AndroidApp resigned = signInProcess(new ApkRewriter(appFile), outputFile);
+      if (resigned != null) {
+        return addToCache(cacheKey, resigned);
+      }
+    }
     AndroidApp app = new DefaultAndroidApp(appFile);
     // Delete existing certificates
     deleteFileFromAppSilently(app, "META-INF/MANIFEST.MF");
@@ -148,11 +257,28 @@ public class SelendroidServerBuilder {
     deleteFileFromAppSilently(app, "META-INF/NDKEYSTO.SF");
     deleteFileFromAppSilently(app, "META-INF/NDKEYSTO.RSA");
 
-    File outputFile = File.createTempFile("resigned-", appFile.getName());
-    if (deleteTmpFiles()) {
-      outputFile.deleteOnExit();
+    return addToCache(cacheKey, signTestServer(appFile, outputFile));
+  }
+
+  private AndroidApp addToCache(String cacheKey, AndroidApp app) {
+    if (cacheKey == null) {
+      return app;
+    }
+    try {
+      return new DefaultAndroidApp(apkCache.put(cacheKey, new File(app.getAbsolutePath())));
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Cannot add " + app.getAbsolutePath() + " to the APK cache", e);
+      return app;
     }
-    return signTestServer(appFile, outputFile);
+  }
+
+  /**
+   * Identifies the key apps are signed with, creates the keystore if it doesn't exist yet.
+   */
+  private String keystoreFingerprint() throws IOException, ShellCommandException {
+    File androidKeyStore = androidDebugKeystore();
+    createKeystoreIfMissing(androidKeyStore);
+    return ApkCache.sha256(androidKeyStore) + ":" + alias;
   }
 
   /* package */File createAndAddCustomizedAndroidManifestToSelendroidServer() throws IOException,
@@ -257,7 +383,33 @@ public class SelendroidServerBuilder {
       throw new IllegalArgumentException("outputFileName parameter is null.");
     }
     File androidKeyStore = androidDebugKeystore();
+    createKeystoreIfMissing(androidKeyStore);
+
+    // Sign the jar
+    CommandLine commandline = new CommandLine(JavaSdk.jarsigner());
 
+    commandline.addArgument("-sigalg", false);
+    commandline.addArgument(getSigAlg(), false);
+    commandline.addArgument("-digestalg", false);
+    commandline.addArgument("SHA1", false);
+    commandline.addArgument("-signedjar", false);
+    commandline.addArgument(outputFileName.getAbsolutePath(), false);
+    commandline.addArgument("-storepass", false);
+    commandline.addArgument(storepass, false);
+    commandline.addArgument("-keystore", false);
+    commandline.addArgument(androidKeyStore.toString(), false);
+    commandline.addArgument(customSelendroidServer.getAbsolutePath(), false);
+    commandline.addArgument(alias, false);
+    String output = ShellCommand.exec(commandline, 20000);
+    if (log.isLoggable(Level.INFO)) {
+      log.info("App signing output: " + output);
+    }
+    log.info("The app has been signed: " + outputFileName.getAbsolutePath());
+    return new DefaultAndroidApp(outputFileName);
+  }
+
+  private synchronized void createKeystoreIfMissing(File androidKeyStore)
+      throws ShellCommandException {
     if (!androidKeyStore.isFile()) {
       // create a new keystore
       CommandLine commandline = new CommandLine(JavaSdk.keytool());
@@ -286,28 +438,6 @@ public class SelendroidServerBuilder {
       String output = ShellCommand.exec(commandline, 20000);
       log.info("A new keystore has been created: " + output);
     }
-
-    // Sign the jar
-    CommandLine commandline = new CommandLine(JavaSdk.jarsigner());
-
-    commandline.addArgument("-sigalg", false);
-    commandline.addArgument(getSigAlg(), false);
-    commandline.addArgument("-digestalg", false);
-    commandline.addArgument("SHA1", false);
-    commandline.addArgument("-signedjar", false);
-    commandline.addArgument(outputFileName.getAbsolutePath(), false);
-    commandline.addArgument("-storepass", false);
-    commandline.addArgument(storepass, false);
-    commandline.addArgument("-keystore", false);
-    commandline.addArgument(androidKeyStore.toString(), false);
-    commandline.addArgument(customSelendroidServer.getAbsolutePath(), false);
-    commandline.addArgument(alias, false);
-    String output = ShellCommand.exec(commandline, 20000);
-    if (log.isLoggable(Level.INFO)) {
-      log.info("App signing output: " + output);
-    }
-    log.info("The app has been signed: " + outputFileName.getAbsolutePath());
-    return new DefaultAndroidApp(outputFileName);
   }
 
   private File androidDebugKeystore() {
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.builder;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Signs APKs the way {@code jarsigner -digestalg SHA1} does (JAR signature scheme, also known as
+ * APK signature scheme v1), but in process.
+ *
+ * The digests of all entries are passed in with {@link #addEntry(String, byte[])}, afterwards
+ * {@link #createSignatureEntries()} returns the META-INF/MANIFEST.MF, the signature file and the
+ * signature block that have to be added to the APK.
+ */
+class V1ApkSigner {
+  static final String DIGEST_ALGORITHM = "SHA-1";
+  private static final String DIGEST_ATTRIBUTE = "SHA1-Digest";
+  private static final String CREATED_BY = "1.0 (selendroid)";
+  private static final String RSA_ENCRYPTION_OID = "1.2.840.113549.1.1.1";
+  private static final String SIGNED_DATA_OID = "1.2.840.113549.1.7.2";
+  private static final String DATA_OID = "1.2.840.113549.1.7.1";
+  private static final Map<String, String> DIGEST_OIDS = new LinkedHashMap<String, String>();
+
+  static {
+    DIGEST_OIDS.put("MD5", "1.2.840.113549.2.5");
+    DIGEST_OIDS.put("SHA1", "1.3.14.3.2.26");
+    DIGEST_OIDS.put("SHA256", "2.16.840.1.101.3.4.2.1");
+    DIGEST_OIDS.put("SHA384", "2.16.840.1.101.3.4.2.2");
+    DIGEST_OIDS.put("SHA512", "2.16.840.1.101.3.4.2.3");
+  }
+
+  private final PrivateKey privateKey;
+  private final X509Certificate certificate;
+  private final String signatureAlgorithm;
+  private final String signatureDigestOid;
+  private final String signatureFileName;
+  private final ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream signatureFileSections = new ByteArrayOutputStream();
+  private final byte[] mainAttributes;
+
+  /**
+   * @param signatureAlgorithm e.g. SHA1withRSA, only RSA keys are supported
+   * @param alias used to derive the names of the signature files like jarsigner does
+   */
+  V1ApkSigner(PrivateKey privateKey, X509Certificate certificate, String signatureAlgorithm,
+      String alias) {
+    String[] algorithm = signatureAlgorithm.toUpperCase(Locale.US).split("WITH");
+    if (algorithm.length != 2 || !"RSA".equals(algorithm[1])
+        || !DIGEST_OIDS.containsKey(algorithm[0].replace("-", ""))
+        || !"RSA".equals(privateKey.getAlgorithm())) {
+      throw new IllegalArgumentException("Unsupported signature algorithm " + signatureAlgorithm
+          + " for " + privateKey.getAlgorithm() + " key");
+    }
+    this.privateKey = privateKey;
+    this.certificate = certificate;
+    this.signatureAlgorithm = signatureAlgorithm;
+    this.signatureDigestOid = DIGEST_OIDS.get(algorithm[0].replace("-", ""));
+    this.signatureFileName = "META-INF/" + signatureFileBaseName(alias);
+
+    ByteArrayOutputStream main = new ByteArrayOutputStream();
+    writeAttribute(main, "Manifest-Version", "1.0");
+    writeAttribute(main, "Created-By", CREATED_BY);
+    writeNewLine(main);
+    mainAttributes = main.toByteArray();
+    write(manifest, mainAttributes);
+  }
+
+  /**
+   * Loads the private key and certificate from the keystore, the key password has to be the same
+   * as the keystore password.
+   */
+  static V1ApkSigner fromKeystore(File keystoreFile, String storepass, String alias,
+      String signatureAlgorithm) throws IOException, GeneralSecurityException {
+    KeyStore keystore = KeyStore.getInstance(KeyStore.getDefaultType());
+    InputStream in = new FileInputStream(keystoreFile);
+    try {
+      keystore.load(in, storepass.toCharArray());
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    Key key = keystore.getKey(alias, storepass.toCharArray());
+    if (!(key instanceof PrivateKey)) {
+      throw new GeneralSecurityException("No private key with alias '" + alias + "' in "
+          + keystoreFile.getAbsolutePath());
+    }
+    return new V1ApkSigner((PrivateKey) key, (X509Certificate) keystore.getCertificate(alias),
+        signatureAlgorithm, alias);
+  }
+
+  static MessageDigest newEntryDigest() {
+    try {
+      return MessageDigest.getInstance(DIGEST_ALGORITHM);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param digest digest of the uncompressed entry created with {@link #newEntryDigest()}
+   */
+  void addEntry(String name, byte[] digest) {
+    ByteArrayOutputStream section = new ByteArrayOutputStream();
+    writeAttribute(section, "Name", name);
+    writeAttribute(section, DIGEST_ATTRIBUTE, base64(digest));
+    writeNewLine(section);
+    byte[] sectionBytes = section.toByteArray();
+    write(manifest, sectionBytes);
+
+    writeAttribute(signatureFileSections, "Name", name);
+    writeAttribute(signatureFileSections, DIGEST_ATTRIBUTE,
+        base64(newEntryDigest().digest(sectionBytes)));
+    writeNewLine(signatureFileSections);
+  }
+
+  /**
+   * @return the entries to add to the APK, in the order they should be written
+   */
+  Map<String, byte[]> createSignatureEntries() throws GeneralSecurityException {
+    byte[] manifestBytes = manifest.toByteArray();
+
+    ByteArrayOutputStream signatureFile = new ByteArrayOutputStream();
+    writeAttribute(signatureFile, "Signature-Version", "1.0");
+    writeAttribute(signatureFile, "Created-By", CREATED_BY);
+    writeAttribute(signatureFile, DIGEST_ATTRIBUTE + "-Manifest",
+        base64(newEntryDigest().digest(manifestBytes)));
+    writeAttribute(signatureFile, DIGEST_ATTRIBUTE + "-Manifest-Main-Attributes",
+        base64(newEntryDigest().digest(mainAttributes)));
+    writeNewLine(signatureFile);
+    write(signatureFile, signatureFileSections.toByteArray());
+    byte[] signatureFileBytes = signatureFile.toByteArray();
+
+    Signature signature = Signature.getInstance(signatureAlgorithm);
+    signature.initSign(privateKey);
+    signature.update(signatureFileBytes);
+
+    Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+    entries.put("META-INF/MANIFEST.MF", manifestBytes);
+    entries.put(signatureFileName + ".SF", signatureFileBytes);
+    entries.put(signatureFileName + ".RSA", createSignatureBlock(signature.sign()));
+    return entries;
+  }
+
+  /**
+   * Creates the PKCS #7 SignedData structure without signed attributes that jarsigner writes.
+   */
+  private byte[] createSignatureBlock(byte[] signature) throws GeneralSecurityException {
+    byte[] digestAlgorithm = sequence(oid(signatureDigestOid), der(0x05));
+    byte[] signerInfo = sequence(
+        integer(new byte[] {1}),
+        sequence(certificate.getIssuerX500Principal().getEncoded(),
+            integer(certificate.getSerialNumber().toByteArray())),
+        digestAlgorithm,
+        sequence(oid(RSA_ENCRYPTION_OID), der(0x05)),
+        der(0x04, signature));
+    byte[] signedData = sequence(
+        integer(new byte[] {1}),
+        der(0x31, digestAlgorithm),
+        sequence(oid(DATA_OID)),
+        der(0xA0, certificate.getEncoded()),
+        der(0x31, signerInfo));
+    return sequence(oid(SIGNED_DATA_OID), der(0xA0, signedData));
+  }
+
+  /**
+   * Same as jarsigner: the alias in upper case, cut to 8 characters.
+   */
+  static String signatureFileBaseName(String alias) {
+    String name = alias.toUpperCase(Locale.US);
+    if (name.length() > 8) {
+      name = name.substring(0, 8);
+    }
+    StringBuilder result = new StringBuilder();
+    for (char c : name.toCharArray()) {
+      boolean valid = (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+      result.append(valid ? c : '_');
+    }
+    return result.toString();
+  }
+
+  /**
+   * Writes an attribute, lines are wrapped after 72 bytes as required by the JAR specification.
+   */
+  private static void writeAttribute(ByteArrayOutputStream out, String name, String value) {
+    byte[] line = (name + ": " + value).getBytes(Charsets.UTF_8);
+    int offset = 0;
+    int max = 72;
+    while (line.length - offset > max) {
+      out.write(line, offset, max);
+      writeNewLine(out);
+      out.write(' ');
+      offset += max;
+      max = 71;
+    }
+    out.write(line, offset, line.length - offset);
+    writeNewLine(out);
+  }
+
+  private static void writeNewLine(ByteArrayOutputStream out) {
+    out.write('\r');
+    out.write('\n');
+  }
+
+  private static void write(ByteArrayOutputStream out, byte[] bytes) {
+    out.write(bytes, 0, bytes.length);
+  }
+
+  private static String base64(byte[] bytes) {
+    return BaseEncoding.base64().encode(bytes);
+  }
+
+  private static byte[] sequence(byte[]... contents) {
+    return der(0x30, contents);
+  }
+
+  private static byte[] integer(byte[] value) {
+    return der(0x02, value);
+  }
+
+  private static byte[] oid(String oid) {
+    String[] parts = oid.split("\\.");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(Integer.parseInt(parts[0]) * 40 + Integer.parseInt(parts[1]));
+    for (int i = 2; i < parts.length; i++) {
+      long value = Long.parseLong(parts[i]);
+      int shift = 63 - Long.numberOfLeadingZeros(value);
+      shift -= shift % 7;
+      for (; shift > 0; shift -= 7) {
+        out.write((int) (0x80 | ((value >> shift) & 0x7F)));
+      }
+      out.write((int) (value & 0x7F));
+    }
+    return der(0x06, out.toByteArray());
+  }
+
+  private static byte[] der(int tag, byte[]... contents) {
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    for (byte[] bytes : contents) {
+      write(content, bytes);
+    }
+    int length = content.size();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(tag);
+    if (length < 0x80) {
+      out.write(length);
+    } else {
+      int bytes = (32 - Integer.numberOfLeadingZeros(length) + 7) / 8;
+      out.write(0x80 | bytes);
+      for (int i = bytes - 1; i >= 0; i--) {
+        out.write(length >> (8 * i));
+      }
+    }
+    write(out, content.toByteArray());
+    return out.toByteArray();
+  }
+}
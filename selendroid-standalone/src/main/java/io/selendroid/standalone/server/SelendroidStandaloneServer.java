@@ -41,18 +41,27 @@ public class SelendroidStandaloneServer {
                                        SelendroidStandaloneDriver driver) throws AndroidSdkException {
     this.config = config;
     this.driver = driver;
-    webServer = new HttpServer(config.getPort());
+    webServer = createHttpServer(config);
     init();
   }
 
   public SelendroidStandaloneServer(SelendroidConfiguration config)
       throws AndroidSdkException, AndroidDeviceException {
     this.config = config;
-    webServer = new HttpServer(config.getPort());
+    webServer = createHttpServer(config);
     driver = initializeSelendroidServer();
     init();
   }
 
+  private static HttpServer createHttpServer(SelendroidConfiguration config) {
+    HttpServer server = new HttpServer(config.getPort());
+    server.setKeepAlive(config.isKeepAlive());
+    server.setIdleTimeoutSeconds(config.getKeepAliveTimeoutSeconds());
+    // new session requests wait for busy devices, which are released by other requests
+    server.setBlockingServlets(true);
+    return server;
+  }
+
   protected void init() throws AndroidSdkException {
     webServer.addHandler(new StatusServlet(driver));
     webServer.addHandler(new SelendroidServlet(driver, config));
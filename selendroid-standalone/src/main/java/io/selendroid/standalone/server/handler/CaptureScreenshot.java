@@ -13,10 +13,11 @@
  */
 package io.selendroid.standalone.server.handler;
 
+import com.google.common.io.BaseEncoding;
+
 import io.selendroid.standalone.server.BaseSelendroidStandaloneHandler;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.openqa.selenium.internal.Base64Encoder;
 
 import io.selendroid.server.common.Response;
 import io.selendroid.server.common.SelendroidResponse;
@@ -43,7 +44,7 @@ public class CaptureScreenshot extends BaseSelendroidStandaloneHandler {
       log.log(Level.SEVERE, "Cannot take screenshot", e);
       return new SelendroidResponse(getSessionId(request), StatusCode.UNKNOWN_ERROR, e);
     }
-    String base64Png = new Base64Encoder().encode(rawPng);
+    String base64Png = BaseEncoding.base64().encode(rawPng);
 
     return new SelendroidResponse(getSessionId(request), base64Png);
   }
@@ -34,7 +34,7 @@ public class GetLogs extends BaseSelendroidStandaloneHandler {
   public Response handleRequest(HttpRequest request, JSONObject payload) throws JSONException {
     ActiveSession session = getActiveSession(request);
     JSONArray logs = new JSONArray();
-    for (LogEntry l : session.getDevice().getLogs()) {
+    for (LogEntry l : session.readNewLogs()) {
       logs.put(l.toString());
     }
     return new SelendroidResponse(getSessionId(request), logs);
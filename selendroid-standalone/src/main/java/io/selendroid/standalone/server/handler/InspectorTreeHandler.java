@@ -64,7 +64,7 @@ public class InspectorTreeHandler extends BaseSelendroidStandaloneHandler {
 
     try {
       HttpResponse r =
-          HttpClientUtil.executeRequest(
+          HttpClientUtil.executeRequest(session.getHttpClient(),
               "http://localhost:" + session.getSelendroidServerPort() + "/inspector/tree", HttpMethod.GET);
       return new JsResult(EntityUtils.toString(r.getEntity(),Charset.forName("UTF-8")));
     } catch (Exception e) {
@@ -37,7 +37,8 @@ public class NetworkConnectionHandler extends BaseSelendroidStandaloneHandler {
     String url = "http://localhost:" + session.getSelendroidServerPort() + request.uri();
     Integer connectionType = getPayload(request).getJSONObject("parameters").getInt("type");
     try {
-      JSONObject r = HttpClientUtil.parseJsonResponse(HttpClientUtil.executeRequest(url, HttpMethod.GET));
+      JSONObject r = HttpClientUtil.parseJsonResponse(
+          HttpClientUtil.executeRequest(session.getHttpClient(), url, HttpMethod.GET));
       // Airplane mode is the first bit, so even is disabled, odd is disabled
       if (r.getInt("value") % 2 == connectionType % 2) {
         // airplane modes are the same
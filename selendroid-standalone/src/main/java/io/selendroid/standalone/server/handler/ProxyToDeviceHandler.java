@@ -21,7 +21,6 @@ import io.netty.handler.codec.http.HttpMethod;
 import io.selendroid.server.common.Response;
 import io.selendroid.server.common.SelendroidResponse;
 import io.selendroid.server.common.StatusCode;
-import io.selendroid.server.common.exceptions.AppCrashedException;
 import io.selendroid.server.common.exceptions.SelendroidException;
 import io.selendroid.server.common.http.HttpRequest;
 import io.selendroid.standalone.android.AndroidDevice;
@@ -32,6 +31,7 @@ import io.selendroid.standalone.server.util.HttpClientUtil;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.NoHttpResponseException;
+import org.apache.http.util.EntityUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.openqa.selenium.TimeoutException;
@@ -82,6 +82,7 @@ public class ProxyToDeviceHandler extends BaseSelendroidStandaloneHandler {
                   "This happens if a hardware device was disconnected but a " +
                   "test session was still active on the device."));
     }
+    session.touch();
     String url = "http://localhost:" + session.getSelendroidServerPort() + request.uri();
 
     String method = request.method();
@@ -97,18 +98,13 @@ public class ProxyToDeviceHandler extends BaseSelendroidStandaloneHandler {
         @Override
         public Response apply(AndroidDevice device) {
           try {
-            // Check if the app crashed in the middle of the request
-            String crashLog = device.getCrashLog();
-            if (!crashLog.isEmpty()) {
-              return respondWithFailure(sessionId, new AppCrashedException(crashLog));
-            }
-
             // Check if the instrumentation process died in the middle of the request
             if (session.instrumentationProcessFinished()) {
               return respondWithInstrumentationProcessFinished(
                 sessionId,
                 session.getInstrumentationProcessOutput(),
                 session.getInstrumentationProcessError(),
+                session.getCrashLog(),
                 device);
             }
 
@@ -133,18 +129,13 @@ public class ProxyToDeviceHandler extends BaseSelendroidStandaloneHandler {
         }
       });
     } catch (TimeoutException e) {
-      // Check for regular app crashes first
-      String crashLog = device.getCrashLog();
-      if (!crashLog.isEmpty()) {
-        return respondWithFailure(sessionId, new AppCrashedException(crashLog));
-      }
-
-      // Check if we timed out because of the instrumentation process dying
+      // Check if we timed out because of the instrumentation process dying first
       if (session.instrumentationProcessFinished()) {
         return respondWithInstrumentationProcessFinished(
           sessionId,
           session.getInstrumentationProcessOutput(),
           session.getInstrumentationProcessError(),
+          session.getCrashLog(),
           device);
       }
 
@@ -159,6 +150,7 @@ public class ProxyToDeviceHandler extends BaseSelendroidStandaloneHandler {
     String sessionId,
     String output,
     Exception error,
+    String crashLog,
     AndroidDevice device) throws JSONException {
     InstrumentationProcessOutput instrumentationOutput =
       InstrumentationProcessOutput.parse(output);
@@ -177,7 +169,8 @@ public class ProxyToDeviceHandler extends BaseSelendroidStandaloneHandler {
       InstrumentationProcessOutput
         .getInstrumentationProcessError(
           instrumentationOutput,
-          device));
+          device,
+          crashLog));
   }
 
 
@@ -190,19 +183,21 @@ public class ProxyToDeviceHandler extends BaseSelendroidStandaloneHandler {
     HttpResponse r;
     if ("get".equalsIgnoreCase(method)) {
       log.fine("Proxy GET to the device: " + url);
-      r = HttpClientUtil.executeRequest(url, HttpMethod.GET);
+      r = HttpClientUtil.executeRequest(session.getHttpClient(), url, HttpMethod.GET);
     } else if ("post".equalsIgnoreCase(method)) {
       JSONObject payload = getPayload(request);
       log.fine("Proxy POST to the device: " + url + ", payload:\n" + payload);
-      r = HttpClientUtil.executeRequestWithPayload(
+      r = HttpClientUtil.executeRequestWithPayload(session.getHttpClient(),
           url, session.getSelendroidServerPort(), HttpMethod.POST, payload.toString());
     } else if ("delete".equalsIgnoreCase(method)) {
       log.fine("Proxy DELETE to the device: " + url);
-      r = HttpClientUtil.executeRequest(url, HttpMethod.DELETE);
+      r = HttpClientUtil.executeRequest(session.getHttpClient(), url, HttpMethod.DELETE);
     } else {
       throw new SelendroidException("HTTP method not supported: " + method);
     }
     if (r.getStatusLine().getStatusCode() == 404) { // Unknown command
+      // hand the connection back to the session's pool
+      EntityUtils.consumeQuietly(r.getEntity());
       return null;
     }
     return HttpClientUtil.parseJsonResponse(r);
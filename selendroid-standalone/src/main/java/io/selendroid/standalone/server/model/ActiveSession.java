@@ -14,24 +14,39 @@
 package io.selendroid.standalone.server.model;
 
 import io.selendroid.common.SelendroidCapabilities;
+import io.selendroid.standalone.SelendroidConfiguration;
 import io.selendroid.standalone.android.AndroidApp;
 import io.selendroid.standalone.android.AndroidDevice;
 import io.selendroid.standalone.android.InstrumentationProcessListener;
+import io.selendroid.standalone.android.LogcatStore;
+import io.selendroid.standalone.server.util.HttpClientUtil;
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.openqa.selenium.logging.LogEntry;
 
-import java.util.Timer;
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class ActiveSession {
+  private static final Logger log = Logger.getLogger(ActiveSession.class.getName());
   private final String sessionId;
   private AndroidApp aut;
   private AndroidDevice device;
   private SelendroidCapabilities desiredCapabilities;
   private final int selendroidServerPort;
-  private boolean invalid = false;
-  private final Timer stopSessionTimer = new Timer(true);
-
-  private boolean instrumentationProcessFinished = false;
-  private Exception instrumentationProcessError;
-  private String instrumentationProcessOutput;
+  private volatile boolean invalid = false;
+  private final SessionTimeouts.Timeout timeout;
+  private final CloseableHttpClient httpClient;
+
+  private final InstrumentationProcessListener instrumentationProcessListener;
+  private volatile boolean instrumentationProcessFinished = false;
+  private volatile Exception instrumentationProcessError;
+  private volatile String instrumentationProcessOutput;
+  private volatile String crashLog = "";
+  // cursor of the last read of the device log, guarded by this
+  private long logCursor = 0;
 
   ActiveSession(String sessionId, SelendroidCapabilities desiredCapabilities, AndroidApp aut,
       AndroidDevice device, int selendroidPort, SelendroidStandaloneDriver driver) {
@@ -40,26 +55,44 @@ public class ActiveSession {
     this.aut = aut;
     this.device = device;
     this.desiredCapabilities = desiredCapabilities;
-    stopSessionTimer.schedule(new SessionTimeoutTask(driver, sessionId), driver
-        .getSelendroidConfiguration().getSessionTimeoutMillis());
-    this.device.addInstrumentationProcessListener(
-      new InstrumentationProcessListener() {
-        @Override
-        public void onInstrumentationProcessComplete(String output) {
-          instrumentationProcessFinished = true;
-          instrumentationProcessOutput = output;
-          instrumentationProcessError = null;
-        }
-
-        @Override
-        public void onInstrumentationProcessFailed(
-          String output,
-          Exception error) {
-          instrumentationProcessFinished = true;
-          instrumentationProcessOutput = output;
-          instrumentationProcessError = error;
-        }
-      });
+    SelendroidConfiguration configuration = driver.getSelendroidConfiguration();
+    this.httpClient = HttpClientUtil.createPooledHttpClient(
+        configuration.getDeviceHttpMaxConnections(),
+        configuration.getDeviceHttpConnectTimeout(),
+        configuration.getDeviceHttpSocketTimeout());
+    this.timeout = driver.getSessionTimeouts().schedule(driver, sessionId);
+    // The selendroid-server runs inside the process of the app under test and kills it after
+    // writing the crash log, so the crash log only has to be read once the instrumentation
+    // process is gone instead of polling the device for it before every command.
+    this.instrumentationProcessListener = new InstrumentationProcessListener() {
+      @Override
+      public void onInstrumentationProcessComplete(String output) {
+        readCrashLog();
+        instrumentationProcessOutput = output;
+        instrumentationProcessError = null;
+        instrumentationProcessFinished = true;
+      }
+
+      @Override
+      public void onInstrumentationProcessFailed(
+        String output,
+        Exception error) {
+        readCrashLog();
+        instrumentationProcessOutput = output;
+        instrumentationProcessError = error;
+        instrumentationProcessFinished = true;
+      }
+    };
+    this.device.addInstrumentationProcessListener(instrumentationProcessListener);
+  }
+
+  private void readCrashLog() {
+    try {
+      String output = device.getCrashLog();
+      crashLog = output != null ? output : "";
+    } catch (Exception e) {
+      log.log(Level.WARNING, "Could not read the crash log of the app under test", e);
+    }
   }
 
   @Override
@@ -82,6 +115,25 @@ public class ActiveSession {
     return getDevice().getSelendroidsPort();
   }
 
+  /**
+   * @return the client used to talk to the selendroid-server of this session. Connections to the
+   *         device are kept alive and reused until the session is stopped.
+   */
+  public HttpClient getHttpClient() {
+    return httpClient;
+  }
+
+  /**
+   * Releases all connections to the selendroid-server of this session.
+   */
+  public void closeHttpClient() {
+    try {
+      httpClient.close();
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Error closing connections to the selendroid-server", e);
+    }
+  }
+
   public SelendroidCapabilities getDesiredCapabilities() {
     return desiredCapabilities;
   }
@@ -114,7 +166,31 @@ public class ActiveSession {
   }
 
   public void stopSessionTimer() {
-    stopSessionTimer.cancel();
+    timeout.cancel();
+  }
+
+  /**
+   * Records activity of the client, which restarts the idle timeout of the session.
+   */
+  public void touch() {
+    timeout.touch();
+  }
+
+  /**
+   * @return the device log entries that were logged since the last call
+   */
+  public synchronized List<LogEntry> readNewLogs() {
+    LogcatStore.Page page = device.getLogs(logCursor);
+    logCursor = page.getCursor();
+    return page.getEntries();
+  }
+
+  /**
+   * Stops listening for the instrumentation process of this session, e.g. because the session is
+   * being stopped and the process is expected to finish.
+   */
+  public void detachFromDevice() {
+    device.removeInstrumentationProcessListener(instrumentationProcessListener);
   }
 
   public boolean instrumentationProcessFinished() {
@@ -129,6 +205,14 @@ public class ActiveSession {
     return instrumentationProcessError;
   }
 
+  /**
+   * @return empty string if the app under test did not crash during this session, otherwise the
+   *         stack trace of the crash
+   */
+  public String getCrashLog() {
+    return crashLog;
+  }
+
 
   @Override
   public String toString() {
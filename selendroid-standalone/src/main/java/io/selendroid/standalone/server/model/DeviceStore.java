@@ -13,6 +13,7 @@
  */
 package io.selendroid.standalone.server.model;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
@@ -44,21 +45,38 @@ import org.apache.commons.lang3.StringUtils;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Keeps track of the known devices and hands them out to test sessions.
+ * <p>
+ * Devices are allocated without a store wide lock: a device is claimed atomically by adding it to
+ * {@link #devicesInUse}, so concurrent session requests never get the same device. The devices
+ * per target platform are published as an immutable snapshot which is replaced when devices are
+ * added, updated or removed, so matching reads it without locking.
+ */
 public class DeviceStore {
   private static final Logger log = Logger.getLogger(DeviceStore.class.getName());
-  private List<AndroidDevice> devicesInUse = new ArrayList<AndroidDevice>();
-  private Map<DeviceTargetPlatform, List<AndroidDevice>> androidDevices =
-      new HashMap<DeviceTargetPlatform, List<AndroidDevice>>();
+  private final CopyOnWriteArrayList<AndroidDevice> devicesInUse = new CopyOnWriteArrayList<AndroidDevice>();
+  private volatile Map<DeviceTargetPlatform, List<AndroidDevice>> androidDevices =
+      Collections.emptyMap();
   private EmulatorPortFinder androidEmulatorPortFinder = null;
   private boolean clearData = true;
   private boolean keepEmulator = false;
   private AndroidEmulatorPowerStateListener emulatorPowerStateListener = null;
   private DeviceManager deviceManager = null;
+  private volatile long deviceWaitTimeoutMillis = 0;
+  private volatile int maxWaitingRequests = 50;
+  // requests waiting for a device to be released, in the order they arrived
+  private final List<DeviceRequest> waitingRequests = new LinkedList<DeviceRequest>();
 
   public DeviceStore(Integer emulatorPort, DeviceManager deviceManager) {
     this.deviceManager = deviceManager;
@@ -75,9 +93,18 @@ public class DeviceStore {
     return androidEmulatorPortFinder.next();
   }
 
+  /**
+   * Makes the port of an emulator that has been stopped outside of
+   * {@link #release(AndroidDevice, AndroidApp)} available again.
+   */
+  public void releaseEmulatorPort(Integer port) {
+    androidEmulatorPortFinder.release(port);
+  }
+
   /**
    * After a test session a device should be released. That means id will be removed from the list
-   * of devices in use and in case of an emulator it will be stopped.
+   * of devices in use and in case of an emulator it will be reset to the snapshot it was started
+   * from or stopped.
    *
    * @param device The device to release
    * @see {@link #findAndroidDevice(SelendroidCapabilities)}
@@ -105,14 +132,62 @@ public class DeviceStore {
 
       if (device instanceof AndroidEmulator && !(aut instanceof InstalledAndroidApp) && !keepEmulator) {
         AndroidEmulator emulator = (AndroidEmulator) device;
-        try {
-          emulator.stop();
-        } catch (AndroidDeviceException e) {
-          log.severe("Failed to stop emulator: " + e.getMessage());
+        if (!restoreSnapshot(emulator)) {
+          try {
+            emulator.stop();
+          } catch (AndroidDeviceException e) {
+            log.severe("Failed to stop emulator: " + e.getMessage());
+          }
+          androidEmulatorPortFinder.release(emulator.getPort());
         }
-        androidEmulatorPortFinder.release(emulator.getPort());
       }
       devicesInUse.remove(device);
+      assignDevicesToWaitingRequests();
+    }
+  }
+
+  /**
+   * Returns the device to the store without stopping the app under test or the emulator, so the
+   * selendroid-server running on it can be reused by a later session.
+   *
+   * @param device The device to release
+   * @see {@link #claimAndroidDevice(AndroidDevice, SelendroidCapabilities)}
+   */
+  public void releaseRunning(AndroidDevice device) {
+    log.info("Releasing device " + device + " with its selendroid-server still running");
+    if (devicesInUse.remove(device)) {
+      assignDevicesToWaitingRequests();
+    }
+  }
+
+  /**
+   * Claims the given device if it is part of the store, satisfies the capabilities and is not in
+   * use. <b>important note:</b> if the device is not any longer used, call the
+   * {@link #release(AndroidDevice, AndroidApp)} method.
+   *
+   * @return true if the device has been claimed.
+   */
+  public boolean claimAndroidDevice(AndroidDevice device, SelendroidCapabilities caps) {
+    boolean known = false;
+    for (List<AndroidDevice> platformDevices : androidDevices.values()) {
+      known |= platformDevices.contains(device);
+    }
+    String platformVersion = caps.getPlatformVersion();
+    boolean platformMatches = Strings.isNullOrEmpty(platformVersion)
+        || device.getTargetPlatform() == DeviceTargetPlatform.fromPlatformVersion(platformVersion);
+    return known && platformMatches && deviceSatisfiesCapabilities(caps).apply(device)
+        && devicesInUse.addIfAbsent(device);
+  }
+
+  /**
+   * @return true if the emulator keeps running, reset to the snapshot it was started from.
+   */
+  private boolean restoreSnapshot(AndroidEmulator emulator) {
+    try {
+      return emulator.restoreSnapshot();
+    } catch (AndroidDeviceException e) {
+      log.log(Level.WARNING, "Failed to restore the snapshot of the emulator, stopping it", e);
+      return false;
     }
   }
 
@@ -135,7 +210,7 @@ public class DeviceStore {
   }
 
 
-  public synchronized void addDevice(AndroidDevice androidDevice) throws AndroidDeviceException {
+  public void addDevice(AndroidDevice androidDevice) throws AndroidDeviceException {
     if (androidDevice == null) {
       log.info("No Android devices were found.");
       return;
@@ -152,14 +227,16 @@ public class DeviceStore {
 
   public synchronized void updateDevice(AndroidDevice device) throws AndroidDeviceException {
     boolean deviceRemoved = false;
-    for (DeviceTargetPlatform targetPlatform : androidDevices.keySet()) {
-      List<AndroidDevice> platformDevices = androidDevices.get(targetPlatform);
+    Map<DeviceTargetPlatform, List<AndroidDevice>> devices = copyOfDevices();
+    for (List<AndroidDevice> platformDevices : devices.values()) {
       // Attempt to remove the device from this target platform;
       deviceRemoved |= platformDevices.remove(device);
     }
 
     if (deviceRemoved) {
-      addDeviceToStore(device);
+      addDevice(devices, device);
+      publish(devices);
+      assignDevicesToWaitingRequests();
     } else {
       log.warning("Attempted to update device which did could not be found in the device store");
     }
@@ -184,29 +261,168 @@ public class DeviceStore {
    * @throws AndroidDeviceException
    */
   protected synchronized void addDeviceToStore(AndroidDevice device) throws AndroidDeviceException {
-    if (androidDevices.containsKey(device.getTargetPlatform())) {
-      List<AndroidDevice> platformDevices = androidDevices.get(device.getTargetPlatform());
+    Map<DeviceTargetPlatform, List<AndroidDevice>> devices = copyOfDevices();
+    addDevice(devices, device);
+    publish(devices);
+    assignDevicesToWaitingRequests();
+  }
+
+  private static void addDevice(Map<DeviceTargetPlatform, List<AndroidDevice>> devices,
+      AndroidDevice device) {
+    if (devices.containsKey(device.getTargetPlatform())) {
+      List<AndroidDevice> platformDevices = devices.get(device.getTargetPlatform());
       if (!platformDevices.contains(device)) {
         platformDevices.add(device);
       }
     } else {
-      androidDevices.put(device.getTargetPlatform(), Lists.newArrayList(device));
+      devices.put(device.getTargetPlatform(), Lists.newArrayList(device));
     }
   }
 
+  /**
+   * @return a mutable deep copy of the current devices per target platform. Only to be used while
+   *         holding the lock of the store.
+   */
+  private Map<DeviceTargetPlatform, List<AndroidDevice>> copyOfDevices() {
+    Map<DeviceTargetPlatform, List<AndroidDevice>> devices =
+        new HashMap<DeviceTargetPlatform, List<AndroidDevice>>();
+    for (Map.Entry<DeviceTargetPlatform, List<AndroidDevice>> entry : androidDevices.entrySet()) {
+      devices.put(entry.getKey(), new ArrayList<AndroidDevice>(entry.getValue()));
+    }
+    return devices;
+  }
+
+  private void publish(Map<DeviceTargetPlatform, List<AndroidDevice>> devices) {
+    Map<DeviceTargetPlatform, List<AndroidDevice>> snapshot =
+        new HashMap<DeviceTargetPlatform, List<AndroidDevice>>();
+    for (Map.Entry<DeviceTargetPlatform, List<AndroidDevice>> entry : devices.entrySet()) {
+      snapshot.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+    }
+    androidDevices = Collections.unmodifiableMap(snapshot);
+  }
+
   /**
    * Finds a device for the requested capabilities. <b>important note:</b> if the device is not any
    * longer used, call the {@link #release(AndroidDevice, AndroidApp)} method.
+   * <p>
+   * If all matching devices are in use and a device wait timeout is configured, the request waits
+   * until a matching device is released. Waiting requests get devices in the order they arrived.
    *
    * @param caps The desired test session capabilities.
    * @return Matching device for a test session.
    * @throws DeviceStoreException
    * @see {@link #release(AndroidDevice, AndroidApp)}
    */
-  public synchronized AndroidDevice findAndroidDevice(SelendroidCapabilities caps) throws DeviceStoreException {
+  public AndroidDevice findAndroidDevice(SelendroidCapabilities caps) throws DeviceStoreException {
 
     Preconditions.checkArgument(caps != null, "Error: capabilities are null");
 
+    if (deviceWaitTimeoutMillis <= 0) {
+      AndroidDevice device = allocateAndroidDevice(caps);
+      if (device == null) {
+        throw noDevicesFound();
+      }
+      return device;
+    }
+    return awaitAndroidDevice(caps);
+  }
+
+  private AndroidDevice awaitAndroidDevice(SelendroidCapabilities caps) throws DeviceStoreException {
+    DeviceRequest request = new DeviceRequest(caps);
+    long deadline = System.currentTimeMillis() + deviceWaitTimeoutMillis;
+    synchronized (waitingRequests) {
+      int waitingForSameDevices = 0;
+      for (DeviceRequest waiting : waitingRequests) {
+        if (waiting.capabilityClass.equals(request.capabilityClass)) {
+          waitingForSameDevices++;
+        }
+      }
+      // earlier requests for the same devices are served first
+      if (waitingForSameDevices == 0) {
+        AndroidDevice device = allocateAndroidDevice(caps);
+        if (device != null) {
+          return device;
+        }
+      }
+      if (waitingForSameDevices >= maxWaitingRequests) {
+        throw new DeviceStoreException("No devices are found and already " + waitingForSameDevices
+            + " session requests are waiting for a device matching the required capabilities.");
+      }
+      log.info("All devices matching the capabilities are in use, waiting up to "
+          + deviceWaitTimeoutMillis + " ms for one to be released.");
+      waitingRequests.add(request);
+      requestWaiting();
+      try {
+        while (request.device == null) {
+          long remaining = deadline - System.currentTimeMillis();
+          if (remaining <= 0) {
+            waitingRequests.remove(request);
+            throw noDevicesFound();
+          }
+          waitingRequests.wait(remaining);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        if (request.device == null) {
+          waitingRequests.remove(request);
+          throw new DeviceStoreException(e);
+        }
+      }
+      return request.device;
+    }
+  }
+
+  /**
+   * Called when a request starts to wait for a device, while holding the lock of the waiting
+   * requests. For testing only.
+   */
+  /* package */void requestWaiting() {}
+
+  /**
+   * Hands the devices that became available to the waiting requests, in the order the requests
+   * arrived.
+   */
+  private void assignDevicesToWaitingRequests() {
+    synchronized (waitingRequests) {
+      if (waitingRequests.isEmpty()) {
+        return;
+      }
+      Set<String> unavailable = new HashSet<String>();
+      boolean assigned = false;
+      Iterator<DeviceRequest> requests = waitingRequests.iterator();
+      while (requests.hasNext()) {
+        DeviceRequest request = requests.next();
+        if (unavailable.contains(request.capabilityClass)) {
+          continue;
+        }
+        try {
+          request.device = allocateAndroidDevice(request.capabilities);
+        } catch (DeviceStoreException e) {
+          // the request keeps waiting, a matching device might be added again
+          log.fine("No device for waiting request: " + e.getMessage());
+        }
+        if (request.device == null) {
+          unavailable.add(request.capabilityClass);
+        } else {
+          requests.remove();
+          assigned = true;
+        }
+      }
+      if (assigned) {
+        waitingRequests.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Claims a free device matching the capabilities.
+   *
+   * @return the claimed device or null if all matching devices are in use.
+   * @throws DeviceStoreException if no device at all matches the capabilities.
+   */
+  private AndroidDevice allocateAndroidDevice(SelendroidCapabilities caps)
+      throws DeviceStoreException {
+    Map<DeviceTargetPlatform, List<AndroidDevice>> androidDevices = this.androidDevices;
     if (androidDevices.isEmpty()) {
       throw new DeviceStoreException("Fatal Error: Device Store does not contain any Android Device.");
     }
@@ -218,27 +434,36 @@ public class DeviceStore {
 
     candidateDevices = MoreObjects.firstNonNull(candidateDevices, Collections.EMPTY_LIST);
 
-    FluentIterable<AndroidDevice> allMatchingDevices = FluentIterable.from(candidateDevices)
-        .filter(deviceNotInUse())
-        .filter(deviceSatisfiesCapabilities(caps));
-
-    if (!allMatchingDevices.isEmpty()) {
+    List<AndroidDevice> allMatchingDevices = FluentIterable.from(candidateDevices)
+        .filter(deviceSatisfiesCapabilities(caps))
+        .toList();
+    if (allMatchingDevices.isEmpty()) {
+      throw noDevicesFound();
+    }
 
-      AndroidDevice matchingDevice = allMatchingDevices.filter(deviceRunning()).first()
-          .or(allMatchingDevices.first()).get();
+    // running devices are preferred, the others are only potential matches
+    List<AndroidDevice> runningDevices = new ArrayList<AndroidDevice>();
+    List<AndroidDevice> potentialMatches = new ArrayList<AndroidDevice>();
+    for (AndroidDevice device : FluentIterable.from(allMatchingDevices).filter(deviceNotInUse())) {
+      (deviceRunning().apply(device) ? runningDevices : potentialMatches).add(device);
+    }
 
-      if (!deviceRunning().apply(matchingDevice)) {
-        log.info("Using potential match: " + matchingDevice);
+    for (AndroidDevice matchingDevice : Iterables.concat(runningDevices, potentialMatches)) {
+      // another session may have claimed the device in the meantime
+      if (devicesInUse.addIfAbsent(matchingDevice)) {
+        if (!runningDevices.contains(matchingDevice)) {
+          log.info("Using potential match: " + matchingDevice);
+        }
+        return matchingDevice;
       }
-
-      devicesInUse.add(matchingDevice);
-      return matchingDevice;
-
-    } else {
-      throw new DeviceStoreException("No devices are found. "
-          + "This can happen if the devices are in use or no device screen "
-          + "matches the required capabilities.");
     }
+    return null;
+  }
+
+  private static DeviceStoreException noDevicesFound() {
+    return new DeviceStoreException("No devices are found. "
+        + "This can happen if the devices are in use or no device screen "
+        + "matches the required capabilities.");
   }
 
   private boolean isEmulatorSwitchedOff(AndroidDevice device) throws DeviceStoreException {
@@ -290,14 +515,21 @@ public class DeviceStore {
       throw new DeviceStoreException("Only devices of type 'DefaultHardwareDevice' can be removed.");
     }
 
+    // the device must not be handed to a waiting session request when it is released
+    removeDeviceFromStore(device);
     release(device, null);
+  }
+
+  private synchronized void removeDeviceFromStore(AndroidDevice device) {
     DeviceTargetPlatform apiLevel = device.getTargetPlatform();
-    if (androidDevices.containsKey(apiLevel)) {
+    Map<DeviceTargetPlatform, List<AndroidDevice>> devices = copyOfDevices();
+    if (devices.containsKey(apiLevel)) {
       log.info("Removing: " + device);
-      androidDevices.get(apiLevel).remove(device);
-      if (androidDevices.get(apiLevel).isEmpty()) {
-        androidDevices.remove(apiLevel);
+      devices.get(apiLevel).remove(device);
+      if (devices.get(apiLevel).isEmpty()) {
+        devices.remove(apiLevel);
       }
+      publish(devices);
     } else {
       for (List<AndroidDevice> targetDevices : androidDevices.values()) {
         if (targetDevices.contains(device)) {
@@ -317,6 +549,22 @@ public class DeviceStore {
     this.keepEmulator = keepEmulator;
   }
 
+  /**
+   * @param deviceWaitTimeoutMillis how long a request waits for a matching device to be released.
+   *        0 fails requests right away if all matching devices are in use.
+   */
+  public void setDeviceWaitTimeoutMillis(long deviceWaitTimeoutMillis) {
+    this.deviceWaitTimeoutMillis = deviceWaitTimeoutMillis;
+  }
+
+  /**
+   * @param maxWaitingRequests how many requests may wait for devices matching the same
+   *        capabilities. Further requests fail right away.
+   */
+  public void setMaxWaitingRequests(int maxWaitingRequests) {
+    this.maxWaitingRequests = maxWaitingRequests;
+  }
+
   private Predicate<AndroidDevice> deviceNotInUse() {
     return new Predicate<AndroidDevice>() {
       @Override
@@ -354,6 +602,21 @@ public class DeviceStore {
     };
   }
 
+  private static class DeviceRequest {
+    private final SelendroidCapabilities capabilities;
+    // requests with the same capability class match the same devices
+    private final String capabilityClass;
+    // guarded by waitingRequests
+    private AndroidDevice device;
+
+    DeviceRequest(SelendroidCapabilities capabilities) {
+      this.capabilities = capabilities;
+      this.capabilityClass = Joiner.on('|').useForNull("").join(capabilities.getPlatformVersion(),
+          capabilities.getEmulator(), capabilities.getSerial(), capabilities.getModel(),
+          capabilities.getAPITargetType(), capabilities.getScreenSize());
+    }
+  }
+
   class DefaultEmulatorPowerStateListener implements AndroidEmulatorPowerStateListener {
 
     @Override
@@ -382,5 +645,10 @@ public class DeviceStore {
     public void onDeviceStopped(String avdName) {
       // do nothing
     }
+
+    @Override
+    public void onDeviceOnline(String serial) {
+      // do nothing
+    }
   }
 }
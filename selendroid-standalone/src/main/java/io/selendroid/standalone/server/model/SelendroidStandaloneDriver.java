@@ -15,6 +15,7 @@ package io.selendroid.standalone.server.model;
 
 import com.beust.jcommander.internal.Lists;
 import com.google.common.base.Function;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.handler.codec.http.HttpMethod;
 import io.selendroid.common.SelendroidCapabilities;
 import io.selendroid.server.common.ServerDetails;
@@ -29,9 +30,11 @@ import io.selendroid.standalone.android.AndroidSdk;
 import io.selendroid.standalone.android.DeviceManager;
 import io.selendroid.standalone.android.InstrumentationProcessListener;
 import io.selendroid.standalone.android.InstrumentationProcessOutput;
+import io.selendroid.standalone.android.ScreenshotEncoder;
 import io.selendroid.standalone.android.impl.DefaultAndroidEmulator;
 import io.selendroid.standalone.android.impl.DefaultDeviceManager;
 import io.selendroid.standalone.android.impl.DefaultHardwareDevice;
+import io.selendroid.standalone.android.impl.EmulatorBootManager;
 import io.selendroid.standalone.android.impl.InstalledAndroidApp;
 import io.selendroid.standalone.builder.AndroidDriverAPKBuilder;
 import io.selendroid.standalone.builder.SelendroidServerBuilder;
@@ -44,6 +47,8 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
 import org.openqa.selenium.By;
 import org.openqa.selenium.remote.BrowserType;
 import org.openqa.selenium.remote.RemoteWebDriver;
@@ -59,9 +64,17 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -76,14 +89,29 @@ public class SelendroidStandaloneDriver
   public static final String APP_ID = "appId";
   private static int selendroidServerPort = 38080;
   private static final Logger log = Logger.getLogger(SelendroidStandaloneDriver.class.getName());
-  private Map<String, AndroidApp> appsStore = new HashMap<String, AndroidApp>();
+  private static final int MAX_APP_INGESTION_THREADS = 4;
+  // time a booted emulator may take to be prepared for sessions, e.g. for the launcher to start
+  private static final long EMULATOR_PREPARATION_TIMEOUT_MILLIS = 120000;
+  private final ConcurrentMap<String, AndroidApp> appsStore =
+      new ConcurrentHashMap<String, AndroidApp>();
+  private final Object appIngestionLock = new Object();
+  // number of apps that are still being resigned in the background, guarded by appIngestionLock
+  private int pendingApps = 0;
+  private final ExecutorService sessionStartupExecutor = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setNameFormat("selendroid-session-startup-%d").setDaemon(true)
+          .build());
   private Map<String, AndroidApp> selendroidServers = new HashMap<String, AndroidApp>();
   private Map<String, ActiveSession> sessions = new HashMap<String, ActiveSession>();
   private DeviceStore deviceStore = null;
+  private WarmDevicePool warmDevicePool = new WarmDevicePool(0);
+  private SessionTimeouts sessionTimeouts = new SessionTimeouts(
+      new SelendroidConfiguration().getSessionTimeoutMillis(), 0);
+  private ScreenshotEncoder screenshotEncoder = ScreenshotEncoder.fastPng();
   private SelendroidServerBuilder selendroidApkBuilder = null;
   private AndroidDriverAPKBuilder androidDriverAPKBuilder = null;
   private SelendroidConfiguration serverConfiguration = null;
   private DeviceManager deviceManager;
+  private EmulatorBootManager emulatorBootManager = null;
   private FolderMonitor folderMonitor = null;
   private SelendroidStandaloneDriverEventListener eventListener
       = new DummySelendroidStandaloneDriverEventListener();
@@ -99,6 +127,18 @@ public class SelendroidStandaloneDriver
     androidDriverAPKBuilder = new AndroidDriverAPKBuilder();
 
     selendroidServerPort = serverConfiguration.getSelendroidServerPort();
+    int warmPoolSize = serverConfiguration.getWarmPoolSize();
+    if (warmPoolSize > 0 && !serverConfiguration.isNoClearData()) {
+      // clearing the app data kills the process of the app, which the selendroid-server runs in
+      log.warning("The warm device pool is disabled because it needs -noClearData: the next "
+          + "session would see the app data of the previous one.");
+      warmPoolSize = 0;
+    }
+    warmDevicePool = new WarmDevicePool(warmPoolSize);
+    sessionTimeouts = new SessionTimeouts(serverConfiguration.getSessionTimeoutMillis(),
+        serverConfiguration.getSessionIdleTimeoutMillis());
+    screenshotEncoder = new ScreenshotEncoder(serverConfiguration.getScreenshotFormat(),
+        serverConfiguration.getScreenshotQuality());
 
     if (serverConfiguration.getAppFolderToMonitor() != null) {
       startFolderMonitor();
@@ -107,6 +147,8 @@ public class SelendroidStandaloneDriver
     initAndroidDevices();
     deviceStore.setClearData(!serverConfiguration.isNoClearData());
     deviceStore.setKeepEmulator(serverConfiguration.isKeepEmulator());
+    deviceStore.setDeviceWaitTimeoutMillis(serverConfiguration.getDeviceWaitTimeoutMillis());
+    deviceStore.setMaxWaitingRequests(serverConfiguration.getMaxWaitingSessions());
   }
 
   /**
@@ -144,9 +186,7 @@ public class SelendroidStandaloneDriver
           + file.getAbsolutePath());
       log.info(e.getMessage());
     }
-    if (appId != null && !appsStore.containsKey(appId)) {
-      appsStore.put(appId, app);
-
+    if (appId != null && appsStore.putIfAbsent(appId, app) == null) {
       log.info("App " + appId
           + " has been added to selendroid standalone server.");
     }
@@ -160,11 +200,22 @@ public class SelendroidStandaloneDriver
     this.serverConfiguration = serverConfiguration;
 
     // each of the apps specified on the command line need to get resigned
-    // and 'stored' to be installed on the device
+    // and 'stored' to be installed on the device. This happens in the background, sessions
+    // only wait for it if the requested app is not available yet.
+    ExecutorService appIngestion = Executors.newFixedThreadPool(
+        Math.min(MAX_APP_INGESTION_THREADS, Runtime.getRuntime().availableProcessors()),
+        new ThreadFactoryBuilder().setNameFormat("selendroid-app-ingestion-%d").setDaemon(true)
+            .build());
     for (String appPath : serverConfiguration.getSupportedApps()) {
-      File file = new File(appPath);
+      final File file = new File(appPath);
       if (file.exists()) {
-        addToAppsStore(file);
+        ingestApp(appIngestion, file.getName(), new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            addToAppsStore(file);
+            return null;
+          }
+        });
       } else {
         log.severe("Ignoring app because it was not found: " + file.getAbsolutePath());
       }
@@ -172,19 +223,65 @@ public class SelendroidStandaloneDriver
 
     if (!serverConfiguration.isNoWebViewApp()) {
       // extract the 'AndroidDriver' app and show it as available
-      try {
-        // using "android" as the app name, because that is the desired capability default in
-        // selenium for
-        // DesiredCapabilities.ANDROID
-        File androidAPK = androidDriverAPKBuilder.extractAndroidDriverAPK();
-        if(serverConfiguration != null && serverConfiguration.isDeleteTmpFiles()) {
-          androidAPK.deleteOnExit(); //Deletes temporary files if flag set
+      ingestApp(appIngestion, BrowserType.ANDROID, new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          // using "android" as the app name, because that is the desired capability default in
+          // selenium for
+          // DesiredCapabilities.ANDROID
+          File androidAPK = androidDriverAPKBuilder.extractAndroidDriverAPK();
+          if (SelendroidStandaloneDriver.this.serverConfiguration.isDeleteTmpFiles()) {
+            androidAPK.deleteOnExit(); //Deletes temporary files if flag set
+          }
+          AndroidApp app =
+              selendroidApkBuilder.resignApp(androidAPK);
+          appsStore.put(BrowserType.ANDROID, app);
+          return null;
+        }
+      });
+    }
+    // the pool terminates once all apps have been added
+    appIngestion.shutdown();
+  }
+
+  private void ingestApp(ExecutorService appIngestion, final String name,
+      final Callable<Void> ingest) {
+    synchronized (appIngestionLock) {
+      pendingApps++;
+    }
+    appIngestion.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          ingest.call();
+        } catch (Exception e) {
+          log.log(Level.SEVERE, "Ignoring app because it cannot be added to selendroid standalone "
+              + "server: " + name, e);
+        } finally {
+          synchronized (appIngestionLock) {
+            pendingApps--;
+            appIngestionLock.notifyAll();
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Waits until the given app is available or no more apps are being added in the background.
+   *
+   * @param appId the app to wait for, null to wait for all apps
+   */
+  private void awaitAppIngestion(String appId) {
+    synchronized (appIngestionLock) {
+      while (pendingApps > 0 && (appId == null || !appsStore.containsKey(appId))) {
+        log.info("Waiting for " + pendingApps + " app(s) to be added to selendroid standalone server.");
+        try {
+          appIngestionLock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SessionNotCreatedException("Interrupted while waiting for the apps under test");
         }
-        AndroidApp app =
-            selendroidApkBuilder.resignApp(androidAPK);
-        appsStore.put(BrowserType.ANDROID, app);
-      } catch (Exception e) {
-        throw new RuntimeException(e);
       }
     }
   }
@@ -196,6 +293,67 @@ public class SelendroidStandaloneDriver
     deviceStore = new DeviceStore(serverConfiguration.getEmulatorPort(), deviceManager);
     deviceStore.initAndroidDevices(new DefaultHardwareDeviceListener(deviceStore, this),
         serverConfiguration.shouldKeepAdbAlive());
+    emulatorBootManager = new EmulatorBootManager();
+    deviceManager.registerListener(emulatorBootManager);
+    if (serverConfiguration.isStartEmulators()) {
+      startEmulators();
+    }
+  }
+
+  /**
+   * Boots all emulators of the store that are not running yet in parallel.
+   */
+  private void startEmulators() {
+    Map<AndroidEmulator, Future<AndroidEmulator>> boots =
+        new LinkedHashMap<AndroidEmulator, Future<AndroidEmulator>>();
+    for (AndroidDevice device : deviceStore.getDevices()) {
+      if (device instanceof DefaultAndroidEmulator) {
+        DefaultAndroidEmulator emulator = (DefaultAndroidEmulator) device;
+        try {
+          if (!emulator.isEmulatorStarted()) {
+            log.info("Starting emulator " + emulator.getAvdName());
+            boots.put(emulator, emulatorBootManager.boot(emulator, null,
+                deviceStore.nextEmulatorPort(), emulatorStartOptions(new SelendroidCapabilities())));
+          }
+        } catch (AndroidDeviceException e) {
+          log.log(Level.WARNING, "Failed to start emulator " + emulator.getAvdName(), e);
+        }
+      }
+    }
+    // the emulators boot in parallel, so they share one deadline
+    long deadline = bootDeadline();
+    for (Map.Entry<AndroidEmulator, Future<AndroidEmulator>> boot : boots.entrySet()) {
+      AndroidEmulator emulator = boot.getKey();
+      try {
+        awaitBoot(emulator, boot.getValue(), deadline);
+        emulator.setIDevice(deviceManager.getVirtualDevice(emulator.getAvdName()));
+      } catch (AndroidDeviceException e) {
+        log.log(Level.WARNING, "Failed to start emulator " + emulator.getAvdName(), e);
+      }
+    }
+  }
+
+  private long bootDeadline() {
+    return System.currentTimeMillis() + serverConfiguration.getTimeoutEmulatorStart()
+        + EMULATOR_PREPARATION_TIMEOUT_MILLIS;
+  }
+
+  private static void awaitBoot(AndroidEmulator emulator, Future<AndroidEmulator> boot,
+      long deadline) throws AndroidDeviceException {
+    try {
+      boot.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    } catch (java.util.concurrent.TimeoutException e) {
+      throw new AndroidDeviceException("The emulator with avd '" + emulator.getAvdName()
+          + "' was not ready for sessions in time.");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AndroidDeviceException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof AndroidDeviceException) {
+        throw (AndroidDeviceException) e.getCause();
+      }
+      throw new AndroidDeviceException(e.getCause());
+    }
   }
 
   @Override
@@ -222,6 +380,10 @@ public class SelendroidStandaloneDriver
     return serverConfiguration;
   }
 
+  SessionTimeouts getSessionTimeouts() {
+    return sessionTimeouts;
+  }
+
   public String createNewTestSession(JSONObject caps) {
     return createNewTestSession(caps, serverConfiguration.getServerStartRetries());
   }
@@ -232,93 +394,152 @@ public class SelendroidStandaloneDriver
     Exception lastException = null;
     while (retries >= 0) {
       try {
-        SelendroidCapabilities desiredCapabilities = getSelendroidCapabilities(caps);
+        final SessionStartup startup = new SessionStartup(sessionStartupExecutor);
+        final SelendroidCapabilities desiredCapabilities = getSelendroidCapabilities(caps);
+        // the latest version of an app might still be resigned if no exact version is requested
+        awaitAppIngestion(desiredCapabilities.getAut());
         String desiredAut = desiredCapabilities.getDefaultApp(appsStore.keySet());
         app = getAndroidApp(desiredCapabilities, desiredAut);
         log.info("'" + desiredAut + "' will be used as app under test.");
-        device = deviceStore.findAndroidDevice(desiredCapabilities);
 
-        // If we are using an emulator need to start it up
-        if (device instanceof AndroidEmulator) {
-          startAndroidEmulator(desiredCapabilities, (AndroidEmulator) device);
-          // If we are using an android device
-        } else {
-          device.unlockScreen();
-        }
-
-        boolean appInstalledOnDevice = device.isInstalled(app) || app instanceof InstalledAndroidApp;
-        if (!appInstalledOnDevice || serverConfiguration.isForceReinstall()) {
-          device.install(app);
-        } else {
-          log.info("the app under test is already installed.");
+        if (warmDevicePool.isEnabled()) {
+          String sessionId = createSessionOnWarmDevice(desiredCapabilities, app, startup);
+          if (sessionId != null) {
+            log.info(startup.summary());
+            return sessionId;
+          }
         }
 
-        if(!serverConfiguration.isNoClearData()) {
-          device.clearUserData(app);
-        }
+        // building the selendroid-server only needs the app, so it runs while the device is
+        // prepared. Its fingerprint decides whether the server has to be installed.
+        final AndroidApp aut = app;
+        final Future<AndroidApp> selendroidServerApk = startup.fork("build selendroid-server",
+            new Callable<AndroidApp>() {
+              @Override
+              public AndroidApp call() throws Exception {
+                return createSelendroidServerApk(aut);
+              }
+            });
+
+        // the device is claimed before anything else can fail, so it is returned to the store
+        device = startup.run("find device", new Callable<AndroidDevice>() {
+          @Override
+          public AndroidDevice call() throws Exception {
+            return deviceStore.findAndroidDevice(desiredCapabilities);
+          }
+        });
+        final AndroidDevice sessionDevice = device;
+
+        startup.run("start device", new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            // a selendroid-server that kept running on the device does not fit this session
+            WarmDevicePool.ParkedServer parked = warmDevicePool.remove(sessionDevice);
+            if (parked != null) {
+              sessionDevice.kill(parked.getAut());
+            }
+            // If we are using an emulator need to start it up
+            if (sessionDevice instanceof AndroidEmulator) {
+              startAndroidEmulator(desiredCapabilities, (AndroidEmulator) sessionDevice);
+              // If we are using an android device
+            } else {
+              sessionDevice.unlockScreen();
+            }
+            return null;
+          }
+        });
+
+        final Future<Void> autInstallation =
+            startup.fork("install app under test", new Callable<Void>() {
+              @Override
+              public Void call() throws Exception {
+                if (aut instanceof InstalledAndroidApp) {
+                  log.info("the app under test is already installed.");
+                } else if (serverConfiguration.isForceReinstall()
+                    || !sessionDevice.isInstalledAndUpToDate(aut)) {
+                  sessionDevice.install(aut);
+                } else {
+                  log.info("the current build of the app under test is already installed.");
+                }
+
+                if (!serverConfiguration.isNoClearData()) {
+                  sessionDevice.clearUserData(aut);
+                }
+                return null;
+              }
+            });
+
+        Future<Void> serverInstallation = startup.fork("install selendroid-server",
+            new Callable<Void>() {
+              @Override
+              public Void call() throws Exception {
+                AndroidApp server = SessionStartup.get(selendroidServerApk);
+                try {
+                  if (serverConfiguration.isForceReinstall()
+                      || !sessionDevice.isInstalledAndUpToDate(server)) {
+                    sessionDevice.install(server);
+                  } else {
+                    log.info(
+                        "Not installing selendroid-server because the current build is already installed for this app under test.");
+                  }
+                } catch (AndroidSdkException e) {
+                  throw new SessionNotCreatedException(
+                      "Could not install selendroid-server on the device", e);
+                }
+                return null;
+              }
+            });
+
+        Future<Void> devicePreparation = startup.fork("prepare device", new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            // Push extension dex to device if specified
+            String extensionFile = desiredCapabilities.getSelendroidExtensions();
+            pushExtensionsToDevice(sessionDevice, extensionFile);
+
+            pushExtraArgsToDevice(sessionDevice, desiredCapabilities);
+
+            // Configure logging on the device
+            sessionDevice.setLoggingEnabled(serverConfiguration.isDeviceLog());
+            sessionDevice.setLogLimits(serverConfiguration.getDeviceLogBufferSize(),
+                serverConfiguration.getDeviceLogDirectory() == null ? null
+                    : new File(serverConfiguration.getDeviceLogDirectory()));
+            sessionDevice.setScreenshotEncoder(screenshotEncoder);
+
+            // the requested adb commands may depend on the app under test, e.g. to grant it
+            // permissions, so they must neither race with its installation nor be undone by
+            // clearing its data
+            SessionStartup.get(autInstallation);
+
+            // Run any adb commands requested in the capabilities
+            List<String> preSessionAdbCommands = desiredCapabilities.getPreSessionAdbCommands();
+            runPreSessionCommands(sessionDevice, preSessionAdbCommands);
+            return null;
+          }
+        });
+        startup.await(autInstallation, serverInstallation, devicePreparation);
 
-        int port = serverConfiguration.isReuseSelendroidServerPort()
+        final int port = serverConfiguration.isReuseSelendroidServerPort()
             ? serverConfiguration.getSelendroidServerPort()
             : getNextSelendroidServerPort();
 
-        boolean serverInstalled = device.isInstalled("io.selendroid." + app.getBasePackage());
-        if (!serverInstalled || serverConfiguration.isForceReinstall()) {
-          try {
-            device.install(createSelendroidServerApk(app));
-          } catch (AndroidSdkException e) {
-            throw new SessionNotCreatedException("Could not install selendroid-server on the device", e);
-          }
-        } else {
-          log.info(
-              "Not creating and installing selendroid-server because it is already installed for this app under test.");
-        }
-
-        // Run any adb commands requested in the capabilities
-        List<String> preSessionAdbCommands = desiredCapabilities.getPreSessionAdbCommands();
-        runPreSessionCommands(device, preSessionAdbCommands);
-
-        // Push extension dex to device if specified
-        String extensionFile = desiredCapabilities.getSelendroidExtensions();
-        pushExtensionsToDevice(device, extensionFile);
-
-        pushExtraArgsToDevice(device, desiredCapabilities);
-
-        // Configure logging on the device
-        device.setLoggingEnabled(serverConfiguration.isDeviceLog());
-
         // It's GO TIME!
         // start the selendroid server on the device and make sure it's up
-        eventListener.onBeforeDeviceServerStart();
-        device.startSelendroid(app, port, desiredCapabilities);
-        device.addInstrumentationProcessListener(this);
-        waitForServerStart(device);
-        eventListener.onAfterDeviceServerStart();
-
-        // arbitrary sleeps? yay...
-        // looks like after the server starts responding
-        // we need to give it a moment before starting a session?
-        try {
-          Thread.sleep(500);
-        } catch (InterruptedException e1) {
-          Thread.currentThread().interrupt();
-        }
-
-        // create the new session on the device server
-        RemoteWebDriver driver =
-          new RemoteWebDriver(new URL("http://localhost:" + device.getSelendroidsPort() + "/wd/hub"), desiredCapabilities);
-        String sessionId = driver.getSessionId().toString();
-        SelendroidCapabilities requiredCapabilities =
-          new SelendroidCapabilities(driver.getCapabilities().asMap());
-        ActiveSession session =
-          new ActiveSession(sessionId, requiredCapabilities, app, device, port, this);
-
-        this.sessions.put(sessionId, session);
-
-        // We are requesting an "AndroidDriver" so automatically switch to the webview
-        if (BrowserType.ANDROID.equals(desiredCapabilities.getAut())) {
-          switchToWebView(driver);
-        }
+        startup.run("start selendroid-server", new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            eventListener.onBeforeDeviceServerStart();
+            sessionDevice.startSelendroid(aut, port, desiredCapabilities);
+            sessionDevice.addInstrumentationProcessListener(SelendroidStandaloneDriver.this);
+            // waits until the server reports that it is ready to create sessions
+            waitForServerStart(sessionDevice);
+            eventListener.onAfterDeviceServerStart();
+            return null;
+          }
+        });
 
+        String sessionId = createSession(desiredCapabilities, app, sessionDevice, port, startup);
+        log.info(startup.summary());
         return sessionId;
       } catch (Exception e) {
         lastException = e;
@@ -341,6 +562,68 @@ public class SelendroidStandaloneDriver
     }
   }
 
+  /**
+   * Creates the new session on the selendroid-server running on the device.
+   *
+   * @return the session id
+   */
+  private String createSession(final SelendroidCapabilities desiredCapabilities, AndroidApp app,
+      final AndroidDevice device, int port, SessionStartup startup) throws Exception {
+    // create the new session on the device server
+    RemoteWebDriver driver = startup.run("create session", new Callable<RemoteWebDriver>() {
+      @Override
+      public RemoteWebDriver call() throws Exception {
+        return new RemoteWebDriver(new URL("http://localhost:" + device.getSelendroidsPort()
+            + "/wd/hub"), desiredCapabilities);
+      }
+    });
+    String sessionId = driver.getSessionId().toString();
+    SelendroidCapabilities requiredCapabilities =
+      new SelendroidCapabilities(driver.getCapabilities().asMap());
+    ActiveSession session =
+      new ActiveSession(sessionId, requiredCapabilities, app, device, port, this);
+
+    this.sessions.put(sessionId, session);
+
+    // We are requesting an "AndroidDriver" so automatically switch to the webview
+    if (BrowserType.ANDROID.equals(desiredCapabilities.getAut())) {
+      switchToWebView(driver);
+    }
+    return sessionId;
+  }
+
+  /**
+   * Binds the new session to a selendroid-server that kept running on an idle device after its
+   * last session, skipping the installation and the start of the server.
+   *
+   * @return the session id or null if none of the running selendroid-servers could be used.
+   */
+  private String createSessionOnWarmDevice(SelendroidCapabilities desiredCapabilities,
+      AndroidApp app, SessionStartup startup) throws AndroidSdkException {
+    for (WarmDevicePool.ParkedServer parked : warmDevicePool.getCandidates(app,
+        desiredCapabilities)) {
+      AndroidDevice device = parked.getDevice();
+      if (!deviceStore.claimAndroidDevice(device, desiredCapabilities)) {
+        continue;
+      }
+      if (!warmDevicePool.remove(parked)) {
+        // the server has been taken out of the pool in the meantime
+        deviceStore.releaseRunning(device);
+        continue;
+      }
+      if (device.isSelendroidRunning()) {
+        try {
+          log.info("Creating the session on the running selendroid-server of " + device);
+          return createSession(desiredCapabilities, app, device, parked.getPort(), startup);
+        } catch (Exception e) {
+          log.log(Level.WARNING, "Failed to create the session on a running selendroid-server", e);
+        }
+      }
+      deviceStore.release(device, parked.getAut());
+    }
+    return null;
+  }
+
   private void switchToWebView(RemoteWebDriver driver) {
     // arbitrarily high wait time, will this cover our slowest possible device/emulator?
     WebDriverWait wait = new WebDriverWait(driver, 60);
@@ -446,25 +729,62 @@ public class SelendroidStandaloneDriver
 
   private void startAndroidEmulator(SelendroidCapabilities desiredCapabilities, AndroidEmulator device) throws AndroidDeviceException {
     AndroidEmulator emulator = device;
+    Locale locale = parseLocale(desiredCapabilities);
+    if (emulator.isEmulatorStarted() && hasOtherLocale(emulator, locale)) {
+      log.info("Restarting emulator " + emulator.getAvdName() + " with locale " + locale);
+      Integer port = emulator.getPort();
+      emulator.stop();
+      // the emulator gets a new port when it is started again
+      deviceStore.releaseEmulatorPort(port);
+    }
     if (emulator.isEmulatorStarted()) {
       emulator.unlockScreen();
     } else {
-      Map<String, Object> config = new HashMap<String, Object>();
-      if (serverConfiguration.getEmulatorOptions() != null) {
-        config.put(AndroidEmulator.EMULATOR_OPTIONS, serverConfiguration.getEmulatorOptions());
+      Map<String, Object> config = emulatorStartOptions(desiredCapabilities);
+      if (locale != null && config.containsKey(AndroidEmulator.SNAPSHOT_OPTION)) {
+        // the locale is part of the saved state, so each locale gets a snapshot of its own
+        config.put(AndroidEmulator.SNAPSHOT_OPTION,
+            config.get(AndroidEmulator.SNAPSHOT_OPTION) + "_" + locale);
       }
-      config.put(AndroidEmulator.TIMEOUT_OPTION, serverConfiguration.getTimeoutEmulatorStart());
-      if (desiredCapabilities.asMap().containsKey(SelendroidCapabilities.DISPLAY)) {
-        Object d = desiredCapabilities.getCapability(SelendroidCapabilities.DISPLAY);
-        config.put(AndroidEmulator.DISPLAY_OPTION, String.valueOf(d));
+      int port = deviceStore.nextEmulatorPort();
+      if (emulatorBootManager != null && emulator instanceof DefaultAndroidEmulator) {
+        awaitBoot(emulator, emulatorBootManager.boot((DefaultAndroidEmulator) emulator, locale,
+            port, config), bootDeadline());
+      } else {
+        emulator.start(locale, port, config);
       }
-
-      Locale locale = parseLocale(desiredCapabilities);
-      emulator.start(locale, deviceStore.nextEmulatorPort(), config);
     }
     emulator.setIDevice(deviceManager.getVirtualDevice(emulator.getAvdName()));
   }
 
+  /**
+   * Emulators that are reset to a snapshot after a session keep running with the locale they were
+   * started with.
+   */
+  private boolean hasOtherLocale(AndroidEmulator emulator, Locale locale) {
+    if (locale == null || !(emulator instanceof DefaultAndroidEmulator)) {
+      return false;
+    }
+    DefaultAndroidEmulator defaultEmulator = (DefaultAndroidEmulator) emulator;
+    return defaultEmulator.isStartedFromSnapshot() && !locale.equals(defaultEmulator.getLocale());
+  }
+
+  private Map<String, Object> emulatorStartOptions(SelendroidCapabilities desiredCapabilities) {
+    Map<String, Object> config = new HashMap<String, Object>();
+    if (serverConfiguration.getEmulatorOptions() != null) {
+      config.put(AndroidEmulator.EMULATOR_OPTIONS, serverConfiguration.getEmulatorOptions());
+    }
+    config.put(AndroidEmulator.TIMEOUT_OPTION, serverConfiguration.getTimeoutEmulatorStart());
+    if (serverConfiguration.getEmulatorSnapshot() != null) {
+      config.put(AndroidEmulator.SNAPSHOT_OPTION, serverConfiguration.getEmulatorSnapshot());
+    }
+    if (desiredCapabilities.asMap().containsKey(SelendroidCapabilities.DISPLAY)) {
+      Object d = desiredCapabilities.getCapability(SelendroidCapabilities.DISPLAY);
+      config.put(AndroidEmulator.DISPLAY_OPTION, String.valueOf(d));
+    }
+    return config;
+  }
+
   private AndroidApp getAndroidApp(SelendroidCapabilities desiredCapabilities, String aut) {
     AndroidApp app = appsStore.get(aut);
     if (app == null) {
@@ -488,6 +808,7 @@ public class SelendroidStandaloneDriver
     try {
       desiredCapabilities = new SelendroidCapabilities(caps);
       desiredCapabilities.setUseJunitRunner(serverConfiguration.isUseJUnitBootstrap());
+      desiredCapabilities.setServerKeepAlive(serverConfiguration.isKeepAlive());
     } catch (JSONException e) {
       throw new SelendroidException("Desired capabilities cannot be parsed.");
     }
@@ -508,17 +829,20 @@ public class SelendroidStandaloneDriver
   }
 
   private AndroidApp createSelendroidServerApk(AndroidApp aut) throws AndroidSdkException {
-    if (!selendroidServers.containsKey(aut.getAppId())) {
-      try {
-        AndroidApp selendroidServer = selendroidApkBuilder.createSelendroidServer(aut);
-        selendroidServers.put(aut.getAppId(), selendroidServer);
-      } catch (Exception e) {
-        log.log(Level.SEVERE, "Cannot build the Selendroid server APK", e);
-        throw new SessionNotCreatedException(
-            "Cannot build the Selendroid server APK for application '" + aut + "': " + e.getMessage());
+    // the builder is not thread safe, concurrent sessions build one server after the other
+    synchronized (selendroidServers) {
+      if (!selendroidServers.containsKey(aut.getAppId())) {
+        try {
+          AndroidApp selendroidServer = selendroidApkBuilder.createSelendroidServer(aut);
+          selendroidServers.put(aut.getAppId(), selendroidServer);
+        } catch (Exception e) {
+          log.log(Level.SEVERE, "Cannot build the Selendroid server APK", e);
+          throw new SessionNotCreatedException(
+              "Cannot build the Selendroid server APK for application '" + aut + "': " + e.getMessage());
+        }
       }
+      return selendroidServers.get(aut.getAppId());
     }
-    return selendroidServers.get(aut.getAppId());
   }
 
   private Locale parseLocale(SelendroidCapabilities capa) {
@@ -548,6 +872,7 @@ public class SelendroidStandaloneDriver
    * For testing only
    */
   /* package */Map<String, AndroidApp> getConfiguredApps() {
+    awaitAppIngestion(null);
     return Collections.unmodifiableMap(appsStore);
   }
 
@@ -577,18 +902,47 @@ public class SelendroidStandaloneDriver
     if (isValidSession(sessionId)) {
       ActiveSession session = sessions.get(sessionId);
       session.stopSessionTimer();
+      session.detachFromDevice();
+      boolean sessionDeleted = false;
       try {
-        HttpClientUtil.executeRequest(
+        HttpResponse response = HttpClientUtil.executeRequest(session.getHttpClient(),
             "http://localhost:" + session.getSelendroidServerPort() + "/wd/hub/session/" + sessionId,
             HttpMethod.DELETE);
+        sessionDeleted = response.getStatusLine().getStatusCode() == 200;
+        EntityUtils.consumeQuietly(response.getEntity());
       } catch (Exception e) {
         log.log(Level.WARNING, "Error stopping session, safe to ignore", e);
+      } finally {
+        session.closeHttpClient();
+      }
+      if (sessionDeleted && parkSelendroidServer(session)) {
+        deviceStore.releaseRunning(session.getDevice());
+      } else {
+        deviceStore.release(session.getDevice(), session.getAut());
       }
-      deviceStore.release(session.getDevice(), session.getAut());
       sessions.remove(sessionId);
     }
   }
 
+  /**
+   * Keeps the selendroid-server of a healthy session running for the next session of the app.
+   *
+   * @return true if the server has been added to the warm device pool.
+   */
+  private boolean parkSelendroidServer(ActiveSession session) {
+    if (!warmDevicePool.isEnabled() || session.isInvalid()
+        || session.instrumentationProcessFinished()) {
+      return false;
+    }
+    try {
+      return warmDevicePool.park(session.getDevice(), session.getAut(),
+          session.getDesiredCapabilities(), session.getSelendroidServerPort());
+    } catch (AndroidSdkException e) {
+      log.log(Level.WARNING, "Failed to keep the selendroid-server running", e);
+      return false;
+    }
+  }
+
   public void quitSelendroid() {
     List<String> sessionsToQuit = Lists.newArrayList(sessions.keySet());
     if (!sessionsToQuit.isEmpty()) {
@@ -600,7 +954,17 @@ public class SelendroidStandaloneDriver
         }
       }
     }
+    for (WarmDevicePool.ParkedServer parked : warmDevicePool.removeAll()) {
+      if (deviceStore.claimAndroidDevice(parked.getDevice(), new SelendroidCapabilities())) {
+        deviceStore.release(parked.getDevice(), parked.getAut());
+      }
+    }
+    sessionTimeouts.shutdown();
+    if (emulatorBootManager != null) {
+      emulatorBootManager.shutdown();
+    }
     deviceManager.shutdown();
+    selendroidApkBuilder.close();
   }
 
   public SelendroidCapabilities getSessionCapabilities(String sessionId) {
@@ -634,6 +998,11 @@ public class SelendroidStandaloneDriver
     return list;
   }
 
+  @Override
+  public boolean isReady() {
+    return true;
+  }
+
   @Override
   public synchronized JSONArray getSupportedDevices() {
     JSONArray list = new JSONArray();
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Runs the stages of starting a session, either in the calling thread or concurrently, and
+ * records how long each stage took.
+ */
+class SessionStartup {
+  private static final Logger log = Logger.getLogger(SessionStartup.class.getName());
+  private final ExecutorService executor;
+  private final long started = System.currentTimeMillis();
+  // stage name -> duration in milliseconds, in the order the stages finished
+  private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+
+  SessionStartup(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Runs the stage in the calling thread.
+   */
+  <T> T run(String stage, Callable<T> task) throws Exception {
+    long start = System.currentTimeMillis();
+    try {
+      return task.call();
+    } finally {
+      finished(stage, start);
+    }
+  }
+
+  /**
+   * Starts the stage concurrently to the calling thread.
+   */
+  <T> Future<T> fork(final String stage, final Callable<T> task) {
+    return executor.submit(new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        return run(stage, task);
+      }
+    });
+  }
+
+  /**
+   * Waits for all the stages, also if one of them failed, so no stage still uses the device
+   * afterwards.
+   *
+   * @throws Exception the failure of the first stage that failed
+   */
+  void await(Future<?>... stages) throws Exception {
+    Exception failure = null;
+    for (Future<?> stage : stages) {
+      try {
+        get(stage);
+      } catch (Exception e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * @return the result of the stage
+   * @throws Exception the exception the stage failed with
+   */
+  static <T> T get(Future<T> stage) throws Exception {
+    try {
+      return stage.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+
+  synchronized Map<String, Long> getTimings() {
+    return new LinkedHashMap<String, Long>(timings);
+  }
+
+  synchronized String summary() {
+    StringBuilder summary = new StringBuilder();
+    summary.append("Session started in ").append(System.currentTimeMillis() - started)
+        .append(" ms");
+    for (Map.Entry<String, Long> timing : timings.entrySet()) {
+      summary.append(", ").append(timing.getKey()).append(": ").append(timing.getValue())
+          .append(" ms");
+    }
+    return summary.toString();
+  }
+
+  private synchronized void finished(String stage, long start) {
+    long duration = System.currentTimeMillis() - start;
+    timings.put(stage, duration);
+    log.info("Session startup stage '" + stage + "' took " + duration + " ms");
+  }
+}
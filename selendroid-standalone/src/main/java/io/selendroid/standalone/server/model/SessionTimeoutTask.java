@@ -15,24 +15,23 @@ package io.selendroid.standalone.server.model;
 
 import io.selendroid.standalone.exceptions.AndroidDeviceException;
 
-import java.util.TimerTask;
 import java.util.logging.Logger;
 
-public class SessionTimeoutTask extends TimerTask {
+public class SessionTimeoutTask implements Runnable {
   private static final Logger log = Logger.getLogger(SessionTimeoutTask.class.getName());
   private String sessionId;
   private SelendroidStandaloneDriver driver;
+  private String reason;
 
-  public SessionTimeoutTask(SelendroidStandaloneDriver driver, String sessionId) {
+  public SessionTimeoutTask(SelendroidStandaloneDriver driver, String sessionId, String reason) {
     this.sessionId = sessionId;
     this.driver = driver;
+    this.reason = reason;
   }
 
   @Override
   public void run() {
-    int sessionTimeout = driver.getSelendroidConfiguration().getSessionTimeoutMillis();
-    log.info("Stopping session after configured session timeout of " + (sessionTimeout / 1000)
-        + " seconds.");
+    log.info("Stopping session " + sessionId + " after " + reason + ".");
     try {
       driver.stopSession(sessionId);
     } catch (AndroidDeviceException e) {
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Times out the sessions of the driver. All sessions share one scheduler thread, so the number of
+ * threads does not grow with the number of sessions. A session times out when it exceeds the
+ * maximum duration or when it did not receive a command for the idle timeout.
+ */
+class SessionTimeouts {
+  private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+      new ThreadFactoryBuilder().setNameFormat("selendroid-session-timeouts").setDaemon(true)
+          .build());
+  // stopping a session talks to the device, which must not delay the other timeouts
+  private final ExecutorService stopper = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setNameFormat("selendroid-session-timeout-%d").setDaemon(true)
+          .build());
+  private final long maxDurationMillis;
+  private final long idleTimeoutMillis;
+
+  /**
+   * @param maxDurationMillis the maximum duration of a session
+   * @param idleTimeoutMillis the maximum time between two commands of a session, 0 disables the
+   *        idle timeout
+   */
+  SessionTimeouts(long maxDurationMillis, long idleTimeoutMillis) {
+    this.maxDurationMillis = maxDurationMillis;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+  }
+
+  /**
+   * Starts the timeouts of a new session.
+   */
+  Timeout schedule(SelendroidStandaloneDriver driver, String sessionId) {
+    Timeout timeout = new Timeout(driver, sessionId);
+    timeout.maxDuration = scheduler.schedule(timeout.expire("the maximum session duration of "
+        + maxDurationMillis / 1000 + " seconds"), maxDurationMillis, TimeUnit.MILLISECONDS);
+    if (idleTimeoutMillis > 0) {
+      timeout.scheduleIdleCheck(idleTimeoutMillis);
+    }
+    return timeout;
+  }
+
+  void shutdown() {
+    scheduler.shutdownNow();
+    stopper.shutdownNow();
+  }
+
+  /**
+   * The timeouts of one session.
+   */
+  class Timeout {
+    private final SelendroidStandaloneDriver driver;
+    private final String sessionId;
+    private final AtomicBoolean done = new AtomicBoolean(false);
+    private volatile long lastActivity = System.currentTimeMillis();
+    private volatile ScheduledFuture<?> maxDuration;
+    private volatile ScheduledFuture<?> idleCheck;
+
+    private Timeout(SelendroidStandaloneDriver driver, String sessionId) {
+      this.driver = driver;
+      this.sessionId = sessionId;
+    }
+
+    /**
+     * Restarts the idle timeout. This is cheap enough to be called for every command: the idle
+     * check is only rescheduled when it runs and finds that the session has been active.
+     */
+    void touch() {
+      lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Stops the timeouts, e.g. because the session has been stopped.
+     */
+    void cancel() {
+      if (done.compareAndSet(false, true)) {
+        cancelFutures();
+      }
+    }
+
+    private void cancelFutures() {
+      if (maxDuration != null) {
+        maxDuration.cancel(false);
+      }
+      if (idleCheck != null) {
+        idleCheck.cancel(false);
+      }
+      // drop the cancelled tasks instead of keeping them until they were due
+      scheduler.purge();
+    }
+
+    private void scheduleIdleCheck(long delayMillis) {
+      idleCheck = scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          long idleMillis = System.currentTimeMillis() - lastActivity;
+          if (idleMillis >= idleTimeoutMillis) {
+            expire("being idle for " + idleMillis / 1000 + " seconds").run();
+          } else if (!done.get()) {
+            scheduleIdleCheck(idleTimeoutMillis - idleMillis);
+          }
+        }
+      }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private Runnable expire(final String reason) {
+      return new Runnable() {
+        @Override
+        public void run() {
+          if (done.compareAndSet(false, true)) {
+            cancelFutures();
+            stopper.execute(new SessionTimeoutTask(driver, sessionId, reason));
+          }
+        }
+      };
+    }
+  }
+}
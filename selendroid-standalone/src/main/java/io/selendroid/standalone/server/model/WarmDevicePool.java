@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import com.google.common.base.Objects;
+
+import io.selendroid.common.SelendroidCapabilities;
+import io.selendroid.standalone.android.AndroidApp;
+import io.selendroid.standalone.android.AndroidDevice;
+import io.selendroid.standalone.exceptions.AndroidSdkException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Idle devices whose selendroid-server kept running after their last session, so a new session
+ * for the same app can be bound to the running server instead of installing and starting it
+ * again.
+ */
+class WarmDevicePool {
+  private final int sizePerAppAndPlatform;
+  // oldest parked server first
+  private final List<ParkedServer> parkedServers = new ArrayList<ParkedServer>();
+
+  WarmDevicePool(int sizePerAppAndPlatform) {
+    this.sizePerAppAndPlatform = sizePerAppAndPlatform;
+  }
+
+  boolean isEnabled() {
+    return sizePerAppAndPlatform > 0;
+  }
+
+  /**
+   * Keeps the running selendroid-server on the device for later sessions.
+   *
+   * @return false if the pool already holds enough servers for the app and target platform.
+   */
+  synchronized boolean park(AndroidDevice device, AndroidApp aut,
+      SelendroidCapabilities capabilities, int port) throws AndroidSdkException {
+    int parkedForApp = 0;
+    for (ParkedServer parked : parkedServers) {
+      if (parked.device == device) {
+        return false;
+      }
+      if (parked.appId.equals(aut.getAppId())
+          && parked.device.getTargetPlatform() == device.getTargetPlatform()) {
+        parkedForApp++;
+      }
+    }
+    if (parkedForApp >= sizePerAppAndPlatform) {
+      return false;
+    }
+    parkedServers.add(new ParkedServer(device, aut, capabilities, port));
+    return true;
+  }
+
+  /**
+   * @return the parked servers that can serve a session with the given capabilities, oldest
+   *         first. They stay in the pool until they are removed.
+   */
+  synchronized List<ParkedServer> getCandidates(AndroidApp aut,
+      SelendroidCapabilities capabilities) throws AndroidSdkException {
+    List<ParkedServer> candidates = new ArrayList<ParkedServer>();
+    for (ParkedServer parked : parkedServers) {
+      if (parked.canServe(aut, capabilities)) {
+        candidates.add(parked);
+      }
+    }
+    return candidates;
+  }
+
+  synchronized boolean remove(ParkedServer parked) {
+    return parkedServers.remove(parked);
+  }
+
+  /**
+   * @return the server that was parked on the device or null.
+   */
+  synchronized ParkedServer remove(AndroidDevice device) {
+    Iterator<ParkedServer> iterator = parkedServers.iterator();
+    while (iterator.hasNext()) {
+      ParkedServer parked = iterator.next();
+      if (parked.device == device) {
+        iterator.remove();
+        return parked;
+      }
+    }
+    return null;
+  }
+
+  synchronized List<ParkedServer> removeAll() {
+    List<ParkedServer> removed = new ArrayList<ParkedServer>(parkedServers);
+    parkedServers.clear();
+    return removed;
+  }
+
+  static class ParkedServer {
+    private final AndroidDevice device;
+    private final AndroidApp aut;
+    private final String appId;
+    private final SelendroidCapabilities capabilities;
+    private final int port;
+
+    ParkedServer(AndroidDevice device, AndroidApp aut, SelendroidCapabilities capabilities,
+        int port) throws AndroidSdkException {
+      this.device = device;
+      this.aut = aut;
+      this.appId = aut.getAppId();
+      this.capabilities = capabilities;
+      this.port = port;
+    }
+
+    /**
+     * The server can only be reused if it was started the same way the new session would start
+     * it and nothing has to be done on the device before it starts.
+     */
+    boolean canServe(AndroidApp aut, SelendroidCapabilities capabilities)
+        throws AndroidSdkException {
+      return appId.equals(aut.getAppId())
+          && capabilities.getPreSessionAdbCommands().isEmpty()
+          && Objects.equal(this.capabilities.getLaunchActivity(), capabilities.getLaunchActivity())
+          && Objects.equal(this.capabilities.getLocale(), capabilities.getLocale())
+          && this.capabilities.getUseJUnitBootstrap() == capabilities.getUseJUnitBootstrap()
+          && this.capabilities.getServerKeepAlive() == capabilities.getServerKeepAlive()
+          && Objects.equal(this.capabilities.getSelendroidExtensions(),
+              capabilities.getSelendroidExtensions())
+          && Objects.equal(this.capabilities.getBootstrapClassNames(),
+              capabilities.getBootstrapClassNames())
+          && Objects.equal(extraArgs(this.capabilities), extraArgs(capabilities));
+    }
+
+    private static String extraArgs(SelendroidCapabilities capabilities) {
+      return capabilities.hasExtraAUTArgs() ? capabilities.getExtraAUTArgs().toString() : null;
+    }
+
+    AndroidDevice getDevice() {
+      return device;
+    }
+
+    AndroidApp getAut() {
+      return aut;
+    }
+
+    int getPort() {
+      return port;
+    }
+  }
+}
@@ -23,12 +23,17 @@ import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicHttpEntityEnclosingRequest;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -36,17 +41,55 @@ import org.json.JSONObject;
 public class HttpClientUtil {
   private static final Logger log = Logger.getLogger(HttpClientUtil.class.getName());
 
+  private static final int STATUS_CHECK_TIMEOUT_MS = 5000;
+  private static final CloseableHttpClient statusCheckClient =
+      createPooledHttpClient(2, STATUS_CHECK_TIMEOUT_MS, STATUS_CHECK_TIMEOUT_MS);
+
   public static HttpClient getHttpClient() {
     return new DefaultHttpClient();
   }
 
+  /**
+   * Creates a client which keeps connections alive and reuses them for subsequent requests.
+   * The caller owns the client and has to close it once it is not needed anymore, which releases
+   * all pooled connections.
+   *
+   * @param maxConnections maximum number of connections kept open by the client
+   * @param connectTimeoutMillis timeout for establishing a connection or leasing one from the pool
+   * @param socketTimeoutMillis timeout waiting for data, 0 means wait forever
+   */
+  public static CloseableHttpClient createPooledHttpClient(int maxConnections,
+      int connectTimeoutMillis, int socketTimeoutMillis) {
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+    RequestConfig requestConfig = RequestConfig.custom()
+        .setConnectTimeout(connectTimeoutMillis)
+        .setConnectionRequestTimeout(connectTimeoutMillis)
+        .setSocketTimeout(socketTimeoutMillis)
+        .setStaleConnectionCheckEnabled(true)
+        .build();
+
+    return HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(requestConfig)
+        .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+        .build();
+  }
+
   public static HttpResponse executeRequestWithPayload(String uri, int port, HttpMethod method,
       String payload) throws Exception {
+    return executeRequestWithPayload(getHttpClient(), uri, port, method, payload);
+  }
+
+  public static HttpResponse executeRequestWithPayload(HttpClient client, String uri, int port,
+      HttpMethod method, String payload) throws Exception {
     BasicHttpEntityEnclosingRequest request =
         new BasicHttpEntityEnclosingRequest(method.name(), uri);
     request.setEntity(new StringEntity(payload, "UTF-8"));
 
-    return getHttpClient().execute(new HttpHost("localhost", port), request);
+    return client.execute(new HttpHost("localhost", port), request);
   }
 
   public static JSONObject parseJsonResponse(HttpResponse response) throws Exception {
@@ -60,6 +103,11 @@ public class HttpClientUtil {
   }
 
   public static HttpResponse executeRequest(String url, HttpMethod method) throws Exception {
+    return executeRequest(getHttpClient(), url, method);
+  }
+
+  public static HttpResponse executeRequest(HttpClient client, String url, HttpMethod method)
+      throws Exception {
     HttpRequestBase request;
     if (HttpMethod.GET.equals(method)) {
       request = new HttpGet(url);
@@ -70,13 +118,18 @@ public class HttpClientUtil {
     } else {
       throw new RuntimeException("Provided HttpMethod not supported: " + method);
     }
-    return getHttpClient().execute(request);
+    return client.execute(request);
   }
 
   public static boolean isServerStarted(int port) {
+    return isServerStarted(statusCheckClient, port);
+  }
+
+  public static boolean isServerStarted(HttpClient client, int port) {
     HttpResponse response;
     try {
-      response = executeRequest("http://localhost:" + port + "/wd/hub/sessions", HttpMethod.GET);
+      response =
+          executeRequest(client, "http://localhost:" + port + "/wd/hub/sessions", HttpMethod.GET);
     } catch (Exception e) {
       return false;
     }
@@ -18,6 +18,8 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.when;
 
@@ -67,6 +69,21 @@ public class InstrumentationProcessOutputTest {
     Assert.assertEquals(error.getMessage(), "Some stacktrace");
   }
 
+  @Test
+  public void testRegularCrashWithCachedLogs() {
+    InstrumentationProcessOutput output = InstrumentationProcessOutput.parse(
+      "INSTRUMENTATION_RESULT: shortMsg=Process crashed.\n"+
+      "INSTRUMENTATION_CODE: 0");
+
+    AndroidDevice device = mock(DefaultAndroidEmulator.class);
+    Throwable error = InstrumentationProcessOutput
+      .getInstrumentationProcessError(output, device, "Some stacktrace");
+
+    Assert.assertTrue(error instanceof AppCrashedException);
+    Assert.assertEquals(error.getMessage(), "Some stacktrace");
+    verify(device, never()).getCrashLog();
+  }
+
   @Test
   public void testRegularCrashWithNoLogs() {
     InstrumentationProcessOutput output = InstrumentationProcessOutput.parse(
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openqa.selenium.logging.LogEntry;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Calendar;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.zip.GZIPInputStream;
+
+public class LogcatStoreTest {
+  @Test
+  public void shouldParseLevelAndTimestampOfStreamedLines() throws Exception {
+    LogcatStore store = new LogcatStore(10, null);
+    OutputStream out = store.newOutputStream();
+    out.write(("01-23 12:34:56.789 W/ActivityManager(  123): Slow operation\n"
+        + "01-23 12:34:57.000 E/AndroidRuntime( 456): FATAL EXCEPTION\n").getBytes("UTF-8"));
+    out.flush();
+
+    List<LogEntry> entries = store.getEntries();
+    Assert.assertEquals(2, entries.size());
+    Assert.assertEquals(Level.WARNING, entries.get(0).getLevel());
+    Assert.assertEquals(Level.SEVERE, entries.get(1).getLevel());
+    Calendar timestamp = Calendar.getInstance();
+    timestamp.setTimeInMillis(entries.get(0).getTimestamp());
+    Assert.assertEquals(Calendar.JANUARY, timestamp.get(Calendar.MONTH));
+    Assert.assertEquals(23, timestamp.get(Calendar.DAY_OF_MONTH));
+    Assert.assertEquals(789, timestamp.get(Calendar.MILLISECOND));
+  }
+
+  @Test
+  public void shouldOnlyReadNewEntries() {
+    LogcatStore store = new LogcatStore(10, null);
+    store.add("01-23 12:34:56.789 I/first(  1): one");
+    LogcatStore.Page first = store.read(0);
+    Assert.assertEquals(1, first.getEntries().size());
+
+    store.add("01-23 12:34:56.790 I/second(  1): two");
+    LogcatStore.Page second = store.read(first.getCursor());
+    Assert.assertEquals(1, second.getEntries().size());
+    Assert.assertTrue(second.getEntries().get(0).getMessage().endsWith("two"));
+    Assert.assertTrue(store.read(second.getCursor()).getEntries().isEmpty());
+  }
+
+  @Test
+  public void shouldSpillOldestEntriesWhenFull() throws Exception {
+    File spillFile = File.createTempFile("logcat", ".txt.gz");
+    spillFile.delete();
+    spillFile.deleteOnExit();
+    LogcatStore store = new LogcatStore(2, spillFile);
+    store.add("01-23 12:34:56.789 I/tag(  1): one");
+    store.add("01-23 12:34:56.789 I/tag(  1): two");
+    store.add("01-23 12:34:56.789 I/tag(  1): three");
+    Assert.assertEquals(2, store.getEntries().size());
+    store.close();
+
+    String spilled = CharStreams.toString(new InputStreamReader(
+        new GZIPInputStream(new FileInputStream(spillFile)), Charsets.UTF_8));
+    Assert.assertEquals("01-23 12:34:56.789 I/tag(  1): one\n"
+        + "01-23 12:34:56.789 I/tag(  1): two\n"
+        + "01-23 12:34:56.789 I/tag(  1): three\n", spilled);
+  }
+
+  @Test
+  public void shouldNotWriteToTheSpillFileAfterClose() throws Exception {
+    File spillFile = File.createTempFile("logcat", ".txt.gz");
+    spillFile.delete();
+    spillFile.deleteOnExit();
+    LogcatStore store = new LogcatStore(1, spillFile);
+    store.add("01-23 12:34:56.789 I/tag(  1): one");
+    store.close();
+    store.add("01-23 12:34:56.789 I/tag(  1): two");
+    store.add("01-23 12:34:56.789 I/tag(  1): three");
+    store.close();
+
+    String spilled = CharStreams.toString(new InputStreamReader(
+        new GZIPInputStream(new FileInputStream(spillFile)), Charsets.UTF_8));
+    Assert.assertEquals("01-23 12:34:56.789 I/tag(  1): one\n", spilled);
+    Assert.assertEquals(1, store.getEntries().size());
+  }
+}
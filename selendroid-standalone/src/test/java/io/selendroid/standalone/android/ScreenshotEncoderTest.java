@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android;
+
+import com.android.ddmlib.RawImage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+
+public class ScreenshotEncoderTest {
+  @Test
+  public void shouldEncodeFrameBufferAsPng() throws Exception {
+    RawImage rawImage = rgbaImage(3, 2);
+    byte[] png = ScreenshotEncoder.fastPng().encode(rawImage);
+
+    BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+    Assert.assertEquals(3, decoded.getWidth());
+    Assert.assertEquals(2, decoded.getHeight());
+    for (int y = 0; y < 2; y++) {
+      for (int x = 0; x < 3; x++) {
+        Assert.assertEquals(rawImage.getARGB((y * 3 + x) * 4) & 0xffffff,
+            decoded.getRGB(x, y) & 0xffffff);
+      }
+    }
+  }
+
+  @Test
+  public void shouldEncodeFrameBufferAsJpeg() throws Exception {
+    byte[] jpeg = new ScreenshotEncoder(ScreenshotEncoder.JPEG, 80).encode(rgbaImage(16, 16));
+
+    BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(jpeg));
+    Assert.assertEquals(16, decoded.getWidth());
+    Assert.assertEquals(16, decoded.getHeight());
+  }
+
+  @Test
+  public void shouldConvertFrameBufferWithoutByteAlignedChannels() throws Exception {
+    RawImage rawImage = new RawImage();
+    rawImage.bpp = 16;
+    rawImage.width = 1;
+    rawImage.height = 1;
+    rawImage.red_offset = 11;
+    rawImage.red_length = 5;
+    rawImage.green_offset = 5;
+    rawImage.green_length = 6;
+    rawImage.blue_offset = 0;
+    rawImage.blue_length = 5;
+    // pure red in RGB 565
+    rawImage.data = new byte[] {0x00, (byte) 0xf8};
+
+    Assert.assertEquals(rawImage.getARGB(0) & 0xffffff,
+        ScreenshotEncoder.toImage(rawImage).getRGB(0, 0) & 0xffffff);
+  }
+
+  private static RawImage rgbaImage(int width, int height) {
+    RawImage rawImage = new RawImage();
+    rawImage.bpp = 32;
+    rawImage.width = width;
+    rawImage.height = height;
+    rawImage.red_offset = 0;
+    rawImage.red_length = 8;
+    rawImage.green_offset = 8;
+    rawImage.green_length = 8;
+    rawImage.blue_offset = 16;
+    rawImage.blue_length = 8;
+    rawImage.alpha_offset = 24;
+    rawImage.alpha_length = 8;
+    rawImage.data = new byte[width * height * 4];
+    for (int i = 0; i < rawImage.data.length; i++) {
+      rawImage.data[i] = (byte) (i * 37);
+    }
+    return rawImage;
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android;
+
+import io.selendroid.standalone.exceptions.AndroidDeviceException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+
+public class TelnetClientTest {
+  private ServerSocket console;
+  private Thread consoleThread;
+
+  @Before
+  public void startConsole() throws Exception {
+    console = new ServerSocket(0);
+    consoleThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Socket socket = console.accept();
+          PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+          BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+          out.print("Android Console: type 'help' for a list of commands\r\nOK\r\n");
+          out.flush();
+          String command;
+          while ((command = in.readLine()) != null) {
+            if (command.equals("avd snapshot list")) {
+              out.print("ID        TAG\r\n1         clean\r\nOK\r\n");
+            } else {
+              out.print("KO: unknown command\r\n");
+            }
+            out.flush();
+          }
+          socket.close();
+        } catch (Exception e) {
+          // the test closed the console
+        }
+      }
+    });
+    consoleThread.start();
+  }
+
+  @After
+  public void stopConsole() throws Exception {
+    console.close();
+    consoleThread.join(5000);
+  }
+
+  @Test
+  public void shouldReturnTheReplyOfACommand() throws Exception {
+    TelnetClient client = new TelnetClient(console.getLocalPort());
+    try {
+      Assert.assertEquals(Arrays.asList("ID        TAG", "1         clean"),
+          client.execute("avd snapshot list"));
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  public void shouldReportFailedCommands() throws Exception {
+    TelnetClient client = new TelnetClient(console.getLocalPort());
+    try {
+      client.execute("avd snapshot load missing");
+      Assert.fail("the console rejected the command");
+    } catch (AndroidDeviceException e) {
+      Assert.assertTrue(e.getMessage().contains("KO: unknown command"));
+    } finally {
+      client.close();
+    }
+  }
+}
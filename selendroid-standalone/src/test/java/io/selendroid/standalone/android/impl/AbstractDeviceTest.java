@@ -13,19 +13,35 @@
  */
 package io.selendroid.standalone.android.impl;
 
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.IShellOutputReceiver;
+import com.google.common.base.Joiner;
+
 import org.apache.commons.exec.CommandLine;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import static junit.framework.Assert.assertEquals;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class AbstractDeviceTest {
@@ -84,4 +100,95 @@ public class AbstractDeviceTest {
         "15 com.example.another\n";
     assertEquals(expected, device.listRunningThirdPartyProcesses());
   }
+
+  @Test
+  public void testShellCommandIsSentOverDdmlib() throws Exception {
+    IDevice iDevice = mock(IDevice.class);
+    when(iDevice.getSerialNumber()).thenReturn("emulator-5554");
+    when(iDevice.isOnline()).thenReturn(true);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        byte[] output = "done\n".getBytes();
+        IShellOutputReceiver receiver = (IShellOutputReceiver) invocation.getArguments()[1];
+        receiver.addOutput(output, 0, output.length);
+        receiver.flush();
+        return null;
+      }
+    }).when(iDevice).executeShellCommand(eq("input keyevent 4"), any(IShellOutputReceiver.class),
+        anyLong(), any(TimeUnit.class));
+    RecordingDevice device = new RecordingDevice(iDevice);
+
+    assertEquals("done", device.runAdbCommand("shell input keyevent 4"));
+    verify(iDevice).executeShellCommand(eq("input keyevent 4"), any(IShellOutputReceiver.class),
+        anyLong(), any(TimeUnit.class));
+    assertEquals(0, device.commands.size());
+  }
+
+  @Test
+  public void testShellCommandFallsBackToAdbWhenDeviceIsOffline() throws Exception {
+    IDevice iDevice = mock(IDevice.class);
+    when(iDevice.getSerialNumber()).thenReturn("emulator-5554");
+    when(iDevice.isOnline()).thenReturn(false);
+    RecordingDevice device = new RecordingDevice(iDevice);
+
+    assertEquals("done", device.runAdbCommand("shell input keyevent 4"));
+    verify(iDevice, never()).executeShellCommand(anyString(), any(IShellOutputReceiver.class),
+        anyLong(), any(TimeUnit.class));
+    assertEquals(1, device.commands.size());
+    assertEquals(Arrays.asList("-s", "emulator-5554", "shell", "input keyevent 4"),
+        Arrays.asList(device.commands.get(0).getArguments()));
+  }
+
+  @Test
+  public void testInstalledPackagesAreOnlyReloadedAfterPackageCommands() throws Exception {
+    IDevice iDevice = mock(IDevice.class);
+    when(iDevice.getSerialNumber()).thenReturn("emulator-5554");
+    when(iDevice.isOnline()).thenReturn(false);
+    RecordingDevice device = new RecordingDevice(iDevice);
+
+    device.isInstalled("io.selendroid.testapp");
+    device.runAdbCommand("shell input keyevent 4");
+    device.runAdbCommand("push extensions.dex /data/local/tmp/");
+    device.isInstalled("io.selendroid.testapp");
+    assertEquals(1, device.countCommands("pm list packages"));
+
+    device.runAdbCommand("uninstall io.selendroid.testapp");
+    device.isInstalled("io.selendroid.testapp");
+    assertEquals(2, device.countCommands("pm list packages"));
+
+    device.runAdbCommand("shell pm clear io.selendroid.testapp");
+    device.isInstalled("io.selendroid.testapp");
+    assertEquals(3, device.countCommands("pm list packages"));
+  }
+
+  /**
+   * Records the adb processes that would have been started instead of starting them.
+   */
+  private static class RecordingDevice extends DefaultHardwareDevice {
+    private final List<CommandLine> commands = new ArrayList<CommandLine>();
+
+    RecordingDevice(IDevice device) {
+      super(device);
+    }
+
+    @Override
+    protected String executeCommand(CommandLine command, long timeout) {
+      // the constructor of the super class already runs commands
+      if (commands != null) {
+        commands.add(command);
+      }
+      return "done\n";
+    }
+
+    int countCommands(String shellCommand) {
+      int count = 0;
+      for (CommandLine command : commands) {
+        if (Joiner.on(' ').join(command.getArguments()).endsWith("shell " + shellCommand)) {
+          count++;
+        }
+      }
+      return count;
+    }
+  }
 }
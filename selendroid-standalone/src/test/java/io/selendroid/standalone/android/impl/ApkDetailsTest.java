@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ApkDetailsTest {
+  private static final String BADGING =
+      "package: name='io.selendroid.testapp' versionCode='1' versionName='0.4-SNAPSHOT'\n"
+          + "sdkVersion:'10'\n"
+          + "application-label:'selendroid-test-app'\n"
+          + "launchable-activity: name='io.selendroid.testapp.HomeScreenActivity'  label='' icon=''\n";
+
+  @Test
+  public void shouldExtractAllDetailsFromOneBadging() {
+    ApkDetails details = ApkDetails.parse(BADGING);
+    Assert.assertEquals("io.selendroid.testapp", details.getBasePackage());
+    Assert.assertEquals("io.selendroid.testapp.HomeScreenActivity", details.getMainActivity());
+    Assert.assertEquals("0.4-SNAPSHOT", details.getVersionName());
+  }
+
+  @Test
+  public void shouldReturnNullForMissingDetails() {
+    ApkDetails details = ApkDetails.parse("package: name='io.selendroid.testapp'\n");
+    Assert.assertEquals("io.selendroid.testapp", details.getBasePackage());
+    Assert.assertNull(details.getMainActivity());
+    Assert.assertNull(details.getVersionName());
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class ApkFingerprintsTest {
+  @Test
+  public void shouldChangeFingerprintWhenApkChanges() throws Exception {
+    File apk = File.createTempFile("fingerprint", ".apk");
+    apk.deleteOnExit();
+    Files.write("first build", apk, Charsets.UTF_8);
+    String first = ApkFingerprints.of(apk.getAbsolutePath());
+    Assert.assertEquals(first, ApkFingerprints.of(apk.getAbsolutePath()));
+
+    Files.write("second build", apk, Charsets.UTF_8);
+    apk.setLastModified(apk.lastModified() + 2000);
+    String second = ApkFingerprints.of(apk.getAbsolutePath());
+    Assert.assertNotNull(second);
+    Assert.assertFalse(first.equals(second));
+  }
+
+  @Test
+  public void shouldNotFingerprintMissingApk() {
+    Assert.assertNull(ApkFingerprints.of("/does/not/exist.apk"));
+    Assert.assertNull(ApkFingerprints.of(null));
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.builder;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+public class ApkCacheTest {
+  private File cacheDir;
+
+  @Before
+  public void setUp() {
+    cacheDir = Files.createTempDir();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(cacheDir);
+  }
+
+  @Test
+  public void shouldReturnCachedCopy() throws Exception {
+    ApkCache cache = new ApkCache(cacheDir, 1024);
+    String key = ApkCache.key("resigned-app", "abc");
+    Assert.assertNull(cache.get(key));
+
+    File cached = cache.put(key, apk("content"));
+    Assert.assertEquals(cached, cache.get(key));
+    Assert.assertEquals("content", FileUtils.readFileToString(cached));
+  }
+
+  @Test
+  public void shouldSurviveRestarts() throws Exception {
+    String key = ApkCache.key("selendroid-server", "io.selendroid.testapp");
+    ApkCache cache = new ApkCache(cacheDir, 1024);
+    cache.put(key, apk("content"));
+    cache.close();
+
+    ApkCache restarted = new ApkCache(cacheDir, 1024);
+    Assert.assertNotNull(restarted.get(key));
+    Assert.assertTrue(new File(cacheDir, ApkCache.INDEX_FILE).isFile());
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEntries() throws Exception {
+    ApkCache previousRun = new ApkCache(cacheDir, 20);
+    previousRun.put("first", apk("0123456789"));
+    Thread.sleep(5);
+    previousRun.put("second", apk("0123456789"));
+    Thread.sleep(5);
+    previousRun.get("first");
+    previousRun.close();
+
+    ApkCache cache = new ApkCache(cacheDir, 20);
+    cache.put("third", apk("0123456789"));
+
+    Assert.assertNotNull(cache.get("first"));
+    Assert.assertNull(cache.get("second"));
+    Assert.assertNotNull(cache.get("third"));
+    Assert.assertEquals(20, cache.size());
+  }
+
+  @Test
+  public void shouldNotEvictEntriesInUse() throws Exception {
+    ApkCache cache = new ApkCache(cacheDir, 20);
+    File first = cache.put("first", apk("0123456789"));
+    cache.put("second", apk("0123456789"));
+    cache.put("third", apk("0123456789"));
+
+    Assert.assertTrue(first.isFile());
+    Assert.assertEquals(30, cache.size());
+  }
+
+  @Test
+  public void shouldUseOtherDirectoryIfCacheIsInUse() throws Exception {
+    ApkCache cache = new ApkCache(cacheDir, 20);
+    ApkCache other = new ApkCache(cacheDir, 20);
+    Assert.assertEquals(cacheDir, cache.getDirectory());
+    Assert.assertEquals(new File(cacheDir, "1"), other.getDirectory());
+
+    File cached = cache.put("first", apk("0123456789"));
+    other.put("second", apk("0123456789"));
+    other.put("third", apk("0123456789"));
+    other.put("fourth", apk("0123456789"));
+    Assert.assertTrue(cached.isFile());
+
+    other.close();
+    Assert.assertEquals(new File(cacheDir, "1"), new ApkCache(cacheDir, 20).getDirectory());
+  }
+
+  @Test
+  public void shouldCreateDifferentKeysForDifferentInputs() {
+    Assert.assertEquals(ApkCache.key("a", "b"), ApkCache.key("a", "b"));
+    Assert.assertNotEquals(ApkCache.key("a", "b"), ApkCache.key("ab"));
+    Assert.assertNotEquals(ApkCache.key("a", "b"), ApkCache.key("a", "c"));
+  }
+
+  private File apk(String content) throws Exception {
+    File file = File.createTempFile("app", ".apk");
+    file.deleteOnExit();
+    FileUtils.writeStringToFile(file, content);
+    return file;
+  }
+}
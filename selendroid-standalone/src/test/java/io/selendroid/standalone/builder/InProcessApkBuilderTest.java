@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.builder;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class InProcessApkBuilderTest {
+  private static final String SERVER_APK = "src/test/resources/selendroid-server.apk";
+  private static final String KEYSTORE = "src/test/resources/selendriodtest1.keystore";
+  private static final String STOREPASS = "selendroid";
+  private static final String ALIAS = "selendroid1";
+  private File output;
+
+  @Before
+  public void setUp() throws Exception {
+    output = File.createTempFile("in-process", ".apk");
+  }
+
+  @After
+  public void tearDown() {
+    output.delete();
+  }
+
+  @Test
+  public void shouldRetargetBinaryManifest() throws Exception {
+    BinaryAndroidManifest manifest =
+        new BinaryAndroidManifest(new ApkRewriter(new File(SERVER_APK)).read("AndroidManifest.xml"));
+    Assert.assertEquals("io.selendroid", manifest.getPackage());
+
+    manifest.retarget("com.example.app");
+    byte[] patched = manifest.toByteArray();
+    BinaryAndroidManifest reparsed = new BinaryAndroidManifest(patched);
+    Assert.assertEquals("io.selendroid.com.example.app", reparsed.getPackage());
+    String content = new String(patched, Charsets.UTF_16LE);
+    Assert.assertFalse(content.contains(SelendroidServerBuilder.SELENDROID_TEST_APP_PACKAGE));
+    Assert.assertTrue(content.contains("com.example.app"));
+    Assert.assertArrayEquals(patched, reparsed.toByteArray());
+  }
+
+  @Test
+  public void shouldSignApkWithoutRecompressingEntries() throws Exception {
+    X509Certificate certificate = certificate();
+    new ApkRewriter(new File(SERVER_APK))
+        .replace("assets/added.txt", "added".getBytes(Charsets.UTF_8))
+        .writeSigned(output, V1ApkSigner.fromKeystore(new File(KEYSTORE), STOREPASS, ALIAS,
+            certificate.getSigAlgName()));
+
+    ZipFile source = new ZipFile(SERVER_APK);
+    ZipFile signed = new ZipFile(output);
+    try {
+      Assert.assertNull(signed.getEntry("META-INF/CERT.SF"));
+      Assert.assertNull(signed.getEntry("META-INF/CERT.RSA"));
+      Enumeration<? extends ZipEntry> entries = source.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        if (!ApkRewriter.isSignatureFile(entry.getName())) {
+          ZipEntry copy = signed.getEntry(entry.getName());
+          Assert.assertEquals(entry.getCompressedSize(), copy.getCompressedSize());
+          Assert.assertArrayEquals(read(source, entry), read(signed, copy));
+        }
+      }
+      Assert.assertEquals("added", new String(read(signed, signed.getEntry("assets/added.txt")),
+          Charsets.UTF_8));
+
+      byte[] manifestBytes = read(signed, signed.getEntry("META-INF/MANIFEST.MF"));
+      Manifest manifest = new Manifest(new ByteArrayInputStream(manifestBytes));
+      for (String name : Arrays.asList("AndroidManifest.xml", "classes.dex", "assets/added.txt")) {
+        Attributes attributes = manifest.getAttributes(name);
+        Assert.assertEquals(sha1(read(signed, signed.getEntry(name))),
+            attributes.getValue("SHA1-Digest"));
+      }
+
+      byte[] signatureFile = read(signed, signed.getEntry("META-INF/SELENDRO.SF"));
+      Manifest sf = new Manifest(new ByteArrayInputStream(signatureFile));
+      Assert.assertEquals(sha1(manifestBytes),
+          sf.getMainAttributes().getValue("SHA1-Digest-Manifest"));
+
+      byte[] block = read(signed, signed.getEntry("META-INF/SELENDRO.RSA"));
+      Assert.assertEquals(certificate, CertificateFactory.getInstance("X.509")
+          .generateCertPath(new ByteArrayInputStream(block), "PKCS7").getCertificates().get(0));
+      // the signature of the signature file is the last element of the block
+      Signature signature = Signature.getInstance(certificate.getSigAlgName());
+      signature.initVerify(certificate);
+      signature.update(signatureFile);
+      Assert.assertTrue(signature.verify(Arrays.copyOfRange(block, block.length - 256,
+          block.length)));
+    } finally {
+      source.close();
+      signed.close();
+    }
+  }
+
+  @Test
+  public void shouldDeriveSignatureFileNamesLikeJarsigner() {
+    Assert.assertEquals("ANDROIDD", V1ApkSigner.signatureFileBaseName("androiddebugkey"));
+    Assert.assertEquals("MY_KEY", V1ApkSigner.signatureFileBaseName("my.key"));
+  }
+
+  private X509Certificate certificate() throws Exception {
+    KeyStore keystore = KeyStore.getInstance(KeyStore.getDefaultType());
+    InputStream in = new FileInputStream(KEYSTORE);
+    try {
+      keystore.load(in, STOREPASS.toCharArray());
+    } finally {
+      in.close();
+    }
+    return (X509Certificate) keystore.getCertificate(ALIAS);
+  }
+
+  private static byte[] read(ZipFile zip, ZipEntry entry) throws Exception {
+    InputStream in = zip.getInputStream(entry);
+    try {
+      return IOUtils.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  private static String sha1(byte[] bytes) throws Exception {
+    return BaseEncoding.base64().encode(MessageDigest.getInstance("SHA-1").digest(bytes));
+  }
+}
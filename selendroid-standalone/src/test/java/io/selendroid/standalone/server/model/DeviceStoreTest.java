@@ -25,6 +25,7 @@ import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -51,6 +52,13 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -599,4 +607,179 @@ public class DeviceStoreTest {
           equalTo("No devices are found. This can happen if the devices are in use or no device screen matches the required capabilities."));
     }
   }
+
+  @Test
+  public void shouldAllocateEachDeviceOnlyOnceToConcurrentRequests() throws Exception {
+    final DeviceStore store = new DeviceStore(EMULATOR_PORT, anDeviceManager());
+    store.addDevice(anDevice("first", DeviceTargetPlatform.ANDROID16));
+    store.addDevice(anDevice("second", DeviceTargetPlatform.ANDROID16));
+
+    int requests = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(requests);
+    try {
+      List<Future<AndroidDevice>> results = new ArrayList<Future<AndroidDevice>>();
+      for (int i = 0; i < requests; i++) {
+        results.add(executor.submit(new Callable<AndroidDevice>() {
+          @Override
+          public AndroidDevice call() throws Exception {
+            start.await();
+            try {
+              return store.findAndroidDevice(withDefaultCapabilities());
+            } catch (DeviceStoreException e) {
+              return null;
+            }
+          }
+        }));
+      }
+      start.countDown();
+
+      List<AndroidDevice> allocated = new ArrayList<AndroidDevice>();
+      for (Future<AndroidDevice> result : results) {
+        if (result.get() != null) {
+          allocated.add(result.get());
+        }
+      }
+      assertThat(allocated, hasSize(2));
+      Assert.assertNotSame(allocated.get(0), allocated.get(1));
+      assertThat(store.getDevicesInUse(), hasSize(2));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldHandReleasedDeviceToWaitingRequest() throws Exception {
+    final CountDownLatch requestWaiting = new CountDownLatch(1);
+    final DeviceStore store = waitObservingStore(requestWaiting);
+    store.setDeviceWaitTimeoutMillis(10000);
+    DefaultHardwareDevice device = anDevice("de", DeviceTargetPlatform.ANDROID16);
+    store.addDevice(device);
+    assertThat(store.findAndroidDevice(withDefaultCapabilities()), equalTo((AndroidDevice) device));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<AndroidDevice> waiting = executor.submit(new Callable<AndroidDevice>() {
+        @Override
+        public AndroidDevice call() throws Exception {
+          return store.findAndroidDevice(withDefaultCapabilities());
+        }
+      });
+      Assert.assertTrue(requestWaiting.await(10, TimeUnit.SECONDS));
+      Assert.assertFalse(waiting.isDone());
+
+      store.release(device, null);
+      assertThat(waiting.get(), equalTo((AndroidDevice) device));
+      assertThat(store.getDevicesInUse(), contains((AndroidDevice) device));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldNotHandRemovedDeviceToWaitingRequest() throws Exception {
+    final CountDownLatch requestWaiting = new CountDownLatch(1);
+    final DeviceStore store = waitObservingStore(requestWaiting);
+    store.setDeviceWaitTimeoutMillis(1000);
+    DefaultHardwareDevice device = anDevice("de", DeviceTargetPlatform.ANDROID16);
+    store.addDevice(device);
+    store.findAndroidDevice(withDefaultCapabilities());
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<AndroidDevice> waiting = executor.submit(new Callable<AndroidDevice>() {
+        @Override
+        public AndroidDevice call() throws Exception {
+          return store.findAndroidDevice(withDefaultCapabilities());
+        }
+      });
+      Assert.assertTrue(requestWaiting.await(10, TimeUnit.SECONDS));
+
+      store.removeAndroidDevice(device);
+      try {
+        waiting.get();
+        Assert.fail("the device has been removed");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause(), instanceOf(DeviceStoreException.class));
+      }
+      assertThat(store.getDevicesInUse(), hasSize(0));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldFailWaitingRequestAfterDeviceWaitTimeout() throws Exception {
+    DeviceStore store = new DeviceStore(EMULATOR_PORT, anDeviceManager());
+    store.setDeviceWaitTimeoutMillis(100);
+    store.addDevice(anDevice("de", DeviceTargetPlatform.ANDROID16));
+    store.findAndroidDevice(withDefaultCapabilities());
+
+    try {
+      store.findAndroidDevice(withDefaultCapabilities());
+      Assert.fail("all devices are in use");
+    } catch (DeviceStoreException e) {
+      assertThat(e.getMessage(), containsString("No devices are found."));
+    }
+  }
+
+  @Test
+  public void shouldNotWaitIfNoDeviceMatchesTheCapabilities() throws Exception {
+    DeviceStore store = new DeviceStore(EMULATOR_PORT, anDeviceManager());
+    store.setDeviceWaitTimeoutMillis(60000);
+    store.addDevice(anDevice("Nexus 5", DeviceTargetPlatform.ANDROID16));
+
+    long start = System.currentTimeMillis();
+    try {
+      store.findAndroidDevice(withWrongModelCapabilities());
+      Assert.fail();
+    } catch (DeviceStoreException e) {
+      Assert.assertTrue(System.currentTimeMillis() - start < 10000);
+    }
+  }
+
+  @Test
+  public void shouldRejectRequestsIfTooManyAreWaiting() throws Exception {
+    final CountDownLatch requestWaiting = new CountDownLatch(1);
+    final DeviceStore store = waitObservingStore(requestWaiting);
+    store.setDeviceWaitTimeoutMillis(10000);
+    store.setMaxWaitingRequests(1);
+    DefaultHardwareDevice device = anDevice("de", DeviceTargetPlatform.ANDROID16);
+    store.addDevice(device);
+    store.findAndroidDevice(withDefaultCapabilities());
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<AndroidDevice> waiting = executor.submit(new Callable<AndroidDevice>() {
+        @Override
+        public AndroidDevice call() throws Exception {
+          return store.findAndroidDevice(withDefaultCapabilities());
+        }
+      });
+      Assert.assertTrue(requestWaiting.await(10, TimeUnit.SECONDS));
+      try {
+        store.findAndroidDevice(withDefaultCapabilities());
+        Assert.fail("the wait queue is full");
+      } catch (DeviceStoreException e) {
+        assertThat(e.getMessage(), containsString("session requests are waiting"));
+      }
+      store.release(device, null);
+      assertThat(waiting.get(), equalTo((AndroidDevice) device));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * @return a store that counts the latch down whenever a request starts waiting for a device
+   */
+  private DeviceStore waitObservingStore(final CountDownLatch requestWaiting)
+      throws AndroidDeviceException {
+    return new DeviceStore(EMULATOR_PORT, anDeviceManager()) {
+      @Override
+      /* package */void requestWaiting() {
+        requestWaiting.countDown();
+      }
+    };
+  }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SessionStartupTest {
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldRecordTimingOfEachStage() throws Exception {
+    SessionStartup startup = new SessionStartup(executor);
+    Assert.assertEquals("value", startup.run("inline", value("value")));
+    Future<String> forked = startup.fork("forked", value("forked"));
+    startup.await(forked);
+
+    Assert.assertEquals("forked", forked.get());
+    Assert.assertTrue(startup.getTimings().containsKey("inline"));
+    Assert.assertTrue(startup.getTimings().containsKey("forked"));
+    Assert.assertTrue(startup.summary().startsWith("Session started in "));
+  }
+
+  @Test
+  public void shouldWaitForAllStagesBeforeReportingFailure() throws Exception {
+    SessionStartup startup = new SessionStartup(executor);
+    final AtomicBoolean slowStageFinished = new AtomicBoolean(false);
+    Future<Void> failing = startup.fork("failing", new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        throw new IllegalStateException("install failed");
+      }
+    });
+    Future<Void> slow = startup.fork("slow", new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        Thread.sleep(100);
+        slowStageFinished.set(true);
+        return null;
+      }
+    });
+
+    try {
+      startup.await(failing, slow);
+      Assert.fail("the failure of a stage should be rethrown");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("install failed", e.getMessage());
+    }
+    Assert.assertTrue(slowStageFinished.get());
+  }
+
+  private static Callable<String> value(final String value) {
+    return new Callable<String>() {
+      @Override
+      public String call() {
+        return value;
+      }
+    };
+  }
+}
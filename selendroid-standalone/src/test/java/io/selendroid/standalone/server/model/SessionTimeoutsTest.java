@@ -0,0 +1,64 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SessionTimeoutsTest {
+  private SessionTimeouts timeouts;
+
+  @After
+  public void tearDown() {
+    timeouts.shutdown();
+  }
+
+  @Test
+  public void shouldStopSessionAfterMaxDuration() throws Exception {
+    timeouts = new SessionTimeouts(100, 0);
+    SelendroidStandaloneDriver driver = mock(SelendroidStandaloneDriver.class);
+    timeouts.schedule(driver, "session");
+
+    verify(driver, timeout(2000)).stopSession("session");
+  }
+
+  @Test
+  public void shouldRestartIdleTimeoutOnActivity() throws Exception {
+    timeouts = new SessionTimeouts(60000, 300);
+    SelendroidStandaloneDriver driver = mock(SelendroidStandaloneDriver.class);
+    SessionTimeouts.Timeout timeout = timeouts.schedule(driver, "session");
+    for (int i = 0; i < 5; i++) {
+      Thread.sleep(100);
+      timeout.touch();
+    }
+    verify(driver, never()).stopSession("session");
+
+    verify(driver, timeout(2000)).stopSession("session");
+  }
+
+  @Test
+  public void shouldNotStopCancelledSession() throws Exception {
+    timeouts = new SessionTimeouts(100, 100);
+    SelendroidStandaloneDriver driver = mock(SelendroidStandaloneDriver.class);
+    timeouts.schedule(driver, "session").cancel();
+    Thread.sleep(300);
+
+    verify(driver, never()).stopSession("session");
+  }
+}
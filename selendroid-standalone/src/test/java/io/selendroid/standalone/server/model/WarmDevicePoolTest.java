@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import static io.selendroid.standalone.server.model.DeviceStoreFixture.anDevice;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.selendroid.common.SelendroidCapabilities;
+import io.selendroid.common.device.DeviceTargetPlatform;
+import io.selendroid.standalone.android.AndroidApp;
+import io.selendroid.standalone.android.AndroidDevice;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class WarmDevicePoolTest {
+  private static final int PORT = 38080;
+
+  @Test
+  public void shouldKeepAtMostThePoolSizePerAppAndPlatform() throws Exception {
+    WarmDevicePool pool = new WarmDevicePool(1);
+    AndroidApp app = anApp("app:1.0");
+
+    Assert.assertTrue(pool.park(anDevice("a", DeviceTargetPlatform.ANDROID16), app,
+        new SelendroidCapabilities(), PORT));
+    Assert.assertFalse(pool.park(anDevice("b", DeviceTargetPlatform.ANDROID16), app,
+        new SelendroidCapabilities(), PORT));
+    Assert.assertTrue(pool.park(anDevice("c", DeviceTargetPlatform.ANDROID19), app,
+        new SelendroidCapabilities(), PORT));
+    Assert.assertTrue(pool.park(anDevice("d", DeviceTargetPlatform.ANDROID16), anApp("other:1.0"),
+        new SelendroidCapabilities(), PORT));
+    Assert.assertEquals(3, pool.removeAll().size());
+  }
+
+  @Test
+  public void shouldOnlyReuseServersStartedTheSameWay() throws Exception {
+    WarmDevicePool pool = new WarmDevicePool(2);
+    AndroidApp app = anApp("app:1.0");
+    AndroidDevice device = anDevice("a", DeviceTargetPlatform.ANDROID16);
+    pool.park(device, app, new SelendroidCapabilities(), PORT);
+
+    Assert.assertEquals(1, pool.getCandidates(app, new SelendroidCapabilities()).size());
+    Assert.assertTrue(pool.getCandidates(anApp("other:1.0"), new SelendroidCapabilities())
+        .isEmpty());
+
+    SelendroidCapabilities otherActivity = new SelendroidCapabilities();
+    otherActivity.setLaunchActivity("io.selendroid.testapp.WebViewActivity");
+    Assert.assertTrue(pool.getCandidates(app, otherActivity).isEmpty());
+
+    SelendroidCapabilities adbCommands = new SelendroidCapabilities();
+    adbCommands.setPreSessionAdbCommands(Arrays.asList("shell setprop name selendroid"));
+    Assert.assertTrue(pool.getCandidates(app, adbCommands).isEmpty());
+
+    WarmDevicePool.ParkedServer parked = pool.remove(device);
+    Assert.assertSame(device, parked.getDevice());
+    Assert.assertTrue(pool.getCandidates(app, new SelendroidCapabilities()).isEmpty());
+  }
+
+  private static AndroidApp anApp(String appId) throws Exception {
+    AndroidApp app = mock(AndroidApp.class);
+    when(app.getAppId()).thenReturn(appId);
+    return app;
+  }
+}
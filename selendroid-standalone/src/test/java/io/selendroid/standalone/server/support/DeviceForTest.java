@@ -19,6 +19,8 @@ import io.netty.handler.codec.http.HttpMethod;
 import io.selendroid.common.SelendroidCapabilities;
 import io.selendroid.common.device.DeviceTargetPlatform;
 import io.selendroid.standalone.android.AndroidApp;
+import io.selendroid.standalone.android.LogcatStore;
+import io.selendroid.standalone.android.ScreenshotEncoder;
 import io.selendroid.standalone.android.impl.DefaultAndroidEmulator;
 import io.selendroid.standalone.exceptions.AndroidDeviceException;
 import io.selendroid.standalone.exceptions.AndroidSdkException;
@@ -194,17 +196,35 @@ public class DeviceForTest extends DefaultAndroidEmulator {
     return false;
   }
 
+  @Override
+  public boolean isInstalledAndUpToDate(AndroidApp app) throws AndroidSdkException {
+    return false;
+  }
+
   @Override
   public List<LogEntry> getLogs() {
     return null;
   }
 
+  @Override
+  public LogcatStore.Page getLogs(long cursor) {
+    return null;
+  }
+
+  @Override
+  public void setLogLimits(int maxEntries, File spillDirectory) {
+  }
+
   @Override
   public byte[] takeScreenshot() throws AndroidDeviceException {
     // TODO Auto-generated method stub
     return null;
   }
 
+  @Override
+  public void setScreenshotEncoder(ScreenshotEncoder screenshotEncoder) {
+  }
+
   @Override
   public void setIDevice(IDevice iDevice) {
     // TODO Auto-generated method stub